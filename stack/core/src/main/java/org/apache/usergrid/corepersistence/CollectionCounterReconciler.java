@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.corepersistence;
+
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.corepersistence.util.CpNamingUtils;
+import org.apache.usergrid.locking.Lock;
+import org.apache.usergrid.locking.LockManager;
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.EntityManagerFactory;
+import org.apache.usergrid.persistence.cassandra.CassandraPersistenceUtils;
+import org.apache.usergrid.persistence.cassandra.CassandraService;
+import org.apache.usergrid.persistence.cassandra.CounterUtils;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.graph.Edge;
+import org.apache.usergrid.persistence.graph.GraphManager;
+import org.apache.usergrid.persistence.graph.GraphManagerFactory;
+import org.apache.usergrid.persistence.graph.MarkedEdge;
+import org.apache.usergrid.persistence.graph.SearchByEdgeType;
+import org.apache.usergrid.persistence.graph.impl.SimpleSearchByEdgeType;
+import org.apache.usergrid.persistence.graph.impl.SimpleSearchEdgeType;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Injector;
+
+import me.prettyprint.hector.api.mutation.Mutator;
+
+import rx.Observable;
+
+import static me.prettyprint.hector.api.factory.HFactory.createMutator;
+import static org.apache.usergrid.corepersistence.CpEntityManager.APPLICATION_COLLECTION;
+import static org.apache.usergrid.corepersistence.CpEntityManager.APPLICATION_CONNECTION;
+import static org.apache.usergrid.corepersistence.CpEntityManager.APPLICATION_ENTITIES;
+import static org.apache.usergrid.persistence.cassandra.Serializers.be;
+
+
+/**
+ * Corrects drift in the collection and connection counters of every application.  The counters are incremented and
+ * decremented as entities and connections are written, and can drift when a write fails part way or an entity is
+ * removed along with its connections.  Each run counts the edges in the graph and applies the difference to the
+ * counters.
+ *
+ * The counters are read once before counting, and each correction is the difference to that snapshot, so increments
+ * written while a run counts aren't taken for drift.  Edges written while a run counts may or may not be counted, the
+ * next run corrects what this one gets wrong.
+ *
+ * Counting doesn't hold a lock.  A node claims each application while it reconciles it so the others skip it, the
+ * claim is released when the run is done, or expires after half the interval, and is never waited on.  Each
+ * correction is applied under the lock of its counter, written straight to cassandra rather than batched, and the time
+ * it was applied is recorded.  A run skips a counter corrected since its snapshot, so a run that outlives its claim
+ * doesn't apply a correction another run already applied.
+ */
+public class CollectionCounterReconciler extends AbstractScheduledService {
+
+    private static final Logger logger = LoggerFactory.getLogger( CollectionCounterReconciler.class );
+
+    public static final String RECONCILE_ENABLED_PROP = "usergrid.counter.reconcile.enabled";
+
+    /**
+     * The application dictionary of the time each counter was last corrected
+     */
+    public static final String DICTIONARY_RECONCILED = "counters_reconciled";
+
+    private EntityManagerFactory emf;
+    private CassandraService cass;
+    private CounterUtils counterUtils;
+    private Injector injector;
+    private long interval = TimeUnit.HOURS.toMillis( 24 );
+
+
+    public CollectionCounterReconciler() { }
+
+
+    @Override
+    protected void runOneIteration() throws Exception {
+        final LockManager lockManager = injector.getInstance( LockManager.class );
+
+        for ( final UUID applicationId : emf.getApplications().values() ) {
+
+            final Lock claim = lockManager.createLock( applicationId, Math.max( 1, interval / 2 ),
+                TimeUnit.MILLISECONDS, "/counters/reconcile" );
+
+            //another node is reconciling the application
+            if ( !claim.tryLock( 0, TimeUnit.MILLISECONDS ) ) {
+                continue;
+            }
+
+            try {
+                reconcile( applicationId );
+            }
+            catch ( Throwable t ) {
+                logger.error( "Unable to reconcile counters of application {}", applicationId, t );
+            }
+            finally {
+                claim.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Count the collections and connections of the application and correct its counters
+     *
+     * @return The corrections applied, by counter name
+     */
+    public Map<String, Long> reconcile( final UUID applicationId ) throws Exception {
+
+        final ApplicationScope applicationScope = CpNamingUtils.getApplicationScope( applicationId );
+        final GraphManager gm = injector.getInstance( GraphManagerFactory.class ).createEdgeManager( applicationScope );
+        final EntityManager em = emf.getEntityManager( applicationId );
+
+        //the counters the corrections are made to, read before we count
+        final long snapshotTime = System.currentTimeMillis();
+        final Map<String, Long> snapshot = em.getApplicationCounters();
+
+        final Map<String, Long> actual = new HashMap<>();
+
+        long entities = 0;
+
+        for ( final String edgeType : getEdgeTypes( gm, applicationScope.getApplication(),
+            CpNamingUtils.EDGE_COLL_PREFIX ) ) {
+
+            long members = 0;
+
+            for ( final Edge edge : getEdges( gm, applicationScope.getApplication(), edgeType ).toBlocking()
+                                                                                               .toIterable() ) {
+                members++;
+                countConnections( gm, edge.getTargetNode(), actual );
+            }
+
+            entities += members;
+            actual.put( APPLICATION_COLLECTION + CpNamingUtils.getCollectionNameFromEdgeName( edgeType ), members );
+        }
+
+        actual.put( APPLICATION_ENTITIES, entities );
+
+        final LockManager lockManager = injector.getInstance( LockManager.class );
+
+        final Set<String> names = new HashSet<>( actual.keySet() );
+
+        for ( final String name : snapshot.keySet() ) {
+            if ( name.startsWith( APPLICATION_COLLECTION ) || name.startsWith( APPLICATION_CONNECTION ) ) {
+                names.add( name );
+            }
+        }
+
+        final Map<String, Long> corrections = new HashMap<>();
+
+        for ( final String name : names ) {
+            final Long expected = actual.get( name );
+            final Long counted = snapshot.get( name );
+            final long delta = ( expected == null ? 0 : expected ) - ( counted == null ? 0 : counted );
+
+            if ( delta != 0 && correct( lockManager, em, applicationId, name, delta, snapshotTime ) ) {
+                corrections.put( name, delta );
+            }
+        }
+
+        if ( !corrections.isEmpty() ) {
+            logger.info( "Corrected counters of application {}: {}", applicationId, corrections );
+        }
+
+        return corrections;
+    }
+
+
+    /**
+     * Apply the correction to the counter unless it was corrected since the snapshot the correction was computed
+     * from.  The lock of the counter is held while the correction is written and recorded
+     *
+     * @return True if the correction was applied
+     */
+    private boolean correct( final LockManager lockManager, final EntityManager em, final UUID applicationId,
+                             final String name, final long delta, final long snapshotTime ) throws Exception {
+
+        final Lock lock = lockManager.createLock( applicationId, "/counters/reconcile", name );
+
+        lock.lock();
+
+        try {
+            final Object corrected =
+                em.getDictionaryElementValue( em.getApplicationRef(), DICTIONARY_RECONCILED, name );
+
+            if ( corrected != null && ( ( Number ) corrected ).longValue() >= snapshotTime ) {
+                logger.info( "Counter {} of application {} was corrected by another run, skipping", name,
+                    applicationId );
+                return false;
+            }
+
+            //not batched, the next run's snapshot has to see it
+            final Mutator<ByteBuffer> m = createMutator( cass.getApplicationKeyspace( applicationId ), be );
+            counterUtils.batchIncrementEntityCounterNow( m, applicationId, name, delta );
+            CassandraPersistenceUtils.batchExecute( m, CassandraService.RETRY_COUNT );
+
+            em.addToDictionary( em.getApplicationRef(), DICTIONARY_RECONCILED, name, System.currentTimeMillis() );
+
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+
+    private void countConnections( final GraphManager gm, final Id sourceId, final Map<String, Long> actual ) {
+        for ( final String edgeType : getEdgeTypes( gm, sourceId, CpNamingUtils.EDGE_CONN_PREFIX ) ) {
+
+            final long connections = getEdges( gm, sourceId, edgeType ).countLong().toBlocking().last();
+
+            actual.merge( APPLICATION_CONNECTION + CpNamingUtils.getConnectionNameFromEdgeName( edgeType ),
+                connections, Long::sum );
+        }
+    }
+
+
+    private Iterable<String> getEdgeTypes( final GraphManager gm, final Id sourceId, final String prefix ) {
+        return gm.getEdgeTypesFromSource( new SimpleSearchEdgeType( sourceId, prefix, Optional.<String>absent() ) )
+                 .toBlocking().toIterable();
+    }
+
+
+    private Observable<MarkedEdge> getEdges( final GraphManager gm, final Id sourceId, final String edgeType ) {
+        return gm.loadEdgesFromSource(
+            new SimpleSearchByEdgeType( sourceId, edgeType, Long.MAX_VALUE, SearchByEdgeType.Order.DESCENDING,
+                Optional.<Edge>absent() ) );
+    }
+
+
+    @Override
+    protected Scheduler scheduler() {
+        return Scheduler.newFixedDelaySchedule( interval, interval, TimeUnit.MILLISECONDS );
+    }
+
+
+    public void setEntityManagerFactory( EntityManagerFactory emf ) {
+        this.emf = emf;
+    }
+
+
+    public void setCassandraService( CassandraService cass ) {
+        this.cass = cass;
+    }
+
+
+    public void setCounterUtils( CounterUtils counterUtils ) {
+        this.counterUtils = counterUtils;
+    }
+
+
+    public void setInjector( Injector injector ) {
+        this.injector = injector;
+    }
+
+
+    /**
+     * Set the time between runs in milliseconds
+     */
+    public void setInterval( long interval ) {
+        this.interval = interval;
+    }
+}
@@ -20,13 +20,16 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.primitives.UnsignedBytes;
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.*;
 import me.prettyprint.hector.api.factory.HFactory;
 import me.prettyprint.hector.api.mutation.Mutator;
+import me.prettyprint.hector.api.query.CounterQuery;
 import me.prettyprint.hector.api.query.MultigetSliceCounterQuery;
 import me.prettyprint.hector.api.query.QueryResult;
 import me.prettyprint.hector.api.query.SliceCounterQuery;
+import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.NullArgumentException;
 import org.apache.usergrid.corepersistence.asyncevents.AsyncEventService;
 import org.apache.usergrid.corepersistence.index.CollectionSettings;
@@ -43,9 +46,11 @@ import org.apache.usergrid.persistence.Query.Level;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemFig;
 import org.apache.usergrid.persistence.cassandra.*;
 import org.apache.usergrid.persistence.cassandra.util.TraceParticipant;
+import org.apache.usergrid.persistence.collection.BulkWriteResult;
 import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.collection.EntitySet;
 import org.apache.usergrid.persistence.collection.FieldSet;
+import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.collection.exception.WriteUniqueVerifyException;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
@@ -54,8 +59,10 @@ import org.apache.usergrid.persistence.exceptions.DuplicateUniquePropertyExistsE
 import org.apache.usergrid.persistence.exceptions.EntityNotFoundException;
 import org.apache.usergrid.persistence.exceptions.RequiredPropertyNotFoundException;
 import org.apache.usergrid.persistence.exceptions.UnexpectedEntityTypeException;
+import org.apache.usergrid.persistence.graph.Edge;
 import org.apache.usergrid.persistence.graph.GraphManager;
 import org.apache.usergrid.persistence.graph.GraphManagerFactory;
+import org.apache.usergrid.persistence.graph.MarkedEdge;
 import org.apache.usergrid.persistence.graph.SearchEdgeType;
 import org.apache.usergrid.persistence.index.EntityIndex;
 import org.apache.usergrid.persistence.index.query.CounterResolution;
@@ -77,6 +84,7 @@ import rx.Observable;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static java.lang.String.CASE_INSENSITIVE_ORDER;
@@ -104,6 +112,7 @@ public class CpEntityManager implements EntityManager {
     private static final Logger logger = LoggerFactory.getLogger( CpEntityManager.class );
 
     public static final String APPLICATION_COLLECTION = "application.collection.";
+    public static final String APPLICATION_CONNECTION = "application.connection.";
     public static final String APPLICATION_ENTITIES = "application.entities";
     public static final long ONE_COUNT = 1L;
 
@@ -783,7 +792,57 @@ public class CpEntityManager implements EntityManager {
 
     @Override
     public long getApplicationCollectionSize( String collectionName ) throws Exception {
-        throw new UnsupportedOperationException( "Not supported yet." );
+        return getApplicationCounter( APPLICATION_COLLECTION + collectionName );
+    }
+
+
+    @Override
+    public long getApplicationConnectionSize( String connectionType ) throws Exception {
+        return getApplicationCounter( APPLICATION_CONNECTION + connectionType.toLowerCase() );
+    }
+
+
+    @Override
+    public Map<String, Object> getApplicationConnectionMetadata() throws Exception {
+        Map<String, Long> counts = getApplicationCounters();
+        Map<String, Object> metadata = new HashMap<String, Object>();
+
+        for ( Map.Entry<String, Long> count : counts.entrySet() ) {
+            if ( !count.getKey().startsWith( APPLICATION_CONNECTION ) ) {
+                continue;
+            }
+
+            String connectionType = count.getKey().substring( APPLICATION_CONNECTION.length() );
+
+            Map<String, Object> entry = new HashMap<String, Object>();
+            entry.put( "count", Math.max( 0, count.getValue() ) );
+            entry.put( "name", connectionType );
+            metadata.put( connectionType, entry );
+        }
+
+        return metadata;
+    }
+
+
+    /**
+     * Read a single counter of the application.  Counters are incremented as entities and connections are written and
+     * deleted, and corrected by the {@link CollectionCounterReconciler}, so they can briefly lag or drift
+     */
+    private long getApplicationCounter( String counterName ) {
+        Keyspace ko = cass.getApplicationKeyspace( applicationId );
+        CounterQuery<UUID, String> q = HFactory.createCounterColumnQuery( ko, ue, se );
+        q.setColumnFamily( ENTITY_COUNTERS.toString() );
+        q.setKey( applicationId );
+        q.setName( counterName );
+
+        Timer.Context timeEntityCounters = entGetEntityCountersTimer.time();
+        QueryResult<HCounterColumn<String>> r = q.execute();
+        timeEntityCounters.stop();
+
+        HCounterColumn<String> column = r.get();
+
+        //a drifted counter can dip below zero until it's reconciled
+        return column == null ? 0 : Math.max( 0, column.getValue() );
     }
 
 
@@ -1160,7 +1219,16 @@ public class CpEntityManager implements EntityManager {
     @Override
     public Set<Object> getDictionaryAsSet( EntityRef entityRef, String dictionaryName ) throws Exception {
 
-        return new LinkedHashSet<>( getDictionaryAsMap( entityRef, dictionaryName ).keySet() );
+        Set<Object> dictionary = new LinkedHashSet<>();
+
+        Iterator<Map.Entry<Object, Object>> elements = getDictionaryIterator( entityRef, dictionaryName,
+            new DictionaryQuery().withLimit( DictionaryQuery.MAX_LIMIT ) );
+
+        while ( elements.hasNext() ) {
+            dictionary.add( elements.next().getKey() );
+        }
+
+        return dictionary;
     }
 
 
@@ -1246,49 +1314,179 @@ public class CpEntityManager implements EntityManager {
     @Override
     public Map<Object, Object> getDictionaryAsMap( EntityRef entity, String dictionaryName ) throws Exception {
 
-        entity = validate( entity );
-
         Map<Object, Object> dictionary = new LinkedHashMap<Object, Object>();
 
-        ApplicationCF dictionaryCf = null;
+        Iterator<Map.Entry<Object, Object>> elements = getDictionaryIterator( entity, dictionaryName,
+            new DictionaryQuery().withLimit( DictionaryQuery.MAX_LIMIT ) );
+
+        while ( elements.hasNext() ) {
+            Map.Entry<Object, Object> element = elements.next();
+            dictionary.put( element.getKey(), element.getValue() );
+        }
+
+        return dictionary;
+    }
+
+
+    @Override
+    public Iterator<Map.Entry<Object, Object>> getDictionaryIterator( EntityRef entity, String dictionaryName,
+                                                                      DictionaryQuery query ) throws Exception {
+
+        final EntityRef validated = validate( entity );
+
+        return new DictionaryIterator( pageQuery -> readDictionaryPage( validated, dictionaryName, pageQuery ), query );
+    }
+
+
+    @Override
+    public DictionaryPage getDictionaryPage( EntityRef entity, String dictionaryName, DictionaryQuery query )
+            throws Exception {
+
+        return readDictionaryPage( validate( entity ), dictionaryName, DictionaryQuery.newQueryIfNull( query ) );
+    }
+
+
+    /**
+     * Read a page of the dictionary of an entity that's already been validated
+     */
+    private DictionaryPage readDictionaryPage( EntityRef entity, String dictionaryName, DictionaryQuery query )
+            throws Exception {
+
+        Map<Object, Object> elements = new LinkedHashMap<Object, Object>();
 
         boolean entityHasDictionary = Schema.getDefaultSchema().hasDictionary(entity.getType(), dictionaryName);
 
-        if ( entityHasDictionary ) {
-            dictionaryCf = ENTITY_DICTIONARIES;
-        }
-        else {
-            dictionaryCf = ENTITY_COMPOSITE_DICTIONARIES;
-        }
+        ApplicationCF dictionaryCf = entityHasDictionary ? ENTITY_DICTIONARIES : ENTITY_COMPOSITE_DICTIONARIES;
 
         Class<?> setType = Schema.getDefaultSchema().getDictionaryKeyType(entity.getType(), dictionaryName);
         Class<?> setCoType = Schema.getDefaultSchema().getDictionaryValueType(entity.getType(), dictionaryName);
         boolean coTypeIsBasic = ClassUtils.isBasicType( setCoType );
 
-        List<HColumn<ByteBuffer, ByteBuffer>> results =
-                cass.getAllColumns(cass.getApplicationKeyspace(applicationId), dictionaryCf,
-                    CassandraPersistenceUtils.key(entity.getUuid(), dictionaryName), be, be);
-        for ( HColumn<ByteBuffer, ByteBuffer> result : results ) {
-            Object name = null;
-            if ( entityHasDictionary ) {
-                name = object( setType, result.getName() );
-            }
-            else {
-                name = CompositeUtils.deserialize( result.getName() );
+        String prefix = query.getPrefix();
+        byte[] prefixName = prefix != null ? bytes( prefix ) : null;
+        int limit = query.getLimit();
+
+        // resume after the cursor, otherwise start from whichever of the start and prefix comes last
+        ByteBuffer start = null;
+        boolean skipStart = false;
+
+        if ( query.getCursor() != null ) {
+            start = ByteBuffer.wrap( Base64.decodeBase64( query.getCursor() ) );
+            skipStart = true;
+        }
+        else if ( query.getStart() != null
+            && ( prefix == null || compareElementNames( bytes( query.getStart() ), prefixName ) > 0 ) ) {
+            start = dictionaryColumnName( entityHasDictionary, query.getStart() );
+        }
+        else if ( prefix != null ) {
+            start = dictionaryColumnName( entityHasDictionary, prefix );
+        }
+
+        ByteBuffer finish =
+            query.getFinish() != null ? dictionaryColumnName( entityHasDictionary, query.getFinish() ) : null;
+
+        // one more than the page, so we know whether there's another, and one more for the skipped start
+        int fetch = limit + 2;
+
+        ByteBuffer last = null;
+        boolean more = false;
+        boolean done = false;
+
+        while ( !done ) {
+            List<HColumn<ByteBuffer, ByteBuffer>> results =
+                cass.getColumns( cass.getApplicationKeyspace( applicationId ), dictionaryCf,
+                    CassandraPersistenceUtils.key( entity.getUuid(), dictionaryName ), start, finish, fetch, false );
+
+            for ( HColumn<ByteBuffer, ByteBuffer> result : results ) {
+                if ( skipStart && result.getName().equals( start ) ) {
+                    continue;
+                }
+
+                Object name = null;
+                if ( entityHasDictionary ) {
+                    name = object( setType, result.getName() );
+                }
+                else {
+                    name = CompositeUtils.deserialize( result.getName() );
+                }
+                if ( name == null ) {
+                    continue;
+                }
+
+                // names are in order, so once we're past the prefix there are no more matches
+                if ( prefix != null ) {
+                    byte[] elementName = bytes( name );
+
+                    if ( !startsWith( elementName, prefixName ) ) {
+                        if ( compareElementNames( elementName, prefixName ) < 0 ) {
+                            continue;
+                        }
+                        done = true;
+                        break;
+                    }
+                }
+
+                if ( elements.size() == limit ) {
+                    more = true;
+                    done = true;
+                    break;
+                }
+
+                Object value = null;
+                if ( entityHasDictionary && coTypeIsBasic ) {
+                    value = object( setCoType, result.getValue() );
+                }
+                else if ( result.getValue().remaining() > 0 ) {
+                    value = Schema.deserializePropertyValueFromJsonBinary( result.getValue().slice(), setCoType );
+                }
+
+                elements.put( name, value );
+                last = result.getName();
             }
-            Object value = null;
-            if ( entityHasDictionary && coTypeIsBasic ) {
-                value = object( setCoType, result.getValue() );
+
+            if ( results.size() < fetch ) {
+                done = true;
             }
-            else if ( result.getValue().remaining() > 0 ) {
-                value = Schema.deserializePropertyValueFromJsonBinary( result.getValue().slice(), setCoType );
+            else if ( !done ) {
+                start = results.get( results.size() - 1 ).getName();
+                skipStart = true;
             }
-            if ( name != null ) {
-                dictionary.put( name, value );
+        }
+
+        String cursor = more ? Base64.encodeBase64URLSafeString( bytes( last ) ) : null;
+
+        return new DictionaryPage( elements, cursor );
+    }
+
+
+    /**
+     * Get the column name an element is stored under, dictionaries that aren't in the schema use composite names
+     */
+    private ByteBuffer dictionaryColumnName( boolean entityHasDictionary, Object elementName ) {
+        return entityHasDictionary ? bytebuffer( elementName ) : DynamicComposite.toByteBuffer( asList( elementName ) );
+    }
+
+
+    /**
+     * Compare serialized element names in the order cassandra keeps their columns, unsigned byte by byte
+     */
+    private static int compareElementNames( byte[] name, byte[] other ) {
+        return UnsignedBytes.lexicographicalComparator().compare( name, other );
+    }
+
+
+    private static boolean startsWith( byte[] name, byte[] prefix ) {
+        if ( name.length < prefix.length ) {
+            return false;
+        }
+
+        for ( int i = 0; i < prefix.length; i++ ) {
+            if ( name[i] != prefix[i] ) {
+                return false;
             }
         }
 
-        return dictionary;
+        return true;
     }
 
 
@@ -1588,6 +1786,101 @@ public class CpEntityManager implements EntityManager {
     }
 
 
+    @Override
+    public Map<ConnectionRef, Throwable> createConnections( List<ConnectionRef> connections ) throws Exception {
+
+        final Map<ConnectionRef, Throwable> failures = new ConcurrentHashMap<>();
+
+        // the connections of each edge, a pair connected twice is one edge
+        final Map<List<Object>, List<ConnectionRef>> byEdge = new LinkedHashMap<>();
+        final Set<Id> ids = new HashSet<>();
+
+        for ( ConnectionRef connection : connections ) {
+            try {
+                final Id sourceId = validate( connection.getSourceRefs(), false ).asId();
+                final Id targetId = validate( connection.getTargetRefs(), false ).asId();
+
+                byEdge.computeIfAbsent(
+                    edgeKey( sourceId, getEdgeTypeFromConnectionType( connection.getConnectionType() ), targetId ),
+                    key -> new ArrayList<>() ).add( connection );
+
+                ids.add( sourceId );
+                ids.add( targetId );
+            }
+            catch ( Exception e ) {
+                failures.put( connection, e );
+            }
+        }
+
+        // load both ends together, to check they exist and to index the edges to the targets
+        final EntitySet loaded = ecm.load( ids ).toBlocking().last();
+
+        final List<Edge> edges = new ArrayList<>( byEdge.size() );
+
+        for ( Map.Entry<List<Object>, List<ConnectionRef>> entry : byEdge.entrySet() ) {
+            final Id sourceId = ( Id ) entry.getKey().get( 0 );
+            final Id targetId = ( Id ) entry.getKey().get( 2 );
+
+            if ( !isLoaded( loaded, sourceId ) || !isLoaded( loaded, targetId ) ) {
+                for ( ConnectionRef connection : entry.getValue() ) {
+                    failures.put( connection, new EntityNotFoundException(
+                        "Unable to load entities " + sourceId + " and " + targetId + " of the connection" ) );
+                }
+                continue;
+            }
+
+            edges.add( createConnectionEdge( sourceId, entry.getValue().get( 0 ).getConnectionType(), targetId ) );
+        }
+
+        final GraphManager gm = graphManagerFactory.createEdgeManager( applicationScope );
+        final Map<String, Long> counters = new ConcurrentHashMap<>();
+
+        gm.writeEdges( Observable.from( edges ) ).doOnNext( result -> {
+            final MarkedEdge edge = result.getEdge();
+            final List<ConnectionRef> edgeConnections =
+                byEdge.get( edgeKey( edge.getSourceNode(), edge.getType(), edge.getTargetNode() ) );
+
+            if ( !result.isSuccess() ) {
+                for ( ConnectionRef connection : edgeConnections ) {
+                    failures.put( connection, result.getError().get() );
+                }
+                return;
+            }
+
+            //re-connecting a pair counts it again, the same as createConnection
+            for ( ConnectionRef connection : edgeConnections ) {
+                counters.merge( APPLICATION_CONNECTION + connection.getConnectionType().toLowerCase(), ONE_COUNT,
+                    Long::sum );
+            }
+
+            if ( !skipIndexingForType( edge.getTargetNode().getType() ) ) {
+                indexService.queueNewEdge( applicationScope,
+                    loaded.getEntity( edge.getTargetNode() ).getEntity().get(), edge );
+            }
+
+            // remove any duplicate edges (keeps the duplicate edge with same timestamp)
+            CpRelationManager.removeDuplicateEdgesAsync( gm, edge );
+        } ).toBlocking().lastOrDefault( null );
+
+        if ( !counters.isEmpty() ) {
+            incrementAggregateCounters( null, null, null, counters );
+        }
+
+        return failures;
+    }
+
+
+    private static List<Object> edgeKey( Id sourceId, String edgeType, Id targetId ) {
+        return Arrays.asList( sourceId, edgeType, targetId );
+    }
+
+
+    private static boolean isLoaded( EntitySet loaded, Id entityId ) {
+        final MvccEntity entity = loaded.getEntity( entityId );
+        return entity != null && entity.getEntity().isPresent();
+    }
+
+
     @Override
     public ConnectionRef connectionRef( EntityRef connectingEntity, String connectionType,
                                         EntityRef connectedEntityRef ) throws Exception {
@@ -2676,8 +2969,6 @@ public class CpEntityManager implements EntityManager {
 
         String eType = Schema.normalizeEntityType( entityType );
 
-        Schema schema = Schema.getDefaultSchema();
-
         boolean is_application = TYPE_APPLICATION.equals( eType );
 
         if ( ( ( applicationId == null ) || applicationId.equals( UUIDUtils.ZERO_UUID ) ) && !is_application ) {
@@ -2685,106 +2976,26 @@ public class CpEntityManager implements EntityManager {
         }
 
 
-        long timestamp = UUIDUtils.getTimestampInMicros( UUIDUtils.newTimeUUID() );
+        long timestamp = createTimestamp( importId, properties );
 
-        // if the entity UUID is provided, attempt to get a time from the UUID or from it's created property
-        if ( importId != null ) {
-            long timestampFromImport = -1L;
-            if ( UUIDUtils.isTimeBased( importId ) ) {
-                timestampFromImport = UUIDUtils.getTimestampInMicros( importId );
-            }
-            else if ( properties.get( PROPERTY_CREATED ) != null ) {
-                // the entity property would be stored as milliseconds
-                timestampFromImport = getLong( properties.get( PROPERTY_CREATED ) ) * 1000;
+        UUID itemId = UUIDGenerator.newTimeUUID();
 
-            }
-            if (timestampFromImport >= 0){
-                timestamp = timestampFromImport;
-            }
+        if ( properties == null ) {
+            properties = new TreeMap<>( CASE_INSENSITIVE_ORDER );
         }
 
-        UUID itemId = UUIDGenerator.newTimeUUID();
-
         if ( is_application ) {
             itemId = applicationId;
         }
         if ( importId != null ) {
             itemId = importId;
         }
-        if ( properties == null ) {
-            properties = new TreeMap<>( CASE_INSENSITIVE_ORDER );
-        }
-
-
-
-        if ( entityClass == null ) {
-            entityClass = ( Class<A> ) Schema.getDefaultSchema().getEntityClass( entityType );
-        }
-
-        Set<String> required = schema.getRequiredProperties( entityType );
-
-        if ( required != null ) {
-            for ( String p : required ) {
-                if ( !PROPERTY_UUID.equals( p ) && !PROPERTY_TYPE.equals( p ) && !PROPERTY_CREATED.equals( p )
-                        && !PROPERTY_MODIFIED.equals( p ) ) {
-                    Object v = properties.get( p );
-                    if ( schema.isPropertyTimestamp( entityType, p ) ) {
-                        if ( v == null ) {
-                            properties.put( p, timestamp / 1000 );
-                        }
-                        else {
-                            long ts = getLong( v );
-                            if ( ts <= 0 ) {
-                                properties.put( p, timestamp / 1000 );
-                            }
-                        }
-                        continue;
-                    }
-                    if ( v == null ) {
-                        throw new RequiredPropertyNotFoundException( entityType, p );
-                    }
-                    else if ( ( v instanceof String ) && isBlank( ( String ) v ) ) {
-                        throw new RequiredPropertyNotFoundException( entityType, p );
-                    }
-                }
-            }
-        }
+        A entity = newEntity( entityType, entityClass, properties, itemId, importId, timestamp );
 
-        if ( properties.isEmpty() ) {
+        if ( entity == null ) {
             return null;
         }
 
-        properties.put( PROPERTY_UUID, itemId );
-        properties.put( PROPERTY_TYPE, Schema.normalizeEntityType( entityType, false ) );
-
-        if ( importId != null ) {
-            if ( properties.get( PROPERTY_CREATED ) == null ) {
-                properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
-            }
-
-            if ( properties.get( PROPERTY_MODIFIED ) == null ) {
-                properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
-            }
-        }
-        else {
-            properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
-            properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
-        }
-
-        // special case timestamp and published newSettings
-        // and dictionary their timestamp values if not set
-        // this is sure to break something for someone someday
-
-        if ( properties.containsKey( PROPERTY_TIMESTAMP ) ) {
-            long ts = getLong( properties.get( PROPERTY_TIMESTAMP ) );
-            if ( ts <= 0 ) {
-                properties.put( PROPERTY_TIMESTAMP, ( long ) ( timestamp / 1000 ) );
-            }
-        }
-
-        A entity = EntityFactory.newEntity( itemId, eType, entityClass );
-        entity.addProperties( properties );
-
         //        logger.info( "Entity created of type {}", entity.getClass().getName() );
 
         if ( Event.ENTITY_TYPE.equals( eType ) ) {
@@ -2872,6 +3083,252 @@ public class CpEntityManager implements EntityManager {
     }
 
 
+    @Override
+    public Map<UUID, Throwable> createAll( List<Entity> entities ) throws Exception {
+
+        Timer.Context timeEntitiesCreation = entCreateBatchTimer.time();
+
+        Map<UUID, Throwable> failures = new HashMap<>();
+
+        // the entities to write by region, and the legacy entity of each
+        Map<String, List<org.apache.usergrid.persistence.model.entity.Entity>> byRegion = new HashMap<>();
+        Map<Id, Entity> created = new HashMap<>();
+
+        for ( Entity toCreate : entities ) {
+            String eType = Schema.normalizeEntityType( toCreate.getType() );
+
+            try {
+                // events are stored as messages and the application isn't in a collection, create them on their own
+                if ( Event.ENTITY_TYPE.equals( eType ) || TYPE_APPLICATION.equals( eType ) ) {
+                    create( toCreate.getUuid(), toCreate.getType(), toCreate.getProperties() );
+                    continue;
+                }
+
+                Map<String, Object> properties = toCreate.getProperties();
+                long timestamp = createTimestamp( toCreate.getUuid(), properties );
+
+                UUID itemId = toCreate.getUuid();
+
+                Entity entity = newEntity( toCreate.getType(), null, properties, itemId, itemId, timestamp );
+
+                if ( entity == null ) {
+                    continue;
+                }
+
+                org.apache.usergrid.persistence.model.entity.Entity cpEntity =
+                    entityToCpEntity( entity, toCreate.getUuid() );
+
+                created.put( cpEntity.getId(), entity );
+                byRegion.computeIfAbsent( lookupRegionForType( entity.getType() ), region -> new ArrayList<>() )
+                        .add( cpEntity );
+            }
+            catch ( Exception e ) {
+                failures.put( toCreate.getUuid(), e );
+            }
+        }
+
+        List<org.apache.usergrid.persistence.model.entity.Entity> written = new ArrayList<>();
+
+        for ( Map.Entry<String, List<org.apache.usergrid.persistence.model.entity.Entity>> region :
+            byRegion.entrySet() ) {
+
+            BulkWriteResult result = ecm.write( region.getValue(), region.getKey() ).toBlocking().last();
+
+            written.addAll( result.getWritten() );
+
+            for ( Map.Entry<Id, Throwable> failure : result.getFailures().entrySet() ) {
+                Throwable cause = failure.getValue();
+
+                if ( cause instanceof WriteUniqueVerifyException ) {
+                    try {
+                        handleWriteUniqueVerifyException( created.get( failure.getKey() ),
+                            ( WriteUniqueVerifyException ) cause );
+                    }
+                    catch ( DuplicateUniquePropertyExistsException e ) {
+                        cause = e;
+                    }
+                }
+
+                failures.put( failure.getKey().getUuid(), cause );
+            }
+        }
+
+        // add to and index in the collections of the application, the edges of each collection written together
+        Map<String, List<org.apache.usergrid.persistence.model.entity.Entity>> byCollection = new HashMap<>();
+
+        for ( org.apache.usergrid.persistence.model.entity.Entity cpEntity : written ) {
+            Entity entity = created.get( cpEntity.getId() );
+
+            // reflect changes in the legacy Entity
+            entity.setSize( cpEntity.getSize() );
+            entity.setProperties( cpEntity );
+
+            byCollection.computeIfAbsent( Schema.defaultCollectionName( entity.getType() ), name -> new ArrayList<>() )
+                        .add( cpEntity );
+        }
+
+        CpRelationManager cpr = ( CpRelationManager ) getRelationManager( getApplication() );
+        MapManager mm = getMapManagerForTypes();
+
+        Map<String, Long> counters = new HashMap<>();
+
+        for ( Map.Entry<String, List<org.apache.usergrid.persistence.model.entity.Entity>> collection :
+            byCollection.entrySet() ) {
+
+            Map<Id, Throwable> edgeFailures = cpr.addAllToCollection( collection.getKey(), collection.getValue() );
+
+            for ( org.apache.usergrid.persistence.model.entity.Entity member : collection.getValue() ) {
+                Throwable failure = edgeFailures.get( member.getId() );
+
+                if ( failure != null ) {
+                    failures.put( member.getId().getUuid(), failure );
+                    continue;
+                }
+
+                counters.merge( APPLICATION_COLLECTION + collection.getKey(), ONE_COUNT, Long::sum );
+                counters.merge( APPLICATION_ENTITIES, ONE_COUNT, Long::sum );
+
+                //write to our types map
+                mm.putString( member.getId().getUuid().toString(), created.get( member.getId() ).getType() );
+            }
+        }
+
+        // Invoke counters
+        if ( !counters.isEmpty() ) {
+            incrementAggregateCounters( null, null, null, counters );
+        }
+
+        timeEntitiesCreation.stop();
+
+        return failures;
+    }
+
+
+    /**
+     * The time an entity is created at, in micros.  An imported entity keeps the time of its id or created property
+     */
+    private long createTimestamp( UUID importId, Map<String, Object> properties ) {
+        long timestamp = UUIDUtils.getTimestampInMicros( UUIDUtils.newTimeUUID() );
+
+        // if the entity UUID is provided, attempt to get a time from the UUID or from it's created property
+        if ( importId != null ) {
+            long timestampFromImport = -1L;
+            if ( UUIDUtils.isTimeBased( importId ) ) {
+                timestampFromImport = UUIDUtils.getTimestampInMicros( importId );
+            }
+            else if ( properties.get( PROPERTY_CREATED ) != null ) {
+                // the entity property would be stored as milliseconds
+                timestampFromImport = getLong( properties.get( PROPERTY_CREATED ) ) * 1000;
+
+            }
+            if (timestampFromImport >= 0){
+                timestamp = timestampFromImport;
+            }
+        }
+
+        return timestamp;
+    }
+
+
+    /**
+     * Build a new entity from its properties, checking the required properties and setting the system ones
+     *
+     * @return The entity, null if it has no properties
+     */
+    private <A extends Entity> A newEntity( String entityType, Class<A> entityClass, Map<String, Object> properties,
+                                            UUID itemId, UUID importId, long timestamp ) throws Exception {
+
+        String eType = Schema.normalizeEntityType( entityType );
+
+        Schema schema = Schema.getDefaultSchema();
+
+        if ( entityClass == null ) {
+            entityClass = ( Class<A> ) Schema.getDefaultSchema().getEntityClass( entityType );
+        }
+
+        Set<String> required = schema.getRequiredProperties( entityType );
+
+        if ( required != null ) {
+            for ( String p : required ) {
+                if ( !PROPERTY_UUID.equals( p ) && !PROPERTY_TYPE.equals( p ) && !PROPERTY_CREATED.equals( p )
+                        && !PROPERTY_MODIFIED.equals( p ) ) {
+                    Object v = properties.get( p );
+                    if ( schema.isPropertyTimestamp( entityType, p ) ) {
+                        if ( v == null ) {
+                            properties.put( p, timestamp / 1000 );
+                        }
+                        else {
+                            long ts = getLong( v );
+                            if ( ts <= 0 ) {
+                                properties.put( p, timestamp / 1000 );
+                            }
+                        }
+                        continue;
+                    }
+                    if ( v == null ) {
+                        throw new RequiredPropertyNotFoundException( entityType, p );
+                    }
+                    else if ( ( v instanceof String ) && isBlank( ( String ) v ) ) {
+                        throw new RequiredPropertyNotFoundException( entityType, p );
+                    }
+                }
+            }
+        }
+
+        if ( properties.isEmpty() ) {
+            return null;
+        }
+
+        properties.put( PROPERTY_UUID, itemId );
+        properties.put( PROPERTY_TYPE, Schema.normalizeEntityType( entityType, false ) );
+
+        if ( importId != null ) {
+            if ( properties.get( PROPERTY_CREATED ) == null ) {
+                properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
+            }
+
+            if ( properties.get( PROPERTY_MODIFIED ) == null ) {
+                properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
+            }
+        }
+        else {
+            properties.put( PROPERTY_CREATED, ( long ) ( timestamp / 1000 ) );
+            properties.put( PROPERTY_MODIFIED, ( long ) ( timestamp / 1000 ) );
+        }
+
+        // special case timestamp and published newSettings
+        // and dictionary their timestamp values if not set
+        // this is sure to break something for someone someday
+
+        if ( properties.containsKey( PROPERTY_TIMESTAMP ) ) {
+            long ts = getLong( properties.get( PROPERTY_TIMESTAMP ) );
+            if ( ts <= 0 ) {
+                properties.put( PROPERTY_TIMESTAMP, ( long ) ( timestamp / 1000 ) );
+            }
+        }
+
+        A entity = EntityFactory.newEntity( itemId, eType, entityClass );
+        entity.addProperties( properties );
+
+        return entity;
+    }
+
+
+    /**
+     * Increment the application counter of connections of the given type.  Connection types are case insensitive,
+     * like their edges
+     */
+    public void incrementApplicationConnection( String connectionType, long value ) {
+        try {
+            incrementAggregateCounters( null, null, null, APPLICATION_CONNECTION + connectionType.toLowerCase(),
+                    value );
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to increment counter application.connection: {}.", connectionType, e );
+        }
+    }
+
+
     private void incrementEntityCollection( String collection_name, long cassandraTimestamp ) {
         try {
             incrementAggregateCounters( null, null, null,
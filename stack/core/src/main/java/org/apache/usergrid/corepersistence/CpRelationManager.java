@@ -18,6 +18,7 @@ package org.apache.usergrid.corepersistence;
 
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.usergrid.corepersistence.index.CollectionSettings;
 import org.apache.usergrid.corepersistence.index.CollectionSettingsFactory;
@@ -447,6 +448,71 @@ public class CpRelationManager implements RelationManager {
     }
 
 
+    /**
+     * Add entities that were just written to a collection of the head entity, writing their edges together.  The
+     * entities aren't loaded again.  Collections linked to another are added to one entity at a time
+     *
+     * @return The failure of each entity that wasn't added, keyed by its id
+     */
+    public Map<Id, Throwable> addAllToCollection( String collectionName,
+                                                  List<org.apache.usergrid.persistence.model.entity.Entity> members )
+        throws Exception {
+
+        final Map<Id, Throwable> failures = new ConcurrentHashMap<>();
+
+        CollectionInfo collection = getDefaultSchema().getCollection( headEntity.getType(), collectionName );
+
+        if ( collection != null && collection.getLinkedCollection() != null ) {
+            for ( org.apache.usergrid.persistence.model.entity.Entity member : members ) {
+                try {
+                    addToCollection( collectionName,
+                        new SimpleEntityRef( member.getId().getType(), member.getId().getUuid() ) );
+                }
+                catch ( Exception e ) {
+                    failures.put( member.getId(), e );
+                }
+            }
+
+            return failures;
+        }
+
+        final Map<Id, org.apache.usergrid.persistence.model.entity.Entity> membersById = new HashMap<>();
+
+        for ( org.apache.usergrid.persistence.model.entity.Entity member : members ) {
+            membersById.put( member.getId(), member );
+        }
+
+        final GraphManager gm = managerCache.getGraphManager( applicationScope );
+
+        gm.writeEdges( Observable.from( members )
+            .map( member -> createCollectionEdge( cpHeadEntity.getId(), collectionName, member.getId() ) ) )
+          .doOnNext( result -> {
+              final MarkedEdge edge = result.getEdge();
+
+              if ( !result.isSuccess() ) {
+                  failures.put( edge.getTargetNode(), result.getError().get() );
+                  return;
+              }
+
+              final org.apache.usergrid.persistence.model.entity.Entity member =
+                  membersById.get( edge.getTargetNode() );
+
+              if ( !skipIndexingForType( member.getId().getType() ) ) {
+                  indexService.queueNewEdge( applicationScope, member, edge );
+              }
+
+              // remove any duplicate edges (keeps the duplicate edge with same timestamp)
+              removeDuplicateEdgesAsync( gm, edge );
+          } ).toBlocking().lastOrDefault( null );
+
+        if ( logger.isDebugEnabled() ) {
+            logger.debug( "Added {} entities to collection {}", members.size() - failures.size(), collectionName );
+        }
+
+        return failures;
+    }
+
+
     @Override
     public Entity createItemInCollection( String collectionName, String itemType, Map<String, Object> properties )
         throws Exception {
@@ -745,6 +811,9 @@ public class CpRelationManager implements RelationManager {
 
         gm.writeEdge(edge).toBlocking().lastOrDefault(null); //throw an exception if this fails
 
+        //re-connecting a pair counts it again, the counter reconciler corrects that rather than a read per connection
+        ( ( CpEntityManager ) em ).incrementApplicationConnection( connectionType, 1 );
+
 
         if ( !skipIndexingForType( targetEntity.getId().getType() ) ) {
 
@@ -825,7 +894,7 @@ public class CpRelationManager implements RelationManager {
         final SearchByEdge search = createConnectionSearchByEdge( sourceId, connectionType, targetEntity.getId() );
 
         //delete all the edges and queue their processing
-        gm.loadEdgeVersions( search ).flatMap( returnedEdge -> gm.markEdge( returnedEdge ) )
+        final Edge markedEdge = gm.loadEdgeVersions( search ).flatMap( returnedEdge -> gm.markEdge( returnedEdge ) )
           .doOnNext( returnedEdge -> {
 
               if ( !skipIndexingForType( returnedEdge.getSourceNode().getType() ) || !skipIndexingForType( returnedEdge.getTargetNode().getType() ) ) {
@@ -835,6 +904,11 @@ public class CpRelationManager implements RelationManager {
 
           }).toBlocking()
           .lastOrDefault( null );
+
+        //all the versions of the edge are one connection
+        if ( markedEdge != null ) {
+            ( ( CpEntityManager ) em ).incrementApplicationConnection( connectionType, -1 );
+        }
     }
 
 
@@ -1079,7 +1153,7 @@ public class CpRelationManager implements RelationManager {
         return entity;
     }
 
-    private void removeDuplicateEdgesAsync(GraphManager gm, Edge edge){
+    static void removeDuplicateEdgesAsync(GraphManager gm, Edge edge){
 
         //now read all older versions of an edge, and remove them.  Finally calling delete
         final SearchByEdge searchByEdge =
@@ -67,6 +67,7 @@ import org.apache.usergrid.persistence.queue.impl.QueueScopeImpl;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
@@ -127,8 +128,12 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     private final AtomicLong counter = new AtomicLong();
     private final AtomicLong inFlight = new AtomicLong();
     private final Histogram messageCycle;
+    private final Histogram indexLag;
     private final MapManager esMapPersistence;
 
+    private final Meter coalescedEventMeter;
+    private final Meter coalescedMessageMeter;
+
     //the actively running subscription
     private List<Subscription> subscriptions = new ArrayList<>();
 
@@ -170,6 +175,10 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         this.ackTimer = metricsFactory.getTimer(AsyncEventServiceImpl.class, "async_event.ack");
         this.indexErrorCounter = metricsFactory.getCounter(AsyncEventServiceImpl.class, "async_event.error");
         this.messageCycle = metricsFactory.getHistogram(AsyncEventServiceImpl.class, "async_event.message_cycle");
+        this.indexLag = metricsFactory.getHistogram(AsyncEventServiceImpl.class, "async_event.index_lag");
+        this.coalescedEventMeter = metricsFactory.getMeter(AsyncEventServiceImpl.class, "async_event.coalesce.events");
+        this.coalescedMessageMeter =
+            metricsFactory.getMeter(AsyncEventServiceImpl.class, "async_event.coalesce.messages");
 
 
         //wire up the gauge of inflight message
@@ -180,6 +189,15 @@ public class AsyncEventServiceImpl implements AsyncEventService {
             }
         });
 
+        //the number of messages taken from the queue for each one handled
+        metricsFactory.addGauge(AsyncEventServiceImpl.class, "async_event.coalesce.ratio", new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                final long messages = coalescedMessageMeter.getCount();
+                return messages == 0 ? 0d : ( double ) coalescedEventMeter.getCount() / messages;
+            }
+        });
+
         start();
     }
 
@@ -281,9 +299,17 @@ public class AsyncEventServiceImpl implements AsyncEventService {
             logger.debug("callEventHandlers with {} message(s)", messages.size());
         }
 
-        Stream<IndexEventResult> indexEventResults = messages.stream().map(message ->
+        // index each entity once for the updates taken from the queue together
+        final List<IndexEventCoalescer.CoalescedMessage> coalesced = IndexEventCoalescer.coalesce( messages );
+
+        coalescedEventMeter.mark( messages.size() );
+        coalescedMessageMeter.mark( coalesced.size() );
+
+        Stream<IndexEventResult> indexEventResults = coalesced.stream().map(coalescedMessage ->
 
         {
+            final QueueMessage message = coalescedMessage.getMessage();
+
             if(logger.isDebugEnabled()){
                 logger.debug("Queue message with ID {} has been received {} time(s)",
                     message.getMessageId(),
@@ -317,7 +343,7 @@ public class AsyncEventServiceImpl implements AsyncEventService {
                 // normal indexing event for an entity
                 if ( event instanceof  EntityIndexEvent ){
 
-                     single = handleEntityIndexUpdate( message );
+                     single = handleEntityIndexUpdate( coalescedMessage.getEntityIndexEvent() );
 
                 }
                 // normal indexing event for an edge
@@ -365,7 +391,9 @@ public class AsyncEventServiceImpl implements AsyncEventService {
 
 
                 // if no exception happens and the QueueMessage is returned in these results, it will get ack'd
-                return new IndexEventResult(Optional.of(single), Optional.of(message), thisEvent.getCreationTime());
+                // with the messages folded into it
+                return new IndexEventResult(Optional.of(single), Optional.of(message), coalescedMessage.getFolded(),
+                    thisEvent.getCreationTime());
 
             } catch (IndexDocNotFoundException e){
 
@@ -409,29 +437,15 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     public void queueEntityIndexUpdate(final ApplicationScope applicationScope,
                                        final Entity entity, long updatedAfter) {
 
+        final EntityIdScope entityIdScope = new EntityIdScope(applicationScope, entity.getId());
 
-        offer(new EntityIndexEvent(queueFig.getPrimaryRegion(),new EntityIdScope(applicationScope, entity.getId()), 0));
-
-        final EntityIndexOperation entityIndexOperation =
-            new EntityIndexOperation( applicationScope, entity.getId(), updatedAfter);
-
-        final IndexOperationMessage indexMessage =
-            eventBuilder.buildEntityIndex( entityIndexOperation ).toBlocking().lastOrDefault(null);
-
-        queueIndexOperationMessage( indexMessage );
-
+        // the document is built by the consumer, building it here only slowed the write and was done again there
+        offer(new EntityIndexEvent(queueFig.getPrimaryRegion(), entityIdScope, updatedAfter));
     }
 
-    private IndexOperationMessage handleEntityIndexUpdate(final QueueMessage message) {
-
-        Preconditions.checkNotNull( message, "Queue Message cannot be null for handleEntityIndexUpdate" );
+    private IndexOperationMessage handleEntityIndexUpdate(final EntityIndexEvent entityIndexEvent) {
 
-        final AsyncEvent event = ( AsyncEvent ) message.getBody();
-
-        Preconditions.checkNotNull(message, "QueueMessage Body cannot be null for handleEntityIndexUpdate");
-        Preconditions.checkArgument(event instanceof EntityIndexEvent, String.format("Event Type for handleEntityIndexUpdate must be ENTITY_INDEX, got %s", event.getClass()));
-
-        final EntityIndexEvent entityIndexEvent = (EntityIndexEvent) event;
+        Preconditions.checkNotNull( entityIndexEvent, "EntityIndexEvent cannot be null for handleEntityIndexUpdate" );
 
 
         //process the entity immediately
@@ -444,7 +458,17 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         final EntityIndexOperation entityIndexOperation = new EntityIndexOperation( applicationScope, entityId, updatedAfter);
 
         // default this observable's return to empty index operation message if nothing is emitted
-        return eventBuilder.buildEntityIndex( entityIndexOperation ).toBlocking().lastOrDefault(new IndexOperationMessage());
+        final IndexOperationMessage indexOperationMessage = eventBuilder.buildEntityIndex( entityIndexOperation )
+            .toBlocking().lastOrDefault( new IndexOperationMessage() );
+
+        // de-indexes folded by the coalescer remove the old versions in the same message
+        if ( entityIndexEvent.getMarkedVersion() != null ) {
+            indexOperationMessage.ingest( eventBuilder
+                .deIndexOldVersions( applicationScope, entityId, entityIndexEvent.getMarkedVersion() )
+                .toBlocking().lastOrDefault( new IndexOperationMessage() ) );
+        }
+
+        return indexOperationMessage;
     }
 
 
@@ -599,15 +623,19 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         // send it to to be indexed
         indexProducer.put(indexOperationMessage).toBlocking().last();
 
+        // the time from the first write in the message to it being indexed
+        indexLag.update(System.currentTimeMillis() - indexOperationMessage.getCreationTime());
+
     }
 
 
     @Override
     public void queueDeIndexOldVersion(final ApplicationScope applicationScope, final Id entityId, UUID markedVersion) {
 
+        final EntityIdScope entityIdScope = new EntityIdScope( applicationScope, entityId );
+
         // queue the de-index of old versions to the topic so cleanup happens in all regions
-        offerTopic( new DeIndexOldVersionsEvent( queueFig.getPrimaryRegion(),
-            new EntityIdScope( applicationScope, entityId), markedVersion) );
+        offerTopic( new DeIndexOldVersionsEvent( queueFig.getPrimaryRegion(), entityIdScope, markedVersion ) );
 
     }
 
@@ -841,12 +869,17 @@ public class AsyncEventServiceImpl implements AsyncEventService {
             return new ArrayList<>(0);
         }
 
-        IndexOperationMessage combined = new IndexOperationMessage();
+        // the combined message is as old as the oldest event in it, for the index lag
+        final long oldestCreationTime = indexEventResults.stream()
+            .filter( result -> result.getQueueMessage().isPresent() )
+            .mapToLong( IndexEventResult::getCreationTime ).min().orElse( System.currentTimeMillis() );
+
+        IndexOperationMessage combined = new IndexOperationMessage( oldestCreationTime );
         List<QueueMessage> queueMessages = indexEventResults.stream()
 
             // filter out messages that are not present, they were not processed and put into the results
             .filter( result -> result.getQueueMessage().isPresent() )
-            .map(indexEventResult -> {
+            .flatMap(indexEventResult -> {
 
                 //record the cycle time
                 messageCycle.update(System.currentTimeMillis() - indexEventResult.getCreationTime());
@@ -856,7 +889,9 @@ public class AsyncEventServiceImpl implements AsyncEventService {
                     combined.ingest(indexEventResult.getIndexOperationMessage().get());
                 }
 
-                return indexEventResult.getQueueMessage().get();
+                // the messages folded into this one were handled by it
+                return Stream.concat( Stream.of( indexEventResult.getQueueMessage().get() ),
+                    indexEventResult.getFolded().stream() );
             })
             // collect into a list of QueueMessages that can be ack'd later
             .collect(Collectors.toList());
@@ -899,11 +934,18 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     public class IndexEventResult{
         private final Optional<IndexOperationMessage> indexOperationMessage;
         private final Optional<QueueMessage> queueMessage;
+        private final List<QueueMessage> folded;
         private final long creationTime;
 
         public IndexEventResult(Optional<IndexOperationMessage> indexOperationMessage, Optional<QueueMessage> queueMessage, long creationTime){
+            this( indexOperationMessage, queueMessage, Collections.emptyList(), creationTime );
+        }
+
+        public IndexEventResult(Optional<IndexOperationMessage> indexOperationMessage, Optional<QueueMessage> queueMessage,
+                                List<QueueMessage> folded, long creationTime){
 
             this.queueMessage = queueMessage;
+            this.folded = folded;
             this.creationTime = creationTime;
             this.indexOperationMessage = indexOperationMessage;
         }
@@ -916,6 +958,13 @@ public class AsyncEventServiceImpl implements AsyncEventService {
             return queueMessage;
         }
 
+        /**
+         * The messages folded into the queue message, acked with it
+         */
+        public List<QueueMessage> getFolded() {
+            return folded;
+        }
+
         public long getCreationTime() {
             return creationTime;
         }
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.asyncevents;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.usergrid.corepersistence.asyncevents.model.DeIndexOldVersionsEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.EntityIndexEvent;
+import org.apache.usergrid.persistence.collection.serialization.impl.migration.EntityIdScope;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.queue.QueueMessage;
+
+import com.fasterxml.uuid.UUIDComparator;
+
+
+/**
+ * Folds the index events of the same entity within the messages taken from the queue together, so an entity updated
+ * several times between takes is indexed once.  Index updates of an entity fold into its first update, and a de-index
+ * of old versions folds into the update when the entity has one, keeping the newest marked version.  Events are keyed
+ * by the application and entity id.
+ *
+ * Nothing is held between takes.  The messages folded into another are acked with it, or left on the queue with it
+ * when it fails, so folding never loses an event.
+ */
+final class IndexEventCoalescer {
+
+    private IndexEventCoalescer() {
+    }
+
+
+    /**
+     * Fold the events of the messages.  The result keeps the order of the messages that weren't folded
+     */
+    public static List<CoalescedMessage> coalesce( final List<QueueMessage> messages ) {
+
+        //the first update of each entity, the rest fold into it
+        final Map<Key, CoalescedMessage> updates = new HashMap<>();
+
+        for ( final QueueMessage message : messages ) {
+            if ( !( message.getBody() instanceof EntityIndexEvent ) ) {
+                continue;
+            }
+
+            final EntityIndexEvent event = ( EntityIndexEvent ) message.getBody();
+            final CoalescedMessage update = updates.get( new Key( event.getEntityIdScope() ) );
+
+            if ( update == null ) {
+                updates.put( new Key( event.getEntityIdScope() ), new CoalescedMessage( message, event ) );
+            }
+            else {
+                update.fold( message, event.getUpdatedAfter(), event.getMarkedVersion(), event.getCreationTime() );
+            }
+        }
+
+        final List<CoalescedMessage> coalesced = new ArrayList<>( messages.size() );
+
+        for ( final QueueMessage message : messages ) {
+            final Object body = message.getBody();
+
+            if ( body instanceof EntityIndexEvent ) {
+                final CoalescedMessage update = updates.get( new Key( ( ( EntityIndexEvent ) body ).getEntityIdScope() ) );
+
+                if ( update.message == message ) {
+                    coalesced.add( update );
+                }
+            }
+            else if ( body instanceof DeIndexOldVersionsEvent
+                && updates.containsKey( new Key( ( ( DeIndexOldVersionsEvent ) body ).getEntityIdScope() ) ) ) {
+
+                final DeIndexOldVersionsEvent event = ( DeIndexOldVersionsEvent ) body;
+
+                updates.get( new Key( event.getEntityIdScope() ) )
+                       .fold( message, Long.MAX_VALUE, event.getMarkedVersion(), event.getCreationTime() );
+            }
+            else {
+                coalesced.add( new CoalescedMessage( message, null ) );
+            }
+        }
+
+        return coalesced;
+    }
+
+
+    /**
+     * A message to handle, and the messages folded into it
+     */
+    public static final class CoalescedMessage {
+        private final QueueMessage message;
+        private final EntityIndexEvent event;
+
+        private List<QueueMessage> folded = Collections.emptyList();
+        private long updatedAfter;
+        private UUID markedVersion;
+        private long creationTime;
+
+
+        private CoalescedMessage( final QueueMessage message, final EntityIndexEvent event ) {
+            this.message = message;
+            this.event = event;
+
+            if ( event != null ) {
+                this.updatedAfter = event.getUpdatedAfter();
+                this.markedVersion = event.getMarkedVersion();
+                this.creationTime = event.getCreationTime();
+            }
+        }
+
+
+        /**
+         * Fold another event of the entity.  The index covers both updates, and the de-index uses the newest marked
+         * version, which removes everything the older one would have
+         */
+        private void fold( final QueueMessage foldedMessage, final long foldedUpdatedAfter,
+                           final UUID foldedMarkedVersion, final long foldedCreationTime ) {
+
+            if ( folded.isEmpty() ) {
+                folded = new ArrayList<>();
+            }
+
+            folded.add( foldedMessage );
+
+            updatedAfter = Math.min( updatedAfter, foldedUpdatedAfter );
+            creationTime = Math.min( creationTime, foldedCreationTime );
+
+            if ( markedVersion == null || ( foldedMarkedVersion != null
+                && UUIDComparator.staticCompare( foldedMarkedVersion, markedVersion ) > 0 ) ) {
+                markedVersion = foldedMarkedVersion;
+            }
+        }
+
+
+        /**
+         * The message to handle
+         */
+        public QueueMessage getMessage() {
+            return message;
+        }
+
+
+        /**
+         * The messages folded into this one, acked with it
+         */
+        public List<QueueMessage> getFolded() {
+            return folded;
+        }
+
+
+        /**
+         * The index update of the message with the events folded into it, or null if the message isn't an update
+         */
+        public EntityIndexEvent getEntityIndexEvent() {
+            if ( event == null || folded.isEmpty() ) {
+                return event;
+            }
+
+            return new EntityIndexEvent( event.getSourceRegion(), event.getEntityIdScope(), updatedAfter,
+                markedVersion, creationTime );
+        }
+    }
+
+
+    /**
+     * The application and entity ids, EntityIdScope doesn't implement equals
+     */
+    private static final class Key {
+        private final Id applicationId;
+        private final Id entityId;
+
+
+        private Key( final EntityIdScope entityIdScope ) {
+            this.applicationId = entityIdScope.getApplicationScope().getApplication();
+            this.entityId = entityIdScope.getId();
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof Key ) ) {
+                return false;
+            }
+
+            final Key key = ( Key ) o;
+
+            return applicationId.equals( key.applicationId ) && entityId.equals( key.entityId );
+        }
+
+
+        @Override
+        public int hashCode() {
+            return 31 * applicationId.hashCode() + entityId.hashCode();
+        }
+    }
+}
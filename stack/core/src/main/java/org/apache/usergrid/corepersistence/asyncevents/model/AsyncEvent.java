@@ -74,4 +74,9 @@ public abstract class AsyncEvent implements Serializable {
     public long getCreationTime() {
         return creationTime;
     }
+
+
+    public String getSourceRegion() {
+        return sourceRegion;
+    }
 }
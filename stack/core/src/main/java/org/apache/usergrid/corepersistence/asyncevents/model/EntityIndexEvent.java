@@ -22,6 +22,8 @@ package org.apache.usergrid.corepersistence.asyncevents.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.usergrid.persistence.collection.serialization.impl.migration.EntityIdScope;
 
+import java.util.UUID;
+
 
 public final class EntityIndexEvent extends AsyncEvent {
 
@@ -32,6 +34,9 @@ public final class EntityIndexEvent extends AsyncEvent {
     @JsonProperty
     private long updatedAfter;
 
+    @JsonProperty
+    private UUID markedVersion;
+
     public EntityIndexEvent() {
         super();
     }
@@ -43,6 +48,20 @@ public final class EntityIndexEvent extends AsyncEvent {
     }
 
 
+    /**
+     * An index event folded from several events of the entity taken from the queue together
+     *
+     * @param markedVersion The version to de-index the older versions of, or null to leave them
+     * @param creationTime The time the first of the events was queued
+     */
+    public EntityIndexEvent(String sourceRegion, EntityIdScope entityIdScope, final long updatedAfter,
+                            final UUID markedVersion, final long creationTime ) {
+        this(sourceRegion, entityIdScope, updatedAfter);
+        this.markedVersion = markedVersion;
+        this.creationTime = creationTime;
+    }
+
+
     public long getUpdatedAfter() {
         return updatedAfter;
     }
@@ -51,4 +70,9 @@ public final class EntityIndexEvent extends AsyncEvent {
     public EntityIdScope getEntityIdScope() {
         return entityIdScope;
     }
+
+
+    public UUID getMarkedVersion() {
+        return markedVersion;
+    }
 }
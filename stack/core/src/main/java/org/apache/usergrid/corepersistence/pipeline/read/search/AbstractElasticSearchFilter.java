@@ -43,7 +43,7 @@ import java.util.Collection;
 /**
  * Command for reading graph edges
  */
-public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id, Candidate, Integer> {
+public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id, Candidate, ElasticsearchCursor> {
 
     private static final Logger logger = LoggerFactory.getLogger( AbstractElasticSearchFilter.class );
 
@@ -92,11 +92,13 @@ public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id,
                 //our offset to our start value.  This will be set the first time we emit
                 //after we receive new ids, we want to reset this to 0
                 //set our our constant state
-                final Optional<Integer> startFromCursor = getSeekValue();
+                final Optional<ElasticsearchCursor> startFromCursor = getSeekValue();
 
-                final int startOffset = startFromCursor.or( 0 );
+                int currentOffSet = startFromCursor.isPresent() ? startFromCursor.get().getOffset() : 0;
 
-                int currentOffSet = startOffset;
+                //in the default order, resume from the sort values of the last candidate instead of its offset
+                Optional<SearchAfter> searchAfter =
+                    startFromCursor.isPresent() ? startFromCursor.get().getSearchAfter() : Optional.absent();
 
                 subscriber.onStart();
 
@@ -104,8 +106,8 @@ public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id,
                 while ( !subscriber.isUnsubscribed() ) {
 
                     try {
-                        final CandidateResults candidateResults =
-                            applicationEntityIndex.search( searchEdge, searchTypes, query, limit, currentOffSet );
+                        final CandidateResults candidateResults = applicationEntityIndex
+                            .search( searchEdge, searchTypes, query, limit, currentOffSet, searchAfter );
 
 
                         Collection<SelectFieldMapping> fieldMappingCollection = candidateResults.getGetFieldMappings();
@@ -118,14 +120,20 @@ public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id,
                                 return;
                             }
 
+                            searchAfter = nextSearchAfter( searchAfter, candidateResult );
+
                             final Candidate candidate = new Candidate( candidateResult, searchEdge, fieldMappingCollection );
 
-                            final FilterResult<Candidate>
-                                result = createFilterResult( candidate, currentOffSet, idFilterResult.getPath() );
+                            final FilterResult<Candidate> result =
+                                createFilterResult( candidate, new ElasticsearchCursor( currentOffSet, searchAfter ),
+                                    idFilterResult.getPath() );
 
                             subscriber.onNext( result );
 
                             currentOffSet++;
+
+                            //the next search starts after this candidate
+                            searchAfter = skipOne( searchAfter );
                         }
 
                         /**
@@ -154,8 +162,47 @@ public abstract class AbstractElasticSearchFilter extends AbstractPathFilter<Id,
     }
 
 
+    /**
+     * Get the sort values of the candidate.  The resumed search starts with the candidate itself, skipping the
+     * documents with the same sort values that came before it.  Absent if the query isn't in the default order
+     */
+    private static Optional<SearchAfter> nextSearchAfter( final Optional<SearchAfter> previous,
+                                                          final CandidateResult candidateResult ) {
+
+        final Optional<Long> edgeTimestamp = candidateResult.getEdgeTimestamp();
+
+        if ( !edgeTimestamp.isPresent() ) {
+            return Optional.absent();
+        }
+
+        final Id entityId = candidateResult.getId();
+
+        //another version of the same entity, skip the ones we've emitted
+        if ( previous.isPresent() && previous.get().isAt( edgeTimestamp.get(), entityId ) ) {
+            return previous;
+        }
+
+        return Optional.of( new SearchAfter( edgeTimestamp.get(), entityId, 0 ) );
+    }
+
+
+    /**
+     * Move past the candidate the sort values are at
+     */
+    private static Optional<SearchAfter> skipOne( final Optional<SearchAfter> searchAfter ) {
+        if ( !searchAfter.isPresent() ) {
+            return searchAfter;
+        }
+
+        final SearchAfter current = searchAfter.get();
+
+        return Optional.of(
+            new SearchAfter( current.getEdgeTimestamp(), current.getEntityId(), current.getSkip() + 1 ) );
+    }
+
+
     @Override
-    protected CursorSerializer<Integer> getCursorSerializer() {
+    protected CursorSerializer<ElasticsearchCursor> getCursorSerializer() {
         return ElasticsearchCursorSerializer.INSTANCE;
     }
 
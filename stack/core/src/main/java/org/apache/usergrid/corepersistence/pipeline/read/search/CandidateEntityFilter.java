@@ -27,7 +27,6 @@ import org.apache.usergrid.persistence.index.*;
 import org.apache.usergrid.persistence.index.impl.IndexProducer;
 import org.apache.usergrid.persistence.model.field.DistanceField;
 import org.apache.usergrid.persistence.model.field.DoubleField;
-import org.apache.usergrid.persistence.model.field.EntityObjectField;
 import org.apache.usergrid.persistence.model.field.Field;
 import org.apache.usergrid.persistence.model.field.value.EntityObject;
 import org.slf4j.Logger;
@@ -39,11 +38,14 @@ import org.apache.usergrid.corepersistence.pipeline.read.FilterResult;
 import org.apache.usergrid.persistence.collection.EntityCollectionManager;
 import org.apache.usergrid.persistence.collection.EntityCollectionManagerFactory;
 import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.FieldSelector;
 import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.model.entity.Entity;
 import org.apache.usergrid.persistence.model.entity.Id;
 
+import org.apache.commons.lang.SerializationUtils;
+
 import com.fasterxml.uuid.UUIDComparator;
 import com.google.common.base.Optional;
 import com.google.inject.Inject;
@@ -110,10 +112,15 @@ public class CandidateEntityFilter extends AbstractFilter<FilterResult<Candidate
                 //load the ids
                 final Observable<FilterResult<Entity>> entitySetObservable =
                     candidates.flatMap(candidatesList -> {
-                        Collection<SelectFieldMapping> mappings = candidatesList.get(0).getFields();
+                        final Collection<SelectFieldMapping> mappings = candidatesList.get(0).getFields();
+
+                        //select queries only load the fields they return
+                        final FieldSelector fieldSelector = mappings.size() > 0 ? compileSelector( mappings ) : null;
+
                         Observable<EntitySet> entitySets = Observable.from(candidatesList)
                             .map(candidateEntry -> candidateEntry.getCandidateResult().getId()).toList()
-                            .flatMap(idList -> entityCollectionManager.load(idList));
+                            .flatMap(idList -> fieldSelector == null ? entityCollectionManager.load(idList)
+                                : entityCollectionManager.load(idList, fieldSelector));
                         //now we have a collection, validate our canidate set is correct.
                         return entitySets.map(
                             entitySet -> new EntityVerifier(
@@ -122,31 +129,8 @@ public class CandidateEntityFilter extends AbstractFilter<FilterResult<Candidate
                             .doOnNext(entityCollector -> entityCollector.merge())
                             .flatMap(entityCollector -> Observable.from(entityCollector.getResults()))
                             .map(entityFilterResult -> {
-                                final Entity entity = entityFilterResult.getValue();
-                                if (mappings.size() > 0) {
-                                    Map<String,Field> fieldMap = new HashMap<String, Field>(mappings.size());
-                                    rx.Observable.from(mappings)
-
-                                        .filter(mapping -> {
-                                            if ( entity.getFieldMap().containsKey(mapping.getSourceFieldName())) {
-                                                return true;
-                                            }
-                                            String[] parts = mapping.getSourceFieldName().split("\\.");
-                                            return nestedFieldCheck( parts, entity.getFieldMap() );
-                                        })
-
-                                        .doOnNext(mapping -> {
-                                            Field field = entity.getField(mapping.getSourceFieldName());
-                                            if ( field != null ) {
-                                                field.setName( mapping.getTargetFieldName() );
-                                                fieldMap.put( mapping.getTargetFieldName(), field );
-                                            } else {
-                                                String[] parts = mapping.getSourceFieldName().split("\\.");
-                                                nestedFieldSet( fieldMap, parts, entity.getFieldMap() );
-                                            }
-                                        }).toBlocking().lastOrDefault(null);
-
-                                    entity.setFieldMap(fieldMap);
+                                if ( fieldSelector != null ) {
+                                    renameFields( entityFilterResult.getValue(), mappings );
                                 }
                                 return entityFilterResult;
                             });
@@ -162,58 +146,68 @@ public class CandidateEntityFilter extends AbstractFilter<FilterResult<Candidate
 
 
     /**
-     * Sets field in result map with support for nested fields via recursion.
-     *
-     * @param result The result map of filtered fields
-     * @param parts The parts of the field name (more than one if field is nested)
-     * @param fieldMap Map of fields of the object
+     * Compile the selector for the source fields of the mappings
      */
-    private void nestedFieldSet( Map<String, Field> result, String[] parts, Map<String, Field> fieldMap) {
-        if ( parts.length > 0 ) {
-
-            if ( fieldMap.containsKey( parts[0] )) {
-                Field field = fieldMap.get( parts[0] );
-                if ( field instanceof EntityObjectField ) {
-                    EntityObjectField eof = (EntityObjectField)field;
-                    result.putIfAbsent( parts[0], new EntityObjectField( parts[0], new EntityObject() ) );
-
-                    // recursion
-                    nestedFieldSet(
-                        ((EntityObjectField)result.get( parts[0] )).getValue().getFieldMap(),
-                        Arrays.copyOfRange(parts, 1, parts.length),
-                        eof.getValue().getFieldMap());
-
-                } else {
-                    result.put( parts[0], field );
-                }
-            }
+    private FieldSelector compileSelector( final Collection<SelectFieldMapping> mappings ) {
+        final List<String> paths = new ArrayList<>( mappings.size() );
+
+        for ( final SelectFieldMapping mapping : mappings ) {
+            paths.add( mapping.getSourceFieldName() );
         }
+
+        return FieldSelector.compile( paths );
     }
 
 
     /**
-     * Check to see if field should be included in filtered result with support for nested fields via recursion.
+     * The entity only has the selected fields, rename the top level ones that are selected under another name.  Nested
+     * fields keep their path.  The renamed fields are read from the loaded fields, so swapped and repeated names don't
+     * overwrite each other
      *
-     * @param parts The parts of the field name (more than one if field is nested)
-     * @param fieldMap Map of fields of the object
+     * @param entity The entity loaded with the selector
+     * @param mappings The source and target field names
      */
-    private boolean nestedFieldCheck( String[] parts, Map<String, Field> fieldMap) {
-        if ( parts.length > 0 ) {
+    static void renameFields( final Entity entity, final Collection<SelectFieldMapping> mappings ) {
+        final Set<String> renamed = new TreeSet<>( EntityObject.INSTANCE );
+        final Set<String> kept = new TreeSet<>( EntityObject.INSTANCE );
 
-            if ( fieldMap.containsKey( parts[0] )) {
-                Field field = fieldMap.get( parts[0] );
-                if ( field instanceof EntityObjectField ) {
-                    EntityObjectField eof = (EntityObjectField)field;
+        for ( final SelectFieldMapping mapping : mappings ) {
+            if ( mapping.getSourceFieldName().equalsIgnoreCase( mapping.getTargetFieldName() ) ) {
+                kept.add( mapping.getSourceFieldName() );
+            }
+            else {
+                renamed.add( mapping.getSourceFieldName() );
+            }
+        }
 
-                    // recursion
-                    return nestedFieldCheck( Arrays.copyOfRange(parts, 1, parts.length), eof.getValue().getFieldMap());
+        if ( renamed.isEmpty() ) {
+            return;
+        }
 
-                } else {
-                    return true;
-                }
+        final Map<String, Field> fields = new TreeMap<>( EntityObject.INSTANCE );
+
+        for ( final Field field : entity.getFields() ) {
+            if ( !renamed.contains( field.getName() ) || kept.contains( field.getName() ) ) {
+                fields.put( field.getName(), field );
+            }
+        }
+
+        for ( final SelectFieldMapping mapping : mappings ) {
+            if ( !renamed.contains( mapping.getSourceFieldName() ) ) {
+                continue;
+            }
+
+            final Field field = entity.getField( mapping.getSourceFieldName() );
+
+            if ( field != null ) {
+                //a field can be selected under several names, each gets its own copy
+                final Field target = ( Field ) SerializationUtils.clone( field );
+                target.setName( mapping.getTargetFieldName() );
+                fields.put( target.getName(), target );
             }
         }
-        return false;
+
+        entity.setFieldMap( fields );
     }
 
 
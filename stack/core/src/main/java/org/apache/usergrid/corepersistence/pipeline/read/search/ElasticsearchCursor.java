@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.corepersistence.pipeline.read.search;
+
+
+import java.io.Serializable;
+
+import org.apache.usergrid.persistence.index.SearchAfter;
+
+import com.google.common.base.Optional;
+
+
+/**
+ * The position of a candidate in the results of an elasticsearch query.  The offset is always set, and the sort
+ * values of the candidate are set when the query is in the default order so the next page can resume from them.
+ */
+public class ElasticsearchCursor implements Serializable {
+
+    private final int offset;
+    private final Optional<SearchAfter> searchAfter;
+
+
+    /**
+     * @param offset The offset of the candidate in the results
+     * @param searchAfter The sort values of the candidate
+     */
+    public ElasticsearchCursor( final int offset, final Optional<SearchAfter> searchAfter ) {
+        this.offset = offset;
+        this.searchAfter = searchAfter;
+    }
+
+
+    public int getOffset() {
+        return offset;
+    }
+
+
+    public Optional<SearchAfter> getSearchAfter() {
+        return searchAfter;
+    }
+
+
+    @Override
+    public boolean equals( final Object o ) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( !( o instanceof ElasticsearchCursor ) ) {
+            return false;
+        }
+
+        final ElasticsearchCursor that = ( ElasticsearchCursor ) o;
+
+        return offset == that.offset && searchAfter.equals( that.searchAfter );
+    }
+
+
+    @Override
+    public int hashCode() {
+        return 31 * offset + searchAfter.hashCode();
+    }
+}
@@ -7,7 +7,7 @@
  * "License"); you may not use this file except in compliance
  * with the License.  You may obtain a copy of the License at
  *
- *     http://www.apache.org/licenses/LICENSE-2.0
+ *    http://www.apache.org/licenses/LICENSE-2.0
  *
  * Unless required by applicable law or agreed to in writing,
  * software distributed under the License is distributed on an
@@ -16,25 +16,100 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-
 package org.apache.usergrid.corepersistence.pipeline.read.search;
 
 
-import org.apache.usergrid.corepersistence.pipeline.cursor.AbstractCursorSerializer;
+import org.apache.usergrid.corepersistence.pipeline.cursor.CursorParseException;
+import org.apache.usergrid.corepersistence.pipeline.cursor.CursorSerializer;
+import org.apache.usergrid.persistence.index.SearchAfter;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Optional;
 
 
 /**
- * ElasticSearch cursor serializer
+ * ElasticSearch cursor serializer.  The first version of the cursor was the offset alone, written as a number, and is
+ * still read so cursors handed out before an upgrade keep working.  Later versions are an object with the version,
+ * the offset, and the sort values of the candidate when it has them.
  */
-public class ElasticsearchCursorSerializer extends AbstractCursorSerializer<Integer> {
+public class ElasticsearchCursorSerializer implements CursorSerializer<ElasticsearchCursor> {
 
 
     public static final ElasticsearchCursorSerializer INSTANCE = new ElasticsearchCursorSerializer();
 
+    /**
+     * The version of the cursors we write
+     */
+    public static final int VERSION = 2;
+
+    private static final String VERSION_FIELD = "v";
+    private static final String OFFSET_FIELD = "o";
+    private static final String TIMESTAMP_FIELD = "t";
+    private static final String ENTITY_ID_FIELD = "e";
+    private static final String SKIP_FIELD = "s";
+
+
+    /**
+     * Intentionally private.  Use the instance
+     */
+    private ElasticsearchCursorSerializer() {
+
+    }
+
+
     @Override
-    protected Class<Integer> getType() {
-        return Integer.class;
+    public ElasticsearchCursor fromJsonNode( final JsonNode node, final ObjectMapper objectMapper ) {
+
+        //version 1, the offset only
+        if ( node.isNumber() ) {
+            return new ElasticsearchCursor( node.asInt(), Optional.absent() );
+        }
+
+        final int version = node.path( VERSION_FIELD ).asInt( -1 );
+
+        if ( version != VERSION ) {
+            throw new CursorParseException( "Unsupported elasticsearch cursor version " + version );
+        }
+
+        final int offset = node.path( OFFSET_FIELD ).asInt();
+
+        if ( !node.has( TIMESTAMP_FIELD ) ) {
+            return new ElasticsearchCursor( offset, Optional.absent() );
+        }
+
+        try {
+            final Id entityId = objectMapper.treeToValue( node.get( ENTITY_ID_FIELD ), Id.class );
+
+            final SearchAfter searchAfter =
+                new SearchAfter( node.get( TIMESTAMP_FIELD ).asLong(), entityId, node.path( SKIP_FIELD ).asInt() );
+
+            return new ElasticsearchCursor( offset, Optional.of( searchAfter ) );
+        }
+        catch ( JsonProcessingException | RuntimeException e ) {
+            throw new CursorParseException( "Unable to deserialize value", e );
+        }
     }
 
 
+    @Override
+    public JsonNode toNode( final ObjectMapper objectMapper, final ElasticsearchCursor value ) {
+        final ObjectNode node = objectMapper.createObjectNode();
+
+        node.put( VERSION_FIELD, VERSION );
+        node.put( OFFSET_FIELD, value.getOffset() );
+
+        if ( value.getSearchAfter().isPresent() ) {
+            final SearchAfter searchAfter = value.getSearchAfter().get();
+
+            node.put( TIMESTAMP_FIELD, searchAfter.getEdgeTimestamp() );
+            node.set( ENTITY_ID_FIELD, objectMapper.valueToTree( searchAfter.getEntityId() ) );
+            node.put( SKIP_FIELD, searchAfter.getSkip() );
+        }
+
+        return node;
+    }
 }
@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.count;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.count.common.Count;
+
+import com.google.common.collect.Lists;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+
+
+/**
+ * A Batcher that sums counts as they're added, so each flush submits one {@link Count} per counter no matter how many
+ * times it was incremented.  Adds never block and never drop a count: each counter is a {@link LongAdder} in a
+ * concurrent map, and the flush thread swaps in an empty map rather than locking out writers.
+ *
+ * A writer that looked up the map just before a swap may still be adding to it.  Writers mark themselves in a striped
+ * count on the map they're using, and the flush waits for the old map's writers to finish before reading it, so the
+ * flush thread is the only one that ever waits.
+ *
+ * Memory is bounded by maxCounters.  Once the current map holds that many distinct counters, a flush is started early
+ * on the flush thread; the writer that crossed the limit doesn't wait for it.
+ */
+public class AggregatingBatcher implements Batcher {
+
+    private static final Logger logger = LoggerFactory.getLogger( AggregatingBatcher.class );
+
+    private static final int WRITER_STRIPES = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * Space the writer stripes a cache line apart, so writers on different stripes don't contend
+     */
+    private static final int STRIPE_PADDING = 16;
+
+    private final Timer addTimer =
+            Metrics.newTimer( AggregatingBatcher.class, "add_invocation", TimeUnit.MICROSECONDS, TimeUnit.SECONDS );
+    private final Counter invocationCounter = Metrics.newCounter( AggregatingBatcher.class, "batch_add_invocations" );
+    private final Counter spillCounter = Metrics.newCounter( AggregatingBatcher.class, "batch_spills" );
+
+    private BatchSubmitter batchSubmitter;
+    private int batchSize = 500;
+    private int batchIntervalSeconds = 10;
+    private int maxCounters = 100000;
+
+    private final LongAdder opCount = new LongAdder();
+    private final AtomicLong batchSubmissionCount = new AtomicLong();
+
+    private final AtomicReference<Generation> current = new AtomicReference<>( new Generation() );
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean spilling = new AtomicBoolean();
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool( 1 );
+    private final Runnable flusher = new BatchFlusher();
+
+
+    /**
+     * Set the batch interval in seconds
+     */
+    public void setBatchInterval( int batchIntervalSeconds ) {
+        this.batchIntervalSeconds = batchIntervalSeconds;
+    }
+
+
+    /**
+     * Set the maximum number of counts to submit together
+     */
+    public void setBatchSize( int batchSize ) {
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * Set the number of distinct counters to hold before flushing early
+     */
+    public void setMaxCounters( int maxCounters ) {
+        this.maxCounters = maxCounters;
+    }
+
+
+    @Override
+    public void setBatchSubmitter( BatchSubmitter batchSubmitter ) {
+        this.batchSubmitter = batchSubmitter;
+    }
+
+
+    /** Add a count object to this batcher */
+    @Override
+    public void add( Count count ) {
+        invocationCounter.inc();
+        final TimerContext context = addTimer.time();
+
+        try {
+            start();
+
+            while ( true ) {
+                final Generation generation = current.get();
+                final int stripe = generation.enter();
+
+                try {
+                    //if a flush swapped the generation before we entered, it may not wait for us, use the new one
+                    if ( generation == current.get() ) {
+                        generation.get( count ).add( count.getValue() );
+                        break;
+                    }
+                }
+                finally {
+                    generation.exit( stripe );
+                }
+            }
+
+            opCount.increment();
+        }
+        finally {
+            context.stop();
+        }
+    }
+
+
+    /**
+     * Individual {@link Count} for the same counter get rolled up, so we track the individual number of operations.
+     *
+     * @return the number of counts added to this batcher
+     */
+    @Override
+    public long getOpCount() {
+        return opCount.sum();
+    }
+
+
+    @Override
+    public long getBatchSubmissionCount() {
+        return batchSubmissionCount.get();
+    }
+
+
+    /**
+     * Submit everything added since the last flush
+     */
+    public synchronized void flush() {
+        spilling.set( false );
+
+        final Generation previous = current.getAndSet( new Generation() );
+
+        previous.awaitWriters();
+
+        final Map<String, Count> counts = new LinkedHashMap<>();
+
+        previous.drain( counts );
+
+        if ( counts.isEmpty() ) {
+            return;
+        }
+
+        final int size = Math.max( 1, batchSize );
+
+        for ( final List<Count> batch : Lists.partition( new ArrayList<>( counts.values() ), size ) ) {
+            try {
+                batchSubmitter.submit( batch );
+            }
+            catch ( Exception ex ) {
+                logger.error( "Unable to submit {} counts", batch.size(), ex );
+            }
+
+            batchSubmissionCount.incrementAndGet();
+        }
+    }
+
+
+    private void start() {
+        if ( !started.get() && started.compareAndSet( false, true ) ) {
+            scheduler.scheduleWithFixedDelay( flusher, batchIntervalSeconds, batchIntervalSeconds, TimeUnit.SECONDS );
+        }
+    }
+
+
+    /**
+     * Flush early because a generation is full.  Only one spill is queued at a time
+     */
+    private void spill() {
+        if ( spilling.compareAndSet( false, true ) ) {
+            spillCounter.inc();
+            scheduler.execute( flusher );
+        }
+    }
+
+
+    /**
+     * Runnable that will flush the batch every interval
+     */
+    private final class BatchFlusher implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                flush();
+            }
+            catch ( Throwable t ) {
+                //don't let one failure cancel every future flush
+                logger.error( "Unable to flush counts", t );
+            }
+        }
+    }
+
+
+    /**
+     * The counters added to between two flushes
+     */
+    private final class Generation {
+
+        private final ConcurrentHashMap<String, Aggregate> counters = new ConcurrentHashMap<>();
+
+        private final AtomicIntegerArray writers = new AtomicIntegerArray( WRITER_STRIPES * STRIPE_PADDING );
+
+
+        /**
+         * Mark the calling thread as writing to this generation
+         *
+         * @return The stripe to pass to {@link #exit(int)}
+         */
+        private int enter() {
+            final int stripe = ( int ) ( Thread.currentThread().getId() % WRITER_STRIPES ) * STRIPE_PADDING;
+            writers.incrementAndGet( stripe );
+            return stripe;
+        }
+
+
+        private void exit( final int stripe ) {
+            writers.decrementAndGet( stripe );
+        }
+
+
+        /**
+         * Wait for every writer that entered this generation to exit.  Only called once the generation is swapped
+         * out, so no new writer will stay
+         */
+        private void awaitWriters() {
+            for ( int i = 0; i < writers.length(); i += STRIPE_PADDING ) {
+                while ( writers.get( i ) != 0 ) {
+                    Thread.yield();
+                }
+            }
+        }
+
+
+        /**
+         * Get the sum for the count's counter, creating it if it's new
+         */
+        private LongAdder get( final Count count ) {
+            final String name = count.getCounterName();
+
+            //get first, putIfAbsent locks the bin even when the counter exists
+            Aggregate aggregate = counters.get( name );
+
+            if ( aggregate == null ) {
+                final Aggregate created = new Aggregate( count );
+                aggregate = counters.putIfAbsent( name, created );
+
+                if ( aggregate == null ) {
+                    aggregate = created;
+
+                    if ( counters.size() >= maxCounters ) {
+                        spill();
+                    }
+                }
+            }
+
+            return aggregate.sum;
+        }
+
+
+        /**
+         * Add the sum of every counter in this generation to the counts
+         */
+        private void drain( final Map<String, Count> counts ) {
+            for ( final Map.Entry<String, Aggregate> entry : counters.entrySet() ) {
+                final long total = entry.getValue().sum.sum();
+
+                //increments and decrements that cancel out need no write
+                if ( total == 0 ) {
+                    continue;
+                }
+
+                final Count template = entry.getValue().template;
+
+                counts.put( entry.getKey(),
+                        new Count( template.getTableName(), template.getKeyName(), template.getColumnName(), total ) );
+            }
+        }
+    }
+
+
+    /**
+     * The running sum for a single counter
+     */
+    private static final class Aggregate {
+        private final Count template;
+        private final LongAdder sum = new LongAdder();
+
+
+        private Aggregate( final Count template ) {
+            this.template = template;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.usergrid.locking;
 
 
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.usergrid.locking.exception.UGLockException;
 
@@ -39,6 +40,20 @@ public interface LockManager {
      */
     public Lock createLock( final UUID applicationId, final String... path );
 
+    /**
+     * Acquires a lock on a particular path that expires after the given time, unless it's acquired again before
+     * then.  Used by holders that keep the lock across calls instead of releasing it after each one.
+     *
+     * @param applicationId application UUID
+     * @param expiration the time the lock is held after each acquire
+     * @param timeUnit the units of the expiration
+     * @param path a unique path
+     *
+     * @throws UGLockException if the lock cannot be acquired
+     */
+    public Lock createLock( final UUID applicationId, final long expiration, final TimeUnit timeUnit,
+                            final String... path );
+
     /**
      * Setup lock persistence mechanism.
      */
@@ -80,21 +80,6 @@ public class AstyanaxLockManagerImpl implements LockManager {
     @Override
     public Lock createLock(final UUID applicationId, final String... path ) {
 
-        String lockPath = LockPathBuilder.buildPath( applicationId, path );
-
-        ConsistencyLevel consistencyLevel;
-        try{
-            consistencyLevel = ConsistencyLevel.valueOf(cassandraFig.getLocksCl());
-        }catch(IllegalArgumentException e){
-
-            logger.warn( "Property {} value provided: {} is not valid", CassandraFig.LOCKS_CL,
-                cassandraFig.getLocksCl() );
-
-            // just default it to local quorum if we can't parse
-            consistencyLevel = ConsistencyLevel.CL_LOCAL_QUORUM;
-        }
-
-
         int lockExpiration;
         int lockConfigExpiration = cassandraFig.getLocksExpiration();
         if( lockConfigExpiration >= MINIMUM_LOCK_EXPIRATION ){
@@ -112,10 +97,33 @@ public class AstyanaxLockManagerImpl implements LockManager {
         }
 
 
+        return createLock( applicationId, lockExpiration, TimeUnit.MILLISECONDS, path );
+
+    }
+
+
+    @Override
+    public Lock createLock( final UUID applicationId, final long expiration, final TimeUnit timeUnit,
+                            final String... path ) {
+
+        String lockPath = LockPathBuilder.buildPath( applicationId, path );
+
+        ConsistencyLevel consistencyLevel;
+        try{
+            consistencyLevel = ConsistencyLevel.valueOf(cassandraFig.getLocksCl());
+        }catch(IllegalArgumentException e){
+
+            logger.warn( "Property {} value provided: {} is not valid", CassandraFig.LOCKS_CL,
+                cassandraFig.getLocksCl() );
+
+            // just default it to local quorum if we can't parse
+            consistencyLevel = ConsistencyLevel.CL_LOCAL_QUORUM;
+        }
+
 
         ColumnPrefixDistributedRowLock<String> lock =
             new ColumnPrefixDistributedRowLock<>(keyspace, getLocksColumnFamily(), lockPath)
-                .expireLockAfter( lockExpiration, TimeUnit.MILLISECONDS)
+                .expireLockAfter( expiration, timeUnit )
                 .withConsistencyLevel(consistencyLevel);
 
 
@@ -18,6 +18,7 @@ package org.apache.usergrid.locking.noop;
 
 
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.usergrid.locking.Lock;
 import org.apache.usergrid.locking.LockManager;
@@ -39,6 +40,12 @@ public class NoOpLockManagerImpl implements LockManager {
         return new NoOpLockImpl();
     }
 
+
+    @Override
+    public Lock createLock( UUID applicationId, long expiration, TimeUnit timeUnit, String... path ) {
+        return new NoOpLockImpl();
+    }
+
     @Override
     public void setup() {
         // no op
@@ -25,8 +25,10 @@ import org.slf4j.LoggerFactory;
 import org.apache.usergrid.locking.LockManager;
 import org.apache.usergrid.mq.QueueManager;
 import org.apache.usergrid.mq.QueueManagerFactory;
+import org.apache.usergrid.mq.cassandra.io.ConsumerLeases;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
 import org.apache.usergrid.persistence.cassandra.CounterUtils;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 
 import static org.apache.usergrid.persistence.cassandra.Serializers.*;
 
@@ -39,20 +41,22 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
 
     private CassandraService cass;
     private CounterUtils counterUtils;
-    private LockManager lockManager;
-    private int lockTimeout;
+    private ConsumerLeases consumerLeases;
 
     /**
      * Must be constructed with a CassandraClientPool.
      *
      * @param cass the cassandra client pool
      * @param counterUtils the CounterUtils
+     * @param lockTimeout the seconds to wait for a transactional read of a consumer
+     * @param leaseTime the milliseconds a consumer is leased to this node, 0 to lock it for each transactional read
      */
-    public QueueManagerFactoryImpl(CassandraService cass, CounterUtils counterUtils, final Injector injector, int lockTimeout ) {
+    public QueueManagerFactoryImpl(CassandraService cass, CounterUtils counterUtils, final Injector injector,
+                                   int lockTimeout, long leaseTime ) {
         this.cass = cass;
         this.counterUtils = counterUtils;
-        lockManager = injector.getInstance(LockManager.class);
-        this.lockTimeout = lockTimeout;
+        this.consumerLeases = new ConsumerLeases( injector.getInstance( LockManager.class ),
+            injector.getInstance( MetricsFactory.class ), lockTimeout, leaseTime );
     }
 
 
@@ -65,7 +69,7 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
     @Override
     public QueueManager getQueueManager( UUID applicationId ) {
         QueueManagerImpl qm = new QueueManagerImpl();
-        qm.init( cass, counterUtils, lockManager, applicationId, lockTimeout );
+        qm.init( cass, counterUtils, consumerLeases, applicationId );
         return qm;
         //return applicationContext.getAutowireCapableBeanFactory()
         //		.createBean(QueueManagerImpl.class)
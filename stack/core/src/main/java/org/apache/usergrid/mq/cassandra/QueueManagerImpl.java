@@ -31,7 +31,6 @@ import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.apache.usergrid.locking.LockManager;
 import org.apache.usergrid.mq.CounterQuery;
 import org.apache.usergrid.mq.Message;
 import org.apache.usergrid.mq.Query;
@@ -45,6 +44,7 @@ import org.apache.usergrid.mq.QueueResults;
 import org.apache.usergrid.mq.QueueSet;
 import org.apache.usergrid.mq.QueueSet.QueueInfo;
 import org.apache.usergrid.mq.cassandra.QueueIndexUpdate.QueueIndexEntry;
+import org.apache.usergrid.mq.cassandra.io.ConsumerLeases;
 import org.apache.usergrid.mq.cassandra.io.ConsumerTransaction;
 import org.apache.usergrid.mq.cassandra.io.EndSearch;
 import org.apache.usergrid.mq.cassandra.io.FilterSearch;
@@ -146,8 +146,7 @@ public class QueueManagerImpl implements QueueManager {
     private UUID applicationId;
     private CassandraService cass;
     private CounterUtils counterUtils;
-    private LockManager lockManager;
-    private int lockTimeout;
+    private ConsumerLeases consumerLeases;
 
 
 
@@ -155,13 +154,12 @@ public class QueueManagerImpl implements QueueManager {
     }
 
 
-    public QueueManagerImpl init( CassandraService cass, CounterUtils counterUtils, LockManager lockManager,
-                                  UUID applicationId, int lockTimeout ) {
+    public QueueManagerImpl init( CassandraService cass, CounterUtils counterUtils, ConsumerLeases consumerLeases,
+                                  UUID applicationId ) {
         this.cass = cass;
         this.counterUtils = counterUtils;
         this.applicationId = applicationId;
-        this.lockManager = lockManager;
-        this.lockTimeout = lockTimeout;
+        this.consumerLeases = consumerLeases;
         return this;
     }
 
@@ -396,7 +394,7 @@ public class QueueManagerImpl implements QueueManager {
 
         else if ( query.getPosition() == LAST || query.getPosition() == CONSUMER ) {
             if ( query.getTimeout() > 0 ) {
-                search = new ConsumerTransaction( applicationId, ko, lockManager, cass, lockTimeout );
+                search = new ConsumerTransaction( applicationId, ko, consumerLeases, cass );
             }
             else {
                 search = new NoTransactionSearch( ko );
@@ -1323,7 +1321,7 @@ public class QueueManagerImpl implements QueueManager {
     public UUID renewTransaction( String queuePath, UUID transactionId, QueueQuery query )
             throws TransactionNotFoundException {
         Keyspace ko = cass.getApplicationKeyspace( applicationId );
-        return new ConsumerTransaction( applicationId, ko, lockManager, cass, lockTimeout )
+        return new ConsumerTransaction( applicationId, ko, consumerLeases, cass )
                 .renewTransaction( queuePath, transactionId, query );
     }
 
@@ -1343,7 +1341,7 @@ public class QueueManagerImpl implements QueueManager {
     @Override
     public void commitTransaction( String queuePath, UUID transactionId, QueueQuery query ) {
         Keyspace ko = cass.getApplicationKeyspace( applicationId );
-        new ConsumerTransaction( applicationId, ko, lockManager, cass, lockTimeout )
+        new ConsumerTransaction( applicationId, ko, consumerLeases, cass )
                 .deleteTransaction( queuePath, transactionId, query );
     }
 
@@ -1359,7 +1357,7 @@ public class QueueManagerImpl implements QueueManager {
 
         Keyspace ko = cass.getApplicationKeyspace( applicationId );
 
-        return new ConsumerTransaction( applicationId, ko, lockManager, cass , lockTimeout)
+        return new ConsumerTransaction( applicationId, ko, consumerLeases, cass )
                 .hasOutstandingTransactions( queueId, consumerId );
     }
 
@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq.cassandra.io;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.locking.Lock;
+import org.apache.usergrid.locking.LockManager;
+import org.apache.usergrid.locking.exception.UGLockException;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.exceptions.QueueException;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+
+/**
+ * Serializes the transactional reads of a queue consumer across nodes.
+ *
+ * With no lease time every read takes the distributed lock of the consumer and releases it when it's done.  With a
+ * lease time the node keeps the lock as a lease that expires on its own, and reads on this node only wait on each
+ * other.  The lock is acquired again once half the lease has passed, so clock drift between nodes doesn't let another
+ * node take it while this one still reads.  A node that stops reading the consumer holds it until the lease expires.
+ *
+ * While the lease is held no other node moves the consumer, so message ids read past the end of one read are kept
+ * for the next.
+ */
+public class ConsumerLeases {
+
+    private static final Logger logger = LoggerFactory.getLogger( ConsumerLeases.class );
+
+    private final LockManager lockManager;
+    private final int lockTimeout;
+    private final long leaseTime;
+
+    private final Cache<LeaseKey, LeasedConsumer> leases;
+
+    private final Meter lockMeter;
+    private final Meter prefetchMeter;
+    private final Timer readTimer;
+
+
+    /**
+     * @param lockTimeout The seconds to wait for the consumer to be free
+     * @param leaseTime The milliseconds a consumer is leased to this node, 0 to lock it for each read
+     */
+    public ConsumerLeases( final LockManager lockManager, final MetricsFactory metricsFactory, final int lockTimeout,
+                           final long leaseTime ) {
+        this.lockManager = lockManager;
+        this.lockTimeout = lockTimeout;
+        this.leaseTime = Math.max( 0, leaseTime );
+
+        //leases that aren't read are expired in cassandra by then, there's nothing to release
+        this.leases = CacheBuilder.newBuilder().expireAfterAccess( Math.max( 1, this.leaseTime * 2 ),
+            TimeUnit.MILLISECONDS ).build();
+
+        this.lockMeter = metricsFactory.getMeter( ConsumerLeases.class, "queue.consumer.lock" );
+        this.prefetchMeter = metricsFactory.getMeter( ConsumerLeases.class, "queue.consumer.prefetch" );
+        this.readTimer = metricsFactory.getTimer( ConsumerLeases.class, "queue.consumer.read" );
+    }
+
+
+    /**
+     * Acquire the consumer of the queue for a read.  The returned lease must be released when the read is done
+     *
+     * @throws QueueException if the consumer can't be acquired before the lock timeout
+     */
+    public ConsumerLease acquire( final UUID applicationId, final String queuePath, final UUID queueId,
+                                  final UUID consumerId ) {
+
+        if ( leaseTime == 0 ) {
+            final Lock lock = lockManager.createLock( applicationId, queueId.toString(), consumerId.toString() );
+
+            tryLock( lock, queuePath );
+
+            return new ReadLock( lock );
+        }
+
+        final LeasedConsumer lease = leases.asMap().computeIfAbsent(
+            new LeaseKey( applicationId, queueId, consumerId ),
+            key -> new LeasedConsumer( lockManager.createLock( applicationId, leaseTime, TimeUnit.MILLISECONDS,
+                queueId.toString(), consumerId.toString() ) ) );
+
+        lease.acquire( queuePath );
+
+        return lease;
+    }
+
+
+    /**
+     * Timer of the transactional reads, including the wait for the consumer
+     */
+    public Timer getReadTimer() {
+        return readTimer;
+    }
+
+
+    private void tryLock( final Lock lock, final String queuePath ) {
+        try {
+            //only try to get a lock with a timeout, if we can't bail
+            if ( !lock.tryLock( lockTimeout, TimeUnit.SECONDS ) ) {
+                throw new QueueException(
+                    "Unable to obtain a lock on queue '" + queuePath + "' after '" + lockTimeout + "'seconds" );
+            }
+        }
+        catch ( UGLockException e ) {
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "Unable to acquire lock", e );
+            }
+            throw new QueueException( "Unable to acquire lock", e );
+        }
+
+        lockMeter.mark();
+    }
+
+
+    private static void unlock( final Lock lock ) {
+        try {
+            lock.unlock();
+        }
+        catch ( UGLockException e ) {
+            if ( logger.isDebugEnabled() ) {
+                logger.debug( "Unable to release lock", e );
+            }
+            throw new QueueException( "Unable to release lock", e );
+        }
+    }
+
+
+    /**
+     * A consumer acquired for a read
+     */
+    public interface ConsumerLease {
+
+        /**
+         * Get the message ids after the start id that were read ahead, or null if there aren't at least limit of
+         * them
+         */
+        List<UUID> getPrefetched( UUID startId, int limit );
+
+        /**
+         * Keep the message ids read from the start id for the next read.  Does nothing if ids aren't kept
+         */
+        void prefetched( UUID startId, List<UUID> ids );
+
+        /**
+         * True if message ids read ahead are kept for the next read
+         */
+        boolean isPrefetching();
+
+        /**
+         * Release the consumer for the next read
+         */
+        void release();
+    }
+
+
+    /**
+     * The distributed lock taken for a single read
+     */
+    private static final class ReadLock implements ConsumerLease {
+
+        private final Lock lock;
+
+
+        private ReadLock( final Lock lock ) {
+            this.lock = lock;
+        }
+
+
+        @Override
+        public List<UUID> getPrefetched( final UUID startId, final int limit ) {
+            return null;
+        }
+
+
+        @Override
+        public void prefetched( final UUID startId, final List<UUID> ids ) {
+            //no lease, the consumer can be read elsewhere before our next read
+        }
+
+
+        @Override
+        public boolean isPrefetching() {
+            return false;
+        }
+
+
+        @Override
+        public void release() {
+            unlock( lock );
+        }
+    }
+
+
+    /**
+     * A consumer leased to this node.  Reads hold the local lock, fields are only used under it
+     */
+    private final class LeasedConsumer implements ConsumerLease {
+
+        private final ReentrantLock readLock = new ReentrantLock();
+        private final Lock lock;
+
+        private boolean acquired;
+
+        /**
+         * When the lease is acquired again, and when it expires in cassandra
+         */
+        private long renewAt;
+        private long expiresAt;
+
+        /**
+         * The start of the prefetched ids, null when they were read from the oldest message
+         */
+        private UUID prefetchStart;
+        private List<UUID> prefetchedIds = Collections.emptyList();
+
+
+        private LeasedConsumer( final Lock lock ) {
+            this.lock = lock;
+        }
+
+
+        private void acquire( final String queuePath ) {
+            try {
+                if ( !readLock.tryLock( lockTimeout, TimeUnit.SECONDS ) ) {
+                    throw new QueueException(
+                        "Unable to obtain a lock on queue '" + queuePath + "' after '" + lockTimeout + "'seconds" );
+                }
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new QueueException( "Unable to acquire lock", e );
+            }
+
+            final long now = System.currentTimeMillis();
+
+            if ( now < renewAt ) {
+                return;
+            }
+
+            try {
+                tryLock( lock, queuePath );
+            }
+            catch ( QueueException e ) {
+                readLock.unlock();
+                throw e;
+            }
+
+            //acquiring again only extends the lease, keep a single hold on the lock
+            if ( acquired ) {
+                unlock( lock );
+            }
+
+            //the lease lapsed, another node could have moved the consumer since
+            if ( now >= expiresAt ) {
+                prefetchedIds = Collections.emptyList();
+            }
+
+            acquired = true;
+            renewAt = now + leaseTime / 2;
+            expiresAt = now + leaseTime;
+        }
+
+
+        @Override
+        public List<UUID> getPrefetched( final UUID startId, final int limit ) {
+
+            //only a read from a position we prefetched through
+            if ( startId == null || prefetchedIds.isEmpty() || ( prefetchStart != null
+                && UUIDUtils.compare( startId, prefetchStart ) < 0 ) ) {
+                return null;
+            }
+
+            final List<UUID> remaining = new ArrayList<>( prefetchedIds.size() );
+
+            for ( final UUID id : prefetchedIds ) {
+                if ( UUIDUtils.compare( id, startId ) > 0 ) {
+                    remaining.add( id );
+                }
+            }
+
+            prefetchStart = startId;
+            prefetchedIds = remaining;
+
+            //too few to fill the read, read them again with anything that came after
+            if ( remaining.size() < limit ) {
+                return null;
+            }
+
+            prefetchMeter.mark();
+
+            return new ArrayList<>( remaining.subList( 0, limit ) );
+        }
+
+
+        @Override
+        public void prefetched( final UUID startId, final List<UUID> ids ) {
+            prefetchStart = startId;
+            prefetchedIds = new ArrayList<>( ids );
+        }
+
+
+        @Override
+        public boolean isPrefetching() {
+            return true;
+        }
+
+
+        @Override
+        public void release() {
+            readLock.unlock();
+        }
+    }
+
+
+    private static final class LeaseKey {
+        private final UUID applicationId;
+        private final UUID queueId;
+        private final UUID consumerId;
+
+
+        private LeaseKey( final UUID applicationId, final UUID queueId, final UUID consumerId ) {
+            this.applicationId = applicationId;
+            this.queueId = queueId;
+            this.consumerId = consumerId;
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof LeaseKey ) ) {
+                return false;
+            }
+
+            final LeaseKey leaseKey = ( LeaseKey ) o;
+
+            return Objects.equals( applicationId, leaseKey.applicationId ) && queueId.equals( leaseKey.queueId )
+                && consumerId.equals( leaseKey.consumerId );
+        }
+
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hashCode( applicationId );
+            result = 31 * result + queueId.hashCode();
+            result = 31 * result + consumerId.hashCode();
+            return result;
+        }
+    }
+}
@@ -22,22 +22,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.apache.usergrid.locking.Lock;
-import org.apache.usergrid.locking.LockManager;
-import org.apache.usergrid.locking.exception.UGLockException;
 import org.apache.usergrid.mq.Message;
 import org.apache.usergrid.mq.QueueQuery;
 import org.apache.usergrid.mq.QueueResults;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
-import org.apache.usergrid.persistence.exceptions.QueueException;
 import org.apache.usergrid.persistence.exceptions.TransactionNotFoundException;
 import org.apache.usergrid.persistence.hector.CountingMutator;
 import org.apache.usergrid.utils.UUIDUtils;
 
+import com.codahale.metrics.Timer;
+
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.HColumn;
 import me.prettyprint.hector.api.mutation.Mutator;
@@ -62,24 +59,20 @@ public class ConsumerTransaction extends NoTransactionSearch
 
     private static final Logger logger = LoggerFactory.getLogger( ConsumerTransaction.class );
     private static final int MAX_READ = 10000;
-    private final LockManager lockManager;
+    private final ConsumerLeases consumerLeases;
     private final UUID applicationId;
     protected final CassandraService cass;
 
-    //timeout on reading lock
-    private final int lockTimeout;
-
 
     /**
      * @param ko
      */
-    public ConsumerTransaction( UUID applicationId, Keyspace ko, LockManager lockManager, CassandraService cass, int lockTimeout )
+    public ConsumerTransaction( UUID applicationId, Keyspace ko, ConsumerLeases consumerLeases, CassandraService cass )
     {
         super( ko );
         this.applicationId = applicationId;
-        this.lockManager = lockManager;
+        this.consumerLeases = consumerLeases;
         this.cass = cass;
-        this.lockTimeout = lockTimeout;
     }
 
 
@@ -198,16 +191,13 @@ public class ConsumerTransaction extends NoTransactionSearch
 
         QueueResults results = null;
 
-        Lock lock = lockManager.createLock( applicationId, queueId.toString(), consumerId.toString() );
+        final Timer.Context timer = consumerLeases.getReadTimer().time();
+
+        ConsumerLeases.ConsumerLease lease = consumerLeases.acquire( applicationId, queuePath, queueId, consumerId );
 
         try
         {
 
-            //only try to get a lock with a timeout, if we can't bail
-            if(!lock.tryLock(lockTimeout, TimeUnit.SECONDS)){
-                throw new QueueException( "Unable to obtain a lock on queue '" + queuePath + "' after '" + lockTimeout + "'seconds" );
-            }
-
             long startTime = System.currentTimeMillis();
 
             UUID startTimeUUID = UUIDUtils.newTimeUUID( startTime, 0 );   //this exact moment in time + clockseq + node
@@ -234,7 +224,7 @@ public class ConsumerTransaction extends NoTransactionSearch
             }
 
 
-            List<UUID> ids = getQueueRange( queueId, bounds, params );
+            List<UUID> ids = getIds( queueId, bounds, params, lease );
 
             // get a list of ids from the consumer.
 
@@ -300,25 +290,15 @@ public class ConsumerTransaction extends NoTransactionSearch
 
             writeClientPointer( queueId, consumerId, lastReadId );
         }
-        catch ( UGLockException e )
-        {
-            if (logger.isDebugEnabled()) {
-                logger.debug("Unable to acquire lock", e);
-            }
-            throw new QueueException( "Unable to acquire lock", e );
-        }
         finally
         {
             try
             {
-                lock.unlock();
+                lease.release();
             }
-            catch ( UGLockException e )
+            finally
             {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Unable to release lock", e);
-                }
-                throw new QueueException( "Unable to release lock", e );
+                timer.stop();
             }
         }
 
@@ -326,6 +306,35 @@ public class ConsumerTransaction extends NoTransactionSearch
     }
 
 
+    /**
+     * Get the ids to read from the queue, from the ids prefetched by the last read of the lease if there are enough
+     * of them.  Otherwise read them, and read as many more ahead for the next read if the lease keeps them.
+     */
+    protected List<UUID> getIds( UUID queueId, QueueBounds bounds, SearchParam params, ConsumerLeases.ConsumerLease lease )
+    {
+        List<UUID> ids = lease.getPrefetched( params.startId, params.limit );
+
+        if ( ids != null )
+        {
+            return ids;
+        }
+
+        if ( !lease.isPrefetching() )
+        {
+            return getQueueRange( queueId, bounds, params );
+        }
+
+        SearchParam prefetchParams = new SearchParam( params.startId, params.reversed, params.skipFirst,
+                Math.min( params.limit * 2, MAX_READ ) );
+
+        ids = getQueueRange( queueId, bounds, prefetchParams );
+
+        lease.prefetched( params.startId, ids );
+
+        return ids.size() > params.limit ? new ArrayList<UUID>( ids.subList( 0, params.limit ) ) : ids;
+    }
+
+
     /**
      * Get all pending transactions that have timed out
      *
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence;
+
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Iterates over the elements of a dictionary, reading the next page when the current one is used up.  Only one page
+ * is held at a time.
+ */
+public class DictionaryIterator implements Iterator<Map.Entry<Object, Object>> {
+
+    private final PageReader reader;
+    private final DictionaryQuery query;
+
+    private DictionaryPage page;
+    private Iterator<Map.Entry<Object, Object>> currentPageIterator;
+
+
+    public DictionaryIterator( PageReader reader, DictionaryQuery query ) {
+        this.reader = reader;
+        this.query = new DictionaryQuery( DictionaryQuery.newQueryIfNull( query ) );
+    }
+
+
+    @Override
+    public boolean hasNext() {
+        while ( currentPageIterator == null || !currentPageIterator.hasNext() ) {
+            //the last page we read was the last one
+            if ( page != null && !page.hasCursor() ) {
+                return false;
+            }
+
+            loadNextPage();
+        }
+
+        return true;
+    }
+
+
+    @Override
+    public Map.Entry<Object, Object> next() {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+
+        return currentPageIterator.next();
+    }
+
+
+    /** not supported */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+
+    private void loadNextPage() {
+        if ( page != null ) {
+            query.withCursor( page.getCursor() );
+        }
+
+        try {
+            page = reader.read( query );
+        }
+        catch ( Exception e ) {
+            throw new RuntimeException( e );
+        }
+
+        currentPageIterator = page.getElements().entrySet().iterator();
+    }
+
+
+    /**
+     * Reads a page of the dictionary being iterated
+     */
+    public interface PageReader {
+
+        DictionaryPage read( DictionaryQuery query ) throws Exception;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence;
+
+
+import java.util.Map;
+
+
+/**
+ * A page of dictionary elements read with a {@link DictionaryQuery}
+ */
+public class DictionaryPage {
+
+    private final Map<Object, Object> elements;
+    private final String cursor;
+
+
+    public DictionaryPage( final Map<Object, Object> elements, final String cursor ) {
+        this.elements = elements;
+        this.cursor = cursor;
+    }
+
+
+    /**
+     * The element names and values of this page, in element name order
+     */
+    public Map<Object, Object> getElements() {
+        return elements;
+    }
+
+
+    /**
+     * The cursor to read the next page with, or null if this is the last page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+
+    public boolean hasCursor() {
+        return cursor != null;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence;
+
+
+/**
+ * Selects a page of dictionary elements, in element name order.  Elements can be restricted to those whose name
+ * starts with a prefix, or to an inclusive range of names.  The cursor of a previous {@link DictionaryPage} resumes
+ * after the last element it returned.
+ */
+public class DictionaryQuery {
+
+    public static final int DEFAULT_LIMIT = 100;
+
+    public static final int MAX_LIMIT = 1000;
+
+    private String prefix;
+    private Object start;
+    private Object finish;
+    private String cursor;
+    private int limit = DEFAULT_LIMIT;
+
+
+    public DictionaryQuery() {
+    }
+
+
+    public DictionaryQuery( DictionaryQuery q ) {
+        if ( q != null ) {
+            prefix = q.prefix;
+            start = q.start;
+            finish = q.finish;
+            cursor = q.cursor;
+            limit = q.limit;
+        }
+    }
+
+
+    public static DictionaryQuery newQueryIfNull( DictionaryQuery query ) {
+        if ( query == null ) {
+            query = new DictionaryQuery();
+        }
+        return query;
+    }
+
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+
+    /**
+     * Only return elements whose name starts with the prefix
+     */
+    public DictionaryQuery withPrefix( String prefix ) {
+        this.prefix = prefix;
+        return this;
+    }
+
+
+    public Object getStart() {
+        return start;
+    }
+
+
+    /**
+     * Only return elements named the same as or after start
+     */
+    public DictionaryQuery withStart( Object start ) {
+        this.start = start;
+        return this;
+    }
+
+
+    public Object getFinish() {
+        return finish;
+    }
+
+
+    /**
+     * Only return elements named the same as or before finish
+     */
+    public DictionaryQuery withFinish( Object finish ) {
+        this.finish = finish;
+        return this;
+    }
+
+
+    public String getCursor() {
+        return cursor;
+    }
+
+
+    public DictionaryQuery withCursor( String cursor ) {
+        this.cursor = cursor;
+        return this;
+    }
+
+
+    public int getLimit() {
+        return limit;
+    }
+
+
+    /**
+     * Set the number of elements in a page, capped at {@link #MAX_LIMIT}
+     */
+    public DictionaryQuery withLimit( int limit ) {
+        if ( limit <= 0 ) {
+            limit = DEFAULT_LIMIT;
+        }
+
+        if ( limit > MAX_LIMIT ) {
+            limit = MAX_LIMIT;
+        }
+
+        this.limit = limit;
+        return this;
+    }
+}
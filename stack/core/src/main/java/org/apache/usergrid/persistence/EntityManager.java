@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence;
 
 import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -60,8 +61,21 @@ public interface EntityManager {
 
     public Map<String, Object> getApplicationCollectionMetadata() throws Exception;
 
+    /**
+     * Get the number of entities in a collection of the application.  Read from a counter, so this is cheap, but may
+     * lag recent writes
+     */
     public long getApplicationCollectionSize( String collectionName ) throws Exception;
 
+    /**
+     * Get the number of connections of a type in the application.  Read from a counter, so this is cheap, but may lag
+     * recent writes
+     */
+    public long getApplicationConnectionSize( String connectionType ) throws Exception;
+
+    /** Get the connection types of the application, with the number of connections of each */
+    public Map<String, Object> getApplicationConnectionMetadata() throws Exception;
+
     /**
      * Creates an entity of the specified type attached to the specified application.
      *
@@ -91,6 +105,18 @@ public interface EntityManager {
     public Entity create( UUID importId, String entityType, Map<String, Object> properties )
             throws Exception;
 
+    /**
+     * Creates entities with the UUIDs they're given, as {@link #create(UUID, String, Map)} does, writing the entities
+     * and their collection edges together rather than one at a time.  An entity that fails doesn't fail the others.
+     *
+     * @param entities the entities to create, each with its UUID, type and properties
+     *
+     * @return the failure of each entity that wasn't created, keyed by its UUID
+     *
+     * @throws Exception the exception
+     */
+    public Map<UUID, Throwable> createAll( List<Entity> entities ) throws Exception;
+
     /**
      * Creates an entity of the specified type attached to the specified application.
      * @param id
@@ -276,6 +302,36 @@ public interface EntityManager {
     public Map<Object, Object> getDictionaryAsMap( EntityRef entityRef, String dictionaryName )
             throws Exception;
 
+    /**
+     * Gets one page of a dictionary, in element name order. Reads at most the query limit of
+     * elements, so large dictionaries can be read without loading them in full.
+     *
+     * @param entityRef an entity reference
+     * @param dictionaryName the dictionary to read
+     * @param query the prefix or range, cursor and limit of the page
+     *
+     * @return the page, with a cursor if there are more elements
+     *
+     * @throws Exception the exception
+     */
+    public DictionaryPage getDictionaryPage( EntityRef entityRef, String dictionaryName,
+            DictionaryQuery query ) throws Exception;
+
+    /**
+     * Iterates over the elements of a dictionary, in element name order. Elements are read a
+     * page at a time as the iterator advances, with the query limit as the page size.
+     *
+     * @param entityRef an entity reference
+     * @param dictionaryName the dictionary to read
+     * @param query the prefix or range to iterate over, and the page size
+     *
+     * @return the element names and values
+     *
+     * @throws Exception the exception
+     */
+    public Iterator<Map.Entry<Object, Object>> getDictionaryIterator( EntityRef entityRef,
+            String dictionaryName, DictionaryQuery query ) throws Exception;
+
     public Object getDictionaryElementValue( EntityRef entityRef, String dictionaryName,
             String elementName ) throws Exception;
 
@@ -448,6 +504,16 @@ public interface EntityManager {
             EntityRef sourceEntity, ConnectedEntityRef... connections )
             throws Exception;
 
+    /**
+     * Creates connections, as {@link #createConnection(ConnectionRef)} does, writing their edges together rather than
+     * one at a time.  A connection that fails doesn't fail the others.
+     *
+     * @return the failure of each connection that wasn't created, keyed by the connection given
+     *
+     * @throws Exception the exception
+     */
+    public Map<ConnectionRef, Throwable> createConnections( List<ConnectionRef> connections ) throws Exception;
+
     public ConnectionRef connectionRef( EntityRef sourceEntity, String connectionType,
                                         EntityRef targetEntityRef ) throws Exception;
 
@@ -543,6 +543,12 @@ public class Query {
     }
 
 
+    /** @return true if a limit was set, rather than the default being used */
+    public boolean isLimitSet() {
+        return limit > 0;
+    }
+
+
     public void setLimit( int limit ) {
 
         // TODO tnine.  After users have had time to change their query limits,
@@ -338,6 +338,18 @@ public class CounterUtils {
     }
 
 
+    /**
+     * Add the increment of an entity counter to the mutator whatever the counter type, so it's written when the
+     * mutator is executed rather than when the batcher next submits
+     */
+    public Mutator<ByteBuffer> batchIncrementEntityCounterNow( Mutator<ByteBuffer> m, UUID entityId, String name,
+                                                               long value ) {
+        HCounterColumn<String> c = createCounterColumn( name, value );
+        m.addCounter( bytebuffer( entityId ), ENTITY_COUNTERS.toString(), c );
+        return m;
+    }
+
+
     private Mutator<ByteBuffer> batchIncrementEntityCounter( Mutator<ByteBuffer> m, UUID entityId, String name,
                                                              Long value, long timestamp, UUID applicationId ) {
         if ( logger.isTraceEnabled() ) {
@@ -18,6 +18,8 @@
 package org.apache.usergrid.persistence.entities;
 
 
+import java.util.Map;
+
 import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.usergrid.persistence.TypedEntity;
@@ -51,6 +53,12 @@ public class Export extends TypedEntity {
     @EntityProperty
     protected String errorMessage;
 
+    /**
+     * The progress of each partition of the export, so an interrupted export can resume
+     */
+    @EntityProperty(indexed = false)
+    protected Map<String, Object> checkpoints;
+
 
     public Export() {
     }
@@ -85,4 +93,15 @@ public class Export extends TypedEntity {
         this.errorMessage = errorMessage;
     }
 
+
+    @JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+    public Map<String, Object> getCheckpoints() {
+        return checkpoints;
+    }
+
+
+    public void setCheckpoints( final Map<String, Object> checkpoints ) {
+        this.checkpoints = checkpoints;
+    }
+
 }
@@ -76,6 +76,18 @@ public class FileImport extends TypedEntity {
     @EntityProperty
     protected long failedConnectionCount;
 
+    /**
+     * The number of entity events at the start of the file whose batches have all been written
+     */
+    @EntityProperty
+    protected Long entityResumeOffset;
+
+    /**
+     * The number of connection and dictionary events at the start of the file whose batches have all been written
+     */
+    @EntityProperty
+    protected Long connectionResumeOffset;
+
 
     public FileImport() {
         setLastUpdatedUUID(" ");
@@ -208,4 +220,24 @@ public class FileImport extends TypedEntity {
     public void setFailedConnectionCount( final long failedConnectionCount ) {
         this.failedConnectionCount = failedConnectionCount;
     }
+
+
+    public Long getEntityResumeOffset() {
+        return entityResumeOffset;
+    }
+
+
+    public void setEntityResumeOffset( final Long entityResumeOffset ) {
+        this.entityResumeOffset = entityResumeOffset;
+    }
+
+
+    public Long getConnectionResumeOffset() {
+        return connectionResumeOffset;
+    }
+
+
+    public void setConnectionResumeOffset( final Long connectionResumeOffset ) {
+        this.connectionResumeOffset = connectionResumeOffset;
+    }
 }
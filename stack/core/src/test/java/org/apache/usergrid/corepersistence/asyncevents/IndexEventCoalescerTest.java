@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.usergrid.corepersistence.asyncevents;
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import org.apache.usergrid.corepersistence.asyncevents.model.DeIndexOldVersionsEvent;
+import org.apache.usergrid.corepersistence.asyncevents.model.EntityIndexEvent;
+import org.apache.usergrid.persistence.collection.serialization.impl.migration.EntityIdScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+import org.apache.usergrid.persistence.queue.QueueMessage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+public class IndexEventCoalescerTest {
+
+    private final ApplicationScope applicationScope =
+        new ApplicationScopeImpl( new SimpleId( UUIDGenerator.newTimeUUID(), "application" ) );
+
+
+    @Test
+    public void eventsOfAnEntityFold() {
+
+        final Id entityId = new SimpleId( "thing" );
+
+        final UUID firstVersion = UUIDGenerator.newTimeUUID();
+        final UUID secondVersion = UUIDGenerator.newTimeUUID();
+
+        //a new EntityIdScope for each event, the same as the entity manager does
+        final QueueMessage firstIndex = index( entityId, 10 );
+        final QueueMessage firstDeIndex = deIndex( entityId, firstVersion );
+        final QueueMessage secondIndex = index( entityId, 5 );
+        final QueueMessage secondDeIndex = deIndex( entityId, secondVersion );
+
+        //the older de-index comes last
+        final List<IndexEventCoalescer.CoalescedMessage> coalesced = IndexEventCoalescer
+            .coalesce( Arrays.asList( firstIndex, secondDeIndex, secondIndex, firstDeIndex ) );
+
+        assertEquals( 1, coalesced.size() );
+
+        final IndexEventCoalescer.CoalescedMessage message = coalesced.get( 0 );
+
+        assertSame( firstIndex, message.getMessage() );
+        assertEquals( "Acked with the first update", Arrays.asList( secondIndex, secondDeIndex, firstDeIndex ),
+            message.getFolded() );
+
+        final EntityIndexEvent event = message.getEntityIndexEvent();
+
+        assertEquals( entityId, event.getEntityIdScope().getId() );
+        assertEquals( "Indexes the changes of both updates", 5, event.getUpdatedAfter() );
+        assertEquals( "The newest version is de-indexed from", secondVersion, event.getMarkedVersion() );
+    }
+
+
+    @Test
+    public void entitiesDontFold() {
+
+        final Id indexed = new SimpleId( "thing" );
+        final Id deIndexed = new SimpleId( "thing" );
+
+        final QueueMessage index = index( indexed, 0 );
+        final QueueMessage deIndex = deIndex( deIndexed, UUIDGenerator.newTimeUUID() );
+
+        //the same entity id in another application
+        final ApplicationScope otherScope =
+            new ApplicationScopeImpl( new SimpleId( UUIDGenerator.newTimeUUID(), "application" ) );
+
+        final QueueMessage otherIndex = message( new EntityIndexEvent( "region",
+            new EntityIdScope( otherScope, indexed ), 0 ) );
+
+        final List<IndexEventCoalescer.CoalescedMessage> coalesced =
+            IndexEventCoalescer.coalesce( Arrays.asList( index, deIndex, otherIndex ) );
+
+        assertEquals( 3, coalesced.size() );
+
+        assertSame( index, coalesced.get( 0 ).getMessage() );
+        assertNull( coalesced.get( 0 ).getEntityIndexEvent().getMarkedVersion() );
+
+        assertSame( "A de-index without an update is handled on its own", deIndex, coalesced.get( 1 ).getMessage() );
+        assertNull( coalesced.get( 1 ).getEntityIndexEvent() );
+
+        assertSame( otherIndex, coalesced.get( 2 ).getMessage() );
+
+        for ( final IndexEventCoalescer.CoalescedMessage message : coalesced ) {
+            assertEquals( Collections.emptyList(), message.getFolded() );
+        }
+    }
+
+
+    private QueueMessage index( final Id entityId, final long updatedAfter ) {
+        return message( new EntityIndexEvent( "region", new EntityIdScope( applicationScope, entityId ),
+            updatedAfter ) );
+    }
+
+
+    private QueueMessage deIndex( final Id entityId, final UUID markedVersion ) {
+        return message( new DeIndexOldVersionsEvent( "region", new EntityIdScope( applicationScope, entityId ),
+            markedVersion ) );
+    }
+
+
+    private QueueMessage message( final Object body ) {
+        return new QueueMessage( UUIDGenerator.newTimeUUID().toString(), null, body, null );
+    }
+}
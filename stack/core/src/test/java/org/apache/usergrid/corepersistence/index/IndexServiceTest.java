@@ -139,7 +139,7 @@ public class IndexServiceTest {
 
         //real users should never call to blocking, we're not sure what we'll get
         final IndexOperationMessage results = indexed.toBlocking().last();
-        indexProducer.put(results).subscribe();
+        indexProducer.put(results).toBlocking().lastOrDefault( null );
 
         final Set<IndexOperation> indexRequests = results.getIndexRequests();
 
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.corepersistence.pipeline.read.search;
+
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.index.SelectFieldMapping;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.field.StringField;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class CandidateEntityFilterTest {
+
+    @Test
+    public void swappedNames() {
+        final Entity entity = new Entity( "test" );
+        entity.setField( new StringField( "a", "value a" ) );
+        entity.setField( new StringField( "b", "value b" ) );
+
+        CandidateEntityFilter.renameFields( entity,
+            Arrays.asList( new SelectFieldMapping( "a", "b" ), new SelectFieldMapping( "b", "a" ) ) );
+
+        assertEquals( 2, entity.getFields().size() );
+        assertEquals( "value b", entity.getField( "a" ).getValue() );
+        assertEquals( "a", entity.getField( "a" ).getName() );
+        assertEquals( "value a", entity.getField( "b" ).getValue() );
+        assertEquals( "b", entity.getField( "b" ).getName() );
+    }
+
+
+    @Test
+    public void overlappingNames() {
+        final Entity entity = new Entity( "test" );
+        entity.setField( new StringField( "a", "value a" ) );
+        entity.setField( new StringField( "b", "value b" ) );
+
+        //a is kept, and selected again as c, b is renamed to a name that was selected
+        CandidateEntityFilter.renameFields( entity,
+            Arrays.asList( new SelectFieldMapping( "a", "a" ), new SelectFieldMapping( "a", "c" ),
+                new SelectFieldMapping( "b", "d" ) ) );
+
+        assertEquals( 3, entity.getFields().size() );
+        assertEquals( "value a", entity.getField( "a" ).getValue() );
+        assertEquals( "a", entity.getField( "a" ).getName() );
+        assertEquals( "value a", entity.getField( "c" ).getValue() );
+        assertEquals( "c", entity.getField( "c" ).getName() );
+        assertEquals( "value b", entity.getField( "d" ).getValue() );
+        assertNull( entity.getField( "b" ) );
+    }
+
+
+    @Test
+    public void chainedNames() {
+        final Entity entity = new Entity( "test" );
+        entity.setField( new StringField( "a", "value a" ) );
+        entity.setField( new StringField( "b", "value b" ) );
+
+        //renaming a to b must not rename it again to c
+        CandidateEntityFilter.renameFields( entity,
+            Arrays.asList( new SelectFieldMapping( "a", "b" ), new SelectFieldMapping( "b", "c" ) ) );
+
+        assertEquals( 2, entity.getFields().size() );
+        assertNull( entity.getField( "a" ) );
+        assertEquals( "value a", entity.getField( "b" ).getValue() );
+        assertEquals( "value b", entity.getField( "c" ).getValue() );
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.count;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.count.common.Count;
+
+import com.google.common.util.concurrent.Futures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/** Unit test for the AggregatingBatcher */
+public class AggregatingBatcherTest {
+
+    private AggregatingBatcher batcher;
+    private SummingSubmitter submitter;
+
+
+    @Before
+    public void setupLocal() {
+        submitter = new SummingSubmitter();
+
+        batcher = new AggregatingBatcher();
+        batcher.setBatchSubmitter( submitter );
+        batcher.setBatchSize( 2 );
+        batcher.setBatchInterval( 60 );
+    }
+
+
+    @Test
+    public void testIdenticalCountsCombined() {
+        batcher.add( new Count( "Counter", "k1", "c1", 1 ) );
+        batcher.add( new Count( "Counter", "k1", "c1", 2 ) );
+        batcher.add( new Count( "Counter", "k1", "c1", 3 ) );
+        batcher.add( new Count( "Counter", "k1", "c2", 1 ) );
+
+        assertEquals( 4, batcher.getOpCount() );
+        assertEquals( 0, batcher.getBatchSubmissionCount() );
+
+        batcher.flush();
+
+        //one count per counter, in a single batch of 2
+        assertEquals( 1, batcher.getBatchSubmissionCount() );
+        assertEquals( 2, submitter.submitted.get() );
+        assertEquals( 6, submitter.get( "c1" ) );
+        assertEquals( 1, submitter.get( "c2" ) );
+
+        //nothing new, nothing submitted
+        batcher.flush();
+        batcher.flush();
+
+        assertEquals( 1, batcher.getBatchSubmissionCount() );
+        assertEquals( 2, submitter.submitted.get() );
+    }
+
+
+    @Test
+    public void testConcurrentAddsNotLost() throws Exception {
+        final int threads = 16;
+        final int adds = 10000;
+
+        final ExecutorService exec = Executors.newFixedThreadPool( threads );
+        final CountDownLatch done = new CountDownLatch( threads );
+
+        for ( int t = 0; t < threads; t++ ) {
+            exec.submit( () -> {
+                for ( int i = 0; i < adds; i++ ) {
+                    batcher.add( new Count( "Counter", "k1", "c" + ( i % 10 ), 1 ) );
+                }
+
+                done.countDown();
+            } );
+        }
+
+        //flush while the writers are running
+        while ( !done.await( 5, TimeUnit.MILLISECONDS ) ) {
+            batcher.flush();
+        }
+
+        exec.shutdown();
+
+        batcher.flush();
+
+        long total = 0;
+
+        for ( int i = 0; i < 10; i++ ) {
+            total += submitter.get( "c" + i );
+        }
+
+        assertEquals( threads * adds, total );
+        assertEquals( threads * adds, batcher.getOpCount() );
+    }
+
+
+    @Test
+    public void testSpillWhenFull() throws Exception {
+        batcher.setMaxCounters( 10 );
+
+        for ( int i = 0; i < 10; i++ ) {
+            batcher.add( new Count( "Counter", "k1", "c" + i, 1 ) );
+        }
+
+        //crossing the limit flushes on the flush thread without waiting for the interval
+        for ( int i = 0; i < 50 && submitter.submitted.get() < 10; i++ ) {
+            Thread.sleep( 100 );
+        }
+
+        assertEquals( 10, submitter.submitted.get() );
+        assertTrue( batcher.getBatchSubmissionCount() >= 5 );
+    }
+
+
+    private static final class SummingSubmitter implements BatchSubmitter {
+
+        private final Map<String, AtomicLong> totals = new ConcurrentHashMap<>();
+        private final AtomicLong submitted = new AtomicLong();
+
+
+        @Override
+        public Future<?> submit( final Collection<Count> counts ) {
+            final List<Count> copy = new ArrayList<>( counts );
+
+            for ( final Count count : copy ) {
+                totals.computeIfAbsent( ( String ) count.getColumnName(), k -> new AtomicLong() )
+                      .addAndGet( count.getValue() );
+            }
+
+            submitted.addAndGet( copy.size() );
+
+            return Futures.immediateFuture( null );
+        }
+
+
+        @Override
+        public void shutdown() {
+        }
+
+
+        private long get( final String column ) {
+            final AtomicLong total = totals.get( column );
+            return total == null ? 0 : total.get();
+        }
+    }
+}
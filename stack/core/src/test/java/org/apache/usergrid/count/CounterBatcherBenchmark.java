@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.count;
+
+
+import java.util.Collection;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.apache.usergrid.count.common.Count;
+
+import com.google.common.util.concurrent.Futures;
+
+
+/**
+ * JMH benchmark comparing add throughput of the {@link SimpleBatcher} and the {@link AggregatingBatcher} under
+ * contention.  Use -t on the command line to change the thread count.  Run with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.apache.usergrid.count.CounterBatcherBenchmark
+ * </pre>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Threads( 32 )
+@Fork( 1 )
+public class CounterBatcherBenchmark {
+
+
+    @Param( { "simple", "aggregating" } )
+    public String batcherType;
+
+    /**
+     * The number of distinct counters written to, few counters means many increments to combine
+     */
+    @Param( { "10", "10000" } )
+    public int counterCount;
+
+    private Batcher batcher;
+
+    private Count[] counts;
+
+
+    @Setup
+    public void setup() {
+        if ( "simple".equals( batcherType ) ) {
+            final SimpleBatcher simpleBatcher = new SimpleBatcher();
+            simpleBatcher.setBatchSize( 50000 );
+            simpleBatcher.setBatchInterval( 1 );
+            batcher = simpleBatcher;
+        }
+        else {
+            final AggregatingBatcher aggregatingBatcher = new AggregatingBatcher();
+            aggregatingBatcher.setBatchSize( 50000 );
+            aggregatingBatcher.setBatchInterval( 1 );
+            batcher = aggregatingBatcher;
+        }
+
+        batcher.setBatchSubmitter( new NoopSubmitter() );
+
+        counts = new Count[counterCount];
+
+        for ( int i = 0; i < counterCount; i++ ) {
+            counts[i] = new Count( "Counter", "k1", "c" + i, 1 );
+        }
+    }
+
+
+    @Benchmark
+    public void add() {
+        batcher.add( counts[ThreadLocalRandom.current().nextInt( counts.length )] );
+    }
+
+
+    /**
+     * Discards everything, so we measure the batcher and not the store
+     */
+    private static final class NoopSubmitter implements BatchSubmitter {
+
+        @Override
+        public Future<?> submit( final Collection<Count> counts ) {
+            return Futures.immediateFuture( null );
+        }
+
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+
+    public static void main( final String[] args ) throws RunnerException {
+        final Options options =
+            new OptionsBuilder().include( CounterBatcherBenchmark.class.getSimpleName() ).build();
+
+        new Runner( options ).run();
+    }
+}
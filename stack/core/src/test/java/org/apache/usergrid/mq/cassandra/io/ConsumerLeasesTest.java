@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.mq.cassandra.io;
+
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.locking.Lock;
+import org.apache.usergrid.locking.LockManager;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.exceptions.QueueException;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class ConsumerLeasesTest {
+
+    private static final long LEASE_TIME = 60000;
+
+    private final UUID applicationId = UUIDUtils.newTimeUUID();
+    private final UUID queueId = UUIDUtils.newTimeUUID();
+    private final UUID consumerId = UUIDUtils.newTimeUUID();
+
+    private MetricsFactory metricsFactory;
+    private LockManager lockManager;
+    private Lock lock;
+
+
+    @Before
+    public void setup() throws Exception {
+        metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getMeter( any( Class.class ), anyString() ) ).thenReturn( new Meter() );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+
+        lock = mock( Lock.class );
+        when( lock.tryLock( anyLong(), any( TimeUnit.class ) ) ).thenReturn( true );
+
+        lockManager = mock( LockManager.class );
+        when( lockManager.createLock( applicationId, queueId.toString(), consumerId.toString() ) ).thenReturn( lock );
+        when( lockManager.createLock( applicationId, LEASE_TIME, TimeUnit.MILLISECONDS, queueId.toString(),
+            consumerId.toString() ) ).thenReturn( lock );
+    }
+
+
+    @Test
+    public void lockForEachRead() throws Exception {
+        final ConsumerLeases consumerLeases = new ConsumerLeases( lockManager, metricsFactory, 5, 0 );
+
+        for ( int i = 0; i < 2; i++ ) {
+            final ConsumerLeases.ConsumerLease lease =
+                consumerLeases.acquire( applicationId, "/test", queueId, consumerId );
+
+            assertFalse( lease.isPrefetching() );
+
+            lease.prefetched( null, Arrays.asList( UUIDUtils.newTimeUUID(), UUIDUtils.newTimeUUID() ) );
+
+            assertNull( lease.getPrefetched( UUIDUtils.newTimeUUID( 0 ), 1 ) );
+
+            lease.release();
+        }
+
+        verify( lock, times( 2 ) ).tryLock( 5, TimeUnit.SECONDS );
+        verify( lock, times( 2 ) ).unlock();
+    }
+
+
+    @Test
+    public void leaseIsKeptBetweenReads() throws Exception {
+        final ConsumerLeases consumerLeases = new ConsumerLeases( lockManager, metricsFactory, 5, LEASE_TIME );
+
+        for ( int i = 0; i < 3; i++ ) {
+            final ConsumerLeases.ConsumerLease lease =
+                consumerLeases.acquire( applicationId, "/test", queueId, consumerId );
+
+            assertTrue( lease.isPrefetching() );
+
+            lease.release();
+        }
+
+        verify( lockManager, times( 1 ) )
+            .createLock( applicationId, LEASE_TIME, TimeUnit.MILLISECONDS, queueId.toString(),
+                consumerId.toString() );
+
+        verify( lock, times( 1 ) ).tryLock( 5, TimeUnit.SECONDS );
+        verify( lock, times( 0 ) ).unlock();
+    }
+
+
+    @Test
+    public void leaseNotAcquired() throws Exception {
+        when( lock.tryLock( anyLong(), any( TimeUnit.class ) ) ).thenReturn( false );
+
+        final ConsumerLeases consumerLeases = new ConsumerLeases( lockManager, metricsFactory, 5, LEASE_TIME );
+
+        try {
+            consumerLeases.acquire( applicationId, "/test", queueId, consumerId );
+            fail( "The lease is held by another node" );
+        }
+        catch ( QueueException e ) {
+            //expected
+        }
+
+        when( lock.tryLock( anyLong(), any( TimeUnit.class ) ) ).thenReturn( true );
+
+        //the next read tries the lock again
+        consumerLeases.acquire( applicationId, "/test", queueId, consumerId ).release();
+    }
+
+
+    @Test
+    public void prefetchedIdsAfterStart() throws Exception {
+        final ConsumerLeases consumerLeases = new ConsumerLeases( lockManager, metricsFactory, 5, LEASE_TIME );
+
+        final UUID first = UUIDUtils.newTimeUUID();
+        final UUID second = UUIDUtils.newTimeUUID();
+        final UUID third = UUIDUtils.newTimeUUID();
+        final UUID fourth = UUIDUtils.newTimeUUID();
+
+        ConsumerLeases.ConsumerLease lease = consumerLeases.acquire( applicationId, "/test", queueId, consumerId );
+
+        //the first read returned the first two, and read the rest ahead
+        lease.prefetched( null, Arrays.asList( first, second, third, fourth ) );
+
+        lease.release();
+
+        lease = consumerLeases.acquire( applicationId, "/test", queueId, consumerId );
+
+        final List<UUID> prefetched = lease.getPrefetched( second, 2 );
+
+        assertEquals( Arrays.asList( third, fourth ), prefetched );
+
+        //the ids are merged with transactions, they have to be modifiable
+        prefetched.add( UUIDUtils.newTimeUUID() );
+
+        assertNull( "Not enough left to fill the read", lease.getPrefetched( third, 2 ) );
+
+        assertNull( "A start before the prefetched ids", lease.getPrefetched( first, 1 ) );
+
+        lease.release();
+    }
+}
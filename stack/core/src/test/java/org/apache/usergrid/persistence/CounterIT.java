@@ -20,6 +20,8 @@ package org.apache.usergrid.persistence;
 
 import net.jcip.annotations.NotThreadSafe;
 import org.apache.usergrid.AbstractCoreIT;
+import org.apache.usergrid.cassandra.SpringResource;
+import org.apache.usergrid.corepersistence.CollectionCounterReconciler;
 import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.persistence.entities.Event;
 import org.apache.usergrid.persistence.entities.Group;
@@ -42,6 +44,7 @@ import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 
 @NotThreadSafe
@@ -326,4 +329,59 @@ public class CounterIT extends AbstractCoreIT {
 
 
     }
+
+
+    @Test
+    public void testCollectionAndConnectionSize() throws Exception {
+        logger.info( "CounterIT.testCollectionAndConnectionSize" );
+
+        EntityManager em = app.getEntityManager();
+
+        assertNotNull( em );
+
+        Entity[] dogs = new Entity[3];
+
+        for ( int i = 0; i < dogs.length; i++ ) {
+            Map<String, Object> properties = new LinkedHashMap<String, Object>();
+            properties.put( "name", "dog" + i );
+            dogs[i] = em.create( "dog", properties );
+        }
+
+        assertEquals( 3, em.getApplicationCollectionSize( "dogs" ) );
+
+        em.createConnection( dogs[0], "likes", dogs[1] );
+        em.createConnection( dogs[0], "likes", dogs[2] );
+
+        assertEquals( 2, em.getApplicationConnectionSize( "likes" ) );
+
+        //connecting again counts the pair again until the counters are reconciled
+        em.createConnection( dogs[0], "likes", dogs[1] );
+
+        assertEquals( 3, em.getApplicationConnectionSize( "likes" ) );
+
+        em.deleteConnection( em.connectionRef( dogs[0], "likes", dogs[2] ) );
+
+        assertEquals( 2, em.getApplicationConnectionSize( "likes" ) );
+
+        //simulate drift, then correct it
+        em.incrementAggregateCounters( null, null, null, "application.collection.dogs", 5 );
+        em.incrementAggregateCounters( null, null, null, "application.connection.likes", -3 );
+
+        assertEquals( 8, em.getApplicationCollectionSize( "dogs" ) );
+        assertEquals( 0, em.getApplicationConnectionSize( "likes" ) );
+
+        CollectionCounterReconciler reconciler =
+            SpringResource.getInstance().getBean( CollectionCounterReconciler.class );
+
+        Map<String, Long> corrections = reconciler.reconcile( em.getApplicationId() );
+
+        assertEquals( new Long( -5 ), corrections.get( "application.collection.dogs" ) );
+        assertEquals( new Long( 2 ), corrections.get( "application.connection.likes" ) );
+
+        assertEquals( 3, em.getApplicationCollectionSize( "dogs" ) );
+        assertEquals( 1, em.getApplicationConnectionSize( "likes" ) );
+
+        //the corrections are written straight away, the next run has nothing to do
+        assertTrue( reconciler.reconcile( em.getApplicationId() ).isEmpty() );
+    }
 }
@@ -18,6 +18,7 @@ package org.apache.usergrid.persistence;
 
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -32,6 +33,7 @@ import org.apache.usergrid.utils.JsonUtils;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -208,4 +210,70 @@ public class EntityDictionaryIT extends AbstractCoreIT {
         assertEquals("testval" , o.toString() );
 
     }
+
+
+    @Test
+    public void testDictionaryPages() throws Exception {
+        logger.info( "EntityDictionaryIT.testDictionaryPages" );
+
+        EntityManager em = app.getEntityManager();
+        assertNotNull( em );
+
+        Map<String, Object> elements = new LinkedHashMap<String, Object>();
+        for ( int i = 0; i < 25; i++ ) {
+            elements.put( String.format( "device%02d", i ), "token" + i );
+        }
+        for ( int i = 0; i < 5; i++ ) {
+            elements.put( String.format( "phone%02d", i ), "token" + i );
+        }
+
+        em.addMapToDictionary( em.getApplicationRef(), "pagedDevices", elements );
+
+        // page through everything, ten at a time
+        DictionaryQuery query = new DictionaryQuery().withLimit( 10 );
+        Map<Object, Object> read = new LinkedHashMap<Object, Object>();
+        int pages = 0;
+
+        DictionaryPage page;
+        do {
+            page = em.getDictionaryPage( em.getApplicationRef(), "pagedDevices", query );
+            assertTrue( page.getElements().size() <= 10 );
+            read.putAll( page.getElements() );
+            query.withCursor( page.getCursor() );
+            pages++;
+        }
+        while ( page.hasCursor() );
+
+        assertEquals( 3, pages );
+        assertEquals( elements, read );
+
+        // a prefix only returns the elements that start with it
+        page = em.getDictionaryPage( em.getApplicationRef(), "pagedDevices",
+            new DictionaryQuery().withPrefix( "phone" ).withLimit( 10 ) );
+
+        assertEquals( 5, page.getElements().size() );
+        assertFalse( page.hasCursor() );
+        assertEquals( "phone00", page.getElements().keySet().iterator().next() );
+
+        // a range is inclusive at both ends
+        page = em.getDictionaryPage( em.getApplicationRef(), "pagedDevices",
+            new DictionaryQuery().withStart( "device10" ).withFinish( "device14" ) );
+
+        assertEquals( 5, page.getElements().size() );
+        assertEquals( "token10", page.getElements().get( "device10" ) );
+
+        // the iterator crosses pages, and the full map reads the same elements
+        Iterator<Map.Entry<Object, Object>> iterator = em.getDictionaryIterator( em.getApplicationRef(),
+            "pagedDevices", new DictionaryQuery().withPrefix( "device" ).withLimit( 4 ) );
+
+        int count = 0;
+        while ( iterator.hasNext() ) {
+            Map.Entry<Object, Object> element = iterator.next();
+            assertTrue( element.getKey().toString().startsWith( "device" ) );
+            count++;
+        }
+
+        assertEquals( 25, count );
+        assertEquals( elements, em.getDictionaryAsMap( em.getApplicationRef(), "pagedDevices" ) );
+    }
 }
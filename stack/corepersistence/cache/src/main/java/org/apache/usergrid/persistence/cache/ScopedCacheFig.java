@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cache;
+
+
+import org.safehaus.guicyfig.Default;
+import org.safehaus.guicyfig.FigSingleton;
+import org.safehaus.guicyfig.GuicyFig;
+import org.safehaus.guicyfig.Key;
+
+
+/**
+ * Configuration for the scoped cache and its local near cache tier.
+ */
+@FigSingleton
+public interface ScopedCacheFig extends GuicyFig {
+
+
+    /**
+     * True to keep a node local copy of cached values in front of cassandra
+     */
+    @Key( "usergrid.scoped_cache.near_cache.enabled" )
+    @Default( "true" )
+    boolean getNearCacheEnabled();
+
+
+    /**
+     * The maximum total weight of the near cache, in serialized bytes, shared by all scopes
+     */
+    @Key( "usergrid.scoped_cache.near_cache.max_weight" )
+    @Default( "52428800" )
+    long getNearCacheMaxWeight();
+
+
+    /**
+     * The longest a near cache entry is served before it is re-read from cassandra.  This bounds how stale a single
+     * key removed on another node can be
+     */
+    @Key( "usergrid.scoped_cache.near_cache.timeout_ms" )
+    @Default( "10000" )
+    long getNearCacheTimeout();
+
+
+    /**
+     * How often we re-read a scope's generation from cassandra.  This bounds how long an invalidation on another
+     * node takes to be seen on this node
+     */
+    @Key( "usergrid.scoped_cache.generation_refresh_ms" )
+    @Default( "1000" )
+    long getGenerationRefreshInterval();
+
+
+    /**
+     * The most scopes whose generation we keep on this node.  Others are re-read from cassandra when they're used
+     */
+    @Key( "usergrid.scoped_cache.generation_max_scopes" )
+    @Default( "100000" )
+    long getGenerationMaxScopes();
+}
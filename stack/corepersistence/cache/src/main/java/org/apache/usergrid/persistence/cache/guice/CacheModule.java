@@ -22,10 +22,14 @@ import com.google.inject.Key;
 import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.Multibinder;
 import org.apache.usergrid.persistence.cache.CacheFactory;
+import org.apache.usergrid.persistence.cache.ScopedCacheFig;
 import org.apache.usergrid.persistence.cache.impl.CacheFactoryImpl;
+import org.apache.usergrid.persistence.cache.impl.ScopedCacheMigrationPlugin;
 import org.apache.usergrid.persistence.cache.impl.ScopedCacheSerialization;
 import org.apache.usergrid.persistence.cache.impl.ScopedCacheSerializationImpl;
+import org.apache.usergrid.persistence.core.migration.data.MigrationPlugin;
 import org.apache.usergrid.persistence.core.migration.schema.Migration;
+import org.safehaus.guicyfig.GuicyFigModule;
 
 import java.util.Map;
 
@@ -38,6 +42,8 @@ public class CacheModule extends AbstractModule {
     @Override
     protected void configure() {
 
+        install( new GuicyFigModule( ScopedCacheFig.class ) );
+
         bind( CacheFactory.class ).to( CacheFactoryImpl.class );
 
         bind( ScopedCacheSerialization.class ).to( ScopedCacheSerializationImpl.class );
@@ -45,6 +51,8 @@ public class CacheModule extends AbstractModule {
         Multibinder<Migration> migrationBinding = Multibinder.newSetBinder( binder(), Migration.class );
         migrationBinding.addBinding().to(Key.get(ScopedCacheSerialization.class));
 
+        Multibinder.newSetBinder( binder(), MigrationPlugin.class ).addBinding().to( ScopedCacheMigrationPlugin.class );
+
     }
 }
 
@@ -38,12 +38,12 @@ public class CacheFactoryImpl<K, V> implements CacheFactory<K, V> {
     private LoadingCache<CacheScope, ScopedCache> cacheCache;
 
     @Inject
-    public CacheFactoryImpl( final ScopedCacheSerialization serializer ) {
+    public CacheFactoryImpl( final ScopedCacheSerialization serializer, final ScopedNearCache nearCache ) {
 
         cacheCache = CacheBuilder.newBuilder().maximumSize(1000).build(
             new CacheLoader<CacheScope, ScopedCache>() {
                 public ScopedCache load(CacheScope scope) {
-                    return new ScopedCacheImpl(scope, serializer);
+                    return new ScopedCacheImpl(scope, serializer, nearCache);
                 }
             });
     }
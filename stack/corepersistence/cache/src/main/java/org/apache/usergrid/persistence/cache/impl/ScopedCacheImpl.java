@@ -17,13 +17,13 @@
 package org.apache.usergrid.persistence.cache.impl;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.google.inject.Inject;
 import org.apache.usergrid.persistence.cache.CacheScope;
 import org.apache.usergrid.persistence.cache.ScopedCache;
 
 
 /**
- * Cache divided into scopes which can be individually invalidated.
+ * Cache divided into scopes which can be individually invalidated.  Reads are served from the node local
+ * {@link ScopedNearCache} when possible, and fall back to cassandra.
  */
 public class ScopedCacheImpl<K,V> implements ScopedCache<K,V> {
 
@@ -31,27 +31,70 @@ public class ScopedCacheImpl<K,V> implements ScopedCache<K,V> {
 
     ScopedCacheSerialization<K,V> serializer;
 
-    public ScopedCacheImpl( CacheScope scope, ScopedCacheSerialization<K,V> serializer ) {
+    ScopedNearCache nearCache;
+
+    public ScopedCacheImpl( CacheScope scope, ScopedCacheSerialization<K,V> serializer, ScopedNearCache nearCache ) {
         this.scope = scope;
         this.serializer = serializer;
+        this.nearCache = nearCache;
     }
 
     @Override
     public V put(K key, V value, Integer ttl) {
-        return serializer.writeValue( scope, key, value, ttl );
+        final long generation = getGeneration();
+
+        final ScopedCacheValue<V> written = serializer.writeValue( scope, generation, key, value, ttl );
+        nearCache.put( scope, generation, key, written, ttl );
+
+        return value;
     }
 
     @Override
     public V get(K key, TypeReference typeRef ) {
-        return serializer.readValue( scope, key, typeRef );
+        final long generation = getGeneration();
+
+        final byte[] cached = nearCache.get( scope, generation, key );
+
+        if ( cached != null ) {
+            return serializer.deserialize( cached, typeRef );
+        }
+
+        final ScopedCacheValue<V> read = serializer.readValue( scope, generation, key, typeRef );
+
+        if ( read == null ) {
+            return null;
+        }
+
+        nearCache.put( scope, generation, key, read, null );
+
+        return read.getValue();
     }
 
     public void remove( K key ) {
-        serializer.removeValue( scope, key );
+        serializer.removeValue( scope, getGeneration(), key );
+        nearCache.remove( scope, key );
     }
 
     @Override
     public void invalidate() {
-        serializer.invalidate(scope);
+        final long generation = serializer.invalidate( scope );
+        nearCache.setGeneration( scope, generation );
+    }
+
+
+    /**
+     * Get the current generation of our scope, re-reading it from cassandra if our copy is too old
+     */
+    private long getGeneration() {
+        final Long generation = nearCache.getGeneration( scope );
+
+        if ( generation != null ) {
+            return generation;
+        }
+
+        final long currentGeneration = serializer.readGeneration( scope );
+        nearCache.setGeneration( scope, currentGeneration );
+
+        return currentGeneration;
     }
 }
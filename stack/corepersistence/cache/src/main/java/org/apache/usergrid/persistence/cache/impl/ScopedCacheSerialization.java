@@ -23,15 +23,25 @@ import org.apache.usergrid.persistence.core.migration.schema.Migration;
 
 
 /**
- * Serialize cache to/from Cassandra.
+ * Serialize cache to/from Cassandra.  Each scope has a generation that is persisted with the data.  Values are
+ * written under the scope's current generation, so bumping the generation logically invalidates the whole scope.
  */
 public interface ScopedCacheSerialization<K,V> extends Migration {
 
-    V readValue( CacheScope scope, K key, TypeReference typeRef );
+    /** Read the value written under the generation, or null if there is none */
+    ScopedCacheValue<V> readValue( CacheScope scope, long generation, K key, TypeReference typeRef );
 
-    V writeValue( CacheScope scope, K key, V value, Integer ttl );
+    /** Write the value under the generation with the ttl in seconds */
+    ScopedCacheValue<V> writeValue( CacheScope scope, long generation, K key, V value, Integer ttl );
 
-    void removeValue( CacheScope scope, K key );
+    void removeValue( CacheScope scope, long generation, K key );
 
-    void invalidate( CacheScope scope );
+    /** De-serialize a value in the form it's written to cassandra */
+    V deserialize( byte[] serialized, TypeReference typeRef );
+
+    /** Read the current generation of the scope.  0 if the scope has never been invalidated */
+    long readGeneration( CacheScope scope );
+
+    /** Invalidate all values in the scope by moving it to a new generation.  Returns the new generation */
+    long invalidate( CacheScope scope );
 }
@@ -41,12 +41,14 @@ import org.apache.usergrid.persistence.cache.CacheScope;
 import org.apache.usergrid.persistence.core.astyanax.*;
 import org.apache.usergrid.persistence.core.shard.ExpandingShardLocator;
 import org.apache.usergrid.persistence.core.shard.StringHashUtils;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 
@@ -55,9 +57,10 @@ import java.util.concurrent.Callable;
  */
 public class ScopedCacheSerializationImpl<K,V> implements ScopedCacheSerialization<K,V> {
 
-    // row-keys are application ID + consistent hash key
-    // column names are K key toString()
+    // row-keys are application ID + a bucket chosen by consistent hashing the K key toString()
+    // column names are the scope generation + K key toString()
     // column values are serialization of V value
+    // the scope generation is stored in its own row in the same column family
 
     public static final Logger logger = LoggerFactory.getLogger(ScopedCacheSerializationImpl.class);
 
@@ -93,6 +96,10 @@ public class ScopedCacheSerializationImpl<K,V> implements ScopedCacheSerializati
     private static final ExpandingShardLocator<String>
         BUCKET_LOCATOR = new ExpandingShardLocator<>(MAP_KEY_FUNNEL, NUM_BUCKETS);
 
+    /** Row and column holding the generation of the scope */
+    private static final String GENERATION_ROW_KEY = "_generation";
+    private static final String GENERATION_COLUMN = "generation";
+
     private final Keyspace keyspace;
 
     private final ObjectMapper MAPPER = new ObjectMapper();
@@ -111,28 +118,23 @@ public class ScopedCacheSerializationImpl<K,V> implements ScopedCacheSerializati
 
 
     @Override
-    public V readValue(CacheScope scope, K key, TypeReference typeRef ) {
+    public ScopedCacheValue<V> readValue( CacheScope scope, long generation, K key, TypeReference typeRef ) {
 
         Preconditions.checkNotNull(scope, "scope is required");
         Preconditions.checkNotNull(key, "key is required");
 
-        // determine bucketed row-key based application UUID
-        String rowKeyString = scope.getApplication().getUuid().toString();
-        final int bucket = BUCKET_LOCATOR.getCurrentBucket(rowKeyString);
-        final BucketScopedRowKey<String> keyRowKey =
-            BucketScopedRowKey.fromKey(scope.getApplication(), rowKeyString, bucket);
+        final BucketScopedRowKey<String> keyRowKey = getDataRowKey( scope, key );
 
-        // determine column name based on K key to string
-        String columnName = key.toString();
+        // determine column name based on the generation and K key to string
+        String columnName = getColumnName( generation, key );
 
         try {
             try {
                 Column<String> result = keyspace.prepareQuery(SCOPED_CACHE)
                     .getKey(keyRowKey).getColumn( columnName ).execute().getResult();
 
-                result.getByteBufferValue();
-                //V value = MAPPER.readValue(result.getByteArrayValue(), new TypeReference<V>() {});
-                V value = MAPPER.readValue(result.getByteArrayValue(), typeRef);
+                final byte[] bytes = result.getByteArrayValue();
+                V value = MAPPER.readValue(bytes, typeRef);
 
                 logger.debug("Read cache item from scope {}\n   key/value types {}/{}\n   key:value: {}:{}",
                         scope.getApplication().getUuid(),
@@ -141,7 +143,7 @@ public class ScopedCacheSerializationImpl<K,V> implements ScopedCacheSerializati
                         key,
                         value);
 
-                return value;
+                return new ScopedCacheValue<>( value, bytes );
 
             } catch (NotFoundException nfe) {
                 if(logger.isDebugEnabled()) {
@@ -167,23 +169,17 @@ public class ScopedCacheSerializationImpl<K,V> implements ScopedCacheSerializati
 
 
     @Override
-    public V writeValue(CacheScope scope, K key, V value, Integer ttl) {
+    public ScopedCacheValue<V> writeValue( CacheScope scope, long generation, K key, V value, Integer ttl ) {
 
         Preconditions.checkNotNull( scope, "scope is required");
         Preconditions.checkNotNull( key, "key is required" );
         Preconditions.checkNotNull( value, "value is required");
         Preconditions.checkNotNull( ttl, "ttl is required");
 
-        // determine bucketed row-key based application UUID
-
-        String rowKeyString = scope.getApplication().getUuid().toString();
-        final int bucket = BUCKET_LOCATOR.getCurrentBucket(rowKeyString);
+        final BucketScopedRowKey<String> keyRowKey = getDataRowKey( scope, key );
 
-        final BucketScopedRowKey<String> keyRowKey =
-            BucketScopedRowKey.fromKey(scope.getApplication(), rowKeyString, bucket);
-
-        // determine column name based on K key to string
-        String columnName = key.toString();
+        // determine column name based on the generation and K key to string
+        String columnName = getColumnName( generation, key );
 
         // serialize cache item
         byte[] cacheBytes;
@@ -206,26 +202,31 @@ public class ScopedCacheSerializationImpl<K,V> implements ScopedCacheSerializati
                 key,
                 value);
 
-        return value;
+        return new ScopedCacheValue<>( value, cacheBytes );
     }
 
 
     @Override
-    public void removeValue(CacheScope scope, K key) {
+    public V deserialize( byte[] serialized, TypeReference typeRef ) {
+        try {
+            return MAPPER.readValue( serialized, typeRef );
+        } catch (IOException ioe) {
+            logger.error("Unable to read cached value", ioe);
+            throw new RuntimeException("Unable to read cached value", ioe);
+        }
+    }
 
-        Preconditions.checkNotNull( scope, "scope is required");
-        Preconditions.checkNotNull( key, "key is required" );
 
-        // determine bucketed row-key based application UUID
+    @Override
+    public void removeValue( CacheScope scope, long generation, K key ) {
 
-        String rowKeyString = scope.getApplication().getUuid().toString();
-        final int bucket = BUCKET_LOCATOR.getCurrentBucket(rowKeyString);
+        Preconditions.checkNotNull( scope, "scope is required");
+        Preconditions.checkNotNull( key, "key is required" );
 
-        final BucketScopedRowKey<String> keyRowKey =
-            BucketScopedRowKey.fromKey(scope.getApplication(), rowKeyString, bucket);
+        final BucketScopedRowKey<String> keyRowKey = getDataRowKey( scope, key );
 
-        // determine column name based on K key to string
-        String columnName = key.toString();
+        // determine column name based on the generation and K key to string
+        String columnName = getColumnName( generation, key );
 
         final MutationBatch batch = keyspace.prepareMutationBatch();
         batch.withRow(SCOPED_CACHE, keyRowKey).deleteColumn(columnName);
@@ -235,23 +236,92 @@ public class ScopedCacheSerializationImpl<K,V> implements ScopedCacheSerializati
 
 
     @Override
-    public void invalidate(CacheScope scope) {
+    public long readGeneration( CacheScope scope ) {
+
+        Preconditions.checkNotNull( scope, "scope is required" );
+
+        try {
+            Column<String> result = keyspace.prepareQuery( SCOPED_CACHE ).getKey( getGenerationRowKey( scope ) )
+                .getColumn( GENERATION_COLUMN ).execute().getResult();
+
+            return result.getLongValue();
+        }
+        catch ( NotFoundException nfe ) {
+            //never been invalidated
+            return 0;
+        }
+        catch ( ConnectionException e ) {
+            throw new RuntimeException( "Unable to connect to cassandra", e );
+        }
+    }
+
+
+    @Override
+    public long invalidate(CacheScope scope) {
 
         Preconditions.checkNotNull(scope, "scope is required");
 
-        // determine bucketed row-key based application UUID
-        String rowKeyString = scope.getApplication().getUuid().toString();
-        final int bucket = BUCKET_LOCATOR.getCurrentBucket(rowKeyString);
-        final BucketScopedRowKey<String> keyRowKey =
-            BucketScopedRowKey.fromKey(scope.getApplication(), rowKeyString, bucket);
+        // a time uuid timestamp is unique and increasing, so no node can ever re-use an old generation
+        final long newGeneration = UUIDGenerator.newTimeUUID().timestamp();
 
         final MutationBatch batch = keyspace.prepareMutationBatch();
 
-        batch.withRow(SCOPED_CACHE, keyRowKey).delete();
+        // moving to the new generation is what invalidates the scope, the values under the old generation can no
+        // longer be read.  We still remove the data rows so they don't linger until the values expire.  All bucket
+        // rows go in the same batch, so the coordinator deletes them in parallel in a single round trip
+        batch.withRow( SCOPED_CACHE, getGenerationRowKey( scope ) ).putColumn( GENERATION_COLUMN, newGeneration );
+
+        for ( final BucketScopedRowKey<String> dataRowKey : getAllDataRowKeys( scope ) ) {
+            batch.withRow( SCOPED_CACHE, dataRowKey ).delete();
+        }
+
+        executeBatch(batch);
+
+        logger.debug("Invalidated scope {}, new generation is {}", scope.getApplication().getUuid(), newGeneration);
+
+        return newGeneration;
+    }
+
+
+    /**
+     * Get the data row key for the key in the scope.  The bucket is based on the key, so the values of a scope are
+     * spread across all buckets instead of building one wide row per application
+     */
+    private BucketScopedRowKey<String> getDataRowKey( final CacheScope scope, final K key ) {
+        final String rowKeyString = scope.getApplication().getUuid().toString();
+        final int bucket = BUCKET_LOCATOR.getCurrentBucket( key.toString() );
+
+        return BucketScopedRowKey.fromKey( scope.getApplication(), rowKeyString, bucket );
+    }
+
+
+    /**
+     * Get the data row keys of every bucket in the scope.  This includes the single row the values were written to
+     * before we bucketed by key, since that row was one of these buckets
+     */
+    private List<BucketScopedRowKey<String>> getAllDataRowKeys( final CacheScope scope ) {
+        final String rowKeyString = scope.getApplication().getUuid().toString();
+
+        final int[] buckets = new int[NUM_BUCKETS[NUM_BUCKETS.length - 1]];
+
+        for ( int i = 0; i < buckets.length; i++ ) {
+            buckets[i] = i;
+        }
+
+        return BucketScopedRowKey.fromRange( scope.getApplication(), rowKeyString, buckets );
+    }
+
+
+    /**
+     * Get the row key holding the scope's generation
+     */
+    private BucketScopedRowKey<String> getGenerationRowKey( final CacheScope scope ) {
+        return BucketScopedRowKey.fromKey( scope.getApplication(), GENERATION_ROW_KEY, 0 );
+    }
 
-        final OperationResult<Void> result = executeBatch(batch);
 
-        logger.debug("Invalidated scope {}", scope.getApplication().getUuid());
+    private String getColumnName( final long generation, final K key ) {
+        return generation + ":" + key.toString();
     }
 
 
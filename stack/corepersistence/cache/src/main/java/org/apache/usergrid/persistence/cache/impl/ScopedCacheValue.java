@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cache.impl;
+
+
+/**
+ * A de-serialized cache value along with its serialized form.  The near cache keeps the serialized form, so every
+ * read gets its own copy, and is bounded by its size.
+ */
+public class ScopedCacheValue<V> {
+
+    private final V value;
+    private final byte[] serialized;
+
+
+    public ScopedCacheValue( final V value, final byte[] serialized ) {
+        this.value = value;
+        this.serialized = serialized;
+    }
+
+
+    public V getValue() {
+        return value;
+    }
+
+
+    public byte[] getSerialized() {
+        return serialized;
+    }
+
+
+    public int getSerializedSize() {
+        return serialized.length;
+    }
+}
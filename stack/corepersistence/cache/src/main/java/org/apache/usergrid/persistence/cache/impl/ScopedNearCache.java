@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.persistence.cache.impl;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.usergrid.persistence.cache.CacheScope;
+import org.apache.usergrid.persistence.cache.ScopedCacheFig;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+
+import com.codahale.metrics.Meter;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+
+/**
+ * Node local tier in front of the cassandra backed scoped cache.  All scopes share one cache bounded by the
+ * serialized weight of the values.  Values are kept serialized, so callers each de-serialize their own copy and
+ * can't change what other callers read.  Every entry records the generation of its scope when it was cached, and we
+ * keep the last known generation of each scope, so moving a scope to a new generation invalidates only that scope in
+ * O(1).  Generations are re-read from cassandra at most once per refresh interval, which bounds how long an
+ * invalidation on another node takes to be seen here.
+ */
+@Singleton
+public class ScopedNearCache {
+
+    private final ScopedCacheFig scopedCacheFig;
+
+    private final Cache<NearCacheKey, NearCacheEntry> entries;
+
+    private final Cache<CacheScope, GenerationStamp> generations;
+
+    private final Meter hitMeter;
+    private final Meter missMeter;
+    private final Meter evictionMeter;
+    private final Meter generationReadMeter;
+
+
+    @Inject
+    public ScopedNearCache( final ScopedCacheFig scopedCacheFig, final MetricsFactory metricsFactory ) {
+        this.scopedCacheFig = scopedCacheFig;
+
+        this.hitMeter = metricsFactory.getMeter( ScopedNearCache.class, "hit" );
+        this.missMeter = metricsFactory.getMeter( ScopedNearCache.class, "miss" );
+        this.evictionMeter = metricsFactory.getMeter( ScopedNearCache.class, "eviction" );
+        this.generationReadMeter = metricsFactory.getMeter( ScopedNearCache.class, "generation.read" );
+
+        this.entries = CacheBuilder.newBuilder().maximumWeight( scopedCacheFig.getNearCacheMaxWeight() )
+            .weigher( ( NearCacheKey key, NearCacheEntry entry ) -> entry.weight )
+            .expireAfterWrite( scopedCacheFig.getNearCacheTimeout(), TimeUnit.MILLISECONDS )
+            .removalListener( ( RemovalNotification<NearCacheKey, NearCacheEntry> notification ) -> {
+                if ( notification.wasEvicted() ) {
+                    evictionMeter.mark();
+                }
+            } ).build();
+
+        //a generation older than the refresh interval is re-read anyway
+        this.generations = CacheBuilder.newBuilder().maximumSize( scopedCacheFig.getGenerationMaxScopes() )
+            .expireAfterWrite( scopedCacheFig.getGenerationRefreshInterval(), TimeUnit.MILLISECONDS ).build();
+    }
+
+
+    /**
+     * Get the serialized value cached for the key under the generation, or null if it's not present
+     */
+    public byte[] get( final CacheScope scope, final long generation, final Object key ) {
+
+        if ( !scopedCacheFig.getNearCacheEnabled() ) {
+            return null;
+        }
+
+        final NearCacheKey nearCacheKey = new NearCacheKey( scope, key );
+        final NearCacheEntry entry = entries.getIfPresent( nearCacheKey );
+
+        if ( entry == null ) {
+            missMeter.mark();
+            return null;
+        }
+
+        //cached under an old generation, or past the ttl of the value
+        if ( entry.generation != generation || entry.expiresAt < System.currentTimeMillis() ) {
+            entries.invalidate( nearCacheKey );
+            missMeter.mark();
+            return null;
+        }
+
+        hitMeter.mark();
+        return entry.serialized;
+    }
+
+
+    /**
+     * Cache the value under the generation.  If the ttl in seconds is not null, the entry won't outlive it
+     */
+    public void put( final CacheScope scope, final long generation, final Object key,
+                     final ScopedCacheValue<?> value, final Integer ttl ) {
+
+        if ( !scopedCacheFig.getNearCacheEnabled() ) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final long expiresAt = ttl == null ? Long.MAX_VALUE : now + TimeUnit.SECONDS.toMillis( ttl );
+
+        entries.put( new NearCacheKey( scope, key ),
+            new NearCacheEntry( value.getSerialized(), generation, expiresAt ) );
+    }
+
+
+    public void remove( final CacheScope scope, final Object key ) {
+        entries.invalidate( new NearCacheKey( scope, key ) );
+    }
+
+
+    /**
+     * Get the generation of the scope if we've seen it within the refresh interval, otherwise null.  Callers should
+     * read the generation from cassandra and {@link #setGeneration(CacheScope, long)} when this returns null
+     */
+    public Long getGeneration( final CacheScope scope ) {
+        final GenerationStamp stamp = generations.getIfPresent( scope );
+
+        if ( stamp == null
+            || System.currentTimeMillis() - stamp.readAt > scopedCacheFig.getGenerationRefreshInterval() ) {
+            generationReadMeter.mark();
+            return null;
+        }
+
+        return stamp.generation;
+    }
+
+
+    public void setGeneration( final CacheScope scope, final long generation ) {
+        generations.put( scope, new GenerationStamp( generation, System.currentTimeMillis() ) );
+    }
+
+
+    private static final class GenerationStamp {
+        private final long generation;
+        private final long readAt;
+
+
+        private GenerationStamp( final long generation, final long readAt ) {
+            this.generation = generation;
+            this.readAt = readAt;
+        }
+    }
+
+
+    private static final class NearCacheEntry {
+        private final byte[] serialized;
+        private final long generation;
+        private final long expiresAt;
+        private final int weight;
+
+
+        private NearCacheEntry( final byte[] serialized, final long generation, final long expiresAt ) {
+            this.serialized = serialized;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+            //never let an entry weigh 0, or we could hold an unbounded number of them
+            this.weight = Math.max( 1, serialized.length );
+        }
+    }
+
+
+    private static final class NearCacheKey {
+        private final CacheScope scope;
+        private final Object key;
+
+
+        private NearCacheKey( final CacheScope scope, final Object key ) {
+            this.scope = scope;
+            this.key = key;
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof NearCacheKey ) ) {
+                return false;
+            }
+
+            final NearCacheKey that = ( NearCacheKey ) o;
+
+            return scope.equals( that.scope ) && key.equals( that.key );
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode( scope, key );
+        }
+    }
+}
@@ -125,6 +125,88 @@ public class ScopedCacheTest {
     }
 
 
+    @Test
+    public void testReadsGetTheirOwnCopy() {
+
+        CacheScope scope = new CacheScope( new SimpleId( "application" ) );
+        ScopedCache<String, Map<String, Object>> cache = cf.getScopedCache(scope);
+
+        Map<String, Object> item = new HashMap<String, Object>() {{
+            put("field1", "value1");
+        }};
+        cache.put("item", item, 60);
+
+        // changing what was put or read doesn't change the cached value
+        item.put("field1", "changed");
+
+        Map<String, Object> retrievedItem = cache.get("item", typeRef);
+        assertEquals("value1", retrievedItem.get("field1"));
+
+        retrievedItem.put("field1", "changed");
+
+        assertEquals("value1", cache.get("item", typeRef).get("field1"));
+    }
+
+
+    @Test
+    public void testInvalidateOnlyAffectsScope() {
+
+        CacheScope scope1 = new CacheScope( new SimpleId( "application" ) );
+        ScopedCache<String, Map<String, Object>> cache1 = cf.getScopedCache(scope1);
+
+        CacheScope scope2 = new CacheScope( new SimpleId( "application" ) );
+        ScopedCache<String, Map<String, Object>> cache2 = cf.getScopedCache(scope2);
+
+        Map<String, Object> item = new HashMap<String, Object>() {{
+            put("field1", "value1");
+        }};
+        cache1.put("item", item, 60);
+        cache2.put("item", item, 60);
+
+        cache1.invalidate();
+
+        assertNull( cache1.get("item", typeRef) );
+
+        Map<String, Object> retrievedItem = cache2.get("item", typeRef);
+        assertNotNull( "other scopes should keep their items", retrievedItem );
+        assertEquals("value1", retrievedItem.get("field1"));
+
+        // values written after the invalidation are visible again
+        cache1.put("item", item, 60);
+        assertNotNull( cache1.get("item", typeRef) );
+    }
+
+
+    @Test
+    public void testInvalidateAllBuckets() {
+
+        CacheScope scope = new CacheScope( new SimpleId( "application" ) );
+        ScopedCache<String, Map<String, Object>> cache = cf.getScopedCache(scope);
+
+        // enough keys to land in every bucket
+        final int count = 100;
+
+        for ( int i = 0; i < count; i++ ) {
+            final String value = "value" + i;
+            cache.put( "item" + i, new HashMap<String, Object>() {{
+                put( "field1", value );
+            }}, 60 );
+        }
+
+        for ( int i = 0; i < count; i++ ) {
+            Map<String, Object> retrievedItem = cache.get( "item" + i, typeRef );
+            assertNotNull( "should get back item", retrievedItem );
+            assertEquals( "value" + i, retrievedItem.get( "field1" ) );
+        }
+
+        cache.invalidate();
+
+        for ( int i = 0; i < count; i++ ) {
+            assertNull( cache.get( "item" + i, typeRef ) );
+        }
+    }
+
+
     @Test
     public void testTimeout() {
 
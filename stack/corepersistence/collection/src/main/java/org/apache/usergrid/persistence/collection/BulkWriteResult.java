@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection;
+
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+
+/**
+ * The outcome of writing a batch of entities.  Each entity is either written or failed, the failure of one entity
+ * does not fail the others
+ */
+public class BulkWriteResult {
+
+    private final List<Entity> written;
+    private final Map<Id, Throwable> failures;
+
+
+    public BulkWriteResult( final List<Entity> written, final Map<Id, Throwable> failures ) {
+        this.written = Collections.unmodifiableList( written );
+        this.failures = Collections.unmodifiableMap( failures );
+    }
+
+
+    /**
+     * The entities that were written, with their new versions, in the order they were given
+     */
+    public List<Entity> getWritten() {
+        return written;
+    }
+
+
+    /**
+     * The cause of the failure of each entity that wasn't written, keyed by entity id.  A unique value violation
+     * is a WriteUniqueVerifyException, the same as for a single write
+     */
+    public Map<Id, Throwable> getFailures() {
+        return failures;
+    }
+
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+}
@@ -47,6 +47,19 @@ public interface EntityCollectionManager {
     Observable<Entity> write( Entity entity, String region );
 
 
+    /**
+     * Write a batch of entities in the entity collection.  Each stage of the write runs over the whole batch, so
+     * the log entries, data and unique values of many entities are written in a few round trips.  Every entity is
+     * written or fails on its own.
+     *
+     * @param entities The entities to write, each with a distinct id
+     * @param region The authoritative region for the entity types or null to use current region.
+     *
+     * @return the Observable with the written entities and the failure of each entity that wasn't written
+     */
+    Observable<BulkWriteResult> write( Collection<Entity> entities, String region );
+
+
     /**
      * @param entityId MarkCommit the entity as deleted.  Will not actually remove it from cassandra.  This operation will
      * also remove all unique properties for this entity
@@ -101,6 +114,16 @@ public interface EntityCollectionManager {
      */
     Observable<EntitySet> load( Collection<Id> entityIds );
 
+    /**
+     * @param entityIds The entityIds for loading a collection
+     * @param fieldSelector The fields to load
+     * Load all the entityIds into the observable entity set, with only the selected fields.  Cheaper than loading
+     * whole entities when only a few of their fields are needed
+     *
+     * @return An EntitySet with the latest data of every entity that could be located
+     */
+    Observable<EntitySet> load( Collection<Id> entityIds, FieldSelector fieldSelector );
+
     /**
      * Get all versions of the log entry, from min to max
      * @param entityId
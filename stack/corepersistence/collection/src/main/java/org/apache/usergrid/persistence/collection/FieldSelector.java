@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection;
+
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.Field;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * The fields to load from an entity.  Compiled once from dotted paths such as "a.b.c", then used to decide which
+ * fields of each loaded entity to keep, so deserializers can skip everything else.  Selecting "a" keeps the whole of
+ * "a", selecting "a.b" keeps only "b" within "a".  Field names are case insensitive, the same as in an entity.
+ *
+ * A field that isn't an object is kept whole even if the path goes deeper, and an object with none of the nested
+ * fields selected is dropped.  A top level field whose name contains a dot is selected by the dotted path as well.
+ */
+public final class FieldSelector {
+
+    /**
+     * Selects a whole field
+     */
+    private static final FieldSelector ALL = new FieldSelector();
+
+    /**
+     * The selected fields at this level.  A field mapped to ALL is kept whole
+     */
+    private final Map<String, FieldSelector> children = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+
+
+    private FieldSelector() {
+    }
+
+
+    /**
+     * Compile the selector for the paths
+     *
+     * @param paths The dotted paths of the fields to select
+     */
+    public static FieldSelector compile( final Collection<String> paths ) {
+        Preconditions.checkNotNull( paths, "paths are required" );
+
+        final FieldSelector root = new FieldSelector();
+
+        for ( final String path : paths ) {
+            //a top level field can have a dot in its name
+            if ( path.indexOf( '.' ) > 0 ) {
+                root.children.put( path, ALL );
+            }
+
+            root.add( path.split( "\\." ), 0 );
+        }
+
+        return root;
+    }
+
+
+    private void add( final String[] parts, final int index ) {
+        final String name = parts[index];
+
+        final FieldSelector existing = children.get( name );
+
+        //already selected whole
+        if ( existing == ALL ) {
+            return;
+        }
+
+        if ( index == parts.length - 1 ) {
+            children.put( name, ALL );
+            return;
+        }
+
+        final FieldSelector child = existing != null ? existing : new FieldSelector();
+        children.put( name, child );
+        child.add( parts, index + 1 );
+    }
+
+
+    /**
+     * @return True if the field at this level is selected, in whole or in part
+     */
+    public boolean isSelected( final String name ) {
+        return children.containsKey( name );
+    }
+
+
+    /**
+     * Remove every field of the map that isn't selected.  Values that are maps are pruned with the nested selector
+     */
+    @SuppressWarnings( "unchecked" )
+    public void prune( final Map<String, Object> map ) {
+        final Iterator<Map.Entry<String, Object>> entries = map.entrySet().iterator();
+
+        while ( entries.hasNext() ) {
+            final Map.Entry<String, Object> entry = entries.next();
+            final FieldSelector child = children.get( entry.getKey() );
+
+            if ( child == null ) {
+                entries.remove();
+            }
+            else if ( child != ALL && entry.getValue() instanceof Map ) {
+                final Map<String, Object> nested = ( Map<String, Object> ) entry.getValue();
+                child.prune( nested );
+
+                //none of the nested fields we want are there
+                if ( nested.isEmpty() ) {
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Remove every field that isn't selected from each entity of the set.  Used when the entities were loaded in full
+     */
+    public void prune( final EntitySet entitySet ) {
+        for ( final MvccEntity entity : entitySet.getEntities() ) {
+            if ( entity.getEntity().isPresent() ) {
+                prune( entity.getEntity().get() );
+            }
+        }
+    }
+
+
+    /**
+     * Remove every field of the entity that isn't selected
+     */
+    public void prune( final EntityObject entity ) {
+        final Iterator<Map.Entry<String, Field>> fields = entity.getFieldMap().entrySet().iterator();
+
+        while ( fields.hasNext() ) {
+            final Map.Entry<String, Field> entry = fields.next();
+            final FieldSelector child = children.get( entry.getKey() );
+
+            if ( child == null ) {
+                fields.remove();
+            }
+            else if ( child != ALL && entry.getValue() instanceof EntityObjectField ) {
+                final EntityObject nested = ( ( EntityObjectField ) entry.getValue() ).getValue();
+                child.prune( nested );
+
+                if ( nested.getFieldMap().isEmpty() ) {
+                    fields.remove();
+                }
+            }
+        }
+    }
+}
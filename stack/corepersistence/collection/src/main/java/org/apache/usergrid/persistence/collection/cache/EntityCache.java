@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.cache;
+
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV3Impl.EntityWrapper;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.EntityMap;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import com.codahale.metrics.Meter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.uuid.UUIDComparator;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+
+/**
+ * Node local cache of the latest version of entities, keyed by the application and entity id.  Entities are stored
+ * smile encoded to keep them small on the heap, and each hit decodes a new copy, so callers can't change what's
+ * cached.
+ *
+ * Every entry has the version it was read or written at.  A write, mark or delete replaces the entry with an empty one
+ * at its version, and a read that started before the write can't replace it with the older version it read.  Writes
+ * on other nodes are seen once the entry times out.
+ */
+@Singleton
+public class EntityCache {
+
+    private static final Logger logger = LoggerFactory.getLogger( EntityCache.class );
+
+    private final boolean enabled;
+
+    private final Cache<Key, CachedEntity> cache;
+
+    private final ObjectMapper mapper;
+
+    private final Meter hitMeter;
+    private final Meter missMeter;
+
+
+    @Inject
+    public EntityCache( final EntityCacheFig entityCacheFig, final MetricsFactory metricsFactory ) {
+
+        final int size = entityCacheFig.getCacheSize();
+        final int timeout = entityCacheFig.getCacheTimeout();
+
+        this.enabled = size > 0 && timeout > 0;
+
+        this.cache = CacheBuilder.newBuilder().maximumSize( Math.max( 0, size ) )
+                                 .expireAfterWrite( Math.max( 0, timeout ), TimeUnit.MILLISECONDS ).build();
+
+        //the same encoding as the V4 serialization, without the framing and compression
+        final SmileFactory smileFactory = new SmileFactory();
+        smileFactory.configure( SmileGenerator.Feature.CHECK_SHARED_NAMES, true );
+        smileFactory.configure( SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true );
+
+        this.mapper = new ObjectMapper( smileFactory );
+        this.mapper.enableDefaultTypingAsProperty( ObjectMapper.DefaultTyping.JAVA_LANG_OBJECT, "@class" );
+
+        this.hitMeter = metricsFactory.getMeter( EntityCache.class, "entity.cache.hit" );
+        this.missMeter = metricsFactory.getMeter( EntityCache.class, "entity.cache.miss" );
+    }
+
+
+    /**
+     * Get the cached entities of the ids.  Ids that aren't cached aren't in the result
+     */
+    public Map<Id, MvccEntity> getAll( final ApplicationScope applicationScope, final Collection<Id> entityIds ) {
+
+        final Map<Id, MvccEntity> found = new HashMap<>( entityIds.size() );
+
+        if ( !enabled ) {
+            return found;
+        }
+
+        final Id applicationId = applicationScope.getApplication();
+
+        for ( final Id entityId : entityIds ) {
+            final CachedEntity cached = cache.getIfPresent( new Key( applicationId, entityId ) );
+
+            final MvccEntity entity = cached == null ? null : decode( entityId, cached );
+
+            if ( entity == null ) {
+                missMeter.mark();
+                continue;
+            }
+
+            hitMeter.mark();
+            found.put( entityId, entity );
+        }
+
+        return found;
+    }
+
+
+    /**
+     * Cache an entity loaded from cassandra, unless a newer version was written or cached since it was read
+     */
+    public void put( final ApplicationScope applicationScope, final MvccEntity entity ) {
+        if ( !enabled ) {
+            return;
+        }
+
+        final Optional<EntityMap> entityMap = EntityMap.fromEntity( entity.getEntity() );
+
+        final byte[] data;
+
+        try {
+            data = mapper.writeValueAsBytes(
+                new EntityWrapper( entity.getId(), entity.getVersion(), entity.getStatus(), entityMap.orNull(),
+                    entity.getSize() ) );
+        }
+        catch ( IOException e ) {
+            //not being able to cache it isn't an error for the read
+            logger.warn( "Unable to cache entity {}", entity.getId(), e );
+            return;
+        }
+
+        replaceIfNewer( new Key( applicationScope.getApplication(), entity.getId() ),
+            new CachedEntity( entity.getVersion(), data, entity.getSize() ) );
+    }
+
+
+    /**
+     * Invalidate the entity after a version of it was written, marked or deleted.  The version is dropped if it's
+     * cached, and versions older than it won't be cached
+     */
+    public void invalidate( final ApplicationScope applicationScope, final Id entityId, final UUID version ) {
+        if ( !enabled ) {
+            return;
+        }
+
+        replaceIfNewer( new Key( applicationScope.getApplication(), entityId ),
+            new CachedEntity( version, null, 0 ) );
+    }
+
+
+    private void replaceIfNewer( final Key key, final CachedEntity entity ) {
+        final ConcurrentMap<Key, CachedEntity> entries = cache.asMap();
+
+        while ( true ) {
+            final CachedEntity existing = entries.putIfAbsent( key, entity );
+
+            if ( existing == null ) {
+                return;
+            }
+
+            final int compare = UUIDComparator.staticCompare( existing.version, entity.version );
+
+            //what we have is newer, or the same version in the same state.  A read fills in an invalidated entry and
+            //an invalidate drops a read one
+            if ( compare > 0 || ( compare == 0 && ( existing.data == null ) == ( entity.data == null ) ) ) {
+                return;
+            }
+
+            if ( entries.replace( key, existing, entity ) ) {
+                return;
+            }
+        }
+    }
+
+
+    private MvccEntity decode( final Id entityId, final CachedEntity cached ) {
+
+        //invalidated, the version has to be read again
+        if ( cached.data == null ) {
+            return null;
+        }
+
+        final EntityWrapper wrapper;
+
+        try {
+            wrapper = mapper.readValue( cached.data, EntityWrapper.class );
+        }
+        catch ( IOException e ) {
+            logger.warn( "Unable to read cached entity {}", entityId, e );
+            return null;
+        }
+
+        final MvccEntity.Status status =
+            wrapper.getEntityMap() == null ? MvccEntity.Status.DELETED : MvccEntity.Status.COMPLETE;
+
+        wrapper.setStatus( status );
+
+        //the size isn't encoded, the entity gets it from the entry
+        final Optional<Entity> entity = wrapper.getOptionalEntity();
+
+        if ( entity.isPresent() ) {
+            entity.get().setSize( cached.size );
+        }
+
+        return new MvccEntityImpl( entityId, cached.version, status, entity, cached.size );
+    }
+
+
+    private static final class CachedEntity {
+        private final UUID version;
+
+        /**
+         * The encoded entity, or null when the version was invalidated
+         */
+        private final byte[] data;
+        private final long size;
+
+
+        private CachedEntity( final UUID version, final byte[] data, final long size ) {
+            this.version = version;
+            this.data = data;
+            this.size = size;
+        }
+    }
+
+
+    private static final class Key {
+        private final Id applicationId;
+        private final Id entityId;
+
+
+        private Key( final Id applicationId, final Id entityId ) {
+            this.applicationId = applicationId;
+            this.entityId = entityId;
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof Key ) ) {
+                return false;
+            }
+
+            final Key key = ( Key ) o;
+
+            return applicationId.equals( key.applicationId ) && entityId.equals( key.entityId );
+        }
+
+
+        @Override
+        public int hashCode() {
+            return 31 * applicationId.hashCode() + entityId.hashCode();
+        }
+    }
+}
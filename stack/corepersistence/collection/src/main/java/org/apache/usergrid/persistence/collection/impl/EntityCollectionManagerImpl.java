@@ -33,6 +33,7 @@ import com.netflix.astyanax.model.CqlResult;
 import com.netflix.astyanax.serializers.StringSerializer;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
 import org.apache.usergrid.persistence.collection.*;
+import org.apache.usergrid.persistence.collection.cache.EntityCache;
 import org.apache.usergrid.persistence.collection.mvcc.stage.CollectionIoEvent;
 import org.apache.usergrid.persistence.collection.mvcc.stage.delete.MarkCommit;
 import org.apache.usergrid.persistence.collection.mvcc.stage.delete.MarkStart;
@@ -40,6 +41,7 @@ import org.apache.usergrid.persistence.collection.mvcc.stage.delete.UniqueCleanu
 import org.apache.usergrid.persistence.collection.mvcc.stage.delete.VersionCompact;
 import org.apache.usergrid.persistence.collection.mvcc.stage.write.*;
 import org.apache.usergrid.persistence.collection.serialization.*;
+import org.apache.usergrid.persistence.collection.serialization.impl.EntitySetImpl;
 import org.apache.usergrid.persistence.collection.serialization.impl.LogEntryIterator;
 import org.apache.usergrid.persistence.collection.serialization.impl.MinMaxLogEntryIterator;
 import org.apache.usergrid.persistence.collection.serialization.impl.MutableFieldSet;
@@ -62,6 +64,7 @@ import rx.Observable;
 import rx.Subscriber;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -92,10 +95,12 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
     private final SerializationFig serializationFig;
     private final CassandraConfig cassandraConfig;
+    private final EntityCache entityCache;
 
 
     private final Keyspace keyspace;
     private final Timer writeTimer;
+    private final Timer bulkWriteTimer;
     private final Timer deleteTimer;
     private final Timer fieldIdTimer;
     private final Timer fieldEntityTimer;
@@ -132,6 +137,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         final ActorSystemManager    actorSystemManager,
         final UniqueValuesService   uniqueValuesService,
         final CassandraConfig       cassandraConfig,
+        final EntityCache           entityCache,
         @Assisted final ApplicationScope applicationScope ) {
 
         this.uniqueValueSerializationStrategy = uniqueValueSerializationStrategy;
@@ -162,6 +168,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         this.applicationScope = applicationScope;
         this.mvccLogEntrySerializationStrategy = mvccLogEntrySerializationStrategy;
         this.writeTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.write");
+        this.bulkWriteTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.write.bulk");
         this.deleteTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.delete");
         this.fieldIdTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.fieldId");
         this.fieldEntityTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.fieldEntity");
@@ -169,6 +176,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         this.getLatestTimer = metricsFactory.getTimer(EntityCollectionManagerImpl.class, "base.latest");
 
         this.cassandraConfig = cassandraConfig;
+        this.entityCache = entityCache;
     }
 
 
@@ -189,7 +197,9 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         Observable<CollectionIoEvent<MvccEntity>> observable =  stageRunner( writeData, writeStart );
 
 
-        final Observable<Entity> write = observable.map( writeCommit ).map(ioEvent -> {
+        final Observable<Entity> write = observable.flatMap( writeCommit::commit ).map(ioEvent -> {
+
+            invalidate( ioEvent );
 
             // fire this in the background so we don't block writes
             Observable.just( ioEvent ).compose( uniqueCleanup )
@@ -203,6 +213,89 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
     }
 
 
+    @Override
+    public Observable<BulkWriteResult> write( final Collection<Entity> entities, final String region ) {
+
+        Preconditions.checkNotNull( entities, "Entities are required in the new stage of the mvcc write" );
+
+        final Set<Id> entityIds = new HashSet<>( entities.size() );
+
+        for ( final Entity entity : entities ) {
+            Preconditions.checkNotNull( entity, "Entity is required in the new stage of the mvcc write" );
+            ValidationUtils.verifyIdentity( entity.getId() );
+            Preconditions.checkArgument( entityIds.add( entity.getId() ),
+                "Entity " + entity.getId() + " is in the batch more than once" );
+        }
+
+        final Observable<BulkWriteResult> write =
+            Observable.defer( () -> Observable.just( writeAll( entities, region ) ) );
+
+        return ObservableTimer.time( write, bulkWriteTimer );
+    }
+
+
+    /**
+     * Run each stage of the write over all of the entities, dropping the ones that fail as we go
+     */
+    private BulkWriteResult writeAll( final Collection<Entity> entities, final String region ) {
+
+        // the akka stages report failures from other threads
+        final Map<Id, Throwable> failures = new ConcurrentHashMap<>();
+
+        final MutationBatcher batcher =
+            new MutationBatcher( keyspace, serializationFig.getBulkWriteMaxRows(), failures );
+
+        final List<CollectionIoEvent<MvccEntity>> ioEvents = new ArrayList<>( entities.size() );
+
+        for ( final Entity entity : entities ) {
+            try {
+                ioEvents.add(
+                    writeStart.start( new CollectionIoEvent<>( applicationScope, entity, region ), batcher ) );
+            }
+            catch ( RuntimeException e ) {
+                failures.put( entity.getId(), e );
+            }
+        }
+
+        batcher.flush();
+
+        for ( final CollectionIoEvent<MvccEntity> ioEvent : ioEvents ) {
+            try {
+                writeOptimisticVerify.call( ioEvent );
+            }
+            catch ( RuntimeException e ) {
+                failures.put( ioEvent.getEvent().getId(), e );
+            }
+        }
+
+        ioEvents.removeIf( ioEvent -> failures.containsKey( ioEvent.getEvent().getId() ) );
+
+        writeVerifyUnique.verifyAll( ioEvents, batcher, failures );
+
+        writeCommit.commitAll( ioEvents, batcher, failures );
+
+        // the entities that failed in the commit may still have been written
+        for ( final CollectionIoEvent<MvccEntity> ioEvent : ioEvents ) {
+            invalidate( ioEvent );
+        }
+
+        // fire this in the background so we don't block writes
+        Observable.from( ioEvents ).compose( uniqueCleanup )
+            .subscribeOn( rxTaskScheduler.getAsyncIOScheduler() ).subscribe();
+
+        final List<Entity> written = new ArrayList<>( ioEvents.size() );
+        for ( final CollectionIoEvent<MvccEntity> ioEvent : ioEvents ) {
+            written.add( ioEvent.getEvent().getEntity().get() );
+        }
+
+        if ( !failures.isEmpty() ) {
+            logger.debug( "Bulk write of {} entities had {} failures", entities.size(), failures.size() );
+        }
+
+        return new BulkWriteResult( written, failures );
+    }
+
+
     @Override
     public Observable<Id> mark(final Id entityId, String region) {
 
@@ -211,7 +304,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         Preconditions.checkNotNull( entityId.getType(), "Entity type is required in this stage" );
 
         Observable<Id> o = Observable.just( new CollectionIoEvent<>( applicationScope, entityId, region ) )
-            .map( markStart ).doOnNext( markCommit ).compose( uniqueCleanup ).map(
+            .map( markStart ).doOnNext( markCommit ).doOnNext( this::invalidate ).compose( uniqueCleanup ).map(
                 entityEvent -> entityEvent.getEvent().getId() );
 
         return ObservableTimer.time( o, deleteTimer );
@@ -242,6 +335,12 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
     @Override
     public Observable<EntitySet> load( final Collection<Id> entityIds ) {
+        return load( entityIds, null );
+    }
+
+
+    @Override
+    public Observable<EntitySet> load( final Collection<Id> entityIds, final FieldSelector fieldSelector ) {
 
         Preconditions.checkNotNull( entityIds, "entityIds cannot be null" );
 
@@ -251,8 +350,10 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
             @Override
             public void call( final Subscriber<? super EntitySet> subscriber ) {
                 try {
-                    final EntitySet results =
-                        entitySerializationStrategy.load( applicationScope, entityIds, UUIDGenerator.newTimeUUID() );
+                    final EntitySet results = fieldSelector == null
+                        ? loadCached( entityIds )
+                        : entitySerializationStrategy.load( applicationScope, entityIds, UUIDGenerator.newTimeUUID(),
+                            fieldSelector );
 
                     subscriber.onNext( results );
                     subscriber.onCompleted();
@@ -268,6 +369,57 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
     }
 
 
+    /**
+     * Load the entities from the cache, and the ones that aren't cached from cassandra
+     */
+    private EntitySet loadCached( final Collection<Id> entityIds ) {
+
+        final Map<Id, MvccEntity> cached = entityCache.getAll( applicationScope, entityIds );
+
+        if ( cached.size() == entityIds.size() ) {
+            final EntitySetImpl results = new EntitySetImpl( cached.size() );
+            cached.values().forEach( results::addEntity );
+            return results;
+        }
+
+        final List<Id> missing = new ArrayList<>( entityIds.size() - cached.size() );
+
+        for ( final Id entityId : entityIds ) {
+            if ( !cached.containsKey( entityId ) ) {
+                missing.add( entityId );
+            }
+        }
+
+        final EntitySet loaded =
+            entitySerializationStrategy.load( applicationScope, missing, UUIDGenerator.newTimeUUID() );
+
+        if ( cached.isEmpty() ) {
+            loaded.getEntities().forEach( entity -> entityCache.put( applicationScope, entity ) );
+            return loaded;
+        }
+
+        final EntitySetImpl results = new EntitySetImpl( entityIds.size() );
+
+        cached.values().forEach( results::addEntity );
+
+        for ( final MvccEntity entity : loaded.getEntities() ) {
+            entityCache.put( applicationScope, entity );
+            results.addEntity( entity );
+        }
+
+        return results;
+    }
+
+
+    /**
+     * Invalidate the cached entity after a version of it was committed
+     */
+    private void invalidate( final CollectionIoEvent<MvccEntity> ioEvent ) {
+        final MvccEntity entity = ioEvent.getEvent();
+        entityCache.invalidate( applicationScope, entity.getId(), entity.getVersion() );
+    }
+
+
     @Override
     public Observable<MvccLogEntry> getVersions( final Id entityId ) {
         ValidationUtils.verifyIdentity( entityId );
@@ -300,8 +452,10 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
         Preconditions.checkNotNull( entries, "entries must not be null" );
 
 
+        //a deleted version can't be served from the cache
         return Observable.from( entries ).map( logEntry -> new CollectionIoEvent<>( applicationScope, logEntry ) )
-            .compose( versionCompact ).map( event -> event.getEvent() );
+            .compose( versionCompact ).map( event -> event.getEvent() ).doOnNext(
+                logEntry -> entityCache.invalidate( applicationScope, logEntry.getEntityId(), logEntry.getVersion() ) );
     }
 
 
@@ -444,7 +598,7 @@ public class EntityCollectionManagerImpl implements EntityCollectionManager {
 
             Observable<CollectionIoEvent<MvccEntity>> uniqueObservable =
                 Observable.just( mvccEntityCollectionIoEvent ).subscribeOn( rxTaskScheduler.getAsyncIOScheduler() )
-                    .doOnNext( writeVerifyUnique );
+                    .flatMap( writeVerifyUnique::verify );
 
 
             // optimistic verification
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.mvcc.stage.write;
+
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+
+
+/**
+ * Merges the mutations of many entities into batches of bounded size, executing each batch once it is full.  If a
+ * batch fails, every entity with mutations in it is added to the failures.
+ */
+public class MutationBatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger( MutationBatcher.class );
+
+    private final Keyspace keyspace;
+    private final int maxRows;
+    private final Map<Id, Throwable> failures;
+
+    private final Set<Id> pending = new HashSet<>();
+    private MutationBatch batch;
+
+
+    /**
+     * @param keyspace The keyspace to create batches in
+     * @param maxRows The number of rows at which a batch is executed
+     * @param failures The failures of the bulk write, keyed by entity id
+     */
+    public MutationBatcher( final Keyspace keyspace, final int maxRows, final Map<Id, Throwable> failures ) {
+        this.keyspace = keyspace;
+        this.maxRows = maxRows;
+        this.failures = failures;
+    }
+
+
+    /**
+     * Add mutations of the entity, executing the batch if it is full
+     */
+    public void add( final Id entityId, final MutationBatch mutations ) {
+        if ( batch == null ) {
+            batch = keyspace.prepareMutationBatch();
+        }
+
+        batch.mergeShallow( mutations );
+        pending.add( entityId );
+
+        if ( batch.getRowCount() >= maxRows ) {
+            flush();
+        }
+    }
+
+
+    /**
+     * Execute the mutations added since the last flush
+     */
+    public void flush() {
+        if ( batch == null ) {
+            return;
+        }
+
+        try {
+            batch.execute();
+        }
+        catch ( ConnectionException e ) {
+            logger.error( "Failed to execute bulk write of {} entities", pending.size(), e );
+
+            for ( final Id entityId : pending ) {
+                failures.put( entityId, e );
+            }
+        }
+        finally {
+            batch = null;
+            pending.clear();
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.usergrid.persistence.collection.mvcc.stage.write;
 
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -55,6 +56,7 @@ import com.google.inject.Singleton;
 import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
+import rx.Observable;
 import rx.functions.Func1;
 
 
@@ -102,11 +104,94 @@ public class WriteCommit implements Func1<CollectionIoEvent<MvccEntity>, Collect
 
     @Override
     public CollectionIoEvent<MvccEntity> call( final CollectionIoEvent<MvccEntity> ioEvent ) {
-        return confirmUniqueFields( ioEvent );
+        return commit( ioEvent ).toBlocking().last();
     }
 
 
-    private CollectionIoEvent<MvccEntity> confirmUniqueFields(CollectionIoEvent<MvccEntity> ioEvent) {
+    /**
+     * Commit the entity.  When unique values are confirmed through the actor system the confirmation is made without
+     * blocking, and the entity is written once it completes.
+     */
+    public Observable<CollectionIoEvent<MvccEntity>> commit( final CollectionIoEvent<MvccEntity> ioEvent ) {
+        final MvccEntity mvccEntity = ioEvent.getEvent();
+        final UUID version = mvccEntity.getVersion();
+        final ApplicationScope applicationScope = ioEvent.getEntityCollection();
+
+        final MutationBatch logMutation = prepare( ioEvent );
+
+        // akkaFig may be null when this is called from JUnit tests
+        if ( actorSystemFig != null && actorSystemFig.getEnabled() ) {
+            return confirmUniqueFieldsAkka( mvccEntity, version, applicationScope, getRegion( ioEvent ) )
+                .map( confirmed -> execute( ioEvent, logMutation ) );
+        }
+
+        confirmUniqueFields( mvccEntity, version, applicationScope, logMutation );
+
+        return Observable.just( execute( ioEvent, logMutation ) );
+    }
+
+
+    /**
+     * Commit all the entities of a bulk write.  The log entries, entity data and unique values of every entity are
+     * merged into the batcher instead of executed one entity at a time.  Entities that fail are added to the failures
+     * and removed from ioEvents.
+     *
+     * @param ioEvents The entities being written
+     * @param batcher The batcher to write the entities with
+     * @param failures The failures of the bulk write, keyed by entity id
+     */
+    public void commitAll( final List<CollectionIoEvent<MvccEntity>> ioEvents, final MutationBatcher batcher,
+                           final Map<Id, Throwable> failures ) {
+
+        final boolean akkaEnabled = actorSystemFig != null && actorSystemFig.getEnabled();
+
+        // confirm the unique values of every entity at once, the actors answer in parallel
+        if ( akkaEnabled ) {
+            Observable.from( ioEvents ).flatMap( ioEvent -> Observable.defer( () -> {
+                final MvccEntity mvccEntity = ioEvent.getEvent();
+                return confirmUniqueFieldsAkka( mvccEntity, mvccEntity.getVersion(), ioEvent.getEntityCollection(),
+                    getRegion( ioEvent ) );
+            } ).onErrorResumeNext( t -> {
+                failures.put( ioEvent.getEvent().getId(), t );
+                return Observable.empty();
+            } ) ).toBlocking().lastOrDefault( null );
+        }
+
+        for ( final CollectionIoEvent<MvccEntity> ioEvent : ioEvents ) {
+            final MvccEntity mvccEntity = ioEvent.getEvent();
+
+            if ( failures.containsKey( mvccEntity.getId() ) ) {
+                continue;
+            }
+
+            try {
+                final MutationBatch mutations = prepare( ioEvent );
+
+                if ( !akkaEnabled ) {
+                    // re-write the unique values but this time with no TTL
+                    for ( Field field : EntityUtils.getUniqueFields( mvccEntity.getEntity().get() ) ) {
+                        UniqueValue written = new UniqueValueImpl( field, mvccEntity.getId(), mvccEntity.getVersion() );
+                        mutations.mergeShallow( uniqueValueStrat.write( ioEvent.getEntityCollection(), written ) );
+                    }
+                }
+
+                batcher.add( mvccEntity.getId(), mutations );
+            }
+            catch ( RuntimeException e ) {
+                failures.put( mvccEntity.getId(), e );
+            }
+        }
+
+        batcher.flush();
+
+        ioEvents.removeIf( ioEvent -> failures.containsKey( ioEvent.getEvent().getId() ) );
+    }
+
+
+    /**
+     * Set the version into the entity and create the mutations of its log entry and data
+     */
+    private MutationBatch prepare( final CollectionIoEvent<MvccEntity> ioEvent ) {
         final MvccEntity mvccEntity = ioEvent.getEvent();
         MvccValidationUtils.verifyMvccEntityWithEntity( mvccEntity );
 
@@ -133,26 +218,31 @@ public class WriteCommit implements Func1<CollectionIoEvent<MvccEntity>, Collect
         // merge the 2 into 1 mutation
         logMutation.mergeShallow( entityMutation );
 
-        // akkaFig may be null when this is called from JUnit tests
-        if ( actorSystemFig != null && actorSystemFig.getEnabled() ) {
-            String region = ioEvent.getRegion();
-            if ( region == null ) {
-                region = uniqueValuesFig.getAuthoritativeRegion();
-            }
-            if ( region == null ) {
-                region = actorSystemFig.getRegionLocal();
-            }
-            confirmUniqueFieldsAkka( mvccEntity, version, applicationScope, region );
-        } else {
-            confirmUniqueFields( mvccEntity, version, applicationScope, logMutation );
+        return logMutation;
+    }
+
+
+    private String getRegion( final CollectionIoEvent<MvccEntity> ioEvent ) {
+        String region = ioEvent.getRegion();
+        if ( region == null ) {
+            region = uniqueValuesFig.getAuthoritativeRegion();
+        }
+        if ( region == null ) {
+            region = actorSystemFig.getRegionLocal();
         }
+        return region;
+    }
+
+
+    private CollectionIoEvent<MvccEntity> execute(
+        final CollectionIoEvent<MvccEntity> ioEvent, final MutationBatch logMutation ) {
 
         try {
             logMutation.execute();
         }
         catch ( ConnectionException e ) {
             logger.error( "Failed to execute write asynchronously ", e );
-            throw new WriteCommitException( mvccEntity, applicationScope,
+            throw new WriteCommitException( ioEvent.getEvent(), ioEvent.getEntityCollection(),
                 "Failed to execute write asynchronously ", e );
         }
 
@@ -189,20 +279,21 @@ public class WriteCommit implements Func1<CollectionIoEvent<MvccEntity>, Collect
     }
 
 
-    private void confirmUniqueFieldsAkka(
+    private Observable<Entity> confirmUniqueFieldsAkka(
         MvccEntity mvccEntity, UUID version, ApplicationScope scope, String region ) {
 
         final Entity entity = mvccEntity.getEntity().get();
 
-        try {
-            akkaUvService.confirmUniqueValues( scope, entity, version, region );
-
-        } catch (UniqueValueException e) {
+        return akkaUvService.confirmUniqueValuesAsync( scope, entity, version, region ).onErrorResumeNext( t -> {
+            if ( t instanceof UniqueValueException ) {
+                UniqueValueException e = ( UniqueValueException ) t;
 
-            Map<String, Field> violations = new HashMap<>();
-            violations.put( e.getField().getName(), e.getField() );
+                Map<String, Field> violations = new HashMap<>();
+                violations.put( e.getField().getName(), e.getField() );
 
-            throw new WriteUniqueVerifyException( mvccEntity, scope, violations  );
-        }
+                return Observable.error( new WriteUniqueVerifyException( mvccEntity, scope, violations ) );
+            }
+            return Observable.error( t );
+        } );
     }
 }
@@ -24,6 +24,7 @@ import com.google.inject.Singleton;
 import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
+import rx.functions.Action2;
 import rx.functions.Func1;
 
 import static org.apache.usergrid.persistence.core.util.ValidationUtils.verifyEntityWrite;
@@ -56,37 +57,57 @@ public class WriteStart implements Func1<CollectionIoEvent<Entity>, CollectionIo
     @Override
     public CollectionIoEvent<MvccEntity> call( final CollectionIoEvent<Entity> ioEvent ) {
 
-            verifyEntityWrite( ioEvent.getEvent() );
+        return start( ioEvent, ( nextStage, write ) -> {
+            try {
+                write.execute();
+            }
+            catch ( ConnectionException | NullPointerException e ) {
+                logger.error( "Failed to execute write ", e );
+                throw new WriteStartException( nextStage, ioEvent.getEntityCollection(),
+                    "Failed to execute write ", e );
+            }
+        } );
+    }
 
-            final Entity entity = ioEvent.getEvent();
-            final ApplicationScope applicationScope = ioEvent.getEntityCollection();
 
-            final Id entityId = entity.getId();
+    /**
+     * Start the write of the entity as part of a bulk write.  The log entry of an update is added to the batcher
+     * rather than executed, so the writes of many entities can be started in a few round trips
+     */
+    public CollectionIoEvent<MvccEntity> start( final CollectionIoEvent<Entity> ioEvent,
+                                                final MutationBatcher batcher ) {
 
-            final UUID newVersion = UUIDGenerator.newTimeUUID();
+        return start( ioEvent, ( nextStage, write ) -> batcher.add( nextStage.getId(), write ) );
+    }
 
-            final MvccLogEntry startEntry = new MvccLogEntryImpl( entityId, newVersion,
-                    Stage.ACTIVE, MvccLogEntry.State.COMPLETE);
 
-            MutationBatch write = logStrategy.write( applicationScope, startEntry );
+    /**
+     * Create the new version of the entity, handing the log entry of an update to the writer
+     */
+    private CollectionIoEvent<MvccEntity> start( final CollectionIoEvent<Entity> ioEvent,
+                                                 final Action2<MvccEntity, MutationBatch> logWriter ) {
 
-            final MvccEntityImpl nextStage = new MvccEntityImpl( entityId, newVersion, MvccEntity.Status.COMPLETE, entity );
-            if(ioEvent.getEvent().hasVersion()) {
-                try {
-                    write.execute();
-                } catch (ConnectionException e) {
-                    logger.error("Failed to execute write ", e);
-                    throw new WriteStartException(nextStage, applicationScope,
-                        "Failed to execute write ", e);
-                } catch (NullPointerException e) {
-                    logger.error("Failed to execute write ", e);
-                    throw new WriteStartException(nextStage, applicationScope,
-                        "Failed to execute write", e);
-                }
-            }
+        verifyEntityWrite( ioEvent.getEvent() );
+
+        final Entity entity = ioEvent.getEvent();
+        final ApplicationScope applicationScope = ioEvent.getEntityCollection();
+
+        final Id entityId = entity.getId();
+
+        final UUID newVersion = UUIDGenerator.newTimeUUID();
+
+        //create the mvcc entity for the next stage
+        final MvccEntityImpl nextStage = new MvccEntityImpl( entityId, newVersion, MvccEntity.Status.COMPLETE, entity );
+
+        final MvccLogEntry startEntry = new MvccLogEntryImpl( entityId, newVersion,
+                Stage.ACTIVE, MvccLogEntry.State.COMPLETE);
+
+        final MutationBatch write = logStrategy.write( applicationScope, startEntry );
 
-            //create the mvcc entity for the next stage
+        if ( entity.hasVersion() ) {
+            logWriter.call( nextStage, write );
+        }
 
-            return new CollectionIoEvent<>( applicationScope, nextStage );
+        return new CollectionIoEvent<>( applicationScope, nextStage, ioEvent.getRegion() );
     }
 }
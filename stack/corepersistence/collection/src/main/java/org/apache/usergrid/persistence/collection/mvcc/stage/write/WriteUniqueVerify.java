@@ -50,6 +50,7 @@ import org.apache.usergrid.persistence.model.field.Field;
 import org.apache.usergrid.persistence.model.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import rx.Observable;
 import rx.functions.Action1;
 
 import java.util.*;
@@ -106,14 +107,25 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
 
     @Override
     public void call( final CollectionIoEvent<MvccEntity> ioevent ) {
+        verify( ioevent ).toBlocking().last();
+    }
+
+
+    /**
+     * Verify the unique fields of the entity.  When unique values are reserved through the actor system the
+     * reservation is made without blocking, and the observable emits the event once it completes.
+     */
+    public Observable<CollectionIoEvent<MvccEntity>> verify( final CollectionIoEvent<MvccEntity> ioevent ) {
         if ( actorSystemFig != null && actorSystemFig.getEnabled() ) {
-            verifyUniqueFieldsAkka( ioevent );
-        } else {
-            verifyUniqueFields( ioevent );
+            return verifyUniqueFieldsAkka( ioevent );
         }
+
+        verifyUniqueFields( ioevent );
+        return Observable.just( ioevent );
     }
 
-    private void verifyUniqueFieldsAkka(CollectionIoEvent<MvccEntity> ioevent) {
+    private Observable<CollectionIoEvent<MvccEntity>> verifyUniqueFieldsAkka(
+        final CollectionIoEvent<MvccEntity> ioevent ) {
 
         MvccValidationUtils.verifyMvccEntityWithEntity( ioevent.getEvent() );
 
@@ -130,14 +142,19 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
         if ( region == null ) {
             region = actorSystemFig.getRegionLocal();
         }
-        try {
-            akkaUvService.reserveUniqueValues( applicationScope, entity, mvccEntity.getVersion(), region );
 
-        } catch (UniqueValueException e) {
-            Map<String, Field> violations = new HashMap<>();
-            violations.put( e.getField().getName(), e.getField() );
-            throw new WriteUniqueVerifyException( mvccEntity, applicationScope, violations  );
-        }
+        return akkaUvService.reserveUniqueValuesAsync( applicationScope, entity, mvccEntity.getVersion(), region )
+            .map( reserved -> ioevent )
+            .onErrorResumeNext( t -> {
+                if ( t instanceof UniqueValueException ) {
+                    UniqueValueException e = ( UniqueValueException ) t;
+                    Map<String, Field> violations = new HashMap<>();
+                    violations.put( e.getField().getName(), e.getField() );
+                    return Observable.error(
+                        new WriteUniqueVerifyException( mvccEntity, applicationScope, violations ) );
+                }
+                return Observable.error( t );
+            } );
     }
 
     private void verifyUniqueFields(CollectionIoEvent<MvccEntity> ioevent) {
@@ -250,6 +267,217 @@ public class WriteUniqueVerify implements Action1<CollectionIoEvent<MvccEntity>>
     }
 
 
+    /**
+     * Verify the unique fields of all the entities of a bulk write.  The unique values of every entity are read,
+     * written and read back together, a few keys at a time, instead of one entity at a time.  Entities that fail
+     * are added to the failures and removed from ioevents.
+     *
+     * @param ioevents The entities being written, all in the same application scope
+     * @param batcher The batcher to write temporary unique values with
+     * @param failures The failures of the bulk write, keyed by entity id
+     */
+    public void verifyAll( final List<CollectionIoEvent<MvccEntity>> ioevents, final MutationBatcher batcher,
+                           final Map<Id, Throwable> failures ) {
+
+        rejectBatchDuplicates( ioevents, failures );
+
+        ioevents.removeIf( ioevent -> failures.containsKey( ioevent.getEvent().getId() ) );
+
+        if ( actorSystemFig != null && actorSystemFig.getEnabled() ) {
+            verifyAllAkka( ioevents, failures );
+        } else {
+            verifyAllUniqueFields( ioevents, batcher, failures );
+        }
+
+        ioevents.removeIf( ioevent -> failures.containsKey( ioevent.getEvent().getId() ) );
+    }
+
+
+    /**
+     * Fail every entity that claims a unique value already claimed by an earlier entity of the batch
+     */
+    private void rejectBatchDuplicates( final List<CollectionIoEvent<MvccEntity>> ioevents,
+                                        final Map<Id, Throwable> failures ) {
+
+        // the first claimant of every unique value, by entity type then value
+        final Map<String, Map<String, Id>> owners = new HashMap<>();
+
+        for ( final CollectionIoEvent<MvccEntity> ioevent : ioevents ) {
+            final MvccEntity mvccEntity = ioevent.getEvent();
+
+            try {
+                MvccValidationUtils.verifyMvccEntityWithEntity( mvccEntity );
+            }
+            catch ( RuntimeException e ) {
+                failures.put( mvccEntity.getId(), e );
+                continue;
+            }
+
+            final Map<String, Id> typeOwners =
+                owners.computeIfAbsent( mvccEntity.getId().getType(), type -> new HashMap<>() );
+
+            final Map<String, Field> violations = new HashMap<>();
+
+            for ( final Field field : EntityUtils.getUniqueFields( mvccEntity.getEntity().get() ) ) {
+                final Id existing = typeOwners.putIfAbsent( uniqueKey( field ), mvccEntity.getId() );
+
+                if ( existing != null && !existing.equals( mvccEntity.getId() ) ) {
+                    violations.put( field.getName(), field );
+                }
+            }
+
+            if ( !violations.isEmpty() ) {
+                failures.put( mvccEntity.getId(),
+                    new WriteUniqueVerifyException( mvccEntity, ioevent.getEntityCollection(), violations ) );
+            }
+        }
+    }
+
+
+    private void verifyAllAkka( final List<CollectionIoEvent<MvccEntity>> ioevents,
+                                final Map<Id, Throwable> failures ) {
+
+        // reserve for every entity at once, the actors answer in parallel
+        Observable.from( ioevents ).flatMap( ioevent -> Observable.defer( () -> verifyUniqueFieldsAkka( ioevent ) )
+            .onErrorResumeNext( t -> {
+                failures.put( ioevent.getEvent().getId(), t );
+                return Observable.empty();
+            } ) ).toBlocking().lastOrDefault( null );
+    }
+
+
+    private void verifyAllUniqueFields( final List<CollectionIoEvent<MvccEntity>> ioevents,
+                                        final MutationBatcher batcher, final Map<Id, Throwable> failures ) {
+
+        if ( ioevents.isEmpty() ) {
+            return;
+        }
+
+        final ApplicationScope scope = ioevents.get( 0 ).getEntityCollection();
+
+        final Map<Id, MvccEntity> entities = new LinkedHashMap<>();
+        final Map<Id, Map<String, Field>> violations = new HashMap<>();
+
+        // the owner of every unique value, by entity type then value.  Duplicates in the batch are already gone
+        final Map<String, Map<String, Id>> owners = new HashMap<>();
+
+        for ( final CollectionIoEvent<MvccEntity> ioevent : ioevents ) {
+            final MvccEntity mvccEntity = ioevent.getEvent();
+
+            entities.put( mvccEntity.getId(), mvccEntity );
+
+            final Map<String, Id> typeOwners =
+                owners.computeIfAbsent( mvccEntity.getId().getType(), type -> new LinkedHashMap<>() );
+
+            for ( final Field field : EntityUtils.getUniqueFields( mvccEntity.getEntity().get() ) ) {
+                typeOwners.put( uniqueKey( field ), mvccEntity.getId() );
+            }
+        }
+
+        // don't use read repair on this pre-write check
+        // stronger consistency is extremely important here, more so than performance
+        checkOwners( scope, cassandraFig.getConsistentReadCL(), entities, owners, violations, failures );
+
+        // use write-first then read strategy, with a TTL in case something goes wrong before the commit
+        for ( final MvccEntity mvccEntity : entities.values() ) {
+            if ( violations.containsKey( mvccEntity.getId() ) || failures.containsKey( mvccEntity.getId() ) ) {
+                continue;
+            }
+
+            for ( final Field field : EntityUtils.getUniqueFields( mvccEntity.getEntity().get() ) ) {
+                final UniqueValue written = new UniqueValueImpl( field, mvccEntity.getId(), mvccEntity.getVersion() );
+                batcher.add( mvccEntity.getId(),
+                    uniqueValueStrat.write( scope, written, serializationFig.getTimeout() ) );
+            }
+        }
+
+        batcher.flush();
+
+        // read back what we wrote, the oldest writer of a value owns it
+        checkOwners( scope, cassandraFig.getReadCL(), entities, owners, violations, failures );
+
+        for ( final Map.Entry<Id, Map<String, Field>> violation : violations.entrySet() ) {
+            if ( !failures.containsKey( violation.getKey() ) ) {
+                failures.put( violation.getKey(),
+                    new WriteUniqueVerifyException( entities.get( violation.getKey() ), scope, violation.getValue() ) );
+            }
+        }
+    }
+
+
+    /**
+     * Read the unique values of the entities that haven't failed yet and add a violation for every value owned by
+     * some other entity.  An entity whose values can't be read fails with the connection error
+     */
+    private void checkOwners( final ApplicationScope scope, final ConsistencyLevel consistencyLevel,
+                              final Map<Id, MvccEntity> entities, final Map<String, Map<String, Id>> owners,
+                              final Map<Id, Map<String, Field>> violations, final Map<Id, Throwable> failures ) {
+
+        final int maxLoadSize = serializationFig.getMaxLoadSize();
+
+        for ( final Map.Entry<String, Map<String, Id>> typeOwners : owners.entrySet() ) {
+
+            final List<Field> fields = new ArrayList<>();
+
+            for ( final Id entityId : new LinkedHashSet<>( typeOwners.getValue().values() ) ) {
+                if ( violations.containsKey( entityId ) || failures.containsKey( entityId ) ) {
+                    continue;
+                }
+                fields.addAll( EntityUtils.getUniqueFields( entities.get( entityId ).getEntity().get() ) );
+            }
+
+            final Map<String, UniqueValue> loaded = new HashMap<>( fields.size() );
+
+            for ( int i = 0; i < fields.size(); i += maxLoadSize ) {
+                final List<Field> keys = fields.subList( i, Math.min( fields.size(), i + maxLoadSize ) );
+
+                try {
+                    for ( final UniqueValue uniqueValue : uniqueValueStrat
+                        .load( scope, consistencyLevel, typeOwners.getKey(), keys, false ) ) {
+                        loaded.put( uniqueKey( uniqueValue.getField() ), uniqueValue );
+                    }
+                }
+                catch ( ConnectionException e ) {
+                    // only the entities of these values fail, the rest of the batch is still checked
+                    final RuntimeException failure = new RuntimeException( "Error connecting to cassandra", e );
+
+                    for ( final Field key : keys ) {
+                        failures.putIfAbsent( typeOwners.getValue().get( uniqueKey( key ) ), failure );
+                    }
+                }
+            }
+
+            for ( final Field field : fields ) {
+                final Id entityId = typeOwners.getValue().get( uniqueKey( field ) );
+
+                if ( failures.containsKey( entityId ) ) {
+                    continue;
+                }
+
+                final UniqueValue uniqueValue = loaded.get( uniqueKey( field ) );
+
+                if ( uniqueValue != null && !uniqueValue.getEntityId().getUuid().equals( entityId.getUuid() ) ) {
+                    addViolation( violations, entityId, field );
+                }
+            }
+        }
+    }
+
+
+    private static void addViolation( final Map<Id, Map<String, Field>> violations, final Id entityId,
+                                      final Field field ) {
+        violations.computeIfAbsent( entityId, id -> new HashMap<>() ).put( field.getName(), field );
+    }
+
+
+    /**
+     * Unique values are stored lower case, so compare them that way
+     */
+    private static String uniqueKey( final Field field ) {
+        return field.getName() + "=" + field.getValue().toString().toLowerCase();
+    }
+
+
     private static class ConsistentReplayCommand extends HystrixCommand<Map<String,Field>>{
 
         private final UniqueValueSerializationStrategy uniqueValueSerializationStrategy;
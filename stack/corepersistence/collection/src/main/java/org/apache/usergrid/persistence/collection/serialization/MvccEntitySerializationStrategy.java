@@ -24,6 +24,7 @@ import java.util.Iterator;
 import java.util.UUID;
 
 import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.FieldSelector;
 import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.core.migration.data.VersionedData;
 import org.apache.usergrid.persistence.core.migration.schema.Migration;
@@ -57,6 +58,17 @@ public interface MvccEntitySerializationStrategy extends Migration, VersionedDat
      */
     EntitySet load( ApplicationScope scope, Collection<Id> entityIds, UUID maxVersion );
 
+    /**
+     * Load the entities into the entitySet from the specified Ids, with only the fields the selector selects.  Loads
+     * versions <= the maxVersion
+     *
+     * @param scope
+     * @param entityIds
+     * @param fieldSelector The fields to keep, implementations should skip the others while deserializing if they can
+     * @return
+     */
+    EntitySet load( ApplicationScope scope, Collection<Id> entityIds, UUID maxVersion, FieldSelector fieldSelector );
+
     /**
      * Load a list, from highest to lowest of the entity with versions <= version up to maxSize elements
      *
@@ -58,4 +58,30 @@ public interface SerializationFig extends GuicyFig {
     @Default( "150" )
     int getUniqueVerifyPoolSize();
 
+
+    /**
+     * True if serialized entities over the compression threshold should be compressed with LZ4 before writing
+     */
+    @Key( "collection.entity.compression.enabled" )
+    @Default( "true" )
+    boolean getEntityCompressionEnabled();
+
+
+    /**
+     * The minimum number of encoded bytes an entity must have before we attempt to compress it.  Smaller entities
+     * rarely compress well enough to be worth the CPU
+     */
+    @Key( "collection.entity.compression.threshold" )
+    @Default( "1024" )
+    int getEntityCompressionThreshold();
+
+
+    /**
+     * The maximum number of rows in one mutation batch of a bulk entity write.  The mutations of many entities are
+     * merged into one batch up to this size before it is executed
+     */
+    @Key( "collection.bulk.write.max.rows" )
+    @Default( "500" )
+    int getBulkWriteMaxRows();
+
 }
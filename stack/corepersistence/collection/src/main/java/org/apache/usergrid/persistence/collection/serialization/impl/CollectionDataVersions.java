@@ -40,7 +40,12 @@ public enum CollectionDataVersions{
     /**
      * The change where we move unique field versions to their own  CF, and then only store our latest object version
      */
-    LOG_REMOVAL(2);
+    LOG_REMOVAL(2),
+
+    /**
+     * The change where entity data is stored in a compact binary (smile) encoding, optionally compressed
+     */
+    BINARY_ENCODING(3);
 
     private final int version;
 
@@ -33,6 +33,7 @@ import org.apache.cassandra.db.marshal.ReversedType;
 import org.apache.cassandra.db.marshal.UUIDType;
 
 import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.FieldSelector;
 import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.collection.exception.CollectionRuntimeException;
 import org.apache.usergrid.persistence.collection.exception.DataCorruptionException;
@@ -228,6 +229,19 @@ public abstract class MvccEntitySerializationStrategyImpl implements MvccEntityS
     }
 
 
+    @Override
+    public EntitySet load( final ApplicationScope applicationScope, final Collection<Id> entityIds,
+                           final UUID maxVersion, final FieldSelector fieldSelector ) {
+
+        //the whole entity is encoded together, so read it all then drop what we don't want
+        final EntitySet entitySet = load( applicationScope, entityIds, maxVersion );
+
+        fieldSelector.prune( entitySet );
+
+        return entitySet;
+    }
+
+
     @Override
     public Iterator<MvccEntity> loadDescendingHistory( final ApplicationScope applicationScope, final Id entityId,
                                                        final UUID version, final int fetchSize ) {
@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.UUID;
 
 import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.FieldSelector;
 import org.apache.usergrid.persistence.collection.MvccEntity;
 import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
 import org.apache.usergrid.persistence.collection.serialization.impl.migration.CollectionMigrationPlugin;
@@ -96,6 +97,20 @@ public class MvccEntitySerializationStrategyProxyImpl implements MvccEntitySeria
     }
 
 
+    @Override
+    public EntitySet load( final ApplicationScope scope, final Collection<Id> entityIds, final UUID maxVersion,
+                           final FieldSelector fieldSelector ) {
+
+        final MigrationRelationship<MvccEntitySerializationStrategy> migration = getMigrationRelationShip();
+
+        if ( migration.needsMigration() ) {
+            return migration.from.load( scope, entityIds, maxVersion, fieldSelector );
+        }
+
+        return migration.to.load( scope, entityIds, maxVersion, fieldSelector );
+    }
+
+
 
     @Override
     public Iterator<MvccEntity> loadDescendingHistory( final ApplicationScope context, final Id entityId,
@@ -0,0 +1,711 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.marshal.BooleanType;
+import org.apache.cassandra.db.marshal.BytesType;
+
+import org.apache.usergrid.persistence.collection.EntitySet;
+import org.apache.usergrid.persistence.collection.FieldSelector;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.exception.CollectionRuntimeException;
+import org.apache.usergrid.persistence.collection.exception.DataCorruptionException;
+import org.apache.usergrid.persistence.collection.exception.EntityTooLargeException;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV3Impl.EntityWrapper;
+import org.apache.usergrid.persistence.core.astyanax.CassandraFig;
+import org.apache.usergrid.persistence.core.astyanax.ColumnParser;
+import org.apache.usergrid.persistence.core.astyanax.IdRowCompositeSerializer;
+import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamily;
+import org.apache.usergrid.persistence.core.astyanax.MultiTenantColumnFamilyDefinition;
+import org.apache.usergrid.persistence.core.astyanax.ScopedRowKey;
+import org.apache.usergrid.persistence.core.astyanax.ScopedRowKeySerializer;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.EntityMap;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.netflix.astyanax.ColumnListMutation;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.serializers.AbstractSerializer;
+import com.netflix.astyanax.serializers.BooleanSerializer;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+
+/**
+ * V4 Serialization Implementation.  The row layout is identical to V3, but entities are encoded with smile (binary
+ * json) instead of plain text json, and encodings over the configured threshold are compressed with LZ4.
+ */
+public class MvccEntitySerializationStrategyV4Impl implements MvccEntitySerializationStrategy {
+
+    private static final IdRowCompositeSerializer ID_SER = IdRowCompositeSerializer.get();
+
+    private static final ScopedRowKeySerializer<Id> ROW_KEY_SER = new ScopedRowKeySerializer<>( ID_SER );
+
+
+    private static final MultiTenantColumnFamily<ScopedRowKey<Id>, Boolean> CF_ENTITY_DATA =
+        new MultiTenantColumnFamily<>( "Entity_Version_Data_V4", ROW_KEY_SER, BooleanSerializer.get() );
+
+
+    private static final Boolean COL_VALUE = Boolean.TRUE;
+
+
+    private final EntitySerializer entitySerializer;
+
+    private static final Logger log = LoggerFactory.getLogger( MvccEntitySerializationStrategyV4Impl.class );
+
+
+    protected final Keyspace keyspace;
+    protected final SerializationFig serializationFig;
+    protected final CassandraFig cassandraFig;
+
+
+    @Inject
+    public MvccEntitySerializationStrategyV4Impl( final Keyspace keyspace, final SerializationFig serializationFig,
+                                                  final CassandraFig cassandraFig,
+                                                  final MetricsFactory metricsFactory ) {
+        this.keyspace = keyspace;
+        this.serializationFig = serializationFig;
+        this.cassandraFig = cassandraFig;
+        this.entitySerializer = new EntitySerializer( serializationFig, metricsFactory );
+    }
+
+
+    @Override
+    public MutationBatch write( final ApplicationScope applicationScope, final MvccEntity entity ) {
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entity, "entity is required" );
+
+        final Id entityId = entity.getId();
+        final UUID version = entity.getVersion();
+
+        Optional<EntityMap> map = EntityMap.fromEntity( entity.getEntity() );
+        ByteBuffer byteBuffer = entitySerializer.toByteBuffer(
+            new EntityWrapper( entityId, entity.getVersion(), entity.getStatus(), map.isPresent() ? map.get() : null,
+                0 ) );
+
+        entity.setSize( byteBuffer.remaining() );
+
+        return doWrite( applicationScope, entityId, version,
+            colMutation -> colMutation.putColumn( COL_VALUE, byteBuffer ) );
+    }
+
+
+    @Override
+    public EntitySet load( final ApplicationScope applicationScope, final Collection<Id> entityIds,
+                           final UUID maxVersion ) {
+        return doLoad( applicationScope, entityIds, maxVersion, null );
+    }
+
+
+    @Override
+    public EntitySet load( final ApplicationScope applicationScope, final Collection<Id> entityIds,
+                           final UUID maxVersion, final FieldSelector fieldSelector ) {
+        Preconditions.checkNotNull( fieldSelector, "fieldSelector is required" );
+
+        return doLoad( applicationScope, entityIds, maxVersion, fieldSelector );
+    }
+
+
+    /**
+     * Load the entities, with only the selected fields if there is a field selector
+     */
+    private EntitySet doLoad( final ApplicationScope applicationScope, final Collection<Id> entityIds,
+                              final UUID maxVersion, final FieldSelector fieldSelector ) {
+
+
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entityIds, "entityIds is required" );
+        Preconditions.checkArgument( entityIds.size() > 0, "entityIds is required" );
+        Preconditions.checkNotNull( maxVersion, "version is required" );
+
+
+        if ( entityIds.size() > serializationFig.getMaxLoadSize() ) {
+            throw new IllegalArgumentException(
+                "requested load size cannot be over configured maximum of " + serializationFig.getMaxLoadSize() );
+        }
+
+
+        final Id applicationId = applicationScope.getApplication();
+
+        final List<ScopedRowKey<Id>> rowKeys = new ArrayList<>( entityIds.size() );
+
+
+        for ( final Id entityId : entityIds ) {
+            rowKeys.add( ScopedRowKey.fromKey( applicationId, entityId ) );
+        }
+
+        /**
+         * Our settings may mean we exceed our maximum thrift buffer size. If we do, we have to make multiple
+         * requests, not just one.  The max entity size is an upper bound on the uncompressed size, so this is
+         * conservative for compressed entities
+         */
+
+        final int maxEntityResultSizeInBytes = serializationFig.getMaxEntitySize() * entityIds.size();
+
+        //if we're less than 1, set the number of requests to 1
+        final int numberRequests = Math.max( 1, maxEntityResultSizeInBytes / cassandraFig.getThriftBufferSize() );
+
+        final int entitiesPerRequest = entityIds.size() / numberRequests;
+
+
+        final Scheduler scheduler;
+
+        //if it's a single request, run it on the same thread
+        if ( numberRequests == 1 ) {
+            scheduler = Schedulers.immediate();
+        }
+        //if it's more than 1 request, run them on the I/O scheduler
+        else {
+            scheduler = Schedulers.io();
+        }
+
+
+        final EntitySetImpl entitySetResults = Observable.from( rowKeys )
+            //buffer our entities per request, then for that buffer, execute the query in parallel (if neccessary)
+            .buffer( entitiesPerRequest ).flatMap( listObservable -> {
+
+
+                //here, we execute our query then emit the items either in parallel, or on the current thread
+                // if we have more than 1 request
+                return Observable.just( listObservable ).map( scopedRowKeys -> {
+
+
+                    try {
+                        return keyspace.prepareQuery( CF_ENTITY_DATA ).getKeySlice( scopedRowKeys )
+                                       .withColumnSlice( COL_VALUE ).execute().getResult();
+                    }
+                    catch ( ConnectionException e ) {
+                        throw new CollectionRuntimeException( null, applicationScope,
+                            "An error occurred connecting to cassandra", e );
+                    }
+                } ).subscribeOn( scheduler );
+            }, 10 ).collect( () -> new EntitySetImpl( entityIds.size() ), ( ( entitySet, rows ) -> {
+                final Iterator<Row<ScopedRowKey<Id>, Boolean>> latestEntityColumns = rows.iterator();
+
+                while ( latestEntityColumns.hasNext() ) {
+                    final Row<ScopedRowKey<Id>, Boolean> row = latestEntityColumns.next();
+
+                    final ColumnList<Boolean> columns = row.getColumns();
+
+                    if ( columns.size() == 0 ) {
+                        continue;
+                    }
+
+                    final Id entityId = row.getKey().getKey();
+
+                    final Column<Boolean> column = columns.getColumnByIndex( 0 );
+
+                    final MvccEntity parsedEntity =
+                        new MvccColumnParser( entityId, entitySerializer, fieldSelector ).parseColumn( column );
+
+
+                    entitySet.addEntity( parsedEntity );
+                }
+            } ) ).toBlocking().last();
+
+
+        return entitySetResults;
+    }
+
+
+    @Override
+    public Iterator<MvccEntity> loadDescendingHistory( final ApplicationScope applicationScope, final Id entityId,
+                                                       final UUID version, final int fetchSize ) {
+
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entityId, "entity id is required" );
+        Preconditions.checkNotNull( version, "version is required" );
+        Preconditions.checkArgument( fetchSize > 0, "max Size must be greater than 0" );
+
+
+        throw new UnsupportedOperationException( "This version does not support loading history" );
+    }
+
+
+    @Override
+    public Iterator<MvccEntity> loadAscendingHistory( final ApplicationScope applicationScope, final Id entityId,
+                                                      final UUID version, final int fetchSize ) {
+
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entityId, "entity id is required" );
+        Preconditions.checkNotNull( version, "version is required" );
+        Preconditions.checkArgument( fetchSize > 0, "max Size must be greater than 0" );
+
+        throw new UnsupportedOperationException( "This version does not support loading history" );
+    }
+
+
+    @Override
+    public Optional<MvccEntity> load( final ApplicationScope scope, final Id entityId ) {
+        final EntitySet results = load( scope, Collections.singleton( entityId ), UUIDGenerator.newTimeUUID() );
+
+        return Optional.fromNullable( results.getEntity( entityId ) );
+    }
+
+
+    @Override
+    public MutationBatch mark( final ApplicationScope applicationScope, final Id entityId, final UUID version ) {
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entityId, "entity id is required" );
+        Preconditions.checkNotNull( version, "version is required" );
+
+
+        return doWrite( applicationScope, entityId, version, colMutation -> colMutation.putColumn( COL_VALUE,
+            entitySerializer
+                .toByteBuffer( new EntityWrapper( entityId, version, MvccEntity.Status.DELETED, null, 0 ) ) ) );
+    }
+
+
+    @Override
+    public MutationBatch delete( final ApplicationScope applicationScope, final Id entityId, final UUID version ) {
+        Preconditions.checkNotNull( applicationScope, "applicationScope is required" );
+        Preconditions.checkNotNull( entityId, "entity id is required" );
+        Preconditions.checkNotNull( version, "version is required" );
+
+
+        return doWrite( applicationScope, entityId, version, colMutation -> colMutation.deleteColumn( Boolean.TRUE ) );
+    }
+
+
+    @Override
+    public java.util.Collection getColumnFamilies() {
+
+        MultiTenantColumnFamilyDefinition cf =
+            new MultiTenantColumnFamilyDefinition( CF_ENTITY_DATA, BytesType.class.getSimpleName(),
+                BooleanType.class.getSimpleName(), BytesType.class.getSimpleName(),
+                MultiTenantColumnFamilyDefinition.CacheOption.KEYS );
+
+
+        return Collections.singleton( cf );
+    }
+
+
+    /**
+     * Do the write on the correct row for the entity id with the operation
+     */
+    private MutationBatch doWrite( final ApplicationScope applicationScope, final Id entityId, final UUID version,
+                                   final RowOp op ) {
+        final MutationBatch batch = keyspace.prepareMutationBatch();
+
+        final Id applicationId = applicationScope.getApplication();
+
+        final ScopedRowKey<Id> rowKey = ScopedRowKey.fromKey( applicationId, entityId );
+
+        final long timestamp = version.timestamp();
+
+        op.doOp( batch.withRow( CF_ENTITY_DATA, rowKey ).setTimestamp( timestamp ) );
+
+        return batch;
+    }
+
+
+    @Override
+    public int getImplementationVersion() {
+        return CollectionDataVersions.BINARY_ENCODING.getVersion();
+    }
+
+
+    /**
+     * Converts raw columns the to MvccEntity representation
+     */
+    private static final class MvccColumnParser implements ColumnParser<Boolean, MvccEntity> {
+
+        private final Id id;
+        private final EntitySerializer entitySerializer;
+        private final FieldSelector fieldSelector;
+
+
+        private MvccColumnParser( final Id id, final EntitySerializer entitySerializer,
+                                  final FieldSelector fieldSelector ) {
+            this.id = id;
+            this.entitySerializer = entitySerializer;
+            this.fieldSelector = fieldSelector;
+        }
+
+
+        @Override
+        public MvccEntity parseColumn( Column<Boolean> column ) {
+
+            final EntityWrapper deSerialized;
+
+            try {
+                deSerialized = fieldSelector == null ? column.getValue( entitySerializer )
+                                                     : entitySerializer.fromByteBuffer( column.getByteBufferValue(),
+                                                         fieldSelector );
+            }
+            catch ( DataCorruptionException e ) {
+                log.error( "DATA CORRUPTION DETECTED when de-serializing entity with Id {}.  This means the"
+                    + " write was truncated.", id, e );
+                //return an empty entity, we can never load this one, and we don't want it to bring the system
+                //to a grinding halt
+                return new MvccEntityImpl( id, UUIDGenerator.newTimeUUID(), MvccEntity.Status.DELETED,
+                    Optional.<Entity>absent() );
+            }
+            Optional<Entity> entity = deSerialized.getOptionalEntity();
+            return new MvccEntityImpl( id, deSerialized.getVersion(), deSerialized.getStatus(), entity,
+                deSerialized.getSize() );
+        }
+    }
+
+
+    /**
+     * Binary entity serializer.  Each value is laid out as
+     *
+     * <pre>
+     * [format version : 1 byte][flags : 1 byte][uncompressed length : 4 bytes, only when compressed][payload]
+     * </pre>
+     *
+     * The payload is the smile encoding of the {@link EntityWrapper}.  Smile back references repeated property names
+     * and string values, so the "@class" type hints we need for polymorphic field values are written once per entity
+     * instead of once per field.  We should only ever create this once, since this impl is a singleton
+     */
+    public static final class EntitySerializer extends AbstractSerializer<EntityWrapper> {
+
+        /**
+         * The version of the binary layout, so we can evolve it without a new column family
+         */
+        public static final byte FORMAT_VERSION = 1;
+
+        /**
+         * Set when the payload is LZ4 compressed
+         */
+        public static final byte FLAG_COMPRESSED = 0x01;
+
+        private static final int HEADER_SIZE = 2;
+
+        private static final int COMPRESSED_HEADER_SIZE = HEADER_SIZE + 4;
+
+        /**
+         * The name the entity map is written under in the wrapper
+         */
+        private static final String ENTITY_MAP_PROPERTY = "entityMap";
+
+
+        private final ObjectMapper mapper;
+        private final LZ4Compressor compressor;
+        private final LZ4FastDecompressor decompressor;
+
+        private final SerializationFig serializationFig;
+
+        private final Histogram bytesInHistogram;
+        private final Histogram bytesOutHistogram;
+        private final Timer bytesOutTimer;
+        private final Counter compressedCounter;
+
+
+        public EntitySerializer( final SerializationFig serializationFig, final MetricsFactory metricsFactory ) {
+            this.serializationFig = serializationFig;
+            this.bytesOutHistogram =
+                metricsFactory.getHistogram( MvccEntitySerializationStrategyV4Impl.class, "bytes.out" );
+            this.bytesOutTimer = metricsFactory.getTimer( MvccEntitySerializationStrategyV4Impl.class, "bytes.out" );
+            this.bytesInHistogram =
+                metricsFactory.getHistogram( MvccEntitySerializationStrategyV4Impl.class, "bytes.in" );
+            this.compressedCounter =
+                metricsFactory.getCounter( MvccEntitySerializationStrategyV4Impl.class, "bytes.compressed" );
+
+            final SmileFactory smileFactory = new SmileFactory();
+            smileFactory.configure( SmileGenerator.Feature.CHECK_SHARED_NAMES, true );
+            smileFactory.configure( SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true );
+
+            this.mapper = new ObjectMapper( smileFactory );
+            this.mapper.enableDefaultTypingAsProperty( ObjectMapper.DefaultTyping.JAVA_LANG_OBJECT, "@class" );
+
+            final LZ4Factory lz4Factory = LZ4Factory.fastestInstance();
+            this.compressor = lz4Factory.fastCompressor();
+            this.decompressor = lz4Factory.fastDecompressor();
+        }
+
+
+        @Override
+        public ByteBuffer toByteBuffer( final EntityWrapper wrapper ) {
+            if ( wrapper == null ) {
+                return null;
+            }
+
+            //we have an entity but status is not complete don't allow it
+            if ( wrapper.getEntityMap() != null && wrapper.getStatus() != MvccEntity.Status.COMPLETE ) {
+                throw new UnsupportedOperationException(
+                    "Only states " + MvccEntity.Status.DELETED + " and " + MvccEntity.Status.COMPLETE
+                        + " are supported" );
+            }
+
+            final byte[] encoded;
+
+            try {
+                encoded = mapper.writeValueAsBytes( wrapper );
+            }
+            catch ( IOException ioe ) {
+                throw new RuntimeException( "Unable to serialize entity", ioe );
+            }
+
+            //mark this version as empty, nothing to validate
+            if ( wrapper.getEntityMap() == null ) {
+                return frame( encoded );
+            }
+
+            final int maxEntrySize = serializationFig.getMaxEntitySize();
+
+            bytesInHistogram.update( encoded.length );
+
+            if ( encoded.length > maxEntrySize ) {
+                throw new EntityTooLargeException( Entity.fromMap( wrapper.getEntityMap() ), maxEntrySize,
+                    encoded.length, "Your entity cannot exceed " + maxEntrySize + " bytes. The entity you tried to save was "
+                    + encoded.length + " bytes" );
+            }
+
+            return frame( encoded );
+        }
+
+
+        @Override
+        public EntityWrapper fromByteBuffer( final ByteBuffer byteBuffer ) {
+            return fromByteBuffer( byteBuffer, null );
+        }
+
+
+        /**
+         * Read the entity, keeping only the fields the selector selects.  Unselected top level fields are skipped in
+         * the smile stream without being deserialized, then selected objects are pruned to their selected fields
+         *
+         * @param fieldSelector The fields to keep, or null to keep every field
+         */
+        public EntityWrapper fromByteBuffer( final ByteBuffer byteBuffer, final FieldSelector fieldSelector ) {
+
+            /**
+             * We intentionally turn data corruption exceptions when we're unable to de-serialize
+             * the data in cassandra.  If this occurs, we'll never be able to de-serialize it
+             * and it should be considered lost.
+             */
+
+            final EntityWrapper entityWrapper;
+            final int storedSize = byteBuffer.remaining();
+
+            try {
+                final Timer.Context time = bytesOutTimer.time();
+
+                bytesOutHistogram.update( storedSize );
+
+                final byte[] payload = unframe( byteBuffer );
+
+                entityWrapper = fieldSelector == null ? mapper.readValue( payload, EntityWrapper.class )
+                                                      : readSelected( payload, fieldSelector );
+
+                time.stop();
+            }
+            catch ( Exception e ) {
+                throw new DataCorruptionException( "Unable to read entity data", e );
+            }
+
+            // it's been deleted, remove it
+            if ( entityWrapper.getEntityMap() == null ) {
+                return new EntityWrapper( entityWrapper.getId(), entityWrapper.getVersion(),
+                    MvccEntity.Status.DELETED, null, 0 );
+            }
+
+            return new EntityWrapper( entityWrapper.getId(), entityWrapper.getVersion(), MvccEntity.Status.COMPLETE,
+                entityWrapper.getEntityMap(), storedSize );
+        }
+
+
+        /**
+         * Stream the wrapper, only deserializing the selected fields of the entity map
+         */
+        private EntityWrapper readSelected( final byte[] payload, final FieldSelector fieldSelector )
+            throws IOException {
+
+            final ObjectNode wrapperNode = mapper.createObjectNode();
+
+            EntityMap entityMap = null;
+
+            try ( JsonParser parser = mapper.getFactory().createParser( payload ) ) {
+
+                if ( parser.nextToken() != JsonToken.START_OBJECT ) {
+                    throw new IOException( "Expected an entity object" );
+                }
+
+                while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+                    final String name = parser.getCurrentName();
+                    final JsonToken value = parser.nextToken();
+
+                    if ( !ENTITY_MAP_PROPERTY.equals( name ) ) {
+                        wrapperNode.set( name, mapper.readTree( parser ) );
+                        continue;
+                    }
+
+                    if ( value == JsonToken.VALUE_NULL ) {
+                        continue;
+                    }
+
+                    entityMap = new EntityMap();
+
+                    while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+                        final String fieldName = parser.getCurrentName();
+                        parser.nextToken();
+
+                        if ( fieldSelector.isSelected( fieldName ) ) {
+                            entityMap.put( fieldName, mapper.readValue( parser, Object.class ) );
+                        }
+                        else {
+                            //skips the whole value if it's an object or array, scalars are already consumed
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            }
+
+            final EntityWrapper wrapper = mapper.treeToValue( wrapperNode, EntityWrapper.class );
+
+            if ( entityMap == null ) {
+                return wrapper;
+            }
+
+            fieldSelector.prune( entityMap );
+
+            return new EntityWrapper( wrapper.getId(), wrapper.getVersion(), wrapper.getStatus(), entityMap,
+                wrapper.getSize() );
+        }
+
+
+        /**
+         * Write the header and payload, compressing the payload if it is large enough and compression is enabled
+         */
+        private ByteBuffer frame( final byte[] encoded ) {
+
+            if ( serializationFig.getEntityCompressionEnabled()
+                && encoded.length >= serializationFig.getEntityCompressionThreshold() ) {
+
+                final byte[] compressed =
+                    new byte[COMPRESSED_HEADER_SIZE + compressor.maxCompressedLength( encoded.length )];
+
+                final int compressedLength = compressor
+                    .compress( encoded, 0, encoded.length, compressed, COMPRESSED_HEADER_SIZE,
+                        compressed.length - COMPRESSED_HEADER_SIZE );
+
+                //only keep the compressed form if it's actually smaller
+                if ( compressedLength + COMPRESSED_HEADER_SIZE < encoded.length + HEADER_SIZE ) {
+                    compressedCounter.inc();
+
+                    final ByteBuffer buffer = ByteBuffer.wrap( compressed, 0, COMPRESSED_HEADER_SIZE + compressedLength );
+                    buffer.put( FORMAT_VERSION ).put( FLAG_COMPRESSED ).putInt( encoded.length );
+                    buffer.rewind();
+
+                    return buffer.slice();
+                }
+            }
+
+            final byte[] framed = new byte[HEADER_SIZE + encoded.length];
+            framed[0] = FORMAT_VERSION;
+            framed[1] = 0;
+            System.arraycopy( encoded, 0, framed, HEADER_SIZE, encoded.length );
+
+            return ByteBuffer.wrap( framed );
+        }
+
+
+        /**
+         * Read the header and return the raw smile payload
+         */
+        private byte[] unframe( final ByteBuffer byteBuffer ) {
+
+            final ByteBuffer buffer = byteBuffer.duplicate();
+
+            final byte formatVersion = buffer.get();
+
+            if ( formatVersion != FORMAT_VERSION ) {
+                throw new IllegalArgumentException( "Unknown entity format version " + formatVersion );
+            }
+
+            final byte flags = buffer.get();
+
+            if ( ( flags & FLAG_COMPRESSED ) == 0 ) {
+                final byte[] payload = new byte[buffer.remaining()];
+                buffer.get( payload );
+                return payload;
+            }
+
+            final int uncompressedLength = buffer.getInt();
+
+            if ( uncompressedLength < 0 || uncompressedLength > serializationFig.getMaxEntitySize() ) {
+                throw new IllegalArgumentException( "Invalid uncompressed entity length " + uncompressedLength );
+            }
+
+            final byte[] compressed = new byte[buffer.remaining()];
+            buffer.get( compressed );
+
+            final byte[] payload = new byte[uncompressedLength];
+            decompressor.decompress( compressed, 0, payload, 0, uncompressedLength );
+
+            return payload;
+        }
+    }
+
+
+    /**
+     * Simple callback to perform puts and deletes with a common row setup code
+     */
+    private static interface RowOp {
+
+        /**
+         * The operation to perform on the row
+         */
+        void doOp( ColumnListMutation<Boolean> colMutation );
+    }
+}
@@ -154,10 +154,13 @@ public class MvccLogEntrySerializationProxyImpl implements MvccLogEntrySerializa
 
 
     /**
-     * Return true if we're on an old version
+     * Return true if we're on an old version.  This format has not changed since {@link
+     * CollectionDataVersions#LOG_REMOVAL}, later collection versions only change the entity data, so cap the version
      */
     private MigrationRelationship<MvccLogEntrySerializationStrategy> getMigrationRelationShip() {
-        return this.versions
-            .getMigrationRelationship( migrationInfoCache.getVersion( CollectionMigrationPlugin.PLUGIN_NAME ) );
+        final int version = Math.min( migrationInfoCache.getVersion( CollectionMigrationPlugin.PLUGIN_NAME ),
+            CollectionDataVersions.LOG_REMOVAL.getVersion() );
+
+        return this.versions.getMigrationRelationship( version );
     }
 }
@@ -18,10 +18,12 @@ package org.apache.usergrid.persistence.collection.serialization.impl;/*
  */
 
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.usergrid.persistence.collection.serialization.UniqueValue;
 import org.apache.usergrid.persistence.collection.serialization.UniqueValueSet;
@@ -31,13 +33,20 @@ public class UniqueValueSetImpl implements UniqueValueSet {
 
     private final Map<String, UniqueValue> values;
 
+    /**
+     * Every value in load order.  A set loaded for several entities can hold many values of the same field name
+     */
+    private final List<UniqueValue> allValues;
+
     public UniqueValueSetImpl(final int expectedMaxSize) {
         values = new HashMap<>(expectedMaxSize);
+        allValues = new ArrayList<>(expectedMaxSize);
     }
 
 
     public void addValue(UniqueValue value){
         values.put( value.getField().getName(), value );
+        allValues.add( value );
     }
 
     @Override
@@ -48,38 +57,6 @@ public class UniqueValueSetImpl implements UniqueValueSet {
 
     @Override
     public Iterator<UniqueValue> iterator() {
-        return new UniqueValueIterator(values.entrySet());
-    }
-
-
-    /**
-     * Inner class of unique value iterator
-     */
-    private static final class
-            UniqueValueIterator implements Iterator<UniqueValue>{
-
-        private final Iterator<Map.Entry<String, UniqueValue>> sourceIterator;
-
-        public UniqueValueIterator( final Set<Map.Entry<String, UniqueValue>> entries ) {
-            this.sourceIterator = entries.iterator();
-        }
-
-
-        @Override
-        public boolean hasNext() {
-            return sourceIterator.hasNext();
-        }
-
-
-        @Override
-        public UniqueValue next() {
-            return sourceIterator.next().getValue();
-        }
-
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException( "Remove is unsupported" );
-        }
+        return Collections.unmodifiableList( allValues ).iterator();
     }
 }
@@ -23,6 +23,8 @@ import org.apache.usergrid.persistence.actorsystem.ClientActor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.concurrent.TimeUnit;
 
 
@@ -31,12 +33,14 @@ public class ReservationCache {
 
     Cache<String, UniqueValueActor.Reservation> cache;
     long ttl;
+    int partitions;
 
     // use hokey old-style singleton because its not that easy to get Guice into an actor
     private static ReservationCache instance = null;
 
-    ReservationCache( long ttl ) {
+    ReservationCache( long ttl, int partitions ) {
         this.ttl = ttl;
+        this.partitions = partitions;
         cache = CacheBuilder.newBuilder()
             .maximumSize(1000)
             .concurrencyLevel( 300 )
@@ -45,8 +49,8 @@ public class ReservationCache {
             .build();
     }
 
-    public static void init( long ttl ) {
-        instance = new ReservationCache( ttl );
+    public static void init( long ttl, int partitions ) {
+        instance = new ReservationCache( ttl, partitions );
     }
 
     public static ReservationCache getInstance() {
@@ -77,6 +81,27 @@ public class ReservationCache {
         cache.invalidate( response.getConsistentHashKey() );
     }
 
+    /**
+     * Drop the reservations of partitions that moved to another node. The node that gave up a partition may have
+     * left before telling us about cancellations, so what we cached for it can no longer be trusted.
+     */
+    public void invalidatePartitions( Collection<Integer> moved ) {
+        if ( ttl == 0 || moved.isEmpty() ) { return; }
+
+        Iterator<UniqueValueActor.Reservation> reservations = cache.asMap().values().iterator();
+        while ( reservations.hasNext() ) {
+            if ( moved.contains( reservations.next().getPartition( partitions ) ) ) {
+                reservations.remove();
+            }
+        }
+
+        logger.debug( "Invalidated reservations of {} moved partitions", moved.size() );
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
     public CacheStats getStats() {
         return cache.stats();
     }
@@ -17,6 +17,8 @@
 package org.apache.usergrid.persistence.collection.uniquevalues;
 
 import akka.actor.UntypedActor;
+import akka.routing.ConsistentHashingRouter;
+import com.google.common.hash.Hashing;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
@@ -26,6 +28,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 
@@ -83,7 +87,13 @@ public class UniqueValueActor extends UntypedActor {
                     return;
                 }
 
-                table.reserve( res.getApplicationScope(), res.getOwner(), res.getOwnerVersion(), res.getField() );
+                if ( !table.reserve(
+                    res.getApplicationScope(), res.getOwner(), res.getOwnerVersion(), res.getField() ) ) {
+                    // another owner reserved it first through a different node
+                    getSender().tell( new Response( Response.Status.NOT_UNIQUE, res.getConsistentHashKey() ),
+                        getSender() );
+                    return;
+                }
 
                 getSender().tell( new Response( Response.Status.IS_UNIQUE, res.getConsistentHashKey() ),
                     getSender() );
@@ -188,7 +198,7 @@ public class UniqueValueActor extends UntypedActor {
     /**
      * UniqueValue actor receives and processes Requests.
      */
-    public abstract static class Request implements Serializable {
+    public abstract static class Request implements ConsistentHashingRouter.ConsistentHashable, Serializable {
         final ApplicationScope applicationScope;
         final Id owner;
         final UUID ownerVersion;
@@ -230,6 +240,19 @@ public class UniqueValueActor extends UntypedActor {
         public UUID getOwnerVersion() {
             return ownerVersion;
         }
+        @Override
+        public Object consistentHashKey() {
+            return consistentHashKey;
+        }
+        /**
+         * Partition of the unique value key space that this request belongs to.
+         */
+        public int getPartition( int partitions ) {
+            return partitionOf( consistentHashKey, partitions );
+        }
+        public static int partitionOf( String consistentHashKey, int partitions ) {
+            return Math.floorMod( Hashing.murmur3_32().hashUnencodedChars( consistentHashKey ).asInt(), partitions );
+        }
     }
 
     /**
@@ -279,4 +302,33 @@ public class UniqueValueActor extends UntypedActor {
         }
     }
 
+    /**
+     * Requests for all the unique fields of an entity, sent in one exchange. The UniqueValuesRouter hashes each
+     * request to its own actor and answers with a BatchResponse once all of them have responded.
+     */
+    public static class Batch implements Serializable {
+        final ArrayList<Request> requests;
+
+        public Batch( List<? extends Request> requests ) {
+            this.requests = new ArrayList<>( requests );
+        }
+        public List<Request> getRequests() {
+            return requests;
+        }
+    }
+
+    /**
+     * Responses to a Batch, in the same order as its requests.
+     */
+    public static class BatchResponse implements Serializable {
+        final ArrayList<Response> responses;
+
+        public BatchResponse( List<Response> responses ) {
+            this.responses = new ArrayList<>( responses );
+        }
+        public List<Response> getResponses() {
+            return responses;
+        }
+    }
+
 }
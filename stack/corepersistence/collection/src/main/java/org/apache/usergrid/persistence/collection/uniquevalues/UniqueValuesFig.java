@@ -36,6 +36,12 @@ public interface UniqueValuesFig extends GuicyFig, Serializable {
 
     String UNIQUEVALUE_AUTHORITATIVE_REGION = "collection.uniquevalues.authoritative.region";
 
+    String UNIQUEVALUE_REQUEST_TIMEOUT = "collection.uniquevalues.request.timeout";
+
+    String UNIQUEVALUE_REQUEST_RETRIES = "collection.uniquevalues.request.retries";
+
+    String UNIQUEVALUE_PARTITIONS = "collection.uniquevalues.partitions";
+
 
     /**
      * Unique Value cache TTL in seconds.
@@ -64,4 +70,26 @@ public interface UniqueValuesFig extends GuicyFig, Serializable {
     @Key(UNIQUEVALUE_AUTHORITATIVE_REGION)
     @Default("default")
     String getAuthoritativeRegion();
+
+    /**
+     * Time in milliseconds to wait for the unique value actors to answer a request before retrying.
+     */
+    @Key(UNIQUEVALUE_REQUEST_TIMEOUT)
+    @Default("1000")
+    int getRequestTimeout();
+
+    /**
+     * Number of times a unique value request is sent before giving up.
+     */
+    @Key(UNIQUEVALUE_REQUEST_RETRIES)
+    @Default("5")
+    int getRequestRetries();
+
+    /**
+     * Number of partitions the unique value key space is split into. Each node owns the partitions that hash to it,
+     * so this should be well above the number of nodes. Must be the same on every node.
+     */
+    @Key(UNIQUEVALUE_PARTITIONS)
+    @Default("1024")
+    int getPartitions();
 }
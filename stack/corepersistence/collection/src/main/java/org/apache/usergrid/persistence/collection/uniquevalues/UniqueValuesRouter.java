@@ -17,40 +17,82 @@
 package org.apache.usergrid.persistence.collection.uniquevalues;
 
 import akka.actor.ActorRef;
-import akka.actor.Props;
+import akka.actor.ActorSelection;
+import akka.actor.Address;
+import akka.actor.Status;
 import akka.actor.UntypedActor;
-import akka.routing.ConsistentHashingRouter;
-import akka.routing.FromConfig;
+import akka.cluster.Cluster;
+import akka.cluster.ClusterEvent;
+import akka.cluster.Member;
+import akka.cluster.MemberStatus;
+import akka.dispatch.Futures;
+import akka.dispatch.Mapper;
+import akka.pattern.Patterns;
+import akka.routing.ConsistentHash;
+import akka.util.Timeout;
 import com.google.inject.Inject;
-import com.google.inject.Injector;
 import org.apache.commons.lang.RandomStringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 
 /**
- * Uses a consistent hash to route Unique Value requests to UniqueValueActors.
+ * Routes Unique Value requests to the node that owns their partition of the key space. Every node runs one of these,
+ * and since they all hash partitions onto the same ring of cluster members they agree on the owner of each value.
+ * When members come and go the ring is rebuilt and the partitions that moved are dropped from the ReservationCache.
+ *
+ * Each node rebuilds the ring from its own view of the cluster, so while membership changes two nodes can handle the
+ * same value.  Ownership only keeps the requests for a value on one node, the reservation read back from Cassandra in
+ * UniqueValuesTable decides which owner gets it.
  */
 public class UniqueValuesRouter extends UntypedActor {
-    private static final Logger logger = LoggerFactory.getLogger( UniqueValueActor.class );
+    private static final Logger logger = LoggerFactory.getLogger( UniqueValuesRouter.class );
+
+    /**
+     * Path of the pool of UniqueValueActors on each node.
+     */
+    public static final String PARTITION_PATH = "/user/uvPartition";
+
+    private static final int VIRTUAL_NODES_FACTOR = 10;
 
     private final String name = RandomStringUtils.randomAlphanumeric( 4 );
 
-    private final ActorRef router;
+    private final Cluster cluster = Cluster.get( getContext().system() );
+
+    private final Set<Address> nodes = new HashSet<>();
+
+    private final Timeout timeout;
+
+    private final int partitions;
+
+    /**
+     * Owning node of each partition, empty until we know of a node
+     */
+    private Address[] owners = new Address[0];
 
     @Inject
-    public UniqueValuesRouter(Injector injector ) {
+    public UniqueValuesRouter( UniqueValuesFig uniqueValuesFig ) {
 
-        router = getContext().actorOf(
-            FromConfig.getInstance().props(Props.create(UniqueValueActor.class)), "router");
+        timeout = new Timeout( uniqueValuesFig.getRequestTimeout(), TimeUnit.MILLISECONDS );
+        partitions = uniqueValuesFig.getPartitions();
+    }
 
-        // TODO: is there some way to pass the injector here without getting this exception:
-        // NotSerializableException: No configured serialization-bindings for class [InjectorImpl]
-        //router = getContext().actorOf(
-            //FromConfig.getInstance().props( Props.create( GuiceActorProducer.class, injector, UniqueValueActor.class)),
-            //"router" );
+    @Override
+    public void preStart() {
+        cluster.subscribe( getSelf(), ClusterEvent.MemberEvent.class, ClusterEvent.ReachabilityEvent.class );
+    }
 
-        //logger.info("UniqueValuesRouter {} is live with injector {}", name, injector);
+    @Override
+    public void postStop() {
+        cluster.unsubscribe( getSelf() );
     }
 
     @Override
@@ -59,12 +101,136 @@ public class UniqueValuesRouter extends UntypedActor {
         if ( message instanceof UniqueValueActor.Request) {
             UniqueValueActor.Request request = (UniqueValueActor.Request)message;
 
-            ConsistentHashingRouter.ConsistentHashableEnvelope envelope =
-                new ConsistentHashingRouter.ConsistentHashableEnvelope( message, request.getConsistentHashKey() );
-            router.tell( envelope, getSender());
+            if ( owners.length == 0 ) {
+                getSender().tell(
+                    new UniqueValueActor.Response( UniqueValueActor.Response.Status.ERROR,
+                        request.getConsistentHashKey() ), getSelf() );
+                return;
+            }
+
+            partitionFor( request ).tell( request, getSender() );
+
+        } else if ( message instanceof UniqueValueActor.Batch ) {
+            UniqueValueActor.Batch batch = (UniqueValueActor.Batch)message;
+
+            if ( owners.length == 0 ) {
+                getSender().tell( new Status.Failure(
+                    new IllegalStateException( "UniqueValuesRouter " + name + " knows of no nodes" ) ), getSelf() );
+                return;
+            }
+
+            // each value may belong to a different node, so ask them all at once and answer when the last responds
+            final ExecutionContext ec = getContext().dispatcher();
+
+            List<Future<Object>> futures = new ArrayList<>( batch.getRequests().size() );
+            for ( UniqueValueActor.Request request : batch.getRequests() ) {
+                futures.add( Patterns.ask( partitionFor( request ), request, timeout ) );
+            }
+
+            Future<Object> response = Futures.sequence( futures, ec ).map( new Mapper<Iterable<Object>, Object>() {
+                @Override
+                public Object apply( Iterable<Object> responses ) {
+                    List<UniqueValueActor.Response> list = new ArrayList<>();
+                    for ( Object response : responses ) {
+                        list.add( (UniqueValueActor.Response)response );
+                    }
+                    return new UniqueValueActor.BatchResponse( list );
+                }
+            }, ec );
+
+            // a timed out request fails the whole batch, which the sender sees as a failed ask and retries
+            Patterns.pipe( response, ec ).to( getSender() );
+
+        } else if ( processAsClusterEvent( message ) ) {
+            rebalance();
 
         } else {
             unhandled(message);
         }
     }
+
+
+    private ActorSelection partitionFor( UniqueValueActor.Request request ) {
+        Address owner = owners[ request.getPartition( partitions ) ];
+        return getContext().actorSelection( owner + PARTITION_PATH );
+    }
+
+
+    /**
+     * Process messages about nodes up, down, reachable and unreachable.
+     * @return True if the message was a cluster event
+     */
+    private boolean processAsClusterEvent( Object message ) {
+
+        if (message instanceof ClusterEvent.CurrentClusterState) {
+            ClusterEvent.CurrentClusterState state = (ClusterEvent.CurrentClusterState) message;
+            nodes.clear();
+            for (Member member : state.getMembers()) {
+                if (member.hasRole("io") && member.status().equals( MemberStatus.up())) {
+                    nodes.add(member.address());
+                }
+            }
+
+        } else if (message instanceof ClusterEvent.MemberUp) {
+            ClusterEvent.MemberUp mUp = (ClusterEvent.MemberUp) message;
+            if (mUp.member().hasRole("io")) {
+                nodes.add( mUp.member().address() );
+            }
+
+        } else if (message instanceof ClusterEvent.MemberEvent) {
+            ClusterEvent.MemberEvent other = (ClusterEvent.MemberEvent) message;
+            nodes.remove(other.member().address());
+
+        } else if (message instanceof ClusterEvent.UnreachableMember) {
+            // hand the partitions over now rather than fail requests until the member is removed, a node that still
+            // sees it may handle the same values and Cassandra decides between them
+            ClusterEvent.UnreachableMember unreachable = (ClusterEvent.UnreachableMember) message;
+            nodes.remove(unreachable.member().address());
+
+        } else if (message instanceof ClusterEvent.ReachableMember) {
+            ClusterEvent.ReachableMember reachable = (ClusterEvent.ReachableMember) message;
+            if (reachable.member().hasRole("io")) {
+                nodes.add( reachable.member().address() );
+            }
+
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Hash every partition onto the ring of nodes we know of and drop cached reservations of partitions that moved.
+     */
+    private void rebalance() {
+
+        Address[] newOwners = new Address[0];
+
+        if ( !nodes.isEmpty() ) {
+            ConsistentHash<Address> ring = ConsistentHash.create( nodes, VIRTUAL_NODES_FACTOR );
+
+            newOwners = new Address[partitions];
+            for ( int i = 0; i < partitions; i++ ) {
+                newOwners[i] = ring.nodeFor( Integer.toString( i ) );
+            }
+        }
+
+        List<Integer> moved = new ArrayList<>();
+        for ( int i = 0; i < owners.length; i++ ) {
+            if ( newOwners.length == 0 || !owners[i].equals( newOwners[i] ) ) {
+                moved.add( i );
+            }
+        }
+
+        owners = newOwners;
+
+        if ( !moved.isEmpty() ) {
+            ReservationCache.getInstance().invalidatePartitions( moved );
+        }
+
+        logger.info( "UniqueValuesRouter {} rebalanced {} partitions over {} nodes, {} moved",
+            name, partitions, nodes.size(), moved.size() );
+    }
 }
@@ -25,6 +25,7 @@ import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.model.entity.Entity;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.field.Field;
+import rx.Observable;
 
 import java.util.UUID;
 
@@ -59,6 +60,32 @@ public interface UniqueValuesService extends RouterProducer {
     void confirmUniqueValues( ApplicationScope scope, Entity entity, UUID version , String region )
         throws UniqueValueException;
 
+    /**
+     * Reserve the unique values of an entity without blocking. All of the unique fields are sent in a single
+     * request and the reservations made by the entity are cancelled if any of them are not unique.
+     *
+     * @param scope Application scope of entity.
+     * @param entity Entity with unique values to be reserved.
+     * @param version Version of entity claiming unique values.
+     * @param region Authoritative Region to be used for this entity or null to use current region.
+     * @return Observable that emits the entity once its values are reserved, or fails with a UniqueValueException
+     * if a value is not unique.
+     */
+    Observable<Entity> reserveUniqueValuesAsync( ApplicationScope scope, Entity entity, UUID version, String region );
+
+    /**
+     * Confirm the unique values of an entity without blocking. All of the unique fields are sent in a single
+     * request and the reservations made by the entity are cancelled if any of them cannot be confirmed.
+     *
+     * @param scope Application scope of entity.
+     * @param entity Entity with unique values to be confirmed.
+     * @param version Version of entity claiming unique values.
+     * @param region Authoritative Region to be used for this entity or null to use current region.
+     * @return Observable that emits the entity once its values are confirmed, or fails with a UniqueValueException
+     * if a value is not unique.
+     */
+    Observable<Entity> confirmUniqueValuesAsync( ApplicationScope scope, Entity entity, UUID version, String region );
+
     // TODO: is this really necessary? MarkCommit and UniqueCleanup should do the trick
     /**
      * Release unique values held by an entity.
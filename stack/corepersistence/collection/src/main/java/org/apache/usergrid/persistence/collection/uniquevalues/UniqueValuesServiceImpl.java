@@ -20,14 +20,12 @@ package org.apache.usergrid.persistence.collection.uniquevalues;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
-import akka.actor.PoisonPill;
 import akka.actor.Props;
 import akka.cluster.client.ClusterClient;
-import akka.cluster.singleton.ClusterSingletonManager;
-import akka.cluster.singleton.ClusterSingletonManagerSettings;
-import akka.cluster.singleton.ClusterSingletonProxy;
-import akka.cluster.singleton.ClusterSingletonProxySettings;
+import akka.dispatch.ExecutionContexts;
+import akka.dispatch.OnComplete;
 import akka.pattern.Patterns;
+import akka.routing.FromConfig;
 import akka.util.Timeout;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
@@ -37,11 +35,10 @@ import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
 import org.apache.usergrid.persistence.actorsystem.GuiceActorProducer;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.model.entity.Entity;
-import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.field.Field;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import scala.concurrent.Await;
+import rx.Observable;
 import scala.concurrent.Future;
 
 import java.util.*;
@@ -71,14 +68,14 @@ public class UniqueValuesServiceImpl implements UniqueValuesService {
         this.uniqueValuesFig = uniqueValuesFig;
         this.table = table;
 
-        ReservationCache.init( uniqueValuesFig.getUniqueValueCacheTtl() );
+        ReservationCache.init( uniqueValuesFig.getUniqueValueCacheTtl(), uniqueValuesFig.getPartitions() );
         this.reservationCache = ReservationCache.getInstance();
     }
 
 
     @Override
     public String getRouterPath() {
-        return "/user/uvProxy";
+        return "/user/uvRouter";
     }
 
 
@@ -92,115 +89,113 @@ public class UniqueValuesServiceImpl implements UniqueValuesService {
     public void reserveUniqueValues(
         ApplicationScope scope, Entity entity, UUID version, String region ) throws UniqueValueException {
 
-        ready();
+        await( reserveUniqueValuesAsync( scope, entity, version, region ) );
+    }
 
-        try {
-            for (Field field : entity.getFields()) {
-                if (field.isUnique()) {
-                    reserveUniqueField( scope, entity, version, field, region );
-                }
-            }
 
-        } catch ( UniqueValueException e ) {
+    @Override
+    public void confirmUniqueValues(
+        ApplicationScope scope, Entity entity, UUID version, String region ) throws UniqueValueException {
 
-            for (Field field : entity.getFields()) {
-                if (field.isUnique()) {
-                    try {
-                        cancelUniqueField( scope, entity, version, field, region );
-                    } catch (Throwable ignored) {
-                        logger.error( "Error canceling unique field", ignored );
-                    }
-                }
-            }
-            throw e;
-        }
+        await( confirmUniqueValuesAsync( scope, entity, version, region ) );
     }
 
 
     @Override
-    public void confirmUniqueValues(
-        ApplicationScope scope, Entity entity, UUID version, String region ) throws UniqueValueException {
+    public Observable<Entity> reserveUniqueValuesAsync(
+        ApplicationScope scope, Entity entity, UUID version, String region ) {
 
         ready();
 
-        try {
-            for (Field field : entity.getFields()) {
-                if (field.isUnique()) {
-                    confirmUniqueField( scope, entity, version, field, region );
-                }
-            }
+        List<UniqueValueActor.Request> requests = new ArrayList<>();
 
-        } catch ( UniqueValueException e ) {
+        for ( Field field : entity.getFields() ) {
+            if ( field.isUnique() ) {
 
-            for (Field field : entity.getFields()) {
-                if (field.isUnique()) {
-                    try {
-                        cancelUniqueField( scope, entity, version, field, region );
-                    } catch (Throwable ex ) {
-                        logger.error( "Error canceling unique field", ex );
-                    }
+                UniqueValueActor.Request request =
+                    new UniqueValueActor.Reservation( scope, entity.getId(), version, field );
+
+                UniqueValueActor.Reservation res = reservationCache.get( request.getConsistentHashKey() );
+                if ( res != null && !res.getOwner().equals( request.getOwner() )) {
+                    cancelUniqueValues( scope, entity, version, region );
+                    return Observable.error( new UniqueValueException( "Error property not unique (cache)", field ) );
                 }
+
+                requests.add( request );
             }
-            throw e;
         }
 
+        return sendUniqueValueRequests( scope, entity, version, region, requests );
     }
 
 
-    private void reserveUniqueField(
-        ApplicationScope scope, Entity entity, UUID version, Field field, String region ) throws UniqueValueException {
+    @Override
+    public Observable<Entity> confirmUniqueValuesAsync(
+        ApplicationScope scope, Entity entity, UUID version, String region ) {
+
+        ready();
 
-        UniqueValueActor.Request request = new UniqueValueActor.Reservation(
-            scope, entity.getId(), version, field );
+        List<UniqueValueActor.Request> requests = new ArrayList<>();
 
-        UniqueValueActor.Reservation res = reservationCache.get( request.getConsistentHashKey() );
-        // if ( res != null ) {
-        //    getCacheCounter().inc();
-        // }
-        if ( res != null && !res.getOwner().equals( request.getOwner() )) {
-            throw new UniqueValueException( "Error property not unique (cache)", field);
+        for ( Field field : entity.getFields() ) {
+            if ( field.isUnique() ) {
+                requests.add( new UniqueValueActor.Confirmation( scope, entity.getId(), version, field ) );
+            }
         }
 
-        sendUniqueValueRequest( entity, region, request );
+        return sendUniqueValueRequests( scope, entity, version, region, requests );
     }
 
 
-    private void confirmUniqueField(
-        ApplicationScope scope, Entity entity, UUID version, Field field, String region) throws UniqueValueException {
-
-        UniqueValueActor.Confirmation request = new UniqueValueActor.Confirmation(
-            scope, entity.getId(), version, field );
+    /**
+     * Wait for a request to finish, rethrowing the UniqueValueException that Observable wraps.
+     */
+    private void await( Observable<Entity> observable ) throws UniqueValueException {
+        try {
+            observable.toBlocking().last();
 
-        sendUniqueValueRequest( entity, region, request );
+        } catch ( RuntimeException e ) {
+            if ( e.getCause() instanceof UniqueValueException ) {
+                throw (UniqueValueException) e.getCause();
+            }
+            throw e;
+        }
     }
 
 
-    private void cancelUniqueField( ApplicationScope scope,
-        Entity entity, UUID version, Field field, String region ) throws UniqueValueException {
+    private void cancelUniqueValues( ApplicationScope scope, Entity entity, UUID version, String region ) {
 
-        cancelUniqueField( scope, entity.getId(), version, field, region );
-    }
+        List<UniqueValueActor.Request> requests = new ArrayList<>();
 
+        for ( Field field : entity.getFields() ) {
+            if ( field.isUnique() ) {
+                requests.add( new UniqueValueActor.Cancellation( scope, entity.getId(), version, field ) );
+            }
+        }
+
+        if ( requests.isEmpty() ) {
+            return;
+        }
 
-    private void cancelUniqueField( ApplicationScope scope,
-        Id entityId, UUID version, Field field, String region ) throws UniqueValueException {
+        UniqueValueActor.Batch batch = new UniqueValueActor.Batch( requests );
 
-        UniqueValueActor.Cancellation request = new UniqueValueActor.Cancellation(
-            scope, entityId, version, field );
+        try {
+            if ( actorSystemManager.getCurrentRegion().equals( region ) ) {
 
-        if ( actorSystemManager.getCurrentRegion().equals( region ) ) {
+                // sending to current region, use local clientActor
+                ActorRef clientActor = actorSystemManager.getClientActor();
+                clientActor.tell( batch, null );
 
-            // sending to current region, use local clientActor
-            ActorRef clientActor = actorSystemManager.getClientActor();
-            clientActor.tell( request, null );
+            } else {
 
-        } else {
+                // sending to remote region, send via cluster client for that region
+                ActorRef clusterClient = actorSystemManager.getClusterClient( region );
+                clusterClient.tell( new ClusterClient.Send("/user/clientActor", batch), null );
+            }
 
-            // sending to remote region, send via cluster client for that region
-            ActorRef clusterClient = actorSystemManager.getClusterClient( region );
-            clusterClient.tell( new ClusterClient.Send("/user/clientActor", request), null );
+        } catch ( Throwable t ) {
+            logger.error( "Error canceling unique fields", t );
         }
-
     }
 
 
@@ -217,88 +212,116 @@ public class UniqueValuesServiceImpl implements UniqueValuesService {
     }
 
 
-    private void sendUniqueValueRequest(
-        Entity entity, String region, UniqueValueActor.Request request ) throws UniqueValueException {
+    /**
+     * Send the requests for all of the unique fields of an entity as one batch, retrying if the actors fail or do not
+     * answer in time. If any value is not unique all of the values held by the entity are cancelled.
+     */
+    private Observable<Entity> sendUniqueValueRequests( ApplicationScope scope, Entity entity, UUID version,
+                                                        String region, List<UniqueValueActor.Request> requests ) {
 
-        int maxRetries = 5;
-        int retries = 0;
+        if ( requests.isEmpty() ) {
+            return Observable.just( entity );
+        }
 
-        UniqueValueActor.Response response = null;
-        while ( retries++ < maxRetries ) {
-            try {
-                Timeout t = new Timeout( 1, TimeUnit.SECONDS );
+        final UniqueValueActor.Batch batch = new UniqueValueActor.Batch( requests );
+        final int maxRetries = uniqueValuesFig.getRequestRetries();
 
-                Future<Object> fut;
+        // each subscription sends the batch again, which is how retry works
+        Observable<Entity> observable = Observable.create( subscriber -> {
 
-                if ( actorSystemManager.getCurrentRegion().equals( region ) ) {
+            Timeout t = new Timeout( uniqueValuesFig.getRequestTimeout(), TimeUnit.MILLISECONDS );
 
-                    // sending to current region, use local clientActor
-                    ActorRef clientActor = actorSystemManager.getClientActor();
-                    fut = Patterns.ask( clientActor, request, t );
+            Future<Object> fut;
 
-                } else {
+            if ( actorSystemManager.getCurrentRegion().equals( region ) ) {
 
-                    // sending to remote region, send via cluster client for that region
-                    ActorRef clusterClient = actorSystemManager.getClusterClient( region );
-                    fut = Patterns.ask( clusterClient, new ClusterClient.Send("/user/clientActor", request), t );
-                }
+                // sending to current region, use local clientActor
+                ActorRef clientActor = actorSystemManager.getClientActor();
+                fut = Patterns.ask( clientActor, batch, t );
+
+            } else {
+
+                // sending to remote region, send via cluster client for that region
+                ActorRef clusterClient = actorSystemManager.getClusterClient( region );
+                fut = Patterns.ask( clusterClient, new ClusterClient.Send("/user/clientActor", batch), t );
+            }
 
-                // wait (up to timeout) for response
-                response = (UniqueValueActor.Response) Await.result( fut, t.duration() );
+            fut.onComplete( new OnComplete<Object>() {
+                @Override
+                public void onComplete( Throwable failure, Object response ) {
 
-                if ( response != null && (
-                        response.getStatus().equals( UniqueValueActor.Response.Status.IS_UNIQUE )
-                                || response.getStatus().equals( UniqueValueActor.Response.Status.NOT_UNIQUE ))) {
-                    if ( retries > 1 ) {
-                        logger.debug("IS_UNIQUE after retrying {} for entity {} rowkey {}",
-                                retries, entity.getId().getUuid(), request.getConsistentHashKey());
+                    if ( failure != null ) {
+                        subscriber.onError( failure );
+                        return;
                     }
-                    break;
-
-                } else if ( response != null  ) {
-                    logger.debug("ERROR status retrying {} entity {} rowkey {}",
-                            retries, entity.getId().getUuid(), request.getConsistentHashKey());
-                } else {
-                    logger.debug("Timed-out retrying {} entity {} rowkey",
-                            retries, entity.getId().getUuid(), request.getConsistentHashKey());
-                }
 
-            } catch ( Exception e ) {
-                logger.debug("{} caused retry {} for entity {} rowkey {}",
-                    e.getClass().getSimpleName(), retries, entity.getId().getUuid(), request.getConsistentHashKey());
-            }
-        }
+                    if ( !( response instanceof UniqueValueActor.BatchResponse ) ) {
+                        subscriber.onError( new RuntimeException( "Unexpected unique value response " + response ) );
+                        return;
+                    }
 
-        if ( response == null || response.getStatus().equals( UniqueValueActor.Response.Status.ERROR )) {
-            logger.debug("ERROR after retrying {} for entity {} rowkey {}",
-                    retries, entity.getId().getUuid(), request.getConsistentHashKey());
+                    List<UniqueValueActor.Response> responses =
+                        ((UniqueValueActor.BatchResponse) response).getResponses();
 
-            // should result in an HTTP 503
-            throw new RuntimeException( "Error verifying unique value after " + retries + " retries");
-        }
+                    for ( int i = 0; i < responses.size(); i++ ) {
+                        UniqueValueActor.Response.Status status = responses.get( i ).getStatus();
 
-        if ( response.getStatus().equals( UniqueValueActor.Response.Status.NOT_UNIQUE )) {
+                        if ( status.equals( UniqueValueActor.Response.Status.NOT_UNIQUE ) ) {
 
-            // should result in an HTTP 409 (conflict)
-            throw new UniqueValueException( "Error property not unique", request.getField() );
-        }
+                            // should result in an HTTP 409 (conflict)
+                            subscriber.onError( new UniqueValueException(
+                                "Error property not unique", requests.get( i ).getField() ) );
+                            return;
+                        }
+
+                        if ( status.equals( UniqueValueActor.Response.Status.ERROR ) ) {
+                            subscriber.onError( new RuntimeException(
+                                "Error status for rowkey " + requests.get( i ).getConsistentHashKey() ) );
+                            return;
+                        }
+                    }
+
+                    subscriber.onNext( entity );
+                    subscriber.onCompleted();
+                }
+            }, ExecutionContexts.global() );
+        } );
+
+        return observable
+
+            .retry( ( retries, t ) -> {
+                if ( t instanceof UniqueValueException || retries >= maxRetries ) {
+                    return false;
+                }
+                logger.debug( "{} caused retry {} for entity {}",
+                    t.getClass().getSimpleName(), retries, entity.getId().getUuid() );
+                return true;
+            } )
+
+            .onErrorResumeNext( t -> {
+                if ( t instanceof UniqueValueException ) {
+                    cancelUniqueValues( scope, entity, version, region );
+                    return Observable.error( t );
+                }
+
+                logger.debug( "ERROR after retrying {} for entity {}", maxRetries, entity.getId().getUuid() );
+
+                // should result in an HTTP 503
+                return Observable.error(
+                    new RuntimeException( "Error verifying unique value after " + maxRetries + " retries", t ) );
+            } );
     }
 
 
     @Override
     public void produceRouter( ActorSystem system, String role ) {
 
-        ClusterSingletonManagerSettings settings =
-            ClusterSingletonManagerSettings.create( system ).withRole("io");
-
-        system.actorOf( ClusterSingletonManager.props(
-            Props.create( GuiceActorProducer.class, injector, UniqueValuesRouter.class ),
-            PoisonPill.getInstance(), settings ), "uvRouter" );
+        // the UniqueValueActors for the partitions this node owns
+        system.actorOf( FromConfig.getInstance().props( Props.create( UniqueValueActor.class ) ), "uvPartition" );
 
-        ClusterSingletonProxySettings proxySettings =
-            ClusterSingletonProxySettings.create( system ).withRole( role );
-
-        system.actorOf( ClusterSingletonProxy.props( "/user/uvRouter", proxySettings ), "uvProxy" );
+        // every node routes requests to the owners of their partitions, there is no single router to wait on
+        system.actorOf(
+            Props.create( GuiceActorProducer.class, injector, UniqueValuesRouter.class ), "uvRouter" );
 
         subscribeToReservations( system );
     }
@@ -336,22 +359,10 @@ public class UniqueValuesServiceImpl implements UniqueValuesService {
             deploymentMap = (Map<String, Object>) ((Map) akka.get( "actor" )).get( "deployment" );
         }
 
-        deploymentMap.put( "/uvRouter/singleton/router", new HashMap<String, Object>() {{
+        // requests reaching a node are spread over its actors by value, so each value is handled by one actor
+        deploymentMap.put( "/uvPartition", new HashMap<String, Object>() {{
             put( "router", "consistent-hashing-pool" );
-            put( "cluster", new HashMap<String, Object>() {{
-                put( "enabled", "on" );
-                put( "allow-local-routees", "on" );
-                put( "use-role", "io" );
-                put( "max-nr-of-instances-per-node", numInstancesPerNode );
-                put( "failure-detector", new HashMap<String, Object>() {{
-                    put( "threshold", "10" );
-                    put( "acceptable-heartbeat-pause", "3 s" );
-                    put( "heartbeat-interval", "1 s" );
-                    put( "heartbeat-request", new HashMap<String, Object>() {{
-                        put( "expected-response-after", "3 s" );
-                    }} );
-                }} );
-            }} );
+            put( "nr-of-instances", numInstancesPerNode );
         }} );
 
     }
@@ -364,6 +375,7 @@ public class UniqueValuesServiceImpl implements UniqueValuesService {
         messageTypes.add( UniqueValueActor.Reservation.class);
         messageTypes.add( UniqueValueActor.Cancellation.class);
         messageTypes.add( UniqueValueActor.Confirmation.class);
+        messageTypes.add( UniqueValueActor.Batch.class);
         return messageTypes;
     }
 }
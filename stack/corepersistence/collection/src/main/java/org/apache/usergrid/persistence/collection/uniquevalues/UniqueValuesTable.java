@@ -32,7 +32,13 @@ public interface UniqueValuesTable {
 
     Id lookupOwner( ApplicationScope scope, String type, Field field ) throws ConnectionException;
 
-    void reserve( ApplicationScope scope, Id owner, UUID version, Field field ) throws ConnectionException;
+    /**
+     * Reserve the unique value for the owner.  The reservation is written first and read back at a consistent level,
+     * so Cassandra decides between owners that reserve the value at the same time, whichever nodes they went through.
+     *
+     * @return False if the reservation of another owner won, ours is removed
+     */
+    boolean reserve( ApplicationScope scope, Id owner, UUID version, Field field ) throws ConnectionException;
 
     void confirm( ApplicationScope scope, Id owner, UUID version, Field field ) throws ConnectionException;
 
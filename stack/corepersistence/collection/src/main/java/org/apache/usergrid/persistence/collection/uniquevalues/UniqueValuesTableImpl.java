@@ -27,6 +27,7 @@ import org.apache.usergrid.persistence.collection.serialization.UniqueValue;
 import org.apache.usergrid.persistence.collection.serialization.UniqueValueSerializationStrategy;
 import org.apache.usergrid.persistence.collection.serialization.UniqueValueSet;
 import org.apache.usergrid.persistence.collection.serialization.impl.UniqueValueImpl;
+import org.apache.usergrid.persistence.core.astyanax.CassandraConfig;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.field.Field;
@@ -45,11 +46,14 @@ public class UniqueValuesTableImpl implements UniqueValuesTable {
 
     final UniqueValueSerializationStrategy strat;
     final UniqueValuesFig uniqueValuesFig;
+    final CassandraConfig cassandraConfig;
 
     @Inject
-    public UniqueValuesTableImpl( final UniqueValueSerializationStrategy strat, UniqueValuesFig uniqueValuesFig) {
+    public UniqueValuesTableImpl( final UniqueValueSerializationStrategy strat, UniqueValuesFig uniqueValuesFig,
+                                  final CassandraConfig cassandraConfig ) {
         this.strat = strat;
         this.uniqueValuesFig = uniqueValuesFig;
+        this.cassandraConfig = cassandraConfig;
     }
 
 
@@ -62,11 +66,28 @@ public class UniqueValuesTableImpl implements UniqueValuesTable {
     }
 
     @Override
-    public void reserve( ApplicationScope scope, Id owner, UUID version, Field field ) throws ConnectionException {
+    public boolean reserve( ApplicationScope scope, Id owner, UUID version, Field field ) throws ConnectionException {
 
         UniqueValue uv = new UniqueValueImpl( field, owner, version);
         final MutationBatch write = strat.write( scope, uv, uniqueValuesFig.getUniqueValueReservationTtl() );
         write.execute();
+
+        // the lookup that came before is only a hint, two nodes can both find the value free while the cluster
+        // membership changes.  Read back without read repair, the oldest reservation is the owner
+        UniqueValueSet set = strat.load( scope, cassandraConfig.getConsistentReadCL(), owner.getType(),
+            Collections.singletonList( field ), false );
+
+        UniqueValue winner = set.getValue( field.getName() );
+
+        if ( winner != null && !winner.getEntityId().equals( owner ) ) {
+            logger.debug( "Reservation of unique value {}={} by {} lost to {}",
+                field.getName(), field.getValue(), owner, winner.getEntityId() );
+
+            strat.delete( scope, uv ).execute();
+            return false;
+        }
+
+        return true;
     }
 
     @Override
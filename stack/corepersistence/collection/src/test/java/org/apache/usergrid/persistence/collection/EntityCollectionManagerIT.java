@@ -146,6 +146,57 @@ public class EntityCollectionManagerIT extends AbstractUniqueValueTest {
     }
 
 
+    @Test
+    public void bulkWrite() {
+
+        ApplicationScope context = new ApplicationScopeImpl( new SimpleId( "organization" ) );
+
+        EntityCollectionManager manager = factory.createCollectionManager( context );
+
+        final String prefix = UUID.randomUUID().toString();
+
+        Entity existing = new Entity( new SimpleId( "test" ) );
+        existing.setField( new StringField( "name", prefix + "-taken", true ) );
+        manager.write( existing, null ).toBlocking().last();
+
+        List<Entity> entities = new ArrayList<>();
+        for ( int i = 0; i < 10; i++ ) {
+            Entity entity = new Entity( new SimpleId( "test" ) );
+            entity.setField( new StringField( "name", prefix + "-" + i, true ) );
+            entities.add( entity );
+        }
+
+        // one value already written, one claimed twice in the batch
+        Entity takenBefore = new Entity( new SimpleId( "test" ) );
+        takenBefore.setField( new StringField( "name", prefix + "-taken", true ) );
+        entities.add( takenBefore );
+
+        Entity takenInBatch = new Entity( new SimpleId( "test" ) );
+        takenInBatch.setField( new StringField( "name", prefix + "-3", true ) );
+        entities.add( takenInBatch );
+
+        BulkWriteResult result = manager.write( entities, null ).toBlocking().last();
+
+        assertEquals( 10, result.getWritten().size() );
+        assertEquals( 2, result.getFailures().size() );
+        assertTrue( result.getFailures().get( takenBefore.getId() ) instanceof WriteUniqueVerifyException );
+        assertTrue( result.getFailures().get( takenInBatch.getId() ) instanceof WriteUniqueVerifyException );
+
+        for ( Entity written : result.getWritten() ) {
+            assertNotNull( "Version was assigned", written.getVersion() );
+
+            Entity loaded = manager.load( written.getId() ).toBlocking().lastOrDefault( null );
+            assertEquals( written, loaded );
+
+            Id owner = manager.getIdField( "test", written.getField( "name" ) ).toBlocking().lastOrDefault( null );
+            assertEquals( written.getId(), owner );
+        }
+
+        assertNull( manager.load( takenBefore.getId() ).toBlocking().lastOrDefault( null ) );
+        assertNull( manager.load( takenInBatch.getId() ).toBlocking().lastOrDefault( null ) );
+    }
+
+
     @Test
     public void writeAndLoad() {
 
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection;
+
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class FieldSelectorTest {
+
+
+    @Test
+    public void selectsPaths() {
+        final FieldSelector selector = FieldSelector.compile( Arrays.asList( "name", "address.city", "a.b.c" ) );
+
+        assertTrue( selector.isSelected( "name" ) );
+        assertTrue( selector.isSelected( "NAME" ) );
+        assertTrue( selector.isSelected( "address" ) );
+        assertTrue( selector.isSelected( "address.city" ) );
+        assertTrue( selector.isSelected( "a" ) );
+        assertFalse( selector.isSelected( "city" ) );
+        assertFalse( selector.isSelected( "description" ) );
+    }
+
+
+    @Test
+    public void prunesNestedMaps() {
+        final FieldSelector selector = FieldSelector.compile( Arrays.asList( "name", "address.city", "other.missing" ) );
+
+        final Map<String, Object> address = new HashMap<>();
+        address.put( "city", "san francisco" );
+        address.put( "street", "main street" );
+
+        final Map<String, Object> other = new HashMap<>();
+        other.put( "present", "value" );
+
+        final Map<String, Object> map = new HashMap<>();
+        map.put( "name", "fred" );
+        map.put( "description", "not selected" );
+        map.put( "address", address );
+        map.put( "other", other );
+
+        selector.prune( map );
+
+        assertEquals( 2, map.size() );
+        assertEquals( "fred", map.get( "name" ) );
+        assertEquals( 1, address.size() );
+        assertEquals( "san francisco", address.get( "city" ) );
+
+        //none of the nested fields of other were selected, so it's dropped
+        assertNull( map.get( "other" ) );
+    }
+
+
+    @Test
+    public void prunesEntity() {
+        final FieldSelector selector = FieldSelector.compile( Arrays.asList( "address", "address.city" ) );
+
+        final EntityObject address = new EntityObject();
+        address.setField( new StringField( "city", "san francisco" ) );
+        address.setField( new StringField( "street", "main street" ) );
+
+        final Entity entity = new Entity( new SimpleId( "test" ) );
+        entity.setField( new StringField( "name", "fred" ) );
+        entity.setField( new EntityObjectField( "address", address ) );
+
+        selector.prune( entity );
+
+        assertNull( entity.getField( "name" ) );
+        assertNotNull( entity.getField( "address" ) );
+
+        //selecting the whole of address wins over selecting part of it
+        assertEquals( 2, address.getFieldMap().size() );
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.cache;
+
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.util.EntityUtils;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.codahale.metrics.Meter;
+import com.google.common.base.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class EntityCacheTest {
+
+    private final ApplicationScope applicationScope =
+        new ApplicationScopeImpl( new SimpleId( UUIDGenerator.newTimeUUID(), "application" ) );
+
+    private EntityCache entityCache;
+
+
+    @Before
+    public void setup() {
+        final EntityCacheFig entityCacheFig = mock( EntityCacheFig.class );
+        when( entityCacheFig.getCacheSize() ).thenReturn( 100 );
+        when( entityCacheFig.getCacheTimeout() ).thenReturn( 60000 );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getMeter( any( Class.class ), anyString() ) ).thenReturn( new Meter() );
+
+        entityCache = new EntityCache( entityCacheFig, metricsFactory );
+    }
+
+
+    @Test
+    public void cachedEntityIsCopied() {
+        final Id entityId = new SimpleId( "thing" );
+        final MvccEntity entity = createEntity( entityId, UUIDGenerator.newTimeUUID(), "first" );
+
+        entityCache.put( applicationScope, entity );
+
+        final MvccEntity cached = get( entityId );
+
+        assertEquals( entity.getVersion(), cached.getVersion() );
+        assertEquals( MvccEntity.Status.COMPLETE, cached.getStatus() );
+        assertEquals( "first", cached.getEntity().get().getField( "name" ).getValue() );
+
+        //changing what we got back doesn't change the cache
+        cached.getEntity().get().setField( new StringField( "name", "changed" ) );
+
+        final MvccEntity again = get( entityId );
+
+        assertNotSame( cached.getEntity().get(), again.getEntity().get() );
+        assertEquals( "first", again.getEntity().get().getField( "name" ).getValue() );
+    }
+
+
+    @Test
+    public void cachedEntityKeepsSize() {
+        final Id entityId = new SimpleId( "thing" );
+        final UUID version = UUIDGenerator.newTimeUUID();
+
+        final Entity entity = new Entity( entityId );
+        EntityUtils.setVersion( entity, version );
+        entity.setSize( 42 );
+
+        entityCache.put( applicationScope,
+            new MvccEntityImpl( entityId, version, MvccEntity.Status.COMPLETE, Optional.of( entity ), 42 ) );
+
+        final MvccEntity cached = get( entityId );
+
+        assertEquals( 42, cached.getSize() );
+        assertEquals( "The size isn't lost on a hit", 42, cached.getEntity().get().getSize() );
+    }
+
+
+    @Test
+    public void olderVersionIsntCachedAfterInvalidate() {
+        final Id entityId = new SimpleId( "thing" );
+
+        final UUID readVersion = UUIDGenerator.newTimeUUID();
+        final UUID writtenVersion = UUIDGenerator.newTimeUUID();
+
+        entityCache.put( applicationScope, createEntity( entityId, readVersion, "first" ) );
+
+        entityCache.invalidate( applicationScope, entityId, writtenVersion );
+
+        assertTrue( "Invalidated entities aren't returned", getAll( entityId ).isEmpty() );
+
+        //a read that started before the write finishes after it
+        entityCache.put( applicationScope, createEntity( entityId, readVersion, "first" ) );
+
+        assertTrue( "The older version isn't cached", getAll( entityId ).isEmpty() );
+
+        entityCache.put( applicationScope, createEntity( entityId, writtenVersion, "second" ) );
+
+        final MvccEntity cached = get( entityId );
+
+        assertEquals( writtenVersion, cached.getVersion() );
+        assertEquals( "second", cached.getEntity().get().getField( "name" ).getValue() );
+    }
+
+
+    @Test
+    public void cachedVersionIsInvalidated() {
+        final Id entityId = new SimpleId( "thing" );
+        final UUID version = UUIDGenerator.newTimeUUID();
+
+        entityCache.put( applicationScope, createEntity( entityId, version, "first" ) );
+
+        //the cached version was deleted
+        entityCache.invalidate( applicationScope, entityId, version );
+
+        assertTrue( "Invalidated versions aren't returned", getAll( entityId ).isEmpty() );
+    }
+
+
+    @Test
+    public void deletedEntity() {
+        final Id entityId = new SimpleId( "thing" );
+        final UUID version = UUIDGenerator.newTimeUUID();
+
+        entityCache.put( applicationScope,
+            new MvccEntityImpl( entityId, version, MvccEntity.Status.DELETED, Optional.<Entity>absent(), 0 ) );
+
+        final MvccEntity cached = get( entityId );
+
+        assertEquals( version, cached.getVersion() );
+        assertEquals( MvccEntity.Status.DELETED, cached.getStatus() );
+        assertFalse( cached.getEntity().isPresent() );
+    }
+
+
+    @Test
+    public void applicationsDontShare() {
+        final Id entityId = new SimpleId( "thing" );
+
+        entityCache.put( applicationScope, createEntity( entityId, UUIDGenerator.newTimeUUID(), "first" ) );
+
+        final ApplicationScope otherScope =
+            new ApplicationScopeImpl( new SimpleId( UUIDGenerator.newTimeUUID(), "application" ) );
+
+        assertTrue( entityCache.getAll( otherScope, Collections.singleton( entityId ) ).isEmpty() );
+    }
+
+
+    private MvccEntity get( final Id entityId ) {
+        final Map<Id, MvccEntity> found = getAll( entityId );
+
+        assertEquals( 1, found.size() );
+
+        return found.get( entityId );
+    }
+
+
+    private Map<Id, MvccEntity> getAll( final Id entityId ) {
+        return entityCache.getAll( applicationScope, Collections.singleton( entityId ) );
+    }
+
+
+    private static MvccEntity createEntity( final Id entityId, final UUID version, final String name ) {
+        final Entity entity = new Entity( entityId );
+        EntityUtils.setVersion( entity, version );
+        entity.setField( new StringField( "name", name ) );
+
+        return new MvccEntityImpl( entityId, version, MvccEntity.Status.COMPLETE, entity );
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.serialization.SerializationFig;
+import org.apache.usergrid.persistence.collection.serialization.impl.MvccEntitySerializationStrategyV3Impl.EntityWrapper;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.EntityMap;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.BooleanField;
+import org.apache.usergrid.persistence.model.field.DoubleField;
+import org.apache.usergrid.persistence.model.field.IntegerField;
+import org.apache.usergrid.persistence.model.field.LongField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.UUIDField;
+import org.apache.usergrid.persistence.model.util.EntityUtils;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+import com.netflix.astyanax.serializers.AbstractSerializer;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * JMH benchmark comparing the V3 json entity encoding with the V4 binary encoding.  Reports encode and decode
+ * throughput, and the encoded bytes per entity as an auxiliary counter.  Run with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.apache.usergrid.persistence.collection.serialization.impl.EntitySerializerBenchmark
+ * </pre>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class EntitySerializerBenchmark {
+
+
+    /**
+     * The number of string fields to add to the entity, to measure both small and large documents
+     */
+    @Param( { "10", "100", "1000" } )
+    public int fieldCount;
+
+    private AbstractSerializer<EntityWrapper> v3Serializer;
+    private AbstractSerializer<EntityWrapper> v4Serializer;
+
+    private EntityWrapper wrapper;
+
+    private ByteBuffer v3Bytes;
+    private ByteBuffer v4Bytes;
+
+
+    @Setup
+    public void setup() {
+        final SerializationFig serializationFig = mock( SerializationFig.class );
+        when( serializationFig.getMaxEntitySize() ).thenReturn( Integer.MAX_VALUE );
+        when( serializationFig.getEntityCompressionEnabled() ).thenReturn( true );
+        when( serializationFig.getEntityCompressionThreshold() ).thenReturn( 1024 );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getHistogram( any( Class.class ), anyString() ) )
+            .thenReturn( new Histogram( new UniformReservoir() ) );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+        when( metricsFactory.getCounter( any( Class.class ), anyString() ) ).thenReturn( new Counter() );
+
+        final MvccEntitySerializationStrategyV3Impl v3 =
+            new MvccEntitySerializationStrategyV3Impl( null, serializationFig, null, metricsFactory );
+
+        v3Serializer = v3.new EntitySerializer( serializationFig, metricsFactory );
+        v4Serializer = new MvccEntitySerializationStrategyV4Impl.EntitySerializer( serializationFig, metricsFactory );
+
+        final Entity entity = createEntity( fieldCount );
+
+        wrapper = new EntityWrapper( entity.getId(), entity.getVersion(), MvccEntity.Status.COMPLETE,
+            EntityMap.fromEntity( entity ), 0 );
+
+        v3Bytes = v3Serializer.toByteBuffer( wrapper );
+        v4Bytes = v4Serializer.toByteBuffer( wrapper );
+    }
+
+
+    @Benchmark
+    public ByteBuffer encodeV3( final EncodedSize size ) {
+        final ByteBuffer buffer = v3Serializer.toByteBuffer( wrapper );
+        size.bytes += buffer.remaining();
+        return buffer;
+    }
+
+
+    @Benchmark
+    public ByteBuffer encodeV4( final EncodedSize size ) {
+        final ByteBuffer buffer = v4Serializer.toByteBuffer( wrapper );
+        size.bytes += buffer.remaining();
+        return buffer;
+    }
+
+
+    @Benchmark
+    public EntityWrapper decodeV3() {
+        return v3Serializer.fromByteBuffer( v3Bytes.duplicate() );
+    }
+
+
+    @Benchmark
+    public EntityWrapper decodeV4() {
+        return v4Serializer.fromByteBuffer( v4Bytes.duplicate() );
+    }
+
+
+    /**
+     * Total encoded bytes per iteration.  Divided by the op count this gives bytes per entity
+     */
+    @AuxCounters
+    @State( Scope.Thread )
+    public static class EncodedSize {
+        public long bytes;
+
+
+        @Setup( Level.Iteration )
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+
+    private static Entity createEntity( final int fieldCount ) {
+
+        final UUID version = UUIDGenerator.newTimeUUID();
+
+        final Entity entity = new Entity( new SimpleId( "test" ) );
+
+        EntityUtils.setVersion( entity, version );
+
+        entity.setField( new BooleanField( "boolean", false ) );
+        entity.setField( new DoubleField( "double", 1d ) );
+        entity.setField( new IntegerField( "int", 1 ) );
+        entity.setField( new LongField( "long", 1l ) );
+        entity.setField( new UUIDField( "uuid", UUIDGenerator.newTimeUUID() ) );
+
+        for ( int i = 0; i < fieldCount; i++ ) {
+            entity.setField( new StringField( "field" + i, "value of field " + i ) );
+        }
+
+        return entity;
+    }
+
+
+    public static void main( String[] args ) throws RunnerException {
+        final Options options =
+            new OptionsBuilder().include( EntitySerializerBenchmark.class.getSimpleName() ).build();
+
+        new Runner( options ).run();
+    }
+}
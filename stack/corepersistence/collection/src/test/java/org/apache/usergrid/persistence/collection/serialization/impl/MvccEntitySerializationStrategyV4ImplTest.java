@@ -0,0 +1,158 @@
+package org.apache.usergrid.persistence.collection.serialization.impl;
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.apache.usergrid.persistence.collection.FieldSelector;
+import org.apache.usergrid.persistence.collection.MvccEntity;
+import org.apache.usergrid.persistence.collection.guice.TestCollectionModule;
+import org.apache.usergrid.persistence.collection.mvcc.entity.impl.MvccEntityImpl;
+import org.apache.usergrid.persistence.collection.serialization.MvccEntitySerializationStrategy;
+import org.apache.usergrid.persistence.collection.util.EntityHelper;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.core.test.ITRunner;
+import org.apache.usergrid.persistence.core.test.UseModules;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.EntityObjectField;
+import org.apache.usergrid.persistence.model.field.IntegerField;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.field.value.EntityObject;
+import org.apache.usergrid.persistence.model.util.EntityUtils;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.google.inject.Inject;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Same tests as v2, we just override some methods to ensure they throw the correct exceptions, and check
+ * that large entities are compressed
+ */
+@RunWith( ITRunner.class )
+@UseModules( TestCollectionModule.class )
+public class MvccEntitySerializationStrategyV4ImplTest extends MvccEntitySerializationStrategyV2Test {
+    @Inject
+    private MvccEntitySerializationStrategyV4Impl serializationStrategy;
+
+
+    @Override
+    protected MvccEntitySerializationStrategy getMvccEntitySerializationStrategy() {
+        return serializationStrategy;
+    }
+
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void loadAscendingHistory() throws ConnectionException {
+        final Id applicationId = new SimpleId( "application" );
+        final String name = "test";
+
+        ApplicationScope context = new ApplicationScopeImpl( applicationId );
+
+
+        final Id entityId = new SimpleId( UUIDGenerator.newTimeUUID(), name );
+        final UUID version1 = UUIDGenerator.newTimeUUID();
+
+        serializationStrategy.loadAscendingHistory( context, entityId, version1, 20 );
+    }
+
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void loadDescendingHistory() throws ConnectionException {
+
+        final String name = "test";
+
+        final Id applicationId = new SimpleId( "application" );
+
+        ApplicationScope context = new ApplicationScopeImpl( applicationId );
+
+        final Id entityId = new SimpleId( UUIDGenerator.newTimeUUID(), name );
+        final UUID version1 = UUIDGenerator.newTimeUUID();
+
+        serializationStrategy.loadDescendingHistory( context, entityId, version1, 20 );
+    }
+
+
+    @Test
+    public void largeEntityCompressed() throws ConnectionException {
+
+        final int setSize = 65535;
+
+        final Entity entity = EntityHelper.generateEntity( setSize );
+
+        final Id applicationId = new SimpleId( "application" );
+
+        ApplicationScope context = new ApplicationScopeImpl( applicationId );
+
+        final Id id = entity.getId();
+        final UUID version = UUIDGenerator.newTimeUUID();
+        EntityUtils.setVersion( entity, version );
+
+        final MvccEntity mvccEntity = new MvccEntityImpl( id, version, MvccEntity.Status.COMPLETE, entity );
+
+        serializationStrategy.write( context, mvccEntity ).execute();
+
+        assertTrue( "Entity should be compressed below it's raw size", mvccEntity.getSize() < setSize );
+
+        final MvccEntity loadedEntity = serializationStrategy.load( context, id ).get();
+
+        EntityHelper.verifyDeepEquals( entity, loadedEntity.getEntity().get() );
+    }
+
+
+    @Test
+    public void loadSelectedFields() throws ConnectionException {
+
+        final Id applicationId = new SimpleId( "application" );
+
+        ApplicationScope context = new ApplicationScopeImpl( applicationId );
+
+        final Entity entity = new Entity( new SimpleId( "test" ) );
+        final UUID version = UUIDGenerator.newTimeUUID();
+        EntityUtils.setVersion( entity, version );
+
+        entity.setField( new StringField( "name", "fred" ) );
+        entity.setField( new StringField( "description", "a long description we don't want" ) );
+        entity.setField( new IntegerField( "age", 30 ) );
+
+        final EntityObject address = new EntityObject();
+        address.setField( new StringField( "city", "san francisco" ) );
+        address.setField( new StringField( "street", "main street" ) );
+        entity.setField( new EntityObjectField( "address", address ) );
+
+        final MvccEntity mvccEntity =
+            new MvccEntityImpl( entity.getId(), version, MvccEntity.Status.COMPLETE, entity );
+
+        serializationStrategy.write( context, mvccEntity ).execute();
+
+        final FieldSelector fieldSelector = FieldSelector.compile( Arrays.asList( "name", "age", "address.city" ) );
+
+        final MvccEntity loaded = serializationStrategy
+            .load( context, Collections.singleton( entity.getId() ), UUIDGenerator.newTimeUUID(), fieldSelector )
+            .getEntity( entity.getId() );
+
+        final Entity loadedEntity = loaded.getEntity().get();
+
+        assertEquals( version, loaded.getVersion() );
+        assertEquals( 3, loadedEntity.getFieldMap().size() );
+        assertEquals( "fred", loadedEntity.getField( "name" ).getValue() );
+        assertEquals( 30, loadedEntity.getField( "age" ).getValue() );
+        assertNull( loadedEntity.getField( "description" ) );
+
+        final EntityObject loadedAddress = ( EntityObject ) loadedEntity.getField( "address" ).getValue();
+
+        assertEquals( 1, loadedAddress.getFieldMap().size() );
+        assertEquals( "san francisco", loadedAddress.getField( "city" ).getValue() );
+    }
+}
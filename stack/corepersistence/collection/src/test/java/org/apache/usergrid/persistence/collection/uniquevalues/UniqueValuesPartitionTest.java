@@ -0,0 +1,346 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.uniquevalues;
+
+import akka.actor.ActorSystem;
+import akka.cluster.Cluster;
+import akka.cluster.Member;
+import akka.cluster.MemberStatus;
+import akka.dispatch.Futures;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+import com.google.inject.Inject;
+import com.typesafe.config.ConfigFactory;
+import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
+import org.apache.usergrid.persistence.collection.AbstractUniqueValueTest;
+import org.apache.usergrid.persistence.collection.guice.TestCollectionModule;
+import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.core.test.ITRunner;
+import org.apache.usergrid.persistence.core.test.UseModules;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.Await;
+import scala.concurrent.Future;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Runs the unique value routers on a cluster of several actor systems in this JVM.
+ */
+@RunWith( ITRunner.class )
+@UseModules( TestCollectionModule.class )
+public class UniqueValuesPartitionTest extends AbstractUniqueValueTest {
+    private static final Logger logger = LoggerFactory.getLogger( UniqueValuesPartitionTest.class );
+
+    private static final String CLUSTER_NAME = "PartitionTestSystem";
+
+    @Inject
+    @Rule
+    public MigrationManagerRule migrationManagerRule;
+
+    @Inject
+    ActorSystemManager actorSystemManager;
+
+    @Inject
+    UniqueValuesService uniqueValuesService;
+
+    @Inject
+    UniqueValuesFig uniqueValuesFig;
+
+    int numNodes = 3;
+    int firstPort = 2581;
+    int numEntities = 300;
+
+    private final Timeout timeout = new Timeout( 10, TimeUnit.SECONDS );
+
+    private final List<ActorSystem> nodes = new ArrayList<>();
+
+
+    @Before
+    public void startNodes() throws Exception {
+
+        // each test class needs unique port number, the actors publish reservations through this system
+        initAkka( 2557, actorSystemManager, uniqueValuesService );
+
+        for ( int i = 0; i < numNodes; i++ ) {
+            nodes.add( startNode( firstPort + i ) );
+        }
+
+        waitForMembers();
+    }
+
+
+    @After
+    public void stopNodes() {
+        for ( ActorSystem node : nodes ) {
+            node.terminate();
+        }
+        nodes.clear();
+    }
+
+
+    /**
+     * Values reserved through any node are not unique when reserved by another entity through any other node.
+     */
+    @Test
+    public void testReservationsAcrossNodes() throws Exception {
+
+        ApplicationScope scope = new ApplicationScopeImpl( new SimpleId( "organization" ) );
+
+        List<UniqueValueActor.Batch> batches = createBatches( scope, "spread", numEntities );
+
+        // the routers answer with errors until they know of the other nodes
+        for ( ActorSystem node : nodes ) {
+            send( node, createBatches( scope, "warmup", 1 ).get( 0 ) );
+        }
+
+        reserve( batches, numNodes );
+
+        // another entity claiming the same values through a different node must be refused
+        for ( int i = 0; i < numEntities; i += 50 ) {
+
+            Id other = new SimpleId( "user" );
+            List<UniqueValueActor.Request> requests = new ArrayList<>();
+            for ( UniqueValueActor.Request request : batches.get( i ).getRequests() ) {
+                requests.add( new UniqueValueActor.Reservation(
+                    scope, other, UUIDGenerator.newTimeUUID(), request.getField() ) );
+            }
+
+            UniqueValueActor.BatchResponse response =
+                send( nodes.get( ( i + 1 ) % numNodes ), new UniqueValueActor.Batch( requests ) );
+
+            for ( UniqueValueActor.Response r : response.getResponses() ) {
+                Assert.assertEquals( UniqueValueActor.Response.Status.NOT_UNIQUE, r.getStatus() );
+            }
+        }
+    }
+
+
+    /**
+     * Spreading values over partitions owned by all the nodes reserves more of them per second than routing them all
+     * to the one node that owns a single partition, as the singleton router did.  Timing depends on the machine, so
+     * this is only run by hand.
+     */
+    @Test
+    @Ignore( "Throughput comparison, run by hand" )
+    public void testPartitionedThroughput() throws Exception {
+
+        ApplicationScope scope = new ApplicationScopeImpl( new SimpleId( "organization" ) );
+
+        final long unpartitioned;
+
+        uniqueValuesFig.bypass( "getPartitions", "1" );
+        try {
+            restartNodes();
+            unpartitioned = reservationRate( scope, "unpartitioned" );
+        }
+        finally {
+            uniqueValuesFig.bypass( "getPartitions", null );
+        }
+
+        restartNodes();
+        final long partitioned = reservationRate( scope, "partitioned" );
+
+        logger.info( "Reserved {} entities per second in one partition and {} in {} partitions over {} nodes",
+            unpartitioned, partitioned, uniqueValuesFig.getPartitions(), numNodes );
+
+        Assert.assertTrue( "Partitioned routing should be at least as fast as one partition",
+            partitioned >= unpartitioned );
+    }
+
+
+    /**
+     * Warm up the routers, then reserve numEntities entities through all the nodes
+     * @return The number of entities reserved per second
+     */
+    private long reservationRate( ApplicationScope scope, String prefix ) throws Exception {
+
+        // the routers answer with errors until they know of the other nodes
+        for ( ActorSystem node : nodes ) {
+            send( node, createBatches( scope, prefix + "_warmup", 1 ).get( 0 ) );
+        }
+
+        List<UniqueValueActor.Batch> batches = createBatches( scope, prefix, numEntities );
+
+        long start = System.currentTimeMillis();
+
+        reserve( batches, numNodes );
+
+        long elapsed = Math.max( 1, System.currentTimeMillis() - start );
+
+        return batches.size() * 1000L / elapsed;
+    }
+
+
+    /**
+     * Stop the nodes and start them again, so their routers read the partitions again
+     */
+    private void restartNodes() throws Exception {
+
+        for ( ActorSystem node : nodes ) {
+            node.terminate();
+            Await.result( node.whenTerminated(), timeout.duration() );
+        }
+        nodes.clear();
+
+        for ( int i = 0; i < numNodes; i++ ) {
+            nodes.add( startNode( firstPort + i ) );
+        }
+
+        waitForMembers();
+    }
+
+
+    private List<UniqueValueActor.Batch> createBatches( ApplicationScope scope, String prefix, int count ) {
+
+        List<UniqueValueActor.Batch> batches = new ArrayList<>( count );
+
+        for ( int i = 0; i < count; i++ ) {
+            Id owner = new SimpleId( "user" );
+            String username = prefix + "_" + i + "_" + owner.getUuid();
+
+            List<UniqueValueActor.Request> requests = new ArrayList<>();
+            requests.add( new UniqueValueActor.Reservation( scope, owner, UUIDGenerator.newTimeUUID(),
+                new StringField( "username", username, true ) ) );
+            requests.add( new UniqueValueActor.Reservation( scope, owner, UUIDGenerator.newTimeUUID(),
+                new StringField( "email", username + "@example.org", true ) ) );
+
+            batches.add( new UniqueValueActor.Batch( requests ) );
+        }
+
+        return batches;
+    }
+
+
+    /**
+     * Send all the batches at once, round robin over the first entryNodes nodes, and check every value was reserved.
+     */
+    private void reserve( List<UniqueValueActor.Batch> batches, int entryNodes ) throws Exception {
+
+        List<Future<Object>> futures = new ArrayList<>( batches.size() );
+        for ( int i = 0; i < batches.size(); i++ ) {
+            ActorSystem node = nodes.get( i % entryNodes );
+            futures.add( Patterns.ask( node.actorSelection( "/user/uvRouter" ), batches.get( i ), timeout ) );
+        }
+
+        Iterable<Object> responses = Await.result(
+            Futures.sequence( futures, nodes.get( 0 ).dispatcher() ), timeout.duration() );
+
+        for ( Object response : responses ) {
+            for ( UniqueValueActor.Response r : ( ( UniqueValueActor.BatchResponse ) response ).getResponses() ) {
+                Assert.assertEquals( UniqueValueActor.Response.Status.IS_UNIQUE, r.getStatus() );
+            }
+        }
+    }
+
+
+    private UniqueValueActor.BatchResponse send( ActorSystem node, UniqueValueActor.Batch batch ) throws Exception {
+
+        int maxRetries = 10;
+        int retries = 0;
+
+        while ( true ) {
+            try {
+                Future<Object> fut = Patterns.ask( node.actorSelection( "/user/uvRouter" ), batch, timeout );
+                return ( UniqueValueActor.BatchResponse ) Await.result( fut, timeout.duration() );
+
+            } catch ( Exception e ) {
+                if ( ++retries >= maxRetries ) {
+                    throw e;
+                }
+                Thread.sleep( 500 );
+            }
+        }
+    }
+
+
+    private ActorSystem startNode( int port ) {
+
+        Map<String, Object> configMap = new HashMap<String, Object>() {{
+            put( "akka", new HashMap<String, Object>() {{
+                put( "remote", new HashMap<String, Object>() {{
+                    put( "netty.tcp", new HashMap<String, Object>() {{
+                        put( "hostname", "localhost" );
+                        put( "bind-hostname", "localhost" );
+                        put( "port", port );
+                    }} );
+                }} );
+                put( "cluster", new HashMap<String, Object>() {{
+                    put( "roles", Collections.singletonList( "io" ) );
+                    put( "seed-nodes", Collections.singletonList(
+                        "akka.tcp://" + CLUSTER_NAME + "@localhost:" + firstPort ) );
+                }} );
+            }} );
+        }};
+
+        uniqueValuesService.addConfiguration( configMap );
+
+        ActorSystem system = ActorSystem.create( CLUSTER_NAME,
+            ConfigFactory.parseMap( configMap ).withFallback( ConfigFactory.load( "application.conf" ) ) );
+
+        uniqueValuesService.produceRouter( system, "io" );
+
+        return system;
+    }
+
+
+    private void waitForMembers() throws InterruptedException {
+
+        for ( ActorSystem node : nodes ) {
+            int retries = 0;
+
+            while ( countUp( node ) < numNodes ) {
+                if ( ++retries > 60 ) {
+                    Assert.fail( "Cluster did not come up" );
+                }
+                Thread.sleep( 500 );
+            }
+        }
+    }
+
+
+    private int countUp( ActorSystem node ) {
+        int up = 0;
+        for ( Member member : Cluster.get( node ).state().getMembers() ) {
+            if ( member.status().equals( MemberStatus.up() ) ) {
+                up++;
+            }
+        }
+        return up;
+    }
+}
@@ -37,6 +37,7 @@ import org.apache.usergrid.persistence.core.test.UseModules;
 import org.apache.usergrid.persistence.model.entity.Entity;
 import org.apache.usergrid.persistence.model.entity.SimpleId;
 import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -47,6 +48,7 @@ import org.slf4j.LoggerFactory;
 import rx.Observable;
 
 import java.util.Collection;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -123,6 +125,43 @@ public class UniqueValuesServiceTest extends AbstractUniqueValueTest {
     }
 
 
+    /**
+     * Reserve and confirm all the unique fields of an entity in one request.
+     */
+    @Test
+    public void testReserveAndConfirmAsync() throws Exception {
+
+        ApplicationScope scope = new ApplicationScopeImpl( new SimpleId( "organization" ) );
+        String region = actorSystemFig.getRegionLocal();
+
+        Entity owner = new Entity( new SimpleId( "user" ) );
+        owner.setField( new StringField( "username", "async_user", true ) );
+        owner.setField( new StringField( "email", "async_user@example.org", true ) );
+        UUID ownerVersion = UUIDGenerator.newTimeUUID();
+
+        Entity reserved = uniqueValuesService
+            .reserveUniqueValuesAsync( scope, owner, ownerVersion, region ).toBlocking().last();
+        Assert.assertEquals( owner, reserved );
+
+        // only the email of this entity collides, so the whole reservation fails
+        Entity other = new Entity( new SimpleId( "user" ) );
+        other.setField( new StringField( "username", "async_other", true ) );
+        other.setField( new StringField( "email", "async_user@example.org", true ) );
+
+        try {
+            uniqueValuesService.reserveUniqueValues( scope, other, UUIDGenerator.newTimeUUID(), region );
+            Assert.fail( "Reservation of a value reserved by another entity should fail" );
+        }
+        catch ( UniqueValueException e ) {
+            Assert.assertEquals( "email", e.getField().getName() );
+        }
+
+        Entity confirmed = uniqueValuesService
+            .confirmUniqueValuesAsync( scope, owner, ownerVersion, region ).toBlocking().last();
+        Assert.assertEquals( owner, confirmed );
+    }
+
+
     private Multimap<String, Entity> generateDuplicateUsers(
         int numUsers, AtomicInteger successCounter, AtomicInteger errorCounter ) {
 
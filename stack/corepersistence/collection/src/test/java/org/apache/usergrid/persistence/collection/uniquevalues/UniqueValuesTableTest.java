@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.collection.uniquevalues;
+
+import com.google.inject.Inject;
+import org.apache.commons.lang.RandomStringUtils;
+import org.apache.usergrid.persistence.collection.guice.TestCollectionModule;
+import org.apache.usergrid.persistence.core.guice.MigrationManagerRule;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.core.test.ITRunner;
+import org.apache.usergrid.persistence.core.test.UseModules;
+import org.apache.usergrid.persistence.model.entity.Id;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.StringField;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.UUID;
+
+
+/**
+ * Test the reservations of the unique values table.
+ */
+@RunWith( ITRunner.class )
+@UseModules( TestCollectionModule.class )
+public class UniqueValuesTableTest {
+
+    @Inject
+    @Rule
+    public MigrationManagerRule migrationManagerRule;
+
+    @Inject
+    UniqueValuesTable table;
+
+
+    /**
+     * Two nodes that both think they own a value can both find it free before either reserves it.  The reservation
+     * read back from Cassandra decides, and the loser's reservation is removed.
+     */
+    @Test
+    public void testReservationOfAnotherOwnerWins() throws Exception {
+
+        ApplicationScope scope = new ApplicationScopeImpl( new SimpleId( "organization" ) );
+
+        StringField field = new StringField( "username", RandomStringUtils.randomAlphanumeric( 20 ), true );
+
+        Id first = new SimpleId( "user" );
+        UUID firstVersion = UUIDGenerator.newTimeUUID();
+
+        Id second = new SimpleId( "user" );
+        UUID secondVersion = UUIDGenerator.newTimeUUID();
+
+        Assert.assertNull( table.lookupOwner( scope, "user", field ) );
+
+        Assert.assertTrue( table.reserve( scope, first, firstVersion, field ) );
+        Assert.assertFalse( table.reserve( scope, second, secondVersion, field ) );
+
+        Assert.assertEquals( first, table.lookupOwner( scope, "user", field ) );
+
+        // the first owner gives the value up, nothing of the second is left behind
+        table.cancel( scope, first, firstVersion, field );
+
+        Assert.assertNull( table.lookupOwner( scope, "user", field ) );
+
+        Assert.assertTrue( table.reserve( scope, second, secondVersion, field ) );
+        Assert.assertEquals( second, table.lookupOwner( scope, "user", field ) );
+    }
+}
@@ -37,12 +37,22 @@ import com.netflix.astyanax.model.Rows;
 import com.netflix.astyanax.query.RowSliceQuery;
 import com.netflix.astyanax.util.RangeBuilder;
 
+import rx.Observable;
+import rx.Subscription;
+import rx.observables.ConnectableObservable;
+import rx.schedulers.Schedulers;
+
 
 /**
+ * Iterates the columns of several shard rows in order, one page at a time.
  *
- *
+ * With a read ahead depth above 0, the pages the iterator expects to read next are queried on the I/O scheduler while
+ * the current page is consumed.  Up to that many pages of the current shard are read ahead, or the first page of that
+ * many of the next shards in parallel once the current shard is exhausted.  A page read ahead is only used if it was
+ * queried with the same shard and start column the iterator goes on to use, otherwise it is discarded and the page
+ * is read again.  Pages read ahead are cancelled when the iterator is exhausted or closed.
  */
-public class MultiRowShardColumnIterator<R, C, T> implements Iterator<T> {
+public class MultiRowShardColumnIterator<R, C, T> implements Iterator<T>, AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger( MultiRowShardColumnIterator.class );
 
@@ -82,12 +92,19 @@ public class MultiRowShardColumnIterator<R, C, T> implements Iterator<T> {
 
     private Optional<Long> lastTimestamp;
 
+    private final int readAheadDepth;
+
+    private final Deque<ReadAhead> readAheads = new ArrayDeque<>();
+
+    private int shardIndex = -1; // the index of the current shard in rowKeysWithShardEnd
+
 
     public MultiRowShardColumnIterator( final Keyspace keyspace, final ColumnFamily<R, C> cf,
                                         final ConsistencyLevel consistencyLevel, final ColumnParser<C, T> columnParser,
                                         final ColumnSearch<T> columnSearch, final Comparator<T> comparator,
                                         final int pageSize, final List<SmartShard> rowKeysWithShardEnd,
-                                        final boolean ascending, final Optional<Long> lastTimestamp) {
+                                        final boolean ascending, final Optional<Long> lastTimestamp,
+                                        final int readAheadDepth ) {
         this.cf = cf;
         this.pageSize = pageSize;
         this.columnParser = columnParser;
@@ -100,7 +117,7 @@ public class MultiRowShardColumnIterator<R, C, T> implements Iterator<T> {
         this.resultsTracking = new ArrayList<>();
         this.ascending = ascending;
         this.lastTimestamp = lastTimestamp;
-
+        this.readAheadDepth = readAheadDepth;
 
     }
 
@@ -125,7 +142,7 @@ public class MultiRowShardColumnIterator<R, C, T> implements Iterator<T> {
 
 
             // advance to the next shard
-            currentShard = currentShardIterator.next();
+            currentShard = nextShard();
 
             if(logger.isTraceEnabled()){
                 logger.trace("Shard after advance: {}", currentShard);
@@ -135,7 +152,14 @@ public class MultiRowShardColumnIterator<R, C, T> implements Iterator<T> {
             advance();
 
         }
-        return currentColumnIterator.hasNext();
+        final boolean hasNext = currentColumnIterator.hasNext();
+
+        // nothing left to read ahead for
+        if ( !hasNext ) {
+            cancelReadAhead();
+        }
+
+        return hasNext;
     }
 
 
@@ -170,12 +194,8 @@ public class MultiRowShardColumnIterator<R, C, T> implements Iterator<T> {
 
         final int selectSize = skipFirstColumn ? pageSize + 1 : pageSize;
 
-        final RangeBuilder rangeBuilder = new RangeBuilder();
-
         SmartShard startShard = null;
 
-
-
         if(currentShardIterator == null){
 
             // create a copy that we use to search for our 'starting shard'
@@ -213,11 +233,11 @@ public class MultiRowShardColumnIterator<R, C, T> implements Iterator<T> {
                 logger.trace("currentShard: {}", currentShard);
             }
 
-            currentShard = currentShardIterator.next();
+            currentShard = nextShard();
 
             if (startShard != null){
                 while(!currentShard.equals(startShard)){
-                    currentShard = currentShardIterator.next();
+                    currentShard = nextShard();
                 }
             }
 
@@ -232,182 +252,296 @@ public class MultiRowShardColumnIterator<R, C, T> implements Iterator<T> {
 
 
 
-        // initial request, build the range with no start and no end
-        if ( startColumn == null && currentShard.getShardEnd() == null ){
+        if (logger.isTraceEnabled()) logger.trace( "Executing cassandra query with shard {}", currentShard );
 
-            columnSearch.buildRange( rangeBuilder );
+        final Rows<R, C> result = getRows( currentShard, startColumn );
 
-            if(logger.isTraceEnabled()){
-                logger.trace("initial search (no start or shard end)");
-            }
 
+        final List<T> mergedResults;
+
+        skipSize = 0;
+
+        mergedResults = processResults( result, selectSize );
+
+        if(logger.isTraceEnabled()){
+            logger.trace("skipped amount: {}", skipSize);
         }
-        // if there's only a startColumn set the range start startColumn always
-        else if ( startColumn != null && currentShard.getShardEnd() == null ){
 
-            columnSearch.buildRange( rangeBuilder, startColumn, null );
 
-            if(logger.isTraceEnabled()){
-                logger.trace("search (no shard end) with start: {}", startColumn);
-            }
+
+        final int size = mergedResults.size();
+
+
+
+        if(logger.isTraceEnabled()){
+            logger.trace("current shard: {}, retrieved size: {}", currentShard, size);
+            logger.trace("selectSize={}, size={}, ", selectSize, size);
+
 
         }
-        // if there's only a shardEnd, set the start/end according based on the search order
-        else if ( startColumn == null && currentShard.getShardEnd() != null ){
 
-            T shardEnd = (T) currentShard.getShardEnd();
+        moreToReturn = size == selectSize;
 
-            // if we have a shardEnd and it's not an ascending search, use the shardEnd as a start
-            if(!ascending) {
+        if(selectSize == 1001 && mergedResults.size() == 1000){
+            moreToReturn = true;
+        }
 
-                columnSearch.buildRange(rangeBuilder, shardEnd, null);
 
-                if(logger.isTraceEnabled()){
-                    logger.trace("search descending with start: {}", shardEnd);
-                }
+        // if a whole page is skipped OR the result size equals the the difference of what's skipped,
+        // it is likely during a shard transition and we should assume there is more to read
+        if( skipSize == selectSize || skipSize == selectSize - 1 || size == selectSize - skipSize || size == (selectSize -1) - skipSize ){
+            moreToReturn = true;
+        }
 
-            }
-            // if we have a shardEnd and it is an ascending search, use the shardEnd as the end
-            else{
+        //we have a first column to to check
+        if( size > 0) {
 
-                columnSearch.buildRange( rangeBuilder, null, shardEnd );
+            final T firstResult = mergedResults.get( 0 );
 
+            //The search has either told us to skip the first element, or it matches our last, therefore we disregard it
+            if(columnSearch.skipFirst( firstResult ) || (skipFirstColumn && comparator.compare( startColumn, firstResult ) == 0)){
                 if(logger.isTraceEnabled()){
-                    logger.trace("search ascending with end: {}", shardEnd);
-                }
+                    logger.trace("removing an entry");
 
+                }
+                mergedResults.remove( 0 );
             }
 
         }
-        // if there's both a startColumn and a shardEnd, decide which should be used as start/end based on search order
-        else if ( startColumn != null && currentShard.getShardEnd() != null) {
 
-            T shardEnd = (T) currentShard.getShardEnd();
 
+        // set the start column for the enxt query
+        if(moreToReturn && mergedResults.size() > 0){
+            startColumn = mergedResults.get( mergedResults.size()  - 1 );
 
-            // if the search is not ascending, set the start to be the older edge
-            if(!ascending){
+        }
 
-                T searchStart = comparator.compare(shardEnd, startColumn) > 0 ? shardEnd : startColumn;
-                columnSearch.buildRange( rangeBuilder, searchStart, null);
 
-                if(logger.isTraceEnabled()){
-                    logger.trace("search descending with start: {} in shard", searchStart, currentShard);
-                }
+        currentColumnIterator = mergedResults.iterator();
 
-            }
-            // if the search is ascending, then always use the startColumn for the start and shardEnd for the range end
-            else{
+        readAhead();
 
-                columnSearch.buildRange( rangeBuilder, startColumn , shardEnd);
 
-                if(logger.isTraceEnabled()){
-                    logger.trace("search with start: {}, end: {}", startColumn, shardEnd);
-                }
+        //force an advance of this iterator when there are still shards to read but result set on current shard is 0
+        if(size == 0 && currentShardIterator.hasNext()){
+            hasNext();
+        }
 
+        if(logger.isTraceEnabled()){
+            logger.trace("currentColumnIterator.hasNext()={}, " +
+                    "moreToReturn={}, currentShardIterator.hasNext()={}",
+                currentColumnIterator.hasNext(), moreToReturn, currentShardIterator.hasNext());
+        }
 
 
+    }
+
+
+    /**
+     * Get the rows of the page of the shard that starts at the start column, from the pages read ahead if it was
+     * queried there
+     */
+    private Rows<R, C> getRows( final SmartShard shard, final T start ) {
+
+        final ReadAhead next = readAheads.pollFirst();
+
+        if ( next != null && next.isFor( shard, start ) ) {
+            try {
+                final Rows<R, C> rows = next.getRows();
+
+                if ( rows != null ) {
+                    return rows;
+                }
+            }
+            catch ( RuntimeException e ) {
+                logger.warn( "Unable to read ahead shard {}, reading it again", shard, e );
             }
+        }
 
+        // we went somewhere other than expected, nothing read ahead is of use
+        else if ( next != null ) {
+            next.cancel();
+            cancelReadAhead();
         }
 
-        rangeBuilder.setLimit( selectSize );
+        return execute( shard, start );
+    }
 
-        if (logger.isTraceEnabled()) logger.trace( "Executing cassandra query with shard {}", currentShard );
 
-        /**
-         * Get our list of slices
-         */
-        final RowSliceQuery<R, C> query =
-            keyspace.prepareQuery( cf ).setConsistencyLevel( consistencyLevel ).getKeySlice( (R) currentShard.getRowKey() )
-                .withColumnRange( rangeBuilder.build() );
+    /**
+     * Query the next pages we expect to read on the I/O scheduler.  Within a shard the next page starts at the last
+     * column of this one, so only the first page ahead is known now, the rest are queried once the page before them
+     * returns.  When the shard is done, the first pages of the next shards all start at the current start column
+     * and are queried in parallel.
+     */
+    private void readAhead() {
 
-        final Rows<R, C> result;
-        try {
-            result = query.execute().getResult();
-        }
-        catch ( ConnectionException e ) {
-            throw new RuntimeException( "Unable to connect to casandra", e );
+        if ( readAheadDepth < 1 ) {
+            return;
         }
 
+        final ReadAhead first = readAheads.peekFirst();
 
+        if ( moreToReturn ) {
 
+            if ( first == null || !first.isFor( currentShard, startColumn ) ) {
+                cancelReadAhead();
+                readAheads.add( new ReadAhead( currentShard, startColumn ) );
+            }
 
-        final List<T> mergedResults;
+            while ( readAheads.size() < readAheadDepth ) {
+                readAheads.add( readAheads.peekLast().next() );
+            }
 
-        skipSize = 0;
+            return;
+        }
 
-        mergedResults = processResults( result, selectSize );
+        final int nextShard = shardIndex + 1;
 
-        if(logger.isTraceEnabled()){
-            logger.trace("skipped amount: {}", skipSize);
+        if ( nextShard >= rowKeysWithShardEnd.size() ) {
+            cancelReadAhead();
+            return;
         }
 
+        if ( first == null || !first.isFor( rowKeysWithShardEnd.get( nextShard ), startColumn ) ) {
+            cancelReadAhead();
+        }
 
+        int i = nextShard + readAheads.size();
 
-        final int size = mergedResults.size();
+        while ( i < rowKeysWithShardEnd.size() && readAheads.size() < readAheadDepth ) {
+            readAheads.add( new ReadAhead( rowKeysWithShardEnd.get( i++ ), startColumn ) );
+        }
+    }
 
 
+    private void cancelReadAhead() {
+        for ( final ReadAhead readAhead : readAheads ) {
+            readAhead.cancel();
+        }
 
-        if(logger.isTraceEnabled()){
-            logger.trace("current shard: {}, retrieved size: {}", currentShard, size);
-            logger.trace("selectSize={}, size={}, ", selectSize, size);
+        readAheads.clear();
+    }
 
 
+    /**
+     * Cancel any pages still being read ahead
+     */
+    @Override
+    public void close() {
+        cancelReadAhead();
+    }
+
+
+    private SmartShard nextShard() {
+        shardIndex++;
+        return currentShardIterator.next();
+    }
+
+
+    private Rows<R, C> execute( final SmartShard shard, final T start ) {
+        try {
+            return buildQuery( shard, start ).execute().getResult();
+        }
+        catch ( ConnectionException e ) {
+            throw new RuntimeException( "Unable to connect to casandra", e );
         }
+    }
 
-        moreToReturn = size == selectSize;
 
-        if(selectSize == 1001 && mergedResults.size() == 1000){
-            moreToReturn = true;
+    /**
+     * Build the query for the page of the shard that starts at the start column
+     */
+    private RowSliceQuery<R, C> buildQuery( final SmartShard shard, final T start ) {
+
+        final RangeBuilder rangeBuilder = new RangeBuilder();
+
+        // initial request, build the range with no start and no end
+        if ( start == null && shard.getShardEnd() == null ){
+
+            columnSearch.buildRange( rangeBuilder );
+
+            if(logger.isTraceEnabled()){
+                logger.trace("initial search (no start or shard end)");
+            }
+
         }
+        // if there's only a start column set the range start to it always
+        else if ( start != null && shard.getShardEnd() == null ){
 
+            columnSearch.buildRange( rangeBuilder, start, null );
+
+            if(logger.isTraceEnabled()){
+                logger.trace("search (no shard end) with start: {}", start);
+            }
 
-        // if a whole page is skipped OR the result size equals the the difference of what's skipped,
-        // it is likely during a shard transition and we should assume there is more to read
-        if( skipSize == selectSize || skipSize == selectSize - 1 || size == selectSize - skipSize || size == (selectSize -1) - skipSize ){
-            moreToReturn = true;
         }
+        // if there's only a shardEnd, set the start/end according based on the search order
+        else if ( start == null && shard.getShardEnd() != null ){
 
-        //we have a first column to to check
-        if( size > 0) {
+            T shardEnd = (T) shard.getShardEnd();
 
-            final T firstResult = mergedResults.get( 0 );
+            // if we have a shardEnd and it's not an ascending search, use the shardEnd as a start
+            if(!ascending) {
+
+                columnSearch.buildRange(rangeBuilder, shardEnd, null);
 
-            //The search has either told us to skip the first element, or it matches our last, therefore we disregard it
-            if(columnSearch.skipFirst( firstResult ) || (skipFirstColumn && comparator.compare( startColumn, firstResult ) == 0)){
                 if(logger.isTraceEnabled()){
-                    logger.trace("removing an entry");
+                    logger.trace("search descending with start: {}", shardEnd);
+                }
+
+            }
+            // if we have a shardEnd and it is an ascending search, use the shardEnd as the end
+            else{
 
+                columnSearch.buildRange( rangeBuilder, null, shardEnd );
+
+                if(logger.isTraceEnabled()){
+                    logger.trace("search ascending with end: {}", shardEnd);
                 }
-                mergedResults.remove( 0 );
+
             }
 
         }
+        // if there's both a start column and a shardEnd, decide which should be used as start/end based on search order
+        else if ( start != null && shard.getShardEnd() != null) {
 
+            T shardEnd = (T) shard.getShardEnd();
 
-        // set the start column for the enxt query
-        if(moreToReturn && mergedResults.size() > 0){
-            startColumn = mergedResults.get( mergedResults.size()  - 1 );
 
-        }
+            // if the search is not ascending, set the start to be the older edge
+            if(!ascending){
 
+                T searchStart = comparator.compare(shardEnd, start) > 0 ? shardEnd : start;
+                columnSearch.buildRange( rangeBuilder, searchStart, null);
 
-        currentColumnIterator = mergedResults.iterator();
+                if(logger.isTraceEnabled()){
+                    logger.trace("search descending with start: {} in shard", searchStart, shard);
+                }
 
+            }
+            // if the search is ascending, then always use the start column for the start and shardEnd for the range end
+            else{
 
-        //force an advance of this iterator when there are still shards to read but result set on current shard is 0
-        if(size == 0 && currentShardIterator.hasNext()){
-            hasNext();
-        }
+                columnSearch.buildRange( rangeBuilder, start , shardEnd);
+
+                if(logger.isTraceEnabled()){
+                    logger.trace("search with start: {}, end: {}", start, shardEnd);
+                }
+
+
+
+            }
 
-        if(logger.isTraceEnabled()){
-            logger.trace("currentColumnIterator.hasNext()={}, " +
-                    "moreToReturn={}, currentShardIterator.hasNext()={}",
-                currentColumnIterator.hasNext(), moreToReturn, currentShardIterator.hasNext());
         }
 
+        rangeBuilder.setLimit( start != null ? pageSize + 1 : pageSize );
 
+        /**
+         * Get our list of slices
+         */
+        return keyspace.prepareQuery( cf ).setConsistencyLevel( consistencyLevel ).getKeySlice( (R) shard.getRowKey() )
+            .withColumnRange( rangeBuilder.build() );
     }
 
 
@@ -457,6 +591,95 @@ public class MultiRowShardColumnIterator<R, C, T> implements Iterator<T> {
         return mergedResults;
     }
 
-}
 
+    /**
+     * A page of a shard being queried ahead of the consumer
+     */
+    private final class ReadAhead {
+
+        private final SmartShard shard;
+
+        private final Observable<T> start;
+
+        private final Observable<Rows<R, C>> rows;
+
+        private final Subscription subscription;
+
+
+        private ReadAhead( final SmartShard shard, final T start ) {
+            this( shard, Observable.just( start ) );
+        }
+
+
+        private ReadAhead( final SmartShard shard, final Observable<T> start ) {
+            this.shard = shard;
+            this.start = start;
+
+            final ConnectableObservable<Rows<R, C>> query =
+                start.flatMap( startColumn -> Observable.defer( () -> Observable.just( execute( shard, startColumn ) ) )
+                    .subscribeOn( Schedulers.io() ) ).replay();
+
+            this.rows = query;
+            this.subscription = query.connect();
+        }
+
+
+        /**
+         * The page after this one in the same shard, if this page is full
+         */
+        private ReadAhead next() {
+            return new ReadAhead( shard, Observable.zip( start, rows, ( startColumn, result ) -> {
+                final int selectSize = startColumn != null ? pageSize + 1 : pageSize;
+
+                for ( final R key : result.getKeys() ) {
+                    final ColumnList<C> columns = result.getRow( key ).getColumns();
+
+                    if ( columns.size() >= selectSize ) {
+                        return columnParser.parseColumn( columns.getColumnByIndex( columns.size() - 1 ) );
+                    }
+                }
+
+                return null;
+            } ).filter( startColumn -> startColumn != null ) );
+        }
+
+
+        /**
+         * True if this page was queried for the shard from the start column.  Waits for the page before it if the
+         * start column comes from there, and is false if that page failed
+         */
+        private boolean isFor( final SmartShard shard, final T startColumn ) {
+            if ( !this.shard.equals( shard ) ) {
+                return false;
+            }
+
+            final T start;
 
+            try {
+                start = this.start.toBlocking().firstOrDefault( null );
+            }
+            catch ( RuntimeException e ) {
+                return false;
+            }
+
+            if ( start == null || startColumn == null ) {
+                return start == startColumn;
+            }
+
+            return comparator.compare( start, startColumn ) == 0;
+        }
+
+
+        /**
+         * Wait for the rows of the page, or null if the page wasn't queried
+         */
+        private Rows<R, C> getRows() {
+            return rows.toBlocking().firstOrDefault( null );
+        }
+
+
+        private void cancel() {
+            subscription.unsubscribe();
+        }
+    }
+}
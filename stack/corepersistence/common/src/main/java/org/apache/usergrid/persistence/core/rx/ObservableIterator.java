@@ -51,12 +51,13 @@ public abstract class ObservableIterator<T> implements Observable.OnSubscribe<T>
     @Override
     public void call( final Subscriber<? super T> subscriber ) {
 
+        Iterator<T> itr = null;
 
         try {
             subscriber.onStart();
 
             //get our iterator and push data to the observer
-            final Iterator<T> itr = getIterator();
+            itr = getIterator();
 
             Preconditions.checkNotNull( itr,
                     "The observable must return an iterator.  Null was returned for iterator " + name );
@@ -79,6 +80,17 @@ public abstract class ObservableIterator<T> implements Observable.OnSubscribe<T>
         catch ( Throwable t ) {
             subscriber.onError( t );
         }
+        finally {
+            //release anything the iterator holds, such as pages it reads ahead, when we stop early
+            if ( itr instanceof AutoCloseable ) {
+                try {
+                    ( ( AutoCloseable ) itr ).close();
+                }
+                catch ( Exception e ) {
+                    logger.warn( "Unable to close iterator '{}'", name, e );
+                }
+            }
+        }
     }
 
 
@@ -0,0 +1,187 @@
+/*
+ *
+ *  * Licensed to the Apache Software Foundation (ASF) under one
+ *  * or more contributor license agreements.  See the NOTICE file
+ *  * distributed with this work for additional information
+ *  * regarding copyright ownership.  The ASF licenses this file
+ *  * to you under the Apache License, Version 2.0 (the
+ *  * "License"); you may not use this file except in compliance
+ *  * with the License.  You may obtain a copy of the License at
+ *  *
+ *  *    http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing,
+ *  * software distributed under the License is distributed on an
+ *  * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  * KIND, either express or implied.  See the License for the
+ *  * specific language governing permissions and limitations
+ *  * under the License.
+ *
+ */
+
+
+package org.apache.usergrid.persistence.core.astyanax;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.apache.usergrid.persistence.core.guice.TestCommonModule;
+import org.apache.usergrid.persistence.core.shard.SmartShard;
+import org.apache.usergrid.persistence.core.test.ITRunner;
+import org.apache.usergrid.persistence.core.test.UseModules;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.model.ColumnFamily;
+import com.netflix.astyanax.model.ConsistencyLevel;
+import com.netflix.astyanax.serializers.LongSerializer;
+import com.netflix.astyanax.util.RangeBuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+@RunWith( ITRunner.class )
+@UseModules( TestCommonModule.class )
+public class MultiRowShardColumnIteratorTest {
+
+    @Inject
+    public CassandraCluster cassandraCluster;
+
+    protected static Keyspace keyspace;
+
+    protected static ColumnFamily<ScopedRowKey<String>, Long> COLUMN_FAMILY =
+        new ColumnFamily<>( "MultiRowShardLongTests",
+            new ScopedRowKeySerializer<>( StringRowCompositeSerializer.get() ), LongSerializer.get() );
+
+    protected static final boolean TRUE = true;
+
+    private static final ColumnParser<Long, Long> PARSER = column -> column.getName();
+
+    private static final Comparator<Long> COMPARATOR = Long::compare;
+
+    private static final ColumnSearch<Long> SEARCH = new ColumnSearch<Long>() {
+        @Override
+        public void buildRange( final RangeBuilder rangeBuilder, final Long value, final Long end ) {
+            rangeBuilder.setStart( value );
+        }
+
+
+        @Override
+        public void buildRange( final RangeBuilder rangeBuilder ) {
+
+        }
+
+
+        @Override
+        public boolean skipFirst( final Long first ) {
+            return false;
+        }
+    };
+
+
+    @Before
+    public void setup() throws ConnectionException {
+
+        AstyanaxKeyspaceProvider astyanaxKeyspaceProvider = new AstyanaxKeyspaceProvider( cassandraCluster );
+
+        keyspace = astyanaxKeyspaceProvider.get();
+
+        TestUtils.createKeyspace( keyspace );
+
+        TestUtils.createColumnFamiliy( keyspace, COLUMN_FAMILY, new HashMap<String, Object>() );
+    }
+
+
+    /**
+     * Reading ahead returns the same columns, in the same order, as reading one page at a time
+     */
+    @Test
+    public void readAhead() throws ConnectionException {
+
+        final List<SmartShard> shards = writeShards( 3, 3000 );
+
+        for ( int readAhead : Arrays.asList( 0, 1, 3 ) ) {
+
+            final MultiRowShardColumnIterator<ScopedRowKey<String>, Long, Long> itr = createIterator( shards,
+                readAhead );
+
+            for ( long i = 0; i < 9000; i++ ) {
+                assertTrue( "Column " + i + " read with read ahead " + readAhead, itr.hasNext() );
+                assertEquals( i, itr.next().longValue() );
+            }
+
+            assertFalse( itr.hasNext() );
+        }
+    }
+
+
+    /**
+     * Closing an iterator part way through cancels what it is reading ahead
+     */
+    @Test
+    public void closeBeforeExhausted() throws ConnectionException {
+
+        final List<SmartShard> shards = writeShards( 3, 3000 );
+
+        final MultiRowShardColumnIterator<ScopedRowKey<String>, Long, Long> itr = createIterator( shards, 3 );
+
+        for ( long i = 0; i < 1000; i++ ) {
+            assertEquals( i, itr.next().longValue() );
+        }
+
+        itr.close();
+    }
+
+
+    private MultiRowShardColumnIterator<ScopedRowKey<String>, Long, Long> createIterator(
+        final List<SmartShard> shards, final int readAhead ) {
+
+        //purposefully set to a nonsensical page size to ensure we make all the trips required
+        return new MultiRowShardColumnIterator<>( keyspace, COLUMN_FAMILY, ConsistencyLevel.CL_QUORUM, PARSER, SEARCH,
+            COMPARATOR, 852, new ArrayList<>( shards ), false, Optional.absent(), readAhead );
+    }
+
+
+    /**
+     * Write the shard rows, each with the next columnsPerShard columns
+     */
+    private List<SmartShard> writeShards( final int count, final long columnsPerShard ) throws ConnectionException {
+
+        final SimpleId scope = new SimpleId( "scope" );
+        final List<SmartShard> shards = new ArrayList<>( count );
+
+        for ( int shard = 0; shard < count; shard++ ) {
+
+            final ScopedRowKey<String> rowKey =
+                new ScopedRowKey<>( scope, UUIDGenerator.newTimeUUID().toString() );
+
+            final MutationBatch batch = keyspace.prepareMutationBatch();
+
+            for ( long i = shard * columnsPerShard; i < ( shard + 1 ) * columnsPerShard; i++ ) {
+                batch.withRow( COLUMN_FAMILY, rowKey ).putColumn( i, TRUE );
+            }
+
+            batch.execute();
+
+            shards.add( new SmartShard<>( rowKey, shard, null ) );
+        }
+
+        return shards;
+    }
+
+}
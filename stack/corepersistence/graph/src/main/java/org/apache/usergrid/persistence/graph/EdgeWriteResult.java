@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.graph;
+
+package org.apache.usergrid.persistence.graph;
+
+
+import com.google.common.base.Optional;
+
+
+/**
+ * The result of writing or marking an edge in a bulk write.  Edges fail together with the mutation they were written
+ * in, the edges of other mutations are unaffected
+ */
+public class EdgeWriteResult {
+
+    private final MarkedEdge edge;
+    private final Optional<Throwable> error;
+
+
+    private EdgeWriteResult( final MarkedEdge edge, final Optional<Throwable> error ) {
+        this.edge = edge;
+        this.error = error;
+    }
+
+
+    /**
+     * The edge was written
+     */
+    public static EdgeWriteResult success( final MarkedEdge edge ) {
+        return new EdgeWriteResult( edge, Optional.<Throwable>absent() );
+    }
+
+
+    /**
+     * The mutation the edge was written in failed
+     */
+    public static EdgeWriteResult failure( final MarkedEdge edge, final Throwable error ) {
+        return new EdgeWriteResult( edge, Optional.of( error ) );
+    }
+
+
+    /**
+     * The edge that was written
+     */
+    public MarkedEdge getEdge() {
+        return edge;
+    }
+
+
+    /**
+     * True if the edge was written
+     */
+    public boolean isSuccess() {
+        return !error.isPresent();
+    }
+
+
+    /**
+     * The reason the edge wasn't written, absent if it was
+     */
+    public Optional<Throwable> getError() {
+        return error;
+    }
+}
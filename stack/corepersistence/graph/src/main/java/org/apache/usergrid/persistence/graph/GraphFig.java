@@ -54,6 +54,12 @@ public interface GraphFig extends GuicyFig {
      */
     String SHARD_CACHE_TIMEOUT = "usergrid.graph.shard.cache.timeout";
 
+    /**
+     * The age (in millis) after which a cached shard entry is refreshed in the background.  Must be less than the
+     * cache timeout, entries older than the timeout are never served.
+     */
+    String SHARD_CACHE_REFRESH = "usergrid.graph.shard.cache.refresh";
+
     /**
      * Provide the ability to default disable the cache for obtaining the read shard group
      */
@@ -98,6 +104,34 @@ public interface GraphFig extends GuicyFig {
 
     String SMART_SHARD_SEEK_ENABLED = "usergrid.graph.smartshard.seek.enabled";
 
+    /**
+     * The number of pages to read ahead of the consumer when seeking through smart shards.  0 disables reading ahead
+     */
+    String SCAN_READ_AHEAD = "usergrid.graph.scan.read.ahead";
+
+    /**
+     * The number of nodes to remember the written edge meta data of.  0 disables the cache, and the meta data is written
+     * with every edge
+     */
+    String EDGE_META_CACHE_SIZE = "usergrid.graph.edge.meta.cache.size";
+
+    /**
+     * The time (in millis) the written edge meta data of a node is remembered.  Meta data removed by a repair on another
+     * node isn't re-written by edges written here for up to this long, a repair checks for such edges again once it has
+     * elapsed
+     */
+    String EDGE_META_CACHE_TIMEOUT = "usergrid.graph.edge.meta.cache.timeout";
+
+    /**
+     * The number of edges written in a single mutation by the bulk writes
+     */
+    String BULK_WRITE_SIZE = "usergrid.graph.bulk.write.size";
+
+    /**
+     * The number of mutations the bulk writes execute at once
+     */
+    String BULK_WRITE_CONCURRENCY = "usergrid.graph.bulk.write.concurrency";
+
 
 
 
@@ -125,7 +159,11 @@ public interface GraphFig extends GuicyFig {
     @Key(SHARD_CACHE_TIMEOUT)
     long getShardCacheTimeout();
 
-    @Default("false")
+    @Default("10000")
+    @Key(SHARD_CACHE_REFRESH)
+    long getShardCacheRefresh();
+
+    @Default("true")
     @Key(SHARD_READ_CACHE_ENABLED)
     boolean getShardReadCacheEnabled();
 
@@ -170,6 +208,26 @@ public interface GraphFig extends GuicyFig {
     @Key(SMART_SHARD_SEEK_ENABLED)
     boolean getSmartShardSeekEnabled();
 
+    @Default("1")
+    @Key(SCAN_READ_AHEAD)
+    int getScanReadAhead();
+
+    @Default("10000")
+    @Key(EDGE_META_CACHE_SIZE)
+    int getEdgeMetaCacheSize();
+
+    @Default("10000")
+    @Key(EDGE_META_CACHE_TIMEOUT)
+    long getEdgeMetaCacheTimeout();
+
+    @Default("100")
+    @Key(BULK_WRITE_SIZE)
+    int getBulkWriteSize();
+
+    @Default("4")
+    @Key(BULK_WRITE_CONCURRENCY)
+    int getBulkWriteConcurrency();
+
 
 }
 
@@ -62,6 +62,16 @@ public interface GraphManager extends CPManager {
     Observable<MarkedEdge> writeEdge( Edge edge );
 
 
+    /**
+     * @param edges The edges to write
+     *
+     * Create or update the edges, the same as {@link #writeEdge(Edge)}.  The edges are written in mutations of a
+     * bounded size, executed concurrently.  The result of each edge is emitted once the mutation it's in has executed,
+     * not in the order they were received.  A mutation that fails fails only its own edges
+     */
+    Observable<EdgeWriteResult> writeEdges( Observable<Edge> edges );
+
+
     /**
      * @param edge Mark the edge as deleted in the graph
      *
@@ -70,6 +80,16 @@ public interface GraphManager extends CPManager {
      */
     Observable<MarkedEdge> markEdge( Edge edge );
 
+
+    /**
+     * @param edges The edges to mark as deleted
+     *
+     * Mark the edges as deleted, the same as {@link #markEdge(Edge)}, in mutations of a bounded size executed
+     * concurrently.  The result of each edge is emitted once the mutation it's in has executed.  A mutation that
+     * fails fails only its own edges
+     */
+    Observable<EdgeWriteResult> markEdges( Observable<Edge> edges );
+
     /**
      * @param edge Remove the edge in the graph
      *
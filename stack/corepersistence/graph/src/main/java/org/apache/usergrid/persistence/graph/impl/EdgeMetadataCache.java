@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.graph.impl;
+
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.graph.Edge;
+import org.apache.usergrid.persistence.graph.GraphFig;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+
+/**
+ * Node local record of the edge meta data written to cassandra, so an edge whose source or target types are already
+ * recorded doesn't write them again.  Each node keeps the edge types and id types written from it and to it.
+ *
+ * A repair that may remove meta data of a node invalidates it here, before it starts and after it's done.  A repair
+ * on another node doesn't, entries written before it are used until they time out.  That repair checks for edges
+ * again once its removes are done, and once more when the timeout has elapsed, and writes the meta data of any it
+ * finds again.
+ */
+@Singleton
+public class EdgeMetadataCache {
+
+    private final boolean enabled;
+
+    private final Cache<NodeKey, Set<TypeKey>> cache;
+
+
+    @Inject
+    public EdgeMetadataCache( final GraphFig graphFig ) {
+
+        final int size = graphFig.getEdgeMetaCacheSize();
+        final long timeout = graphFig.getEdgeMetaCacheTimeout();
+
+        this.enabled = size > 0 && timeout > 0;
+
+        this.cache = CacheBuilder.newBuilder().maximumSize( Math.max( 0, size ) )
+                                 .expireAfterWrite( Math.max( 0, timeout ), TimeUnit.MILLISECONDS ).build();
+    }
+
+
+    /**
+     * True if the edge type and target id type were written from the source of the edge
+     */
+    public boolean isSourceWritten( final ApplicationScope scope, final Edge edge ) {
+        return contains( new NodeKey( scope, edge.getSourceNode(), true ),
+            new TypeKey( edge.getType(), edge.getTargetNode().getType() ) );
+    }
+
+
+    /**
+     * True if the edge type and source id type were written to the target of the edge
+     */
+    public boolean isTargetWritten( final ApplicationScope scope, final Edge edge ) {
+        return contains( new NodeKey( scope, edge.getTargetNode(), false ),
+            new TypeKey( edge.getType(), edge.getSourceNode().getType() ) );
+    }
+
+
+    /**
+     * Record the source meta data of the edge was written
+     */
+    public void sourceWritten( final ApplicationScope scope, final Edge edge ) {
+        add( new NodeKey( scope, edge.getSourceNode(), true ),
+            new TypeKey( edge.getType(), edge.getTargetNode().getType() ) );
+    }
+
+
+    /**
+     * Record the target meta data of the edge was written
+     */
+    public void targetWritten( final ApplicationScope scope, final Edge edge ) {
+        add( new NodeKey( scope, edge.getTargetNode(), false ),
+            new TypeKey( edge.getType(), edge.getSourceNode().getType() ) );
+    }
+
+
+    /**
+     * Forget the meta data written from the node as a source
+     */
+    public void invalidateSource( final ApplicationScope scope, final Id nodeId ) {
+        cache.invalidate( new NodeKey( scope, nodeId, true ) );
+    }
+
+
+    /**
+     * Forget the meta data written to the node as a target
+     */
+    public void invalidateTarget( final ApplicationScope scope, final Id nodeId ) {
+        cache.invalidate( new NodeKey( scope, nodeId, false ) );
+    }
+
+
+    private boolean contains( final NodeKey nodeKey, final TypeKey typeKey ) {
+        if ( !enabled ) {
+            return false;
+        }
+
+        final Set<TypeKey> types = cache.getIfPresent( nodeKey );
+
+        return types != null && types.contains( typeKey );
+    }
+
+
+    private void add( final NodeKey nodeKey, final TypeKey typeKey ) {
+        if ( !enabled ) {
+            return;
+        }
+
+        cache.asMap().computeIfAbsent( nodeKey, key -> ConcurrentHashMap.newKeySet() ).add( typeKey );
+    }
+
+
+    private static final class NodeKey {
+        private final Id applicationId;
+        private final Id nodeId;
+        private final boolean source;
+
+
+        private NodeKey( final ApplicationScope scope, final Id nodeId, final boolean source ) {
+            this.applicationId = scope.getApplication();
+            this.nodeId = nodeId;
+            this.source = source;
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof NodeKey ) ) {
+                return false;
+            }
+
+            final NodeKey nodeKey = ( NodeKey ) o;
+
+            return source == nodeKey.source && applicationId.equals( nodeKey.applicationId ) && nodeId
+                .equals( nodeKey.nodeId );
+        }
+
+
+        @Override
+        public int hashCode() {
+            int result = applicationId.hashCode();
+            result = 31 * result + nodeId.hashCode();
+            result = 31 * result + ( source ? 1 : 0 );
+            return result;
+        }
+    }
+
+
+    /**
+     * The edge type and the id type of the other end of the edge
+     */
+    private static final class TypeKey {
+        private final String edgeType;
+        private final String idType;
+
+
+        private TypeKey( final String edgeType, final String idType ) {
+            this.edgeType = edgeType;
+            this.idType = idType;
+        }
+
+
+        @Override
+        public boolean equals( final Object o ) {
+            if ( this == o ) {
+                return true;
+            }
+            if ( !( o instanceof TypeKey ) ) {
+                return false;
+            }
+
+            final TypeKey typeKey = ( TypeKey ) o;
+
+            return edgeType.equals( typeKey.edgeType ) && idType.equals( typeKey.idType );
+        }
+
+
+        @Override
+        public int hashCode() {
+            return 31 * edgeType.hashCode() + idType.hashCode();
+        }
+    }
+}
@@ -20,10 +20,12 @@
 package org.apache.usergrid.persistence.graph.impl;
 
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +36,7 @@ import org.apache.usergrid.persistence.core.rx.ObservableIterator;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.util.ValidationUtils;
 import org.apache.usergrid.persistence.graph.Edge;
+import org.apache.usergrid.persistence.graph.EdgeWriteResult;
 import org.apache.usergrid.persistence.graph.GraphFig;
 import org.apache.usergrid.persistence.graph.GraphManager;
 import org.apache.usergrid.persistence.graph.MarkedEdge;
@@ -51,6 +54,7 @@ import org.apache.usergrid.persistence.graph.serialization.util.GraphValidation;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
@@ -59,6 +63,7 @@ import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
 import rx.Observable;
+import rx.schedulers.Schedulers;
 
 
 /**
@@ -80,6 +85,8 @@ public class GraphManagerImpl implements GraphManager {
     private final EdgeDeleteListener edgeDeleteListener;
     private final NodeDeleteListener nodeDeleteListener;
     private final Timer writeEdgeTimer;
+    private final Timer writeEdgesTimer;
+    private final Timer markEdgesTimer;
     private final Timer markEdgeTimer;
     private final Timer markNodeTimer;
     private final Timer loadEdgesFromSourceTimer;
@@ -95,15 +102,22 @@ public class GraphManagerImpl implements GraphManager {
     private final Timer deleteEdgeTimer;
 
 
+    private final Meter metaWriteMeter;
+    private final Meter metaSkipMeter;
+
+
     private final GraphFig graphFig;
 
+    private final EdgeMetadataCache edgeMetadataCache;
+
 
     @Inject
     public GraphManagerImpl( final EdgeMetadataSerialization edgeMetadataSerialization,
                              final EdgeSerialization storageEdgeSerialization,
                              final NodeSerialization nodeSerialization, final GraphFig graphFig,
                              final EdgeDeleteListener edgeDeleteListener, final NodeDeleteListener nodeDeleteListener,
-                             final ApplicationScope scope, MetricsFactory metricsFactory ) {
+                             final EdgeMetadataCache edgeMetadataCache, final ApplicationScope scope,
+                             MetricsFactory metricsFactory ) {
 
 
         ValidationUtils.validateApplicationScope( scope );
@@ -113,6 +127,7 @@ public class GraphManagerImpl implements GraphManager {
         Preconditions.checkNotNull( graphFig, "consistencyFig must not be null" );
         Preconditions.checkNotNull( scope, "scope must not be null" );
         Preconditions.checkNotNull( nodeDeleteListener, "nodeDeleteListener must not be null" );
+        Preconditions.checkNotNull( edgeMetadataCache, "edgeMetadataCache must not be null" );
 
         this.scope = scope;
         this.edgeMetadataSerialization = edgeMetadataSerialization;
@@ -121,10 +136,13 @@ public class GraphManagerImpl implements GraphManager {
         this.graphFig = graphFig;
         this.edgeDeleteListener = edgeDeleteListener;
         this.nodeDeleteListener = nodeDeleteListener;
+        this.edgeMetadataCache = edgeMetadataCache;
 
         this.markNodeTimer = metricsFactory.getTimer( GraphManagerImpl.class, "node.mark" );
         this.deleteNodeTimer = metricsFactory.getTimer( GraphManagerImpl.class, "node.delete" );
         this.writeEdgeTimer = metricsFactory.getTimer( GraphManagerImpl.class, "edge.write" );
+        this.writeEdgesTimer = metricsFactory.getTimer( GraphManagerImpl.class, "edge.write.bulk" );
+        this.markEdgesTimer = metricsFactory.getTimer( GraphManagerImpl.class, "edge.mark.bulk" );
 
         this.markEdgeTimer = metricsFactory.getTimer( GraphManagerImpl.class, "edge.mark" );
         this.deleteEdgeTimer = metricsFactory.getTimer( GraphManagerImpl.class, "edge.delete" );
@@ -138,6 +156,8 @@ public class GraphManagerImpl implements GraphManager {
 
         this.getIdTypesFromSourceTimer = metricsFactory.getTimer( GraphManagerImpl.class, "idtype.get_from" );
         this.getIdTypesToTargetTimer = metricsFactory.getTimer( GraphManagerImpl.class, "idtype.get_to" );
+        this.metaWriteMeter = metricsFactory.getMeter( GraphManagerImpl.class, "edge.meta.write" );
+        this.metaSkipMeter = metricsFactory.getMeter( GraphManagerImpl.class, "edge.meta.skip" );
 
 
     }
@@ -154,11 +174,9 @@ public class GraphManagerImpl implements GraphManager {
             final UUID timestamp = UUIDGenerator.newTimeUUID();
 
 
-            final MutationBatch mutation = edgeMetadataSerialization.writeEdge( scope, edge1 );
-
-            final MutationBatch edgeMutation = storageEdgeSerialization.writeEdge( scope, edge1, timestamp );
+            final MutationBatch mutation = storageEdgeSerialization.writeEdge( scope, edge1, timestamp );
 
-            mutation.mergeShallow( edgeMutation );
+            final MetaWrite metaWrite = mergeMetaWrite( mutation, edge1 );
 
             try {
                 mutation.execute();
@@ -167,6 +185,8 @@ public class GraphManagerImpl implements GraphManager {
                 throw new RuntimeException( "Unable to execute mutation", e );
             }
 
+            metaWritten( metaWrite );
+
             return edge1;
         } );
 
@@ -174,6 +194,119 @@ public class GraphManagerImpl implements GraphManager {
     }
 
 
+    @Override
+    public Observable<EdgeWriteResult> writeEdges( final Observable<Edge> edges ) {
+        final Observable<MarkedEdge> observable = edges.map( edge -> {
+            GraphValidation.validateEdge( edge );
+            return ( MarkedEdge ) new SimpleMarkedEdge( edge, false );
+        } );
+
+        return ObservableTimer.time( writeBatches( observable, true ), writeEdgesTimer );
+    }
+
+
+    @Override
+    public Observable<EdgeWriteResult> markEdges( final Observable<Edge> edges ) {
+        final Observable<MarkedEdge> observable = edges.map( edge -> {
+            GraphValidation.validateEdge( edge );
+            return ( MarkedEdge ) new SimpleMarkedEdge( edge, true );
+        } );
+
+        return ObservableTimer.time( writeBatches( observable, false ), markEdgesTimer );
+    }
+
+
+    /**
+     * Buffer the edges into batches of the bulk write size, and write each batch in a single mutation.  Batches are
+     * written concurrently up to the bulk write concurrency
+     */
+    private Observable<EdgeWriteResult> writeBatches( final Observable<MarkedEdge> edges, final boolean writeMeta ) {
+        return edges.buffer( graphFig.getBulkWriteSize() ).flatMap(
+            batch -> Observable.just( batch ).flatMapIterable( edgeBatch -> writeBatch( edgeBatch, writeMeta ) )
+                               .subscribeOn( Schedulers.io() ), graphFig.getBulkWriteConcurrency() );
+    }
+
+
+    /**
+     * Write all the edges, and the meta data we haven't already written, in a single mutation.  The write shards are
+     * resolved once for the edges that share them.  If the mutation fails, all its edges fail
+     */
+    private List<EdgeWriteResult> writeBatch( final List<MarkedEdge> edges, final boolean writeMeta ) {
+
+        final UUID timestamp = UUIDGenerator.newTimeUUID();
+
+        final List<MetaWrite> metaWrites = new ArrayList<>( edges.size() );
+
+        try {
+            final MutationBatch mutation = storageEdgeSerialization.writeEdges( scope, edges, timestamp );
+
+            if ( writeMeta ) {
+                for ( final MarkedEdge edge : edges ) {
+                    metaWrites.add( mergeMetaWrite( mutation, edge ) );
+                }
+            }
+
+            if (logger.isTraceEnabled()) {
+                logger.trace("Writing {} edges with {} rows", edges.size(), mutation.getRowCount());
+            }
+
+            mutation.execute();
+        }
+        catch ( ConnectionException | RuntimeException e ) {
+            logger.error( "Unable to write {} edges", edges.size(), e );
+
+            return edges.stream().map( edge -> EdgeWriteResult.failure( edge, e ) ).collect( Collectors.toList() );
+        }
+
+        metaWrites.forEach( this::metaWritten );
+
+        return edges.stream().map( EdgeWriteResult::success ).collect( Collectors.toList() );
+    }
+
+
+    /**
+     * Merge the meta data of the edge we haven't already written into the mutation
+     */
+    private MetaWrite mergeMetaWrite( final MutationBatch mutation, final Edge edge ) {
+        final boolean writeSource = !edgeMetadataCache.isSourceWritten( scope, edge );
+        final boolean writeTarget = !edgeMetadataCache.isTargetWritten( scope, edge );
+
+        if ( writeSource && writeTarget ) {
+            mutation.mergeShallow( edgeMetadataSerialization.writeEdge( scope, edge ) );
+        }
+        else if ( writeSource ) {
+            mutation.mergeShallow( edgeMetadataSerialization.writeEdgeFromSource( scope, edge ) );
+        }
+        else if ( writeTarget ) {
+            mutation.mergeShallow( edgeMetadataSerialization.writeEdgeToTarget( scope, edge ) );
+        }
+
+        return new MetaWrite( edge, writeSource, writeTarget );
+    }
+
+
+    /**
+     * Record the meta data written for the edge once the mutation executed, and count the writes we skipped
+     */
+    private void metaWritten( final MetaWrite metaWrite ) {
+        if ( metaWrite.writeSource ) {
+            edgeMetadataCache.sourceWritten( scope, metaWrite.edge );
+            metaWriteMeter.mark();
+        }
+        else {
+            metaSkipMeter.mark();
+        }
+
+        if ( metaWrite.writeTarget ) {
+            edgeMetadataCache.targetWritten( scope, metaWrite.edge );
+            metaWriteMeter.mark();
+        }
+        else {
+            metaSkipMeter.mark();
+        }
+    }
+
+
     @Override
     public Observable<MarkedEdge> markEdge( final Edge edge ) {
         GraphValidation.validateEdge( edge );
@@ -493,4 +626,21 @@ public class GraphManagerImpl implements GraphManager {
             } );
         }
     }
+
+
+    /**
+     * The meta data of an edge merged into a mutation
+     */
+    private static final class MetaWrite {
+        private final Edge edge;
+        private final boolean writeSource;
+        private final boolean writeTarget;
+
+
+        private MetaWrite( final Edge edge, final boolean writeSource, final boolean writeTarget ) {
+            this.edge = edge;
+            this.writeSource = writeSource;
+            this.writeTarget = writeTarget;
+        }
+    }
 }
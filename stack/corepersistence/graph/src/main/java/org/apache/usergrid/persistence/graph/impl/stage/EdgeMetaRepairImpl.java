@@ -23,6 +23,9 @@ package org.apache.usergrid.persistence.graph.impl.stage;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Optional;
 import org.apache.usergrid.persistence.graph.Edge;
@@ -35,6 +38,7 @@ import org.apache.usergrid.persistence.core.util.ValidationUtils;
 import org.apache.usergrid.persistence.graph.GraphFig;
 import org.apache.usergrid.persistence.graph.MarkedEdge;
 import org.apache.usergrid.persistence.graph.SearchByEdgeType;
+import org.apache.usergrid.persistence.graph.impl.EdgeMetadataCache;
 import org.apache.usergrid.persistence.graph.impl.SimpleSearchByIdType;
 import org.apache.usergrid.persistence.graph.impl.SimpleSearchIdType;
 import org.apache.usergrid.persistence.graph.serialization.EdgeMetadataSerialization;
@@ -52,6 +56,7 @@ import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import rx.Observable;
 import rx.functions.Action1;
 import rx.observables.MathObservable;
+import rx.schedulers.Schedulers;
 
 
 /**
@@ -68,11 +73,13 @@ public class EdgeMetaRepairImpl implements EdgeMetaRepair {
     private final EdgeSerialization storageEdgeSerialization;
     private final Keyspace keyspace;
     private final GraphFig graphFig;
+    private final EdgeMetadataCache edgeMetadataCache;
 
 
     @Inject
     public EdgeMetaRepairImpl( final EdgeMetadataSerialization edgeMetadataSerialization, final Keyspace keyspace,
-                               final GraphFig graphFig, final EdgeSerialization storageEdgeSerialization ) {
+                               final GraphFig graphFig, final EdgeSerialization storageEdgeSerialization,
+                               final EdgeMetadataCache edgeMetadataCache ) {
 
 
         Preconditions.checkNotNull( "edgeMetadataSerialization is required", edgeMetadataSerialization );
@@ -85,6 +92,7 @@ public class EdgeMetaRepairImpl implements EdgeMetaRepair {
         this.keyspace = keyspace;
         this.graphFig = graphFig;
         this.storageEdgeSerialization = storageEdgeSerialization;
+        this.edgeMetadataCache = edgeMetadataCache;
     }
 
 
@@ -113,6 +121,11 @@ public class EdgeMetaRepairImpl implements EdgeMetaRepair {
         GraphValidation.validateTimestamp( maxTimestamp, "maxTimestamp" );
         Preconditions.checkNotNull( serialization, "serialization is required" );
 
+        //edges written while we repair write their meta data again, so we don't remove it from under them
+        serialization.invalidate( scope, node );
+
+        //the sub types we removed, checked again once the removes are done
+        final Set<String> removedSubTypes = ConcurrentHashMap.newKeySet();
 
         Observable<Integer> deleteCounts = serialization.loadEdgeSubTypes( scope, node, edgeType, maxTimestamp ).buffer(
                 graphFig.getRepairConcurrentSize() )
@@ -132,9 +145,11 @@ public class EdgeMetaRepairImpl implements EdgeMetaRepair {
                                     subType);
                         }
 
+                        //check edges of every version.  Edges newer than the max timestamp may not have
+                        //re-written the meta data if it was cached, so they don't protect it from the remove
                         Observable<Integer> search =
                                 //load each edge in it's own thread
-                                serialization.loadEdges( scope, node, edgeType, subType, maxTimestamp )
+                                serialization.loadEdges( scope, node, edgeType, subType, Long.MAX_VALUE )
                                              .doOnNext( RX_LOG ).take( 1 ).count()
                                              .doOnNext( count -> {
                                                  /**
@@ -163,6 +178,8 @@ public class EdgeMetaRepairImpl implements EdgeMetaRepair {
                                                  batch.mergeShallow( serialization
                                                          .removeEdgeSubType( scope, node, edgeType, subType,
                                                              maxTimestamp ) );
+
+                                                 removedSubTypes.add( subType );
                                              } );
 
                         checks.add( search );
@@ -226,7 +243,63 @@ public class EdgeMetaRepairImpl implements EdgeMetaRepair {
             catch ( ConnectionException e ) {
                 throw new RuntimeException( "Unable to connect to casandra", e );
             }
-        } );
+        } ).doOnNext( subTypeUsedCount -> {
+            restoreWritten( scope, node, edgeType, removedSubTypes, serialization );
+            restoreWrittenOnTimeout( scope, node, edgeType, removedSubTypes, serialization );
+        } )
+          .doOnTerminate( () -> serialization.invalidate( scope, node ) );
+    }
+
+
+    /**
+     * Write the meta data again for edges of the removed sub types that were written after we searched them.  Another
+     * node with the meta data cached writes the edge without it, and only invalidates its cache once it times out
+     */
+    private void restoreWritten( final ApplicationScope scope, final Id node, final String edgeType,
+                                 final Set<String> removedSubTypes, final CleanSerialization serialization ) {
+
+        for ( final String subType : removedSubTypes ) {
+
+            final MarkedEdge edge = serialization.loadEdges( scope, node, edgeType, subType, Long.MAX_VALUE )
+                                                 .toBlocking().firstOrDefault( null );
+
+            if ( edge == null ) {
+                continue;
+            }
+
+            if (logger.isTraceEnabled()) {
+                logger.trace("Edge with nodeId {}, type {}, and subtype {} written during the repair. Restoring subtype.",
+                        node, edgeType, subType);
+            }
+
+            try {
+                serialization.writeEdge( scope, edge ).execute();
+            }
+            catch ( ConnectionException e ) {
+                throw new RuntimeException( "Unable to connect to casandra", e );
+            }
+        }
+    }
+
+
+    /**
+     * Check the removed sub types again once the meta data cached on other nodes before the removes has timed out.
+     * Until then those nodes may write edges of the removed sub types without their meta data
+     */
+    private void restoreWrittenOnTimeout( final ApplicationScope scope, final Id node, final String edgeType,
+                                          final Set<String> removedSubTypes, final CleanSerialization serialization ) {
+
+        final long timeout = graphFig.getEdgeMetaCacheTimeout();
+
+        //nothing removed, or nothing cached that could skip the meta data
+        if ( removedSubTypes.isEmpty() || graphFig.getEdgeMetaCacheSize() <= 0 || timeout <= 0 ) {
+            return;
+        }
+
+        Observable.timer( timeout, TimeUnit.MILLISECONDS, Schedulers.io() ).subscribe(
+            tick -> restoreWritten( scope, node, edgeType, removedSubTypes, serialization ),
+            t -> logger.error( "Unable to restore the meta data of nodeId {}, type {} written during the repair", node,
+                edgeType, t ) );
     }
 
 
@@ -259,6 +332,16 @@ public class EdgeMetaRepairImpl implements EdgeMetaRepair {
          */
         MutationBatch removeEdgeType( final ApplicationScope scope, final Id nodeId, final String type,
                                       final long maxTimestamp );
+
+        /**
+         * Write the edge type and sub type of the edge
+         */
+        MutationBatch writeEdge( final ApplicationScope scope, final Edge edge );
+
+        /**
+         * Forget the meta data of the node we've written
+         */
+        void invalidate( final ApplicationScope scope, final Id nodeId );
     }
 
 
@@ -309,6 +392,18 @@ public class EdgeMetaRepairImpl implements EdgeMetaRepair {
                                              final long maxTimestamp ) {
             return edgeMetadataSerialization.removeEdgeTypeToTarget( scope, nodeId, type, maxTimestamp );
         }
+
+
+        @Override
+        public MutationBatch writeEdge( final ApplicationScope scope, final Edge edge ) {
+            return edgeMetadataSerialization.writeEdgeToTarget( scope, edge );
+        }
+
+
+        @Override
+        public void invalidate( final ApplicationScope scope, final Id nodeId ) {
+            edgeMetadataCache.invalidateTarget( scope, nodeId );
+        }
     };
 
     /**
@@ -355,6 +450,18 @@ public class EdgeMetaRepairImpl implements EdgeMetaRepair {
                                              final long maxTimestamp ) {
             return edgeMetadataSerialization.removeEdgeTypeFromSource( scope, nodeId, type, maxTimestamp );
         }
+
+
+        @Override
+        public MutationBatch writeEdge( final ApplicationScope scope, final Edge edge ) {
+            return edgeMetadataSerialization.writeEdgeFromSource( scope, edge );
+        }
+
+
+        @Override
+        public void invalidate( final ApplicationScope scope, final Id nodeId ) {
+            edgeMetadataCache.invalidateSource( scope, nodeId );
+        }
     };
 
 
@@ -34,6 +34,7 @@ import org.apache.usergrid.persistence.graph.GraphFig;
 import org.apache.usergrid.persistence.graph.MarkedEdge;
 import org.apache.usergrid.persistence.graph.SearchByEdgeType;
 import org.apache.usergrid.persistence.graph.SearchEdgeType;
+import org.apache.usergrid.persistence.graph.impl.EdgeMetadataCache;
 import org.apache.usergrid.persistence.graph.impl.SimpleSearchByEdgeType;
 import org.apache.usergrid.persistence.graph.impl.SimpleSearchEdgeType;
 import org.apache.usergrid.persistence.graph.serialization.EdgeMetadataSerialization;
@@ -65,6 +66,7 @@ public class NodeDeleteListenerImpl implements NodeDeleteListener {
     private final EdgeMetadataSerialization edgeMetadataSerialization;
     private final EdgeMetaRepair edgeMetaRepair;
     private final GraphFig graphFig;
+    private final EdgeMetadataCache edgeMetadataCache;
     protected final Keyspace keyspace;
 
 
@@ -76,7 +78,7 @@ public class NodeDeleteListenerImpl implements NodeDeleteListener {
                                    final EdgeMetadataSerialization edgeMetadataSerialization,
                                    final EdgeMetaRepair edgeMetaRepair, final GraphFig graphFig,
                                    final EdgeSerialization storageSerialization,
-                                   final Keyspace keyspace ) {
+                                   final Keyspace keyspace, final EdgeMetadataCache edgeMetadataCache ) {
 
 
         this.nodeSerialization = nodeSerialization;
@@ -85,6 +87,7 @@ public class NodeDeleteListenerImpl implements NodeDeleteListener {
         this.edgeMetaRepair = edgeMetaRepair;
         this.graphFig = graphFig;
         this.keyspace = keyspace;
+        this.edgeMetadataCache = edgeMetadataCache;
     }
 
 
@@ -119,6 +122,10 @@ public class NodeDeleteListenerImpl implements NodeDeleteListener {
                             return Observable.empty();
                         }
 
+                        //the node's meta data is going away with its edges
+                        edgeMetadataCache.invalidateSource( scope, node );
+                        edgeMetadataCache.invalidateTarget( scope, node );
+
 
                         //do all the delete, then when done, delete the node
                         return doDeletes( node, scope, maxVersion.get(), timestamp ).count()
@@ -44,6 +44,16 @@ public interface EdgeMetadataSerialization extends Migration, VersionedData {
      */
     MutationBatch writeEdge( ApplicationScope scope, Edge edge );
 
+    /**
+     * EdgeWrite only the source--->Target edge type and target id type into the mutation
+     */
+    MutationBatch writeEdgeFromSource( ApplicationScope scope, Edge edge );
+
+    /**
+     * EdgeWrite only the target <----- source edge type and source id type into the mutation
+     */
+    MutationBatch writeEdgeToTarget( ApplicationScope scope, Edge edge );
+
     /**
      * Remove all meta data from the source to the target type.  The caller must ensure that this is the last edge with
      * this type at version <= edge version
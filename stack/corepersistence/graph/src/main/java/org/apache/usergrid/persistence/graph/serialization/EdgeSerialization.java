@@ -20,6 +20,7 @@
 package org.apache.usergrid.persistence.graph.serialization;
 
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.UUID;
 
@@ -46,6 +47,15 @@ public interface EdgeSerialization {
      */
     MutationBatch writeEdge( ApplicationScope scope, MarkedEdge edge, UUID timestamp );
 
+    /**
+     * EdgeWrite the edges into one mutation, the same as {@link #writeEdge(ApplicationScope, MarkedEdge, UUID)}.  The
+     * write shards of the edges that share a directed edge meta are resolved once for all of them
+     *
+     * @param scope The org scope of the graph
+     * @param edges The edges to write, at least one
+     */
+    MutationBatch writeEdges( ApplicationScope scope, Collection<MarkedEdge> edges, UUID timestamp );
+
     /**
      * EdgeWrite both the source -->target edge and the target<--- source edge into the mutation
      *
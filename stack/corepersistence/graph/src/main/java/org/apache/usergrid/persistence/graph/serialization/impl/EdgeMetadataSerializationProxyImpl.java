@@ -89,6 +89,44 @@ public class EdgeMetadataSerializationProxyImpl implements EdgeMetadataSerializa
     }
 
 
+    @Override
+    public MutationBatch writeEdgeFromSource( final ApplicationScope scope, final Edge edge ) {
+
+        final MigrationRelationship<EdgeMetadataSerialization> migration = getMigrationRelationShip();
+
+
+        if ( migration.needsMigration() ) {
+            final MutationBatch aggregateBatch = keyspace.prepareMutationBatch();
+
+            aggregateBatch.mergeShallow( migration.from.writeEdgeFromSource( scope, edge ) );
+            aggregateBatch.mergeShallow( migration.to.writeEdgeFromSource( scope, edge ) );
+
+            return aggregateBatch;
+        }
+
+        return migration.to.writeEdgeFromSource( scope, edge );
+    }
+
+
+    @Override
+    public MutationBatch writeEdgeToTarget( final ApplicationScope scope, final Edge edge ) {
+
+        final MigrationRelationship<EdgeMetadataSerialization> migration = getMigrationRelationShip();
+
+
+        if ( migration.needsMigration() ) {
+            final MutationBatch aggregateBatch = keyspace.prepareMutationBatch();
+
+            aggregateBatch.mergeShallow( migration.from.writeEdgeToTarget( scope, edge ) );
+            aggregateBatch.mergeShallow( migration.to.writeEdgeToTarget( scope, edge ) );
+
+            return aggregateBatch;
+        }
+
+        return migration.to.writeEdgeToTarget( scope, edge );
+    }
+
+
     @Override
     public MutationBatch removeEdgeTypeFromSource( final ApplicationScope scope, final Edge edge ) {
         final MigrationRelationship<EdgeMetadataSerialization> migration = getMigrationRelationShip();
@@ -129,6 +129,27 @@ public class EdgeMetadataSerializationV1Impl implements EdgeMetadataSerializatio
 
     @Override
     public MutationBatch writeEdge( final ApplicationScope scope, final Edge edge ) {
+        return writeEdge( scope, edge, true, true );
+    }
+
+
+    @Override
+    public MutationBatch writeEdgeFromSource( final ApplicationScope scope, final Edge edge ) {
+        return writeEdge( scope, edge, true, false );
+    }
+
+
+    @Override
+    public MutationBatch writeEdgeToTarget( final ApplicationScope scope, final Edge edge ) {
+        return writeEdge( scope, edge, false, true );
+    }
+
+
+    /**
+     * Write the source and/or target meta data of the edge
+     */
+    private MutationBatch writeEdge( final ApplicationScope scope, final Edge edge, final boolean writeSource,
+                                     final boolean writeTarget ) {
 
         ValidationUtils.validateApplicationScope( scope );
         GraphValidation.validateEdge( edge );
@@ -143,35 +164,38 @@ public class EdgeMetadataSerializationV1Impl implements EdgeMetadataSerializatio
                                             .withTimestamp( timestamp );
 
 
+        if ( writeSource ) {
+            //add source->target edge type to meta data
+            final ScopedRowKey< Id> sourceKey = new ScopedRowKey<>( scopeId, source );
 
-        //add source->target edge type to meta data
-        final ScopedRowKey< Id> sourceKey = new ScopedRowKey<>( scopeId, source );
+            batch.withRow( CF_SOURCE_EDGE_TYPES, sourceKey ).putColumn( edgeType, HOLDER );
 
-        batch.withRow( CF_SOURCE_EDGE_TYPES, sourceKey ).putColumn( edgeType, HOLDER );
 
-
-        //write source->target edge type and id type to meta data
-        EdgeIdTypeKey tk = new EdgeIdTypeKey( source, edgeType );
-        final ScopedRowKey<EdgeIdTypeKey> sourceTypeKey =
-                new ScopedRowKey<>( scopeId, tk );
+            //write source->target edge type and id type to meta data
+            EdgeIdTypeKey tk = new EdgeIdTypeKey( source, edgeType );
+            final ScopedRowKey<EdgeIdTypeKey> sourceTypeKey =
+                    new ScopedRowKey<>( scopeId, tk );
 
 
-        batch.withRow( CF_SOURCE_EDGE_ID_TYPES, sourceTypeKey ).putColumn( target.getType(), HOLDER );
+            batch.withRow( CF_SOURCE_EDGE_ID_TYPES, sourceTypeKey ).putColumn( target.getType(), HOLDER );
+        }
 
 
-        //write target<--source edge type meta data
-        final ScopedRowKey< Id> targetKey = new ScopedRowKey<>( scopeId, target );
+        if ( writeTarget ) {
+            //write target<--source edge type meta data
+            final ScopedRowKey< Id> targetKey = new ScopedRowKey<>( scopeId, target );
 
 
-        batch.withRow( CF_TARGET_EDGE_TYPES, targetKey ).putColumn( edgeType, HOLDER );
+            batch.withRow( CF_TARGET_EDGE_TYPES, targetKey ).putColumn( edgeType, HOLDER );
 
 
-        //write target<--source edge type and id type to meta data
-        final ScopedRowKey<EdgeIdTypeKey> targetTypeKey =
-                new ScopedRowKey<>( scopeId, new EdgeIdTypeKey( target, edgeType ) );
+            //write target<--source edge type and id type to meta data
+            final ScopedRowKey<EdgeIdTypeKey> targetTypeKey =
+                    new ScopedRowKey<>( scopeId, new EdgeIdTypeKey( target, edgeType ) );
 
 
-        batch.withRow( CF_TARGET_EDGE_ID_TYPES, targetTypeKey ).putColumn( source.getType(), HOLDER );
+            batch.withRow( CF_TARGET_EDGE_ID_TYPES, targetTypeKey ).putColumn( source.getType(), HOLDER );
+        }
 
 
         return batch;
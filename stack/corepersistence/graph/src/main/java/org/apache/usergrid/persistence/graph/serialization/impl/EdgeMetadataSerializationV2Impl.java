@@ -199,6 +199,27 @@ public class EdgeMetadataSerializationV2Impl implements EdgeMetadataSerializatio
 
     @Override
     public MutationBatch writeEdge( final ApplicationScope scope, final Edge edge ) {
+        return writeEdge( scope, edge, true, true );
+    }
+
+
+    @Override
+    public MutationBatch writeEdgeFromSource( final ApplicationScope scope, final Edge edge ) {
+        return writeEdge( scope, edge, true, false );
+    }
+
+
+    @Override
+    public MutationBatch writeEdgeToTarget( final ApplicationScope scope, final Edge edge ) {
+        return writeEdge( scope, edge, false, true );
+    }
+
+
+    /**
+     * Write the source and/or target meta data of the edge
+     */
+    private MutationBatch writeEdge( final ApplicationScope scope, final Edge edge, final boolean writeSource,
+                                     final boolean writeTarget ) {
 
         ValidationUtils.validateApplicationScope( scope );
         GraphValidation.validateEdge( edge );
@@ -213,43 +234,47 @@ public class EdgeMetadataSerializationV2Impl implements EdgeMetadataSerializatio
                                             .withTimestamp( timestamp );
 
 
-        //add source->target edge type to meta data
-        final int sourceKeyBucket = idExpandingShardLocator.getCurrentBucket( source );
+        if ( writeSource ) {
+            //add source->target edge type to meta data
+            final int sourceKeyBucket = idExpandingShardLocator.getCurrentBucket( source );
 
 
-        final BucketScopedRowKey<Id> sourceKey = BucketScopedRowKey.fromKey( scopeId, source, sourceKeyBucket );
+            final BucketScopedRowKey<Id> sourceKey = BucketScopedRowKey.fromKey( scopeId, source, sourceKeyBucket );
 
-        batch.withRow( CF_SOURCE_EDGE_TYPES, sourceKey ).putColumn( edgeType, HOLDER );
+            batch.withRow( CF_SOURCE_EDGE_TYPES, sourceKey ).putColumn( edgeType, HOLDER );
 
 
-        //write source->target edge type and id type to meta data
-        final EdgeIdTypeKey sourceTargetTypeKey = new EdgeIdTypeKey( source, edgeType );
+            //write source->target edge type and id type to meta data
+            final EdgeIdTypeKey sourceTargetTypeKey = new EdgeIdTypeKey( source, edgeType );
 
-        final int sourceTargetTypeBucket = edgeTypeExpandingShardLocator.getCurrentBucket( sourceTargetTypeKey );
+            final int sourceTargetTypeBucket = edgeTypeExpandingShardLocator.getCurrentBucket( sourceTargetTypeKey );
 
-        final BucketScopedRowKey<EdgeIdTypeKey> sourceTypeKey =
-                BucketScopedRowKey.fromKey( scopeId, sourceTargetTypeKey, sourceTargetTypeBucket );
+            final BucketScopedRowKey<EdgeIdTypeKey> sourceTypeKey =
+                    BucketScopedRowKey.fromKey( scopeId, sourceTargetTypeKey, sourceTargetTypeBucket );
 
-        batch.withRow( CF_SOURCE_EDGE_ID_TYPES, sourceTypeKey ).putColumn( target.getType(), HOLDER );
+            batch.withRow( CF_SOURCE_EDGE_ID_TYPES, sourceTypeKey ).putColumn( target.getType(), HOLDER );
+        }
 
 
-        final int targetKeyBucket = idExpandingShardLocator.getCurrentBucket( target );
+        if ( writeTarget ) {
+            final int targetKeyBucket = idExpandingShardLocator.getCurrentBucket( target );
 
-        final BucketScopedRowKey<Id> targetKey = BucketScopedRowKey.fromKey( scopeId, target, targetKeyBucket );
+            final BucketScopedRowKey<Id> targetKey = BucketScopedRowKey.fromKey( scopeId, target, targetKeyBucket );
 
-        batch.withRow( CF_TARGET_EDGE_TYPES, targetKey ).putColumn( edgeType, HOLDER );
+            batch.withRow( CF_TARGET_EDGE_TYPES, targetKey ).putColumn( edgeType, HOLDER );
 
 
-        //write target<--source edge type and id type to meta data
+            //write target<--source edge type and id type to meta data
 
-        final EdgeIdTypeKey targetSourceTypeKey = new EdgeIdTypeKey( target, edgeType );
+            final EdgeIdTypeKey targetSourceTypeKey = new EdgeIdTypeKey( target, edgeType );
 
-        final int targetSourceTypeKeyBucket = edgeTypeExpandingShardLocator.getCurrentBucket( targetSourceTypeKey );
+            final int targetSourceTypeKeyBucket = edgeTypeExpandingShardLocator.getCurrentBucket( targetSourceTypeKey );
 
-        final BucketScopedRowKey<EdgeIdTypeKey> targetTypeKey =
-                BucketScopedRowKey.fromKey( scopeId, targetSourceTypeKey, targetSourceTypeKeyBucket );
+            final BucketScopedRowKey<EdgeIdTypeKey> targetTypeKey =
+                    BucketScopedRowKey.fromKey( scopeId, targetSourceTypeKey, targetSourceTypeKeyBucket );
 
-        batch.withRow( CF_TARGET_EDGE_ID_TYPES, targetTypeKey ).putColumn( source.getType(), HOLDER );
+            batch.withRow( CF_TARGET_EDGE_ID_TYPES, targetTypeKey ).putColumn( source.getType(), HOLDER );
+        }
 
 
         return batch;
@@ -21,7 +21,9 @@ package org.apache.usergrid.persistence.graph.serialization.impl;
 
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.inject.Inject;
@@ -51,6 +53,7 @@ import com.google.inject.Singleton;
 import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.MutationBatch;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 
@@ -190,6 +193,121 @@ public class EdgeSerializationImpl implements EdgeSerialization {
     }
 
 
+    @Override
+    public MutationBatch writeEdges( final ApplicationScope scope, final Collection<MarkedEdge> markedEdges,
+                                     final UUID timestamp ) {
+
+        ValidationUtils.validateApplicationScope( scope );
+        checkArgument( !markedEdges.isEmpty(), "edges are required" );
+        ValidationUtils.verifyTimeUuid( timestamp, "timestamp" );
+
+        final long now = timeService.getCurrentTime();
+
+        /**
+         * The range of edge timestamps written to each directed edge meta
+         */
+        final Map<DirectedEdgeMeta, long[]> timestampRanges = new HashMap<>();
+
+        for ( final MarkedEdge markedEdge : markedEdges ) {
+            GraphValidation.validateEdge( markedEdge );
+
+            final long edgeTimestamp = markedEdge.getTimestamp();
+
+            for ( final DirectedEdgeMeta directedEdgeMeta : getDirectedEdgeMetas( markedEdge ) ) {
+                timestampRanges.merge( directedEdgeMeta, new long[] { edgeTimestamp, edgeTimestamp },
+                    ( range, edge ) -> new long[] { Math.min( range[0], edge[0] ), Math.max( range[1], edge[1] ) } );
+            }
+        }
+
+        /**
+         * Resolve the shard group of each directed edge meta once.  The group of the newest edge holds every edge
+         * at or after its min shard, edges of a meta that span groups are resolved one at a time
+         */
+        final Map<DirectedEdgeMeta, Collection<Shard>> writeShards = new HashMap<>();
+
+        timestampRanges.forEach( ( directedEdgeMeta, range ) -> {
+            final ShardEntryGroup group = edgeShardStrategy.getWriteShards( scope, range[1], directedEdgeMeta );
+
+            if ( group.getMinShard().getShardIndex() <= range[0] ) {
+                writeShards.put( directedEdgeMeta, group.getWriteShards( now ) );
+            }
+        } );
+
+        MutationBatch batch = null;
+
+        for ( final MarkedEdge markedEdge : markedEdges ) {
+
+            final DirectedEdgeMeta[] metas = getDirectedEdgeMetas( markedEdge );
+
+            final MutationBatch edgeBatch = shardedEdgeSerialization
+                .writeEdgeFromSource( edgeColumnFamilies, scope, markedEdge,
+                    getWriteShards( scope, writeShards, markedEdge, metas[0], now ), metas[0], timestamp );
+
+            edgeBatch.mergeShallow( shardedEdgeSerialization
+                .writeEdgeFromSourceWithTargetType( edgeColumnFamilies, scope, markedEdge,
+                    getWriteShards( scope, writeShards, markedEdge, metas[1], now ), metas[1], timestamp ) );
+
+            edgeBatch.mergeShallow( shardedEdgeSerialization
+                .writeEdgeToTarget( edgeColumnFamilies, scope, markedEdge,
+                    getWriteShards( scope, writeShards, markedEdge, metas[2], now ), metas[2], timestamp ) );
+
+            edgeBatch.mergeShallow( shardedEdgeSerialization
+                .writeEdgeToTargetWithSourceType( edgeColumnFamilies, scope, markedEdge,
+                    getWriteShards( scope, writeShards, markedEdge, metas[3], now ), metas[3], timestamp ) );
+
+            edgeBatch.mergeShallow( shardedEdgeSerialization
+                .writeEdgeVersions( edgeColumnFamilies, scope, markedEdge,
+                    getWriteShards( scope, writeShards, markedEdge, metas[4], now ), metas[4], timestamp ) );
+
+            if ( batch == null ) {
+                batch = edgeBatch;
+            }
+            else {
+                batch.mergeShallow( edgeBatch );
+            }
+        }
+
+        return batch;
+    }
+
+
+    /**
+     * The directed edge metas an edge is written to, in the order writeEdge writes them
+     */
+    private DirectedEdgeMeta[] getDirectedEdgeMetas( final MarkedEdge markedEdge ) {
+        final Id sourceNode = markedEdge.getSourceNode();
+        final Id targetNode = markedEdge.getTargetNode();
+        final String edgeType = markedEdge.getType();
+
+        return new DirectedEdgeMeta[] {
+            DirectedEdgeMeta.fromSourceNode( sourceNode, edgeType ),
+            DirectedEdgeMeta.fromSourceNodeTargetType( sourceNode, edgeType, targetNode.getType() ),
+            DirectedEdgeMeta.fromTargetNode( targetNode, edgeType ),
+            DirectedEdgeMeta.fromTargetNodeSourceType( targetNode, edgeType, sourceNode.getType() ),
+            DirectedEdgeMeta.fromEdge( sourceNode, targetNode, edgeType )
+        };
+    }
+
+
+    /**
+     * Get the write shards resolved for the directed edge meta, or look them up for the edge if its edges span groups
+     */
+    private Collection<Shard> getWriteShards( final ApplicationScope scope,
+                                              final Map<DirectedEdgeMeta, Collection<Shard>> writeShards,
+                                              final MarkedEdge markedEdge, final DirectedEdgeMeta directedEdgeMeta,
+                                              final long now ) {
+
+        final Collection<Shard> shards = writeShards.get( directedEdgeMeta );
+
+        if ( shards != null ) {
+            return shards;
+        }
+
+        return edgeShardStrategy.getWriteShards( scope, markedEdge.getTimestamp(), directedEdgeMeta )
+                                .getWriteShards( now );
+    }
+
+
     @Override
     public MutationBatch deleteEdge( final ApplicationScope scope, final MarkedEdge markedEdge, final UUID timestamp ) {
         ValidationUtils.validateApplicationScope( scope );
@@ -33,12 +33,14 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.usergrid.persistence.core.consistency.TimeService;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.util.ValidationUtils;
 import org.apache.usergrid.persistence.graph.GraphFig;
@@ -51,8 +53,11 @@ import org.apache.usergrid.persistence.graph.serialization.impl.shard.ShardEntry
 import org.apache.usergrid.persistence.graph.serialization.util.GraphValidation;
 import org.apache.usergrid.persistence.graph.serialization.util.IterableUtil;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -68,6 +73,11 @@ import com.google.inject.Inject;
 /**
  * Simple implementation of the shard.  Uses a local Guava shard with a timeout.  If a value is not present in the
  * shard, it will need to be searched via cassandra.
+ *
+ * Entries older than the refresh interval are served while they're reloaded in the background, entries older than the
+ * cache timeout are never served.  Shards are allocated at least 2.5 cache timeouts in the future, so every node sees
+ * a new shard before it's written to.  Compaction and allocation invalidate the entries they change, so those changes
+ * are seen immediately on this node.
  */
 @Singleton
 public class NodeShardCacheImpl implements NodeShardCache {
@@ -82,6 +92,19 @@ public class NodeShardCacheImpl implements NodeShardCache {
     private final NodeShardAllocation nodeShardAllocation;
     private final GraphFig graphFig;
 
+    private final Timer lookupTimer;
+    private final Meter staleMeter;
+    private final Meter invalidateMeter;
+
+    /**
+     * Every load and invalidation takes the next sequence.  An entry loaded before its key was last invalidated may
+     * have been loaded by a refresh that raced the invalidation, and is never served.  Invalidations are kept until
+     * any entry loaded before them has expired
+     */
+    private final AtomicLong sequence = new AtomicLong();
+    private Cache<CacheKey, Long> invalidations;
+
+    private volatile long refreshInterval;
 
 
     private ListeningScheduledExecutorService refreshExecutors;
@@ -91,16 +114,23 @@ public class NodeShardCacheImpl implements NodeShardCache {
     /**
      *  @param nodeShardAllocation
      * @param graphFig
+     * @param metricsFactory
      */
     @Inject
-    public NodeShardCacheImpl( final NodeShardAllocation nodeShardAllocation, final GraphFig graphFig) {
+    public NodeShardCacheImpl( final NodeShardAllocation nodeShardAllocation, final GraphFig graphFig,
+                               final MetricsFactory metricsFactory ) {
 
         Preconditions.checkNotNull( nodeShardAllocation, "nodeShardAllocation is required" );
         Preconditions.checkNotNull( graphFig, "consistencyFig is required" );
+        Preconditions.checkNotNull( metricsFactory, "metricsFactory is required" );
 
         this.nodeShardAllocation = nodeShardAllocation;
         this.graphFig = graphFig;
 
+        this.lookupTimer = metricsFactory.getTimer( NodeShardCacheImpl.class, "shard.cache.lookup" );
+        this.staleMeter = metricsFactory.getMeter( NodeShardCacheImpl.class, "shard.cache.stale" );
+        this.invalidateMeter = metricsFactory.getMeter( NodeShardCacheImpl.class, "shard.cache.invalidate" );
+
 
         /**
          * Add our listener to reconstruct the shard
@@ -112,6 +142,7 @@ public class NodeShardCacheImpl implements NodeShardCache {
 
                 if ( propertyName.equals( GraphFig.SHARD_CACHE_SIZE ) || propertyName
                         .equals( GraphFig.SHARD_CACHE_TIMEOUT ) || propertyName
+                        .equals( GraphFig.SHARD_CACHE_REFRESH ) || propertyName
                         .equals( GraphFig.SHARD_CACHE_REFRESH_WORKERS ) ) {
 
 
@@ -135,13 +166,15 @@ public class NodeShardCacheImpl implements NodeShardCache {
         GraphValidation.validateDirectedEdgeMeta( directedEdgeMeta );
 
         final CacheKey key = new CacheKey( scope, directedEdgeMeta );
-        CacheEntry entry;
+        final CacheEntry entry;
+
+        final Timer.Context timer = lookupTimer.time();
 
         try {
-            entry = this.graphs.get( key );
+            entry = getEntry( key );
         }
-        catch ( ExecutionException e ) {
-            throw new GraphRuntimeException( "Unable to load shard key for graph", e );
+        finally {
+            timer.stop();
         }
 
         final ShardEntryGroup shardId = entry.getShardId( timestamp );
@@ -162,20 +195,22 @@ public class NodeShardCacheImpl implements NodeShardCache {
         GraphValidation.validateDirectedEdgeMeta( directedEdgeMeta );
 
         final CacheKey key = new CacheKey( scope, directedEdgeMeta );
-        CacheEntry entry;
+        final CacheEntry entry;
 
-        if( graphFig.getShardReadCacheEnabled() ) {
+        final Timer.Context timer = lookupTimer.time();
 
-            try {
-                entry = this.graphs.get(key);
-            } catch (ExecutionException e) {
-                throw new GraphRuntimeException("Unable to load shard key for graph", e);
+        try {
+            if ( graphFig.getShardReadCacheEnabled() ) {
+                entry = getEntry( key );
+            }
+            else {
+                entry = new CacheEntry(
+                        nodeShardAllocation.getShards( key.scope, Optional.<Shard>absent(), key.directedEdgeMeta ),
+                        sequence.incrementAndGet(), System.currentTimeMillis() );
             }
-
-        } else {
-
-            entry = new CacheEntry(nodeShardAllocation.getShards( key.scope, Optional.<Shard>absent(), key.directedEdgeMeta ));
-
+        }
+        finally {
+            timer.stop();
         }
 
         Iterator<ShardEntryGroup> iterator = entry.getShards( maxTimestamp );
@@ -192,8 +227,43 @@ public class NodeShardCacheImpl implements NodeShardCache {
     public void invalidate( final ApplicationScope scope, final DirectedEdgeMeta directedEdgeMeta ){
 
         final CacheKey cacheKey = new CacheKey(scope, directedEdgeMeta);
+
+        invalidations.put( cacheKey, sequence.incrementAndGet() );
         graphs.invalidate(cacheKey);
 
+        invalidateMeter.mark();
+    }
+
+
+    /**
+     * Get the entry from the cache, reloading it if it was loaded before the key was last invalidated
+     */
+    private CacheEntry getEntry( final CacheKey key ) {
+        try {
+            CacheEntry entry = graphs.get( key );
+
+            final Long invalidatedAt = invalidations.getIfPresent( key );
+
+            if ( invalidatedAt != null ) {
+
+                //a refresh that started before the invalidation stored its result after it, load it again
+                while ( entry.loadSequence < invalidatedAt ) {
+                    graphs.invalidate( key );
+                    entry = graphs.get( key );
+                }
+
+                invalidations.asMap().remove( key, invalidatedAt );
+            }
+
+            if ( System.currentTimeMillis() - entry.loadedAt > refreshInterval ) {
+                staleMeter.mark();
+            }
+
+            return entry;
+        }
+        catch ( ExecutionException e ) {
+            throw new GraphRuntimeException( "Unable to load shard key for graph", e );
+        }
     }
 
     /**
@@ -209,17 +279,30 @@ public class NodeShardCacheImpl implements NodeShardCache {
                 .listeningDecorator( Executors.newScheduledThreadPool( graphFig.getShardCacheRefreshWorkerCount() ) );
 
 
+        final long timeout = graphFig.getShardCacheTimeout();
+        final long refresh = graphFig.getShardCacheRefresh();
+
+        //refresh must come before expiry, or we'd always wait on cassandra
+        this.refreshInterval = refresh > 0 && refresh < timeout ? refresh : Math.max( 1, timeout / 2 );
+
         this.graphs = CacheBuilder.newBuilder()
 
                 //we want to asynchronously load new values for existing ones, that way we wont' have to
                 //wait for a trip to cassandra
-                .refreshAfterWrite( graphFig.getShardCacheTimeout(), TimeUnit.MILLISECONDS )
+                .refreshAfterWrite( refreshInterval, TimeUnit.MILLISECONDS )
+
+                        //never serve anything older than the timeout, allocation relies on it
+                .expireAfterWrite( Math.max( 1, timeout ), TimeUnit.MILLISECONDS )
 
                         //set our weight function, since not all shards are equal
                 .maximumWeight(MAX_WEIGHT_PER_ELEMENT * graphFig.getShardCacheSize() ).weigher( new ShardWeigher() )
 
                         //set our shard loader
                 .build( new ShardCacheLoader() );
+
+        //an entry loaded just before an invalidation, by a refresh that took up to the timeout, is gone by then
+        this.invalidations = CacheBuilder.newBuilder()
+                .expireAfterWrite( Math.max( 1, timeout ) * 2, TimeUnit.MILLISECONDS ).build();
     }
 
 
@@ -279,11 +362,17 @@ public class NodeShardCacheImpl implements NodeShardCache {
          */
         private TreeMap<Long, ShardEntryGroup> shards;
 
+        private final long loadSequence;
+        private final long loadedAt;
 
-        private CacheEntry( final Iterator<ShardEntryGroup> shards ) {
+
+        private CacheEntry( final Iterator<ShardEntryGroup> shards, final long loadSequence, final long loadedAt ) {
             Preconditions.checkArgument( shards.hasNext(),
                     "More than 1 entry must be present in the shard to load into cache" );
 
+            this.loadSequence = loadSequence;
+            this.loadedAt = loadedAt;
+
             this.shards = new TreeMap<>();
             /**
              * TODO, we need to bound this.  While I don't envision more than a thousand groups max,
@@ -338,11 +427,13 @@ public class NodeShardCacheImpl implements NodeShardCache {
         @Override
         public CacheEntry load( final CacheKey key ) {
 
+            //take our sequence before reading, so an invalidation during the read marks us stale
+            final long loadSequence = sequence.incrementAndGet();
 
             final Iterator<ShardEntryGroup> edges =
                     nodeShardAllocation.getShards( key.scope, Optional.<Shard>absent(), key.directedEdgeMeta );
 
-            final CacheEntry cacheEntry = new CacheEntry( edges );
+            final CacheEntry cacheEntry = new CacheEntry( edges, loadSequence, System.currentTimeMillis() );
 
             return cacheEntry;
         }
@@ -48,7 +48,7 @@ import com.google.common.util.concurrent.ListenableFuture;
  *
  * @param <T> The parsed return type
  */
-public abstract class ShardGroupColumnIterator implements Iterator<MarkedEdge> {
+public abstract class ShardGroupColumnIterator implements Iterator<MarkedEdge>, AutoCloseable {
 
 
     private static final Logger logger = LoggerFactory.getLogger( ShardGroupColumnIterator.class );
@@ -110,6 +110,17 @@ public abstract class ShardGroupColumnIterator implements Iterator<MarkedEdge> {
     }
 
 
+    /**
+     * Close the iterator of the current shard group, if it holds any resources
+     */
+    @Override
+    public void close() throws Exception {
+        if ( elements instanceof AutoCloseable ) {
+            ( ( AutoCloseable ) elements ).close();
+        }
+    }
+
+
     /**
      * Get an iterator for the shard entry group
      *
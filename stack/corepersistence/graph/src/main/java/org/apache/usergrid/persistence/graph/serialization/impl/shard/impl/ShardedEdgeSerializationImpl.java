@@ -399,7 +399,7 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
                 };
 
         return new ShardsColumnIterator<>( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
-                graphFig.getScanPageSize(), graphFig.getSmartShardSeekEnabled() );
+                graphFig.getScanPageSize(), graphFig.getSmartShardSeekEnabled(), graphFig.getScanReadAhead() );
     }
 
 
@@ -470,7 +470,7 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
 
 
         return new ShardsColumnIterator<>( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
-                graphFig.getScanPageSize(), graphFig.getSmartShardSeekEnabled() );
+                graphFig.getScanPageSize(), graphFig.getSmartShardSeekEnabled(), graphFig.getScanReadAhead() );
     }
 
 
@@ -535,7 +535,7 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
                 };
 
         return new ShardsColumnIterator( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
-                graphFig.getScanPageSize(), graphFig.getSmartShardSeekEnabled() );
+                graphFig.getScanPageSize(), graphFig.getSmartShardSeekEnabled(), graphFig.getScanReadAhead() );
     }
 
 
@@ -597,7 +597,7 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
 
 
         return new ShardsColumnIterator<>( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
-                graphFig.getScanPageSize(), graphFig.getSmartShardSeekEnabled() );
+                graphFig.getScanPageSize(), graphFig.getSmartShardSeekEnabled(), graphFig.getScanReadAhead() );
     }
 
 
@@ -660,7 +660,7 @@ public class ShardedEdgeSerializationImpl implements ShardedEdgeSerialization {
                 };
 
         return new ShardsColumnIterator<>( searcher, columnFamily, keyspace, cassandraConfig.getReadCL(),
-                graphFig.getScanPageSize(), graphFig.getSmartShardSeekEnabled() );
+                graphFig.getScanPageSize(), graphFig.getSmartShardSeekEnabled(), graphFig.getScanReadAhead() );
     }
 
 
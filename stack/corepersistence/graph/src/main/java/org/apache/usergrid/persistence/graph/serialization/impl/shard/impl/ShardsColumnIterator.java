@@ -43,7 +43,7 @@ import com.netflix.astyanax.util.RangeBuilder;
  * @param <C> The column type
  * @param <T> The parsed return type
  */
-public class ShardsColumnIterator<R, C, T> implements Iterator<T> {
+public class ShardsColumnIterator<R, C, T> implements Iterator<T>, AutoCloseable {
 
 
     private static final Logger logger = LoggerFactory.getLogger( ShardsColumnIterator.class );
@@ -62,17 +62,20 @@ public class ShardsColumnIterator<R, C, T> implements Iterator<T> {
 
     private final boolean smartShardSeekEnabled;
 
+    private final int readAheadDepth;
+
 
     public ShardsColumnIterator(final EdgeSearcher<R, C, T> searcher,
                                 final MultiTenantColumnFamily<ScopedRowKey<R>, C> cf, final Keyspace keyspace,
                                 final ConsistencyLevel consistencyLevel, final int pageSize,
-                                final boolean smartShardSeekEnabled) {
+                                final boolean smartShardSeekEnabled, final int readAheadDepth) {
         this.searcher = searcher;
         this.cf = cf;
         this.keyspace = keyspace;
         this.pageSize = pageSize;
         this.consistencyLevel = consistencyLevel;
         this.smartShardSeekEnabled = smartShardSeekEnabled;
+        this.readAheadDepth = readAheadDepth;
     }
 
 
@@ -106,6 +109,17 @@ public class ShardsColumnIterator<R, C, T> implements Iterator<T> {
     }
 
 
+    /**
+     * Cancel any pages the column iterator is reading ahead
+     */
+    @Override
+    public void close() {
+        if ( currentColumnIterator instanceof MultiRowShardColumnIterator ) {
+            ( ( MultiRowShardColumnIterator<?, ?, ?> ) currentColumnIterator ).close();
+        }
+    }
+
+
     /**
      * Advance our iterator to the next row (assumes the check for row keys is elsewhere)
      */
@@ -130,7 +144,8 @@ public class ShardsColumnIterator<R, C, T> implements Iterator<T> {
             final boolean ascending = searcher.getOrder() == SearchByEdgeType.Order.ASCENDING;
 
             currentColumnIterator = new MultiRowShardColumnIterator<>( keyspace, cf,  consistencyLevel, searcher, searcher,
-                searcher.getComparator(), pageSize, rowKeysWithShardEnd, ascending, searcher.getLastTimestamp() );
+                searcher.getComparator(), pageSize, rowKeysWithShardEnd, ascending, searcher.getLastTimestamp(),
+                readAheadDepth );
 
         }else{
 
@@ -19,8 +19,11 @@
 package org.apache.usergrid.persistence.graph;
 
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeoutException;
 
 import org.junit.Before;
@@ -2388,9 +2391,67 @@ public class GraphManagerIT {
 
         assertEquals( "Correct edges returned", edge3, ascending.get( 2 ) );
     }
-}
 
 
+    @Test
+    public void testWriteAndMarkEdges() {
+
+        GraphManager gm = emf.createEdgeManager( scope );
+
+        final Id sourceId = createId( "source" );
+
+        //more than a single batch
+        final int size = 250;
+
+        final List<Edge> edges = new ArrayList<>( size );
+
+        for ( int i = 0; i < size; i++ ) {
+            edges.add( createEdge( sourceId, "test", createId( "target" ) ) );
+        }
+
+        final List<EdgeWriteResult> written = gm.writeEdges( Observable.from( edges ) ).toList().toBlocking().last();
+
+        assertEquals( "Every edge is returned", size, written.size() );
+
+        for ( final EdgeWriteResult result : written ) {
+            assertTrue( "Edge is written", result.isSuccess() );
+        }
+
+        final Set<Id> targets = new HashSet<>( size );
 
+        for ( final Edge edge : edges ) {
+            targets.add( edge.getTargetNode() );
+        }
 
+        SearchByEdgeType search = createSearchByEdge( sourceId, "test", System.currentTimeMillis(), null );
 
+        final List<MarkedEdge> loaded = gm.loadEdgesFromSource( search ).toList().toBlocking().last();
+
+        assertEquals( "Every edge was written", size, loaded.size() );
+
+        for ( final MarkedEdge edge : loaded ) {
+            assertTrue( "Edge was written", targets.contains( edge.getTargetNode() ) );
+        }
+
+        final Iterator<String> types =
+            gm.getEdgeTypesFromSource( new SimpleSearchEdgeType( sourceId, null, null ) ).toBlocking().getIterator();
+
+        assertEquals( "Edge type written", "test", types.next() );
+        assertFalse( types.hasNext() );
+
+
+        //now mark them all
+        final List<EdgeWriteResult> marked = gm.markEdges( Observable.from( edges ) ).toList().toBlocking().last();
+
+        assertEquals( "Every edge is returned", size, marked.size() );
+
+        for ( final EdgeWriteResult result : marked ) {
+            assertTrue( "Edge is written", result.isSuccess() );
+            assertTrue( "Edge is marked", result.getEdge().isDeleted() );
+        }
+
+        search = createSearchByEdge( sourceId, "test", System.currentTimeMillis(), null );
+
+        assertNull( "Marked edges are filtered", gm.loadEdgesFromSource( search ).toBlocking().lastOrDefault( null ) );
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.usergrid.persistence.graph.impl;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.core.util.IdGenerator;
+import org.apache.usergrid.persistence.graph.Edge;
+import org.apache.usergrid.persistence.graph.GraphFig;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import static org.apache.usergrid.persistence.graph.test.util.EdgeTestUtils.createEdge;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class EdgeMetadataCacheTest {
+
+    private final ApplicationScope scope = new ApplicationScopeImpl( IdGenerator.createId( "application" ) );
+
+    private EdgeMetadataCache edgeMetadataCache;
+
+
+    @Before
+    public void setup() {
+        final GraphFig graphFig = mock( GraphFig.class );
+        when( graphFig.getEdgeMetaCacheSize() ).thenReturn( 100 );
+        when( graphFig.getEdgeMetaCacheTimeout() ).thenReturn( 60000l );
+
+        edgeMetadataCache = new EdgeMetadataCache( graphFig );
+    }
+
+
+    @Test
+    public void sourceAndTargetAreSeparate() {
+        final Id sourceId = IdGenerator.createId( "source" );
+
+        final Edge edge = createEdge( sourceId, "test", IdGenerator.createId( "target" ) );
+
+        edgeMetadataCache.sourceWritten( scope, edge );
+
+        assertTrue( edgeMetadataCache.isSourceWritten( scope, edge ) );
+        assertFalse( "The target wasn't written", edgeMetadataCache.isTargetWritten( scope, edge ) );
+
+        //the same types to a new target only needs the target written
+        final Edge next = createEdge( sourceId, "test", IdGenerator.createId( "target" ) );
+
+        assertTrue( edgeMetadataCache.isSourceWritten( scope, next ) );
+        assertFalse( edgeMetadataCache.isTargetWritten( scope, next ) );
+
+        //another edge type or target id type needs the source written
+        assertFalse( edgeMetadataCache
+            .isSourceWritten( scope, createEdge( sourceId, "other", IdGenerator.createId( "target" ) ) ) );
+        assertFalse( edgeMetadataCache
+            .isSourceWritten( scope, createEdge( sourceId, "test", IdGenerator.createId( "other" ) ) ) );
+
+        //and so does another application
+        final ApplicationScope otherScope = new ApplicationScopeImpl( IdGenerator.createId( "application" ) );
+
+        assertFalse( edgeMetadataCache.isSourceWritten( otherScope, edge ) );
+    }
+
+
+    @Test
+    public void invalidate() {
+        final Edge edge = createEdge( "source", "test", "target" );
+
+        edgeMetadataCache.sourceWritten( scope, edge );
+        edgeMetadataCache.targetWritten( scope, edge );
+
+        edgeMetadataCache.invalidateSource( scope, edge.getSourceNode() );
+
+        assertFalse( edgeMetadataCache.isSourceWritten( scope, edge ) );
+        assertTrue( edgeMetadataCache.isTargetWritten( scope, edge ) );
+
+        edgeMetadataCache.invalidateTarget( scope, edge.getTargetNode() );
+
+        assertFalse( edgeMetadataCache.isTargetWritten( scope, edge ) );
+    }
+
+
+    @Test
+    public void disabled() {
+        final GraphFig graphFig = mock( GraphFig.class );
+        when( graphFig.getEdgeMetaCacheSize() ).thenReturn( 0 );
+        when( graphFig.getEdgeMetaCacheTimeout() ).thenReturn( 60000l );
+
+        final EdgeMetadataCache disabled = new EdgeMetadataCache( graphFig );
+
+        final Edge edge = createEdge( "source", "test", "target" );
+
+        disabled.sourceWritten( scope, edge );
+
+        assertFalse( disabled.isSourceWritten( scope, edge ) );
+    }
+}
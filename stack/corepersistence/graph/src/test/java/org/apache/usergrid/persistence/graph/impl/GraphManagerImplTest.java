@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.graph.impl;
+
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.core.util.IdGenerator;
+import org.apache.usergrid.persistence.graph.Edge;
+import org.apache.usergrid.persistence.graph.EdgeWriteResult;
+import org.apache.usergrid.persistence.graph.GraphFig;
+import org.apache.usergrid.persistence.graph.MarkedEdge;
+import org.apache.usergrid.persistence.graph.impl.stage.EdgeDeleteListener;
+import org.apache.usergrid.persistence.graph.impl.stage.NodeDeleteListener;
+import org.apache.usergrid.persistence.graph.serialization.EdgeMetadataSerialization;
+import org.apache.usergrid.persistence.graph.serialization.EdgeSerialization;
+import org.apache.usergrid.persistence.graph.serialization.NodeSerialization;
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.netflix.astyanax.MutationBatch;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+
+import rx.Observable;
+
+import static org.apache.usergrid.persistence.graph.test.util.EdgeTestUtils.createEdge;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class GraphManagerImplTest {
+
+    private final ApplicationScope scope = new ApplicationScopeImpl( IdGenerator.createId( "application" ) );
+
+    private EdgeSerialization storageEdgeSerialization;
+    private GraphManagerImpl graphManager;
+
+
+    @Before
+    public void setup() {
+        final GraphFig graphFig = mock( GraphFig.class );
+        when( graphFig.getBulkWriteSize() ).thenReturn( 2 );
+        when( graphFig.getBulkWriteConcurrency() ).thenReturn( 2 );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getTimer( any( Class.class ), anyString() ) ).thenReturn( new Timer() );
+        when( metricsFactory.getMeter( any( Class.class ), anyString() ) ).thenReturn( new Meter() );
+
+        final EdgeMetadataSerialization edgeMetadataSerialization = mock( EdgeMetadataSerialization.class );
+        when( edgeMetadataSerialization.writeEdge( same( scope ), any( Edge.class ) ) )
+            .thenReturn( mock( MutationBatch.class ) );
+
+        storageEdgeSerialization = mock( EdgeSerialization.class );
+
+        graphManager = new GraphManagerImpl( edgeMetadataSerialization, storageEdgeSerialization,
+            mock( NodeSerialization.class ), graphFig, mock( EdgeDeleteListener.class ),
+            mock( NodeDeleteListener.class ), new EdgeMetadataCache( graphFig ), scope, metricsFactory );
+    }
+
+
+    @Test
+    public void failedBatchFailsOnlyItsEdges() throws ConnectionException {
+        final Id sourceId = IdGenerator.createId( "source" );
+
+        final Edge first = createEdge( sourceId, "test", IdGenerator.createId( "target" ) );
+        final Edge second = createEdge( sourceId, "test", IdGenerator.createId( "target" ) );
+        final Edge failed = createEdge( sourceId, "test", IdGenerator.createId( "target" ) );
+        final Edge failedToo = createEdge( sourceId, "test", IdGenerator.createId( "target" ) );
+
+        final ConnectionException error = mock( ConnectionException.class );
+
+        when( storageEdgeSerialization.writeEdges( same( scope ), anyCollection(), any( UUID.class ) ) )
+            .thenAnswer( invocation -> {
+                final Collection<MarkedEdge> edges = ( Collection<MarkedEdge> ) invocation.getArguments()[1];
+                final MutationBatch batch = mock( MutationBatch.class );
+
+                //the mutation of the second batch can't be executed
+                if ( edges.stream().anyMatch( edge -> edge.getTargetNode().equals( failed.getTargetNode() ) ) ) {
+                    doThrow( error ).when( batch ).execute();
+                }
+
+                return batch;
+            } );
+
+        final List<EdgeWriteResult> results =
+            graphManager.writeEdges( Observable.from( Arrays.asList( first, second, failed, failedToo ) ) ).toList()
+                        .toBlocking().last();
+
+        assertEquals( "Every edge has a result", 4, results.size() );
+
+        for ( final EdgeWriteResult result : results ) {
+            final Id targetId = result.getEdge().getTargetNode();
+
+            if ( targetId.equals( failed.getTargetNode() ) || targetId.equals( failedToo.getTargetNode() ) ) {
+                assertFalse( "The edges of the failed batch fail", result.isSuccess() );
+                assertSame( error, result.getError().get() );
+            }
+            else {
+                assertTrue( "The other batch is written", result.isSuccess() );
+            }
+        }
+    }
+}
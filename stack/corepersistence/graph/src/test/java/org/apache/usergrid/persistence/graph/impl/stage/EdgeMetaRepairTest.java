@@ -20,9 +20,11 @@
 package org.apache.usergrid.persistence.graph.impl.stage;
 
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -36,7 +38,9 @@ import org.apache.usergrid.persistence.core.test.UseModules;
 import org.apache.usergrid.persistence.core.util.IdGenerator;
 import org.apache.usergrid.persistence.graph.GraphFig;
 import org.apache.usergrid.persistence.graph.MarkedEdge;
+import org.apache.usergrid.persistence.graph.SearchByIdType;
 import org.apache.usergrid.persistence.graph.guice.TestGraphModule;
+import org.apache.usergrid.persistence.graph.impl.EdgeMetadataCache;
 import org.apache.usergrid.persistence.graph.impl.SimpleSearchEdgeType;
 import org.apache.usergrid.persistence.graph.impl.SimpleSearchIdType;
 import org.apache.usergrid.persistence.graph.serialization.EdgeMetadataSerialization;
@@ -45,11 +49,17 @@ import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
 import com.google.inject.Inject;
+import com.netflix.astyanax.Keyspace;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
 import static org.apache.usergrid.persistence.graph.test.util.EdgeTestUtils.createEdge;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -80,6 +90,12 @@ public class EdgeMetaRepairTest {
     @Inject
     protected GraphFig graphFig;
 
+    @Inject
+    protected Keyspace keyspace;
+
+    @Inject
+    protected EdgeMetadataCache edgeMetadataCache;
+
     protected ApplicationScope scope;
 
 
@@ -436,4 +452,100 @@ public class EdgeMetaRepairTest {
 
         assertFalse( "No edge types exist", sourceTypes.hasNext() );
     }
+
+
+    @Test
+    public void cleanSourceEdgeWrittenDuringRepair() throws ConnectionException {
+        final MarkedEdge deleted = createEdge( "source", "test", "target" );
+
+        storageEdgeSerialization.writeEdge( scope, deleted, UUIDGenerator.newTimeUUID() ).execute();
+        edgeMetadataSerialization.writeEdge( scope, deleted ).execute();
+        storageEdgeSerialization.deleteEdge( scope, deleted, UUIDGenerator.newTimeUUID() ).execute();
+
+        //another node writes an edge of the same types once the repair found none.  It has the meta data cached, so
+        //only the edge is written
+        final MarkedEdge written = createEdge( deleted.getSourceNode(), "test", IdGenerator.createId( "target" ),
+            deleted.getTimestamp() + 1 );
+
+        final AtomicBoolean searched = new AtomicBoolean();
+
+        final EdgeSerialization interleaved =
+            mock( EdgeSerialization.class, delegatesTo( storageEdgeSerialization ) );
+
+        doAnswer( invocation -> {
+            if ( searched.compareAndSet( false, true ) ) {
+                storageEdgeSerialization.writeEdge( scope, written, UUIDGenerator.newTimeUUID() ).execute();
+                return Collections.emptyIterator();
+            }
+
+            return storageEdgeSerialization.getEdgesFromSourceByTargetType( scope,
+                ( SearchByIdType ) invocation.getArguments()[1] );
+        } ).when( interleaved ).getEdgesFromSourceByTargetType( same( scope ), any( SearchByIdType.class ) );
+
+        final EdgeMetaRepair repair =
+            new EdgeMetaRepairImpl( edgeMetadataSerialization, keyspace, graphFig, interleaved, edgeMetadataCache );
+
+        final int value = repair.repairSources( scope, deleted.getSourceNode(), deleted.getType(),
+            deleted.getTimestamp() ).toBlocking().single();
+
+        assertEquals( "Subtype removed, no edges were found", 0, value );
+
+        //the meta data of the written edge is back
+        Iterator<String> edgeTypes = edgeMetadataSerialization
+                .getEdgeTypesFromSource( scope, new SimpleSearchEdgeType( deleted.getSourceNode(), null, null ) );
+
+        assertTrue( "Edge type restored", edgeTypes.hasNext() );
+        assertEquals( deleted.getType(), edgeTypes.next() );
+
+
+        Iterator<String> targetTypes = edgeMetadataSerialization
+                .getIdTypesFromSource( scope, new SimpleSearchIdType( deleted.getSourceNode(), deleted.getType(), null, null ) );
+
+        assertTrue( "Subtype restored", targetTypes.hasNext() );
+        assertEquals( "target", targetTypes.next() );
+    }
+
+
+    @Test
+    public void cleanSourceEdgeWrittenAfterRepair() throws ConnectionException, InterruptedException {
+        final MarkedEdge deleted = createEdge( "source", "test", "target" );
+
+        storageEdgeSerialization.writeEdge( scope, deleted, UUIDGenerator.newTimeUUID() ).execute();
+        edgeMetadataSerialization.writeEdge( scope, deleted ).execute();
+        storageEdgeSerialization.deleteEdge( scope, deleted, UUIDGenerator.newTimeUUID() ).execute();
+
+        graphFig.bypass( "getEdgeMetaCacheTimeout", "500" );
+
+        try {
+            final int value = edgeMetaRepair.repairSources( scope, deleted.getSourceNode(), deleted.getType(),
+                deleted.getTimestamp() ).toBlocking().single();
+
+            assertEquals( "Subtype removed, no edges were found", 0, value );
+
+            //another node still has the meta data cached once the repair is done, so only the edge is written
+            final MarkedEdge written = createEdge( deleted.getSourceNode(), "test", IdGenerator.createId( "target" ),
+                deleted.getTimestamp() + 1 );
+
+            storageEdgeSerialization.writeEdge( scope, written, UUIDGenerator.newTimeUUID() ).execute();
+
+            //the repair checks again once the cached meta data has timed out
+            Thread.sleep( 2000 );
+        }
+        finally {
+            graphFig.bypass( "getEdgeMetaCacheTimeout", null );
+        }
+
+        Iterator<String> edgeTypes = edgeMetadataSerialization
+                .getEdgeTypesFromSource( scope, new SimpleSearchEdgeType( deleted.getSourceNode(), null, null ) );
+
+        assertTrue( "Edge type restored", edgeTypes.hasNext() );
+        assertEquals( deleted.getType(), edgeTypes.next() );
+
+
+        Iterator<String> targetTypes = edgeMetadataSerialization
+                .getIdTypesFromSource( scope, new SimpleSearchIdType( deleted.getSourceNode(), deleted.getType(), null, null ) );
+
+        assertTrue( "Subtype restored", targetTypes.hasNext() );
+        assertEquals( "target", targetTypes.next() );
+    }
 }
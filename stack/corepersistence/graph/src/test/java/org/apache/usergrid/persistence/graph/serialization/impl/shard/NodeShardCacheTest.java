@@ -28,6 +28,7 @@ import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.core.util.IdGenerator;
 import org.apache.usergrid.persistence.graph.GraphFig;
@@ -35,6 +36,8 @@ import org.apache.usergrid.persistence.graph.serialization.impl.shard.impl.NodeS
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Optional;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 
@@ -44,7 +47,11 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.same;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -87,7 +94,7 @@ public class NodeShardCacheTest {
         final long newTime = 10000l;
 
 
-        NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig );
+        NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig, getMetricsMock() );
 
 
         final Optional max = Optional.absent();
@@ -163,7 +170,7 @@ public class NodeShardCacheTest {
          * Set our min mid and max
          */
 
-        NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig );
+        NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig, getMetricsMock() );
 
 
         final Shard minShard = new Shard( 0, 0, true );
@@ -300,11 +307,85 @@ public class NodeShardCacheTest {
     }
 
 
+    @Test
+    public void testInvalidateReloads() {
+
+        final GraphFig graphFig = getFigMock();
+        when( graphFig.getShardReadCacheEnabled() ).thenReturn( true );
+
+        final NodeShardAllocation allocation = mock( NodeShardAllocation.class );
+
+        final Id id = IdGenerator.createId( "test" );
+
+        final DirectedEdgeMeta directedEdgeMeta = DirectedEdgeMeta.fromSourceNodeTargetType( id, "edge", "type" );
+
+        final ShardEntryGroup minShardGroup = new ShardEntryGroup( 10000 );
+        minShardGroup.addShard( new Shard( 0, 0, true ) );
+
+        final ShardEntryGroup newShardGroup = new ShardEntryGroup( 10000 );
+        newShardGroup.addShard( new Shard( 10000, 1000, true ) );
+
+        when( allocation.getShards( same( scope ), any( Optional.class ), same( directedEdgeMeta ) ) )
+                .thenAnswer( new Answer<Iterator<ShardEntryGroup>>() {
+                    @Override
+                    public Iterator<ShardEntryGroup> answer( final InvocationOnMock invocationOnMock )
+                            throws Throwable {
+                        return Collections.singletonList( minShardGroup ).iterator();
+                    }
+                } );
+
+
+        final NodeShardCache cache = new NodeShardCacheImpl( allocation, graphFig, getMetricsMock() );
+
+        //repeated reads are served from the cache
+        for ( int i = 0; i < 3; i++ ) {
+            final Iterator<ShardEntryGroup> groups = cache.getReadShardGroup( scope, 20000, directedEdgeMeta );
+            assertSame( minShardGroup, groups.next() );
+            assertFalse( groups.hasNext() );
+        }
+
+        verify( allocation, times( 1 ) ).getShards( same( scope ), any( Optional.class ), same( directedEdgeMeta ) );
+
+
+        //a new shard is allocated, and the allocation invalidates our entry
+        when( allocation.getShards( same( scope ), any( Optional.class ), same( directedEdgeMeta ) ) )
+                .thenAnswer( new Answer<Iterator<ShardEntryGroup>>() {
+                    @Override
+                    public Iterator<ShardEntryGroup> answer( final InvocationOnMock invocationOnMock )
+                            throws Throwable {
+                        return Arrays.asList( newShardGroup, minShardGroup ).iterator();
+                    }
+                } );
+
+        cache.invalidate( scope, directedEdgeMeta );
+
+        final Iterator<ShardEntryGroup> groups = cache.getReadShardGroup( scope, 20000, directedEdgeMeta );
+
+        assertSame( newShardGroup, groups.next() );
+        assertSame( minShardGroup, groups.next() );
+        assertFalse( groups.hasNext() );
+
+        assertSame( newShardGroup, cache.getWriteShardGroup( scope, 20000, directedEdgeMeta ) );
+
+        verify( allocation, times( 2 ) ).getShards( same( scope ), any( Optional.class ), same( directedEdgeMeta ) );
+    }
+
+
     private GraphFig getFigMock() {
         final GraphFig graphFig = mock( GraphFig.class );
         when( graphFig.getShardCacheSize() ).thenReturn( 1000l );
         when( graphFig.getShardCacheTimeout() ).thenReturn( 30000l );
+        when( graphFig.getShardCacheRefresh() ).thenReturn( 10000l );
 
         return graphFig;
     }
+
+
+    private MetricsFactory getMetricsMock() {
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getTimer( eq( NodeShardCacheImpl.class ), anyString() ) ).thenReturn( new Timer() );
+        when( metricsFactory.getMeter( eq( NodeShardCacheImpl.class ), anyString() ) ).thenReturn( new Meter() );
+
+        return metricsFactory;
+    }
 }
@@ -25,6 +25,8 @@ import java.util.UUID;
 import org.apache.usergrid.persistence.core.entity.EntityVersion;
 import org.apache.usergrid.persistence.model.entity.Id;
 
+import com.google.common.base.Optional;
+
 
 /**
  * An instance of a candidate result
@@ -33,11 +35,20 @@ public class CandidateResult implements EntityVersion {
     private final Id entityId;
     private final UUID entityVersion;
     private final String docId;
+    private final Optional<Long> edgeTimestamp;
 
     public CandidateResult( Id entityId, UUID entityVersion, String docId ) {
+        this( entityId, entityVersion, docId, Optional.absent() );
+    }
+
+    /**
+     * @param edgeTimestamp The edge timestamp the hit was sorted by, present when the search was in the default order
+     */
+    public CandidateResult( Id entityId, UUID entityVersion, String docId, Optional<Long> edgeTimestamp ) {
         this.entityId = entityId;
         this.entityVersion = entityVersion;
         this.docId = docId;
+        this.edgeTimestamp = edgeTimestamp;
     }
 
     @Override
@@ -54,6 +65,13 @@ public class CandidateResult implements EntityVersion {
         return docId;
     }
 
+    /**
+     * Get the edge timestamp to resume the search from this candidate with a {@link SearchAfter}
+     */
+    public Optional<Long> getEdgeTimestamp() {
+        return edgeTimestamp;
+    }
+
 
     @Override
     public boolean equals( final Object o ) {
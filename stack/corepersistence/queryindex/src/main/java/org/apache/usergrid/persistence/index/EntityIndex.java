@@ -103,6 +103,22 @@ public interface EntityIndex extends CPManager {
                             final int limit, final int offset);
 
 
+    /**
+     * Same as search, but resumes from the sort values of a previous hit when the query is in the default order of
+     * edge timestamp then entity id.  Candidates of such queries have their edge timestamp set.  Queries with a sort
+     * or a geo distance ignore searchAfter and use the offset.
+     *
+     * @param searchEdge  The edge to search on
+     * @param searchTypes The search types to search
+     * @param query       The query to execute
+     * @param limit       The limit of values to return
+     * @param offset      The offset to query on when searchAfter can't be used
+     * @param searchAfter The sort values to resume from
+     */
+    CandidateResults search(final SearchEdge searchEdge, final SearchTypes searchTypes, final String query,
+                            final int limit, final int offset, final Optional<SearchAfter> searchAfter);
+
+
     /**
      * Same as search, just iterates all documents that match the index edge exactly.
      *
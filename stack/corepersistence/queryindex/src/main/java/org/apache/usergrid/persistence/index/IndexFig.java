@@ -64,6 +64,20 @@ public interface IndexFig extends GuicyFig {
 
     String ELASTICSEARCH_VERSION_QUERY_LIMIT = "elasticsearch.version_query_limit";
 
+    String INDEX_BATCH_MIN_SIZE = "elasticsearch.batch_min_size";
+
+    String INDEX_BULK_CONCURRENCY = "elasticsearch.bulk_concurrency";
+
+    String INDEX_BULK_TARGET_LATENCY = "elasticsearch.bulk_target_latency_ms";
+
+    String INDEX_BULK_MAX_RETRIES = "elasticsearch.bulk_max_retries";
+
+    String INDEX_BULK_MAX_RETRY_SLEEP = "elasticsearch.bulk_max_retry_sleep_ms";
+
+    String INDEX_BULK_MAX_PENDING = "elasticsearch.bulk_max_pending";
+
+    String QUERY_PLAN_CACHE_SIZE = "elasticsearch.query_plan_cache_size";
+
 
     /**
      * Comma-separated list of Elasticsearch hosts.
@@ -165,7 +179,8 @@ public interface IndexFig extends GuicyFig {
     int getIndexFlushWorkerCount();
 
     /**
-     * The batch size to use when sending batched index write requests to Elasticsearch.
+     * The largest batch size to use when sending batched index write requests to Elasticsearch.  The batch size
+     * shrinks below this when Elasticsearch rejects requests or is slow to respond, and grows back to it when healthy.
      */
     @Default( "1000" )
     @Key( INDEX_BATCH_SIZE )
@@ -201,11 +216,66 @@ public interface IndexFig extends GuicyFig {
     long getWriteTimeout();
 
 
+    /**
+     * The base time to wait before re-sending index operations Elasticsearch failed.  Each retry doubles it with
+     * random jitter, up to the max retry sleep. (in milliseconds)
+     */
     @Default("1000")
     @Key( "elasticsearch_queue_error_sleep_ms" )
     long getSleepTimeForQueueError();
 
+    /**
+     * The smallest batch size the index producer shrinks to when Elasticsearch is overloaded.
+     */
+    @Default( "50" )
+    @Key( INDEX_BATCH_MIN_SIZE )
+    int getIndexBatchMinSize();
+
+    /**
+     * The maximum number of bulk requests each node sends to Elasticsearch concurrently.  Concurrency drops to 1
+     * when Elasticsearch is overloaded, and grows back to this when healthy.
+     */
+    @Default( "8" )
+    @Key( INDEX_BULK_CONCURRENCY )
+    int getIndexBulkConcurrency();
+
+    /**
+     * Bulk requests slower than this shrink the batch size, faster ones grow it. (in milliseconds)
+     */
+    @Default( "1000" )
+    @Key( INDEX_BULK_TARGET_LATENCY )
+    long getIndexBulkTargetLatency();
+
+    /**
+     * The number of times failed index operations are re-sent before the message is failed.
+     */
+    @Default( "5" )
+    @Key( INDEX_BULK_MAX_RETRIES )
+    int getIndexBulkMaxRetries();
+
+    /**
+     * The longest time to wait before re-sending failed index operations. (in milliseconds)
+     */
+    @Default( "30000" )
+    @Key( INDEX_BULK_MAX_RETRY_SLEEP )
+    long getIndexBulkMaxRetrySleep();
+
+    /**
+     * The most bulk requests each node queues while waiting to send them.  Callers block once it's full, until
+     * Elasticsearch catches up.
+     */
+    @Default( "100" )
+    @Key( INDEX_BULK_MAX_PENDING )
+    int getIndexBulkMaxPending();
+
     @Default("100")
     @Key( ELASTICSEARCH_VERSION_QUERY_LIMIT )
     int getVersionQueryLimit();
+
+    /**
+     * The number of parsed query shapes to cache.  0 disables the cache and every query is parsed.
+     */
+    @Default( "1000" )
+    @Key( QUERY_PLAN_CACHE_SIZE )
+    int getQueryPlanCacheSize();
 }
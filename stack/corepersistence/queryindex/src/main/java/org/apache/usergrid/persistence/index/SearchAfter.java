@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index;
+
+
+import java.io.Serializable;
+
+import org.apache.usergrid.persistence.model.entity.Id;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * The sort values of a hit to resume a search from, for searches in the default order of edge timestamp descending
+ * then entity id ascending.  Resuming filters on these values instead of skipping every hit before them, so reading a
+ * deep page costs the same as reading the first one.
+ *
+ * The search starts with the hit itself, the same as resuming from its offset.  Several documents can have the same
+ * timestamp and entity id, one for each version of the entity, so skip is the number of those already read.
+ */
+public class SearchAfter implements Serializable {
+
+    private final long edgeTimestamp;
+    private final Id entityId;
+    private final int skip;
+
+
+    /**
+     * @param edgeTimestamp The edge timestamp of the hit
+     * @param entityId The entity id of the hit
+     * @param skip The number of hits with this timestamp and entity id to skip
+     */
+    public SearchAfter( final long edgeTimestamp, final Id entityId, final int skip ) {
+        Preconditions.checkNotNull( entityId, "entityId is required" );
+        Preconditions.checkArgument( skip >= 0, "skip must be >= 0" );
+
+        this.edgeTimestamp = edgeTimestamp;
+        this.entityId = entityId;
+        this.skip = skip;
+    }
+
+
+    public long getEdgeTimestamp() {
+        return edgeTimestamp;
+    }
+
+
+    public Id getEntityId() {
+        return entityId;
+    }
+
+
+    public int getSkip() {
+        return skip;
+    }
+
+
+    /**
+     * @return True if the candidate has the same sort values as this
+     */
+    public boolean isAt( final long edgeTimestamp, final Id entityId ) {
+        return this.edgeTimestamp == edgeTimestamp && this.entityId.equals( entityId );
+    }
+
+
+    @Override
+    public boolean equals( final Object o ) {
+        if ( this == o ) {
+            return true;
+        }
+        if ( !( o instanceof SearchAfter ) ) {
+            return false;
+        }
+
+        final SearchAfter that = ( SearchAfter ) o;
+
+        return isAt( that.edgeTimestamp, that.entityId ) && skip == that.skip;
+    }
+
+
+    @Override
+    public int hashCode() {
+        int result = ( int ) ( edgeTimestamp ^ ( edgeTimestamp >>> 32 ) );
+        result = 31 * result + entityId.hashCode();
+        result = 31 * result + skip;
+        return result;
+    }
+
+
+    @Override
+    public String toString() {
+        return "SearchAfter{" +
+            "edgeTimestamp=" + edgeTimestamp +
+            ", entityId=" + entityId +
+            ", skip=" + skip +
+            '}';
+    }
+}
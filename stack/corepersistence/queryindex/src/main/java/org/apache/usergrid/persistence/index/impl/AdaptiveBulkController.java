@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.usergrid.persistence.index.IndexFig;
+
+
+/**
+ * Sizes and paces the bulk requests we send to Elasticsearch.  Uses additive increase and multiplicative decrease:
+ * every rejected (429) bulk request halves the batch size and drops one concurrent request, every bulk request slower
+ * than the target latency shrinks the batch size by a quarter, and every fast, clean bulk request grows them back
+ * towards their configured maximums.
+ *
+ * Sends beyond the current concurrency are queued and started as in flight requests complete.  Once the queue is
+ * full, callers block until there's room, so a slow Elasticsearch pushes back on whoever is producing the work.
+ */
+public class AdaptiveBulkController {
+
+    /**
+     * The number of clean bulk requests we need to see before allowing another concurrent request
+     */
+    private static final int SUCCESSES_PER_CONCURRENCY_STEP = 10;
+
+    private final IndexFig indexFig;
+
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+
+    private int batchSize;
+    private int concurrency;
+    private int inFlight;
+    private int successes;
+
+
+    public AdaptiveBulkController( final IndexFig indexFig ) {
+        this.indexFig = indexFig;
+        this.batchSize = indexFig.getIndexBatchSize();
+        this.concurrency = Math.max( 1, indexFig.getIndexBulkConcurrency() );
+    }
+
+
+    /**
+     * Get the number of operations to put in the next bulk request
+     */
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+
+    /**
+     * Get the number of bulk requests we currently allow in flight
+     */
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+
+    /**
+     * Get the number of sends waiting for a bulk request to complete
+     */
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+
+    /**
+     * Run the send now if we're under our concurrency, otherwise once enough in flight requests complete.  Blocks
+     * while the queue of waiting sends is full.  Every send must be followed by exactly one call to
+     * {@link #complete(long, boolean)}
+     */
+    public void submit( final Runnable send ) {
+        synchronized ( this ) {
+            if ( inFlight >= concurrency ) {
+                final int maxPending = Math.max( 1, indexFig.getIndexBulkMaxPending() );
+
+                while ( pending.size() >= maxPending ) {
+                    try {
+                        wait();
+                    }
+                    catch ( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException( "Interrupted waiting to send a bulk request", e );
+                    }
+                }
+
+                //room was made by starting waiting sends, we may be able to run now
+                if ( inFlight >= concurrency ) {
+                    pending.add( send );
+                    return;
+                }
+            }
+
+            inFlight++;
+        }
+
+        send.run();
+    }
+
+
+    /**
+     * Record the outcome of a bulk request, adjust the batch size and concurrency, and start any sends it frees up
+     *
+     * @param latency The round trip time of the bulk request in milliseconds
+     * @param throttled True if Elasticsearch rejected the request or any of its items with a 429
+     */
+    public void complete( final long latency, final boolean throttled ) {
+
+        final int minBatchSize = Math.max( 1, Math.min( indexFig.getIndexBatchMinSize(), indexFig.getIndexBatchSize() ) );
+        final int maxBatchSize = indexFig.getIndexBatchSize();
+        final int maxConcurrency = Math.max( 1, indexFig.getIndexBulkConcurrency() );
+
+        final Queue<Runnable> toRun = new ArrayDeque<>();
+
+        synchronized ( this ) {
+            inFlight--;
+
+            if ( throttled ) {
+                batchSize = Math.max( minBatchSize, batchSize / 2 );
+                concurrency = Math.max( 1, concurrency - 1 );
+                successes = 0;
+            }
+            else if ( latency > indexFig.getIndexBulkTargetLatency() ) {
+                batchSize = Math.max( minBatchSize, batchSize - batchSize / 4 );
+                successes = 0;
+            }
+            else {
+                batchSize = Math.min( maxBatchSize, batchSize + Math.max( 1, maxBatchSize / 10 ) );
+
+                if ( ++successes >= SUCCESSES_PER_CONCURRENCY_STEP ) {
+                    concurrency = Math.min( maxConcurrency, concurrency + 1 );
+                    successes = 0;
+                }
+            }
+
+            while ( inFlight < concurrency && !pending.isEmpty() ) {
+                inFlight++;
+                toRun.add( pending.poll() );
+            }
+
+            if ( !toRun.isEmpty() ) {
+                notifyAll();
+            }
+        }
+
+        //run outside the lock, sends may complete synchronously and call back into us
+        for ( final Runnable send : toRun ) {
+            send.run();
+        }
+    }
+
+
+    /**
+     * Get the time to wait before the given retry attempt, starting at 0.  Exponential with jitter, so retries
+     * from many nodes don't arrive at Elasticsearch together
+     */
+    public long getRetryDelay( final int attempt ) {
+        final long base = Math.max( 1, indexFig.getSleepTimeForQueueError() );
+        final long max = Math.max( base, indexFig.getIndexBulkMaxRetrySleep() );
+
+        final long ceiling = Math.min( max, base << Math.min( attempt, 20 ) );
+
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong( ceiling / 2 + 1 );
+    }
+}
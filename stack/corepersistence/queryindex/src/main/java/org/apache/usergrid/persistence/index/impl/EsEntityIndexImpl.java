@@ -21,6 +21,7 @@ package org.apache.usergrid.persistence.index.impl;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.google.common.base.*;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
 import com.google.inject.Inject;
@@ -38,7 +39,7 @@ import org.apache.usergrid.persistence.index.ElasticSearchQueryBuilder.SearchReq
 import org.apache.usergrid.persistence.index.exceptions.IndexException;
 import org.apache.usergrid.persistence.index.migration.IndexDataVersions;
 import org.apache.usergrid.persistence.index.query.ParsedQuery;
-import org.apache.usergrid.persistence.index.query.ParsedQueryBuilder;
+import org.apache.usergrid.persistence.index.query.QueryPlanCache;
 import org.apache.usergrid.persistence.index.utils.IndexValidationUtils;
 import org.apache.usergrid.persistence.model.entity.Id;
 import org.apache.usergrid.persistence.model.util.UUIDGenerator;
@@ -119,6 +120,7 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
     private final int cursorTimeout;
     private final long queryTimeout;
     private final FailureMonitorImpl failureMonitor;
+    private final QueryPlanCache queryPlanCache;
     private final Timer aggregationTimer;
     private final Timer refreshTimer;
 
@@ -132,12 +134,14 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
                               final IndexCache indexCache,
                               final IndexFig indexFig,
                               final MetricsFactory metricsFactory,
-                              final IndexLocationStrategy indexLocationStrategy
+                              final IndexLocationStrategy indexLocationStrategy,
+                              final QueryPlanCache queryPlanCache
     ) {
 
         this.indexFig = indexFig;
         this.indexLocationStrategy = indexLocationStrategy;
         this.failureMonitor = new FailureMonitorImpl( indexFig, provider );
+        this.queryPlanCache = queryPlanCache;
         this.esProvider = provider;
         this.alias = indexLocationStrategy.getAlias();
         this.aliasCache = indexCache;
@@ -411,6 +415,12 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
 
     public CandidateResults search( final SearchEdge searchEdge, final SearchTypes searchTypes, final String query,
                                     final int limit, final int offset ) {
+        return search( searchEdge, searchTypes, query, limit, offset, Optional.absent() );
+    }
+
+
+    public CandidateResults search( final SearchEdge searchEdge, final SearchTypes searchTypes, final String query,
+                                    final int limit, final int offset, final Optional<SearchAfter> searchAfter ) {
 
         IndexValidationUtils.validateSearchEdge(searchEdge);
         Preconditions.checkNotNull(searchTypes, "searchTypes cannot be null");
@@ -420,9 +430,9 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
 
         SearchResponse searchResponse;
 
-        final ParsedQuery parsedQuery = ParsedQueryBuilder.build(query);
+        final ParsedQuery parsedQuery = queryPlanCache.build( query );
 
-        final SearchRequestBuilder srb = searchRequest.getBuilder( searchEdge, searchTypes, parsedQuery, limit, offset )
+        final SearchRequestBuilder srb = searchRequest.getBuilder( searchEdge, searchTypes, parsedQuery, limit, offset, searchAfter )
             .setTimeout(TimeValue.timeValueMillis(queryTimeout));
 
         if ( logger.isDebugEnabled() ) {
@@ -649,10 +659,21 @@ public class EsEntityIndexImpl implements EntityIndex,VersionedData {
 
 
 
+        //in the default order the hits are sorted by edge timestamp then entity id and nothing else
+        final boolean sortedByEdge = query.getSortPredicates().size() == 0;
+
         for ( SearchHit hit : hits ) {
             CandidateResult candidateResult;
 
             candidateResult =  parseIndexDocId( hit, query.isGeoQuery() );
+
+            if ( sortedByEdge && hit.sortValues().length == 2 ) {
+                final long edgeTimestamp = ( ( Number ) hit.sortValues()[0] ).longValue();
+
+                candidateResult = new CandidateResult( candidateResult.getId(), candidateResult.getVersion(),
+                    candidateResult.getDocId(), Optional.of( edgeTimestamp ) );
+            }
+
             candidates.add( candidateResult );
         }
 
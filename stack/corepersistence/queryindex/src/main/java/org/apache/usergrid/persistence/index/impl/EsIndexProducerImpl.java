@@ -18,6 +18,9 @@
 package org.apache.usergrid.persistence.index.impl;
 
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -26,6 +29,8 @@ import com.codahale.metrics.Histogram;
 
 
 import org.apache.usergrid.persistence.index.EntityIndexBatch;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.WriteConsistencyLevel;
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
@@ -39,8 +44,10 @@ import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.index.IndexFig;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -48,7 +55,9 @@ import rx.Observable;
 
 
 /**
- * Consumer for IndexOperationMessages
+ * Consumer for IndexOperationMessages.  Operations are sent to Elasticsearch in bulk requests, sized and paced by
+ * the {@link AdaptiveBulkController}.  Only the operations Elasticsearch failed are re-sent, with a jittered backoff,
+ * and the message only fails if some of its operations still fail once retries are exhausted.
  */
 @Singleton
 public class EsIndexProducerImpl implements IndexProducer {
@@ -62,6 +71,10 @@ public class EsIndexProducerImpl implements IndexProducer {
     private final Counter indexSizeCounter;
     private final Histogram roundtripTimer;
     private final Timer indexTimer;
+    private final Meter retryMeter;
+    private final Meter failedMeter;
+    private final Meter throttledMeter;
+    private final AdaptiveBulkController bulkController;
 
 
     private AtomicLong inFlight = new AtomicLong();
@@ -74,20 +87,29 @@ public class EsIndexProducerImpl implements IndexProducer {
         this.indexSizeCounter = metricsFactory.getCounter(EsIndexProducerImpl.class, "index_buffer.size");
         this.roundtripTimer = metricsFactory.getHistogram(EsIndexProducerImpl.class, "index_buffer.message_cycle");
 
+        this.bulkController = new AdaptiveBulkController( indexFig );
+
         //wire up the gauge of inflight messages
         metricsFactory.addGauge(EsIndexProducerImpl.class, "index_buffer.inflight", () -> inFlight.longValue());
 
+        //wire up the gauges of our current bulk sizing
+        metricsFactory.addGauge( EsIndexProducerImpl.class, "index_buffer.batch_size",
+            () -> bulkController.getBatchSize() );
+        metricsFactory.addGauge( EsIndexProducerImpl.class, "index_buffer.concurrency",
+            () -> bulkController.getConcurrency() );
+        metricsFactory.addGauge( EsIndexProducerImpl.class, "index_buffer.pending",
+            () -> bulkController.getPending() );
+
 
         this.indexTimer = metricsFactory.getTimer( EsIndexProducerImpl.class, "index" );
+        this.retryMeter = metricsFactory.getMeter( EsIndexProducerImpl.class, "index.retry" );
+        this.failedMeter = metricsFactory.getMeter( EsIndexProducerImpl.class, "index.failed" );
+        this.throttledMeter = metricsFactory.getMeter( EsIndexProducerImpl.class, "index.throttled" );
 
         this.config = config;
         this.failureMonitor = new FailureMonitorImpl(config, provider);
         this.client = provider.getClient();
         this.indexFig = indexFig;
-
-
-        //batch up sets of some size and send them in batch
-
     }
 
     @Override
@@ -124,48 +146,79 @@ public class EsIndexProducerImpl implements IndexProducer {
         indexSizeCounter.dec(indexOperationSetSize);
         indexSizeCounter.dec(deIndexOperationSetSize);
 
-        final Observable<IndexOperation> index = Observable.from(batch.getIndexRequests());
-        final Observable<DeIndexOperation> deIndex = Observable.from(batch.getDeIndexRequests());
-
         //TODO: look at indexing ordering
-        final Observable<BatchOperation> batchOps = Observable.merge(index, deIndex);
-
-        //buffer into the max size we can send ES and fire them all off until we're completed
-        final Observable<BulkRequestBuilder> requests = batchOps
-            .buffer(250, TimeUnit.MILLISECONDS, indexFig.getIndexBatchSize())
-
-            //flatten the buffer into a single batch execution
-            .flatMap(individualOps -> Observable.from(individualOps)
-                //collect them
-                .collect(() -> initRequest(), (bulkRequestBuilder, batchOperation) -> {
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("adding operation {} to bulkRequestBuilder {}", batchOperation, bulkRequestBuilder);
-                    }
-                    batchOperation.doOperation(client, bulkRequestBuilder);
-                }))
-                //write them
-            .doOnNext(bulkRequestBuilder -> sendRequest(bulkRequestBuilder));
-
-
-        //now that we've processed them all, ack the futures after our last batch comes through
-        final Observable<IndexOperationMessage> processedIndexOperations =
-            requests.flatMap(lastRequest -> {
-                if (lastRequest != null) {
-                    return Observable.just(batch);
-                } else {
-                    return Observable.empty();
-                }
-            });
+        final List<BatchOperation> operations = new ArrayList<>( indexOperationSetSize + deIndexOperationSetSize );
+        operations.addAll( indexOperationSet );
+        operations.addAll( deIndexOperationSet );
 
-        //subscribe to the operations that generate requests on a new thread so that we can execute them quickly
-        //mark this as done
-        return processedIndexOperations.doOnNext(processedIndexOp -> {
-            roundtripTimer.update(System.currentTimeMillis() - processedIndexOp.getCreationTime());
-        });
+        //nothing to do, we haven't added anything to the index
+        if ( operations.isEmpty() ) {
+            return Observable.empty();
+        }
+
+        //send them all, then ack the message once every operation has either succeeded or failed for good
+        return sendOperations( operations, 0 ).reduce( 0, ( total, failed ) -> total + failed ).flatMap( failed -> {
+            if ( failed > 0 ) {
+                return Observable.error( new RuntimeException(
+                    "Error during processing of bulk index operations, " + failed + " of " + operations.size()
+                        + " operations failed" ) );
+            }
+
+            return Observable.just( batch );
+        } ).doOnNext( processedIndexOp -> {
+            roundtripTimer.update( System.currentTimeMillis() - processedIndexOp.getCreationTime() );
+        } );
     }
 
 
-    /*
+    /**
+     * Send the operations in bulk requests of the current batch size.  Emits the number of operations in each bulk
+     * request that failed for good
+     *
+     * @param attempt The number of times these operations have already been sent
+     */
+    private Observable<Integer> sendOperations( final List<BatchOperation> operations, final int attempt ) {
+        return Observable.from( Lists.partition( operations, bulkController.getBatchSize() ) )
+                         .flatMap( requestOperations -> sendRequest( requestOperations )
+                             .flatMap( failures -> handleFailures( failures, attempt ) ) );
+    }
+
+
+    /**
+     * Re-send the operations that can be retried after a backoff, and count those that can't
+     */
+    private Observable<Integer> handleFailures( final BulkFailures failures, final int attempt ) {
+
+        int failed = failures.permanent.size();
+
+        if ( failures.retryable.isEmpty() ) {
+            failedMeter.mark( failed );
+            return Observable.just( failed );
+        }
+
+        if ( attempt >= indexFig.getIndexBulkMaxRetries() ) {
+            logger.error( "Giving up on {} index operations after {} attempts", failures.retryable.size(),
+                attempt + 1 );
+
+            failed += failures.retryable.size();
+            failedMeter.mark( failed );
+            return Observable.just( failed );
+        }
+
+        final long delay = bulkController.getRetryDelay( attempt );
+
+        logger.warn( "Elasticsearch failed {} index operations, re-sending them in {} ms",
+            failures.retryable.size(), delay );
+
+        failedMeter.mark( failed );
+        retryMeter.mark( failures.retryable.size() );
+
+        final List<BatchOperation> retryable = new ArrayList<>( failures.retryable );
+
+        return Observable.timer( delay, TimeUnit.MILLISECONDS )
+                         .flatMap( tick -> sendOperations( retryable, attempt + 1 ) ).startWith( failed );
+    }
+
 
     /**
      * initialize request
@@ -179,64 +232,143 @@ public class EsIndexProducerImpl implements IndexProducer {
 
 
     /**
-     * send bulk request
+     * send bulk request.  The request is executed asynchronously once the bulk controller allows it, and emits the
+     * operations that failed
      */
-    private void sendRequest( BulkRequestBuilder bulkRequest ) {
+    private Observable<BulkFailures> sendRequest( final List<BatchOperation> operations ) {
+
+        final BulkRequestBuilder bulkRequest = initRequest();
+
+        //the operation that added each item of the request, de-index operations add an item per index
+        final List<BatchOperation> itemOperations = new ArrayList<>( operations.size() );
+
+        for ( final BatchOperation operation : operations ) {
+            if ( logger.isTraceEnabled() ) {
+                logger.trace( "adding operation {} to bulkRequestBuilder {}", operation, bulkRequest );
+            }
+
+            operation.doOperation( client, bulkRequest );
+
+            while ( itemOperations.size() < bulkRequest.numberOfActions() ) {
+                itemOperations.add( operation );
+            }
+        }
+
         //nothing to do, we haven't added anything to the index
         if ( bulkRequest.numberOfActions() == 0 ) {
-            return;
+            return Observable.just( new BulkFailures() );
         }
 
-        final BulkResponse responses;
+        return Observable.create( subscriber -> bulkController.submit( () -> {
 
+            final Timer.Context timer = indexTimer.time();
+            final long startTime = System.currentTimeMillis();
 
-        final Timer.Context timer = indexTimer.time();
+            inFlight.incrementAndGet();
 
-        try {
-            responses = bulkRequest.execute().actionGet( );
-        } catch ( Throwable t ) {
-            logger.error( "Unable to communicate with elasticsearch", t );
-            failureMonitor.fail( "Unable to execute batch", t );
-            throw t;
-        }finally{
-            timer.stop();
-        }
+            final ActionListener<BulkResponse> listener = new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse( final BulkResponse responses ) {
+                    timer.stop();
+                    inFlight.decrementAndGet();
 
-        failureMonitor.success();
+                    failureMonitor.success();
 
-        boolean error = false;
+                    final BulkFailures failures = new BulkFailures();
 
-        final StringBuilder errorString = new StringBuilder(  );
+                    for ( BulkItemResponse response : responses ) {
 
-        boolean hasTooManyRequests= false;
-        for ( BulkItemResponse response : responses ) {
+                        if ( response.isFailed() ) {
+                            // log error and continue processing
+                            logger.error( "Unable to index id={}, type={}, index={}, failureMessage={} ",
+                                response.getId(), response.getType(), response.getIndex(),
+                                response.getFailureMessage() );
 
-            if ( response.isFailed() ) {
-                // log error and continue processing
-                logger.error( "Unable to index id={}, type={}, index={}, failureMessage={} ", response.getId(),
-                    response.getType(), response.getIndex(),  response.getFailureMessage() );
-                //if index is overloaded on the queue fail.
-                if(response.getFailure()!=null && response.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS){
-                    hasTooManyRequests =true;
+                            final RestStatus status =
+                                response.getFailure() == null ? null : response.getFailure().getStatus();
+
+                            failures.add( itemOperations.get( response.getItemId() ), status );
+                        }
+                    }
+
+                    complete( failures );
                 }
-                error = true;
 
-                errorString.append( response.getFailureMessage() ).append( "\n" );
-            }
-        }
 
-        if ( error ) {
-            if(hasTooManyRequests){
-                try{
-                    logger.warn("Encountered Queue Capacity Exception from ElasticSearch slowing by {}",
-                        indexFig.getSleepTimeForQueueError() );
-                    Thread.sleep(indexFig.getSleepTimeForQueueError());
-                }catch (Exception e){
-                    //move on
+                @Override
+                public void onFailure( final Throwable t ) {
+                    timer.stop();
+                    inFlight.decrementAndGet();
+
+                    logger.error( "Unable to communicate with elasticsearch", t );
+                    failureMonitor.fail( "Unable to execute batch", t );
+
+                    //the whole request failed, every operation in it can be re-sent
+                    final BulkFailures failures = new BulkFailures();
+                    failures.retryable.addAll( operations );
+                    failures.throttled = ExceptionsHelper.status( t ) == RestStatus.TOO_MANY_REQUESTS;
+
+                    complete( failures );
+                }
+
+
+                private void complete( final BulkFailures failures ) {
+                    if ( failures.throttled ) {
+                        logger.warn( "Encountered Queue Capacity Exception from ElasticSearch, reducing batch size" );
+                        throttledMeter.mark();
+                    }
+
+                    bulkController.complete( System.currentTimeMillis() - startTime, failures.throttled );
+
+                    subscriber.onNext( failures );
+                    subscriber.onCompleted();
                 }
+            };
+
+            try {
+                bulkRequest.execute( listener );
+            }
+            catch ( Throwable t ) {
+                listener.onFailure( t );
+            }
+        } ) );
+    }
+
+
+    /**
+     * The operations of a bulk request that Elasticsearch failed
+     */
+    private static final class BulkFailures {
+
+        /**
+         * Operations that failed because elasticsearch was overloaded or unavailable, which are worth re-sending
+         */
+        private final Set<BatchOperation> retryable = new LinkedHashSet<>();
+
+        /**
+         * Operations elasticsearch rejected, which will fail the same way if re-sent
+         */
+        private final Set<BatchOperation> permanent = new LinkedHashSet<>();
+
+        private boolean throttled;
+
+
+        private void add( final BatchOperation operation, final RestStatus status ) {
+            if ( status == RestStatus.TOO_MANY_REQUESTS ) {
+                throttled = true;
+            }
+
+            if ( permanent.contains( operation ) ) {
+                return;
+            }
+
+            if ( status == null || status == RestStatus.TOO_MANY_REQUESTS || status.getStatus() >= 500 ) {
+                retryable.add( operation );
+            }
+            else {
+                retryable.remove( operation );
+                permanent.add( operation );
             }
-            throw new RuntimeException(
-                "Error during processing of bulk index operations one of the responses failed. \n" + errorString);
         }
     }
 }
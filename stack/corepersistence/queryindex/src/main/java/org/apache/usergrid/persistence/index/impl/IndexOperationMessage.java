@@ -47,9 +47,17 @@ public class IndexOperationMessage implements Serializable {
 
 
     public IndexOperationMessage() {
+        this( System.currentTimeMillis() );
+    }
+
+
+    /**
+     * @param creationTime The time the earliest of the operations was requested
+     */
+    public IndexOperationMessage( final long creationTime ) {
         this.indexRequests = new HashSet<>();
         this.deIndexRequests = new HashSet<>();
-        this.creationTime = System.currentTimeMillis();
+        this.creationTime = creationTime;
     }
 
 
@@ -117,5 +125,6 @@ public class IndexOperationMessage implements Serializable {
     public void ingest(IndexOperationMessage singleMessage) {
         this.indexRequests.addAll(singleMessage.getIndexRequests());
         this.deIndexRequests.addAll(singleMessage.getDeIndexRequests());
+        this.creationTime = Math.min(this.creationTime, singleMessage.getCreationTime());
     }
 }
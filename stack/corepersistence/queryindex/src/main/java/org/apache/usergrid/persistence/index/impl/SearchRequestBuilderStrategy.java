@@ -37,6 +37,7 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.usergrid.persistence.core.scope.ApplicationScope;
 import org.apache.usergrid.persistence.index.EntityIndex;
+import org.apache.usergrid.persistence.index.SearchAfter;
 import org.apache.usergrid.persistence.index.SearchEdge;
 import org.apache.usergrid.persistence.index.SearchTypes;
 import org.apache.usergrid.persistence.index.exceptions.IndexException;
@@ -80,6 +81,17 @@ public class SearchRequestBuilderStrategy {
      */
     public SearchRequestBuilder getBuilder( final SearchEdge searchEdge, final SearchTypes searchTypes,
                                             final ParsedQuery query, final int limit, final int from ) {
+        return getBuilder( searchEdge, searchTypes, query, limit, from, Optional.absent() );
+    }
+
+
+    /**
+     * Get the search request builder.  When the query is in the default order the search resumes from searchAfter
+     * with a filter on the sort values, instead of skipping from hits
+     */
+    public SearchRequestBuilder getBuilder( final SearchEdge searchEdge, final SearchTypes searchTypes,
+                                            final ParsedQuery query, final int limit, final int from,
+                                            final Optional<SearchAfter> searchAfter ) {
 
         Preconditions
             .checkArgument( limit <= EntityIndex.MAX_LIMIT, "limit is greater than max " + EntityIndex.MAX_LIMIT );
@@ -97,14 +109,23 @@ public class SearchRequestBuilderStrategy {
             srb.setQuery( queryBuilder.get() );
         }
 
-        srb.setPostFilter( createFilterBuilder( searchEdge, visitor, searchTypes ) );
+        //if we have a geo field, sort by closest to farthest by default
+        final GeoSortFields geoFields = visitor.getGeoSorts();
 
+        final BoolFilterBuilder filterBuilder = createFilterBuilder( searchEdge, visitor, searchTypes );
 
-        srb = srb.setFrom( from ).setSize( limit );
+        //only the default order can resume from its sort values, everything else skips from hits
+        if ( searchAfter.isPresent() && isSortedByEdge( query, geoFields ) ) {
+            filterBuilder.must( createSearchAfterFilter( searchAfter.get() ) );
+            srb = srb.setFrom( searchAfter.get().getSkip() );
+        }
+        else {
+            srb = srb.setFrom( from );
+        }
 
+        srb.setPostFilter( filterBuilder );
 
-        //if we have a geo field, sort by closest to farthest by default
-        final GeoSortFields geoFields = visitor.getGeoSorts();
+        srb = srb.setSize( limit );
 
 
         //no sort predicates, sort by edge time descending, entity id second
@@ -120,6 +141,31 @@ public class SearchRequestBuilderStrategy {
     }
 
 
+    /**
+     * True if the query is sorted by edge timestamp then entity id only
+     */
+    private boolean isSortedByEdge( final ParsedQuery query, final GeoSortFields geoFields ) {
+        return query.getSortPredicates().size() == 0 && geoFields.isEmpty();
+    }
+
+
+    /**
+     * Create the filter for hits at or after the sort values.  The timestamp is descending and the entity id is
+     * ascending, so that's every hit with an earlier timestamp, or the same timestamp and an entity id that isn't less
+     */
+    private FilterBuilder createSearchAfterFilter( final SearchAfter searchAfter ) {
+        final long edgeTimestamp = searchAfter.getEdgeTimestamp();
+
+        final FilterBuilder sameTimestamp = FilterBuilders.boolFilter()
+            .must( FilterBuilders.termFilter( IndexingUtils.EDGE_TIMESTAMP_FIELDNAME, edgeTimestamp ) )
+            .must( FilterBuilders.rangeFilter( IndexingUtils.ENTITY_ID_FIELDNAME )
+                                 .gte( IndexingUtils.entityId( searchAfter.getEntityId() ) ) );
+
+        return FilterBuilders.orFilter(
+            FilterBuilders.rangeFilter( IndexingUtils.EDGE_TIMESTAMP_FIELDNAME ).lt( edgeTimestamp ), sameTimestamp );
+    }
+
+
     /**
      * Apply our default sort predicate logic
      */
@@ -195,7 +241,7 @@ public class SearchRequestBuilderStrategy {
      * Create our filter builder.  We need to restrict our results on edge search, as well as on types, and any filters
      * that came from the grammar.
      */
-    private FilterBuilder createFilterBuilder( final SearchEdge searchEdge, final QueryVisitor visitor,
+    private BoolFilterBuilder createFilterBuilder( final SearchEdge searchEdge, final QueryVisitor visitor,
                                                final SearchTypes searchTypes ) {
         String context = createContextName( applicationScope, searchEdge );
 
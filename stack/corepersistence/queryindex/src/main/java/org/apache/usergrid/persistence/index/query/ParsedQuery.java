@@ -195,6 +195,25 @@ public class ParsedQuery {
     }
 
 
+    /**
+     * Copy this query with another root operand.  The sorts and selects are copied, the operand is used as is
+     *
+     * @param rootOperand The root operand of the copy
+     * @param originalQuery The original query of the copy
+     */
+    public ParsedQuery copy( final Operand rootOperand, final String originalQuery ) {
+        final ParsedQuery copy = new ParsedQuery();
+
+        copy.sortPropertyNames.addAll( sortPropertyNames );
+        copy.sortPredicateList.addAll( sortPredicateList );
+        copy.fieldMappings.putAll( fieldMappings );
+        copy.rootOperand = rootOperand;
+        copy.originalQuery = originalQuery;
+
+        return copy;
+    }
+
+
     /**
      * Get the root operand
      * @return
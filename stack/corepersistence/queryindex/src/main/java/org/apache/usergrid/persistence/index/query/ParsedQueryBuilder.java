@@ -53,6 +53,17 @@ public class ParsedQueryBuilder {
         if ( StringUtils.isEmpty( ql ) ) {
             return null;
         }
+
+        return parse( ql, tokenize( ql ) );
+    }
+
+
+    /**
+     * Rewrite the ql into the query grammar and read all of its tokens
+     *
+     * @param ql The query, which must not be empty
+     */
+    public static CommonTokenStream tokenize( final String ql ) {
         if (logger.isTraceEnabled()) {
             logger.trace("Processing raw query: {}", ql);
         }
@@ -85,6 +96,19 @@ public class ParsedQueryBuilder {
         ANTLRStringStream in = new ANTLRStringStream( outputQuery );
         CpQueryFilterLexer lexer = new CpQueryFilterLexer( in );
         CommonTokenStream tokens = new CommonTokenStream( lexer );
+        tokens.fill();
+
+        return tokens;
+    }
+
+
+    /**
+     * Parse the tokens of the ql
+     *
+     * @param ql The original query
+     * @param tokens The tokens from {@link #tokenize(String)}
+     */
+    public static ParsedQuery parse( final String ql, final CommonTokenStream tokens ) throws QueryParseException {
         CpQueryFilterParser parser = new CpQueryFilterParser( tokens );
 
 
@@ -0,0 +1,271 @@
+/*
+ *
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ *
+ */
+
+package org.apache.usergrid.persistence.index.query;
+
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.Tree;
+import org.apache.commons.lang.StringUtils;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.index.IndexFig;
+import org.apache.usergrid.persistence.index.exceptions.QueryParseException;
+import org.apache.usergrid.persistence.index.query.tree.CpQueryFilterLexer;
+import org.apache.usergrid.persistence.index.query.tree.Operand;
+
+import com.codahale.metrics.Meter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+
+/**
+ * Caches parsed queries by their shape, so a query that only differs from an earlier one in its literal values is
+ * not parsed again.  The shape of a query is its tokens with each literal replaced by a parameter of the literal's
+ * type, so "name = 'fred'" and "name = 'barney'" share a plan, but "age = 5" and "age = 5.0" don't.  A plan binds the
+ * literals of each query into a copy of the parsed operand tree.
+ */
+@Singleton
+public class QueryPlanCache {
+
+    private static final Map<Class<?>, Constructor<?>> NODE_CONSTRUCTORS = new ConcurrentHashMap<>();
+
+    private final Cache<String, QueryPlan> plans;
+    private final boolean enabled;
+
+    private final Meter hitMeter;
+    private final Meter missMeter;
+
+
+    @Inject
+    public QueryPlanCache( final IndexFig indexFig, final MetricsFactory metricsFactory ) {
+        this.enabled = indexFig.getQueryPlanCacheSize() > 0;
+        this.plans = CacheBuilder.newBuilder().maximumSize( Math.max( 0, indexFig.getQueryPlanCacheSize() ) ).build();
+
+        this.hitMeter = metricsFactory.getMeter( QueryPlanCache.class, "query.plan.cache.hit" );
+        this.missMeter = metricsFactory.getMeter( QueryPlanCache.class, "query.plan.cache.miss" );
+    }
+
+
+    /**
+     * Generate a parsedQuery from the ql, from the plan of an earlier query with the same shape if there is one
+     */
+    public ParsedQuery build( final String ql ) throws QueryParseException {
+        if ( !enabled ) {
+            return ParsedQueryBuilder.build( ql );
+        }
+
+        if ( StringUtils.isEmpty( ql ) ) {
+            return null;
+        }
+
+        final CommonTokenStream tokens = ParsedQueryBuilder.tokenize( ql );
+
+        final List<Token> literals = new ArrayList<>();
+        final String shape = getShape( tokens, literals );
+
+        final QueryPlan cached = plans.getIfPresent( shape );
+
+        if ( cached != null ) {
+            hitMeter.mark();
+            return cached.bind( ql, literals );
+        }
+
+        missMeter.mark();
+
+        final ParsedQuery parsedQuery = ParsedQueryBuilder.parse( ql, tokens );
+
+        final QueryPlan plan = QueryPlan.create( parsedQuery, literals );
+
+        //the parser dropped or repeated a literal, we can't bind into it so parse this shape every time
+        if ( plan == null ) {
+            return parsedQuery;
+        }
+
+        plans.put( shape, plan );
+
+        return plan.bind( ql, literals );
+    }
+
+
+    /**
+     * Get the shape of the query, adding its literal tokens to literals in order
+     */
+    private static String getShape( final CommonTokenStream tokens, final List<Token> literals ) {
+        final StringBuilder shape = new StringBuilder();
+
+        for ( final Object next : tokens.getTokens() ) {
+            final Token token = ( Token ) next;
+
+            if ( token.getChannel() != Token.DEFAULT_CHANNEL || token.getType() == Token.EOF ) {
+                continue;
+            }
+
+            if ( isLiteral( token ) ) {
+                literals.add( token );
+                shape.append( '?' ).append( token.getType() );
+            }
+            else {
+                shape.append( token.getText() );
+            }
+
+            shape.append( ' ' );
+        }
+
+        return shape.toString();
+    }
+
+
+    private static boolean isLiteral( final Token token ) {
+        switch ( token.getType() ) {
+            case CpQueryFilterLexer.BOOLEAN:
+            case CpQueryFilterLexer.LONG:
+            case CpQueryFilterLexer.FLOAT:
+            case CpQueryFilterLexer.STRING:
+            case CpQueryFilterLexer.UUID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+
+    /**
+     * A parsed query with the positions of its literals in the operand tree
+     */
+    private static final class QueryPlan {
+
+        private final ParsedQuery template;
+
+        /**
+         * The index of the literal token each literal node of the template was created from
+         */
+        private final Map<Tree, Integer> parameters;
+
+
+        private QueryPlan( final ParsedQuery template, final Map<Tree, Integer> parameters ) {
+            this.template = template;
+            this.parameters = parameters;
+        }
+
+
+        /**
+         * Create the plan for the parsed query, or null if its literal nodes don't match its literal tokens one to one
+         */
+        private static QueryPlan create( final ParsedQuery parsedQuery, final List<Token> literals ) {
+
+            final Map<Token, Integer> tokenIndexes = new IdentityHashMap<>();
+
+            for ( int i = 0; i < literals.size(); i++ ) {
+                tokenIndexes.put( literals.get( i ), i );
+            }
+
+            final Map<Tree, Integer> parameters = new IdentityHashMap<>();
+
+            if ( parsedQuery.getRootOperand() != null ) {
+                findParameters( parsedQuery.getRootOperand(), tokenIndexes, parameters );
+            }
+
+            if ( parameters.size() != literals.size() ) {
+                return null;
+            }
+
+            return new QueryPlan( parsedQuery, parameters );
+        }
+
+
+        private static void findParameters( final Tree node, final Map<Token, Integer> tokenIndexes,
+                                            final Map<Tree, Integer> parameters ) {
+
+            final Integer index = tokenIndexes.get( ( ( CommonTree ) node ).getToken() );
+
+            if ( index != null ) {
+                parameters.put( node, index );
+            }
+
+            for ( int i = 0; i < node.getChildCount(); i++ ) {
+                findParameters( node.getChild( i ), tokenIndexes, parameters );
+            }
+        }
+
+
+        /**
+         * Bind the literals into a copy of the template
+         */
+        private ParsedQuery bind( final String ql, final List<Token> literals ) {
+            final Operand root = template.getRootOperand();
+
+            return template.copy( root == null ? null : ( Operand ) copy( root, literals ), ql );
+        }
+
+
+        private Tree copy( final Tree node, final List<Token> literals ) {
+            final Integer index = parameters.get( node );
+
+            final Token token = index != null ? literals.get( index ) : ( ( CommonTree ) node ).getToken();
+
+            final Tree copy = newNode( node.getClass(), token );
+
+            for ( int i = 0; i < node.getChildCount(); i++ ) {
+                copy.addChild( copy( node.getChild( i ), literals ) );
+            }
+
+            return copy;
+        }
+    }
+
+
+    /**
+     * Create a tree node of the type from its token, the same as the parser does
+     */
+    private static Tree newNode( final Class<?> nodeClass, final Token token ) {
+        try {
+            final Constructor<?> constructor = NODE_CONSTRUCTORS.computeIfAbsent( nodeClass, type -> {
+                try {
+                    final Constructor<?> tokenConstructor = type.getDeclaredConstructor( Token.class );
+                    tokenConstructor.setAccessible( true );
+                    return tokenConstructor;
+                }
+                catch ( NoSuchMethodException e ) {
+                    throw new IllegalStateException( "Query tree node " + type + " has no token constructor", e );
+                }
+            } );
+
+            return ( Tree ) constructor.newInstance( token );
+        }
+        catch ( ReflectiveOperationException e ) {
+            throw new IllegalStateException( "Unable to create query tree node " + nodeClass, e );
+        }
+    }
+}
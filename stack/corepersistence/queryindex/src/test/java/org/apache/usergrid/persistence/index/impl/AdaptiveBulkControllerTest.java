@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.index.IndexFig;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class AdaptiveBulkControllerTest {
+
+    private IndexFig indexFig;
+
+
+    @Before
+    public void setup() {
+        indexFig = mock( IndexFig.class );
+        when( indexFig.getIndexBatchSize() ).thenReturn( 1000 );
+        when( indexFig.getIndexBatchMinSize() ).thenReturn( 50 );
+        when( indexFig.getIndexBulkConcurrency() ).thenReturn( 2 );
+        when( indexFig.getIndexBulkTargetLatency() ).thenReturn( 1000L );
+        when( indexFig.getSleepTimeForQueueError() ).thenReturn( 100L );
+        when( indexFig.getIndexBulkMaxRetrySleep() ).thenReturn( 1000L );
+        when( indexFig.getIndexBulkMaxPending() ).thenReturn( 100 );
+    }
+
+
+    @Test
+    public void throttlingShrinksAndRecovers() {
+        final AdaptiveBulkController controller = new AdaptiveBulkController( indexFig );
+
+        assertEquals( 1000, controller.getBatchSize() );
+        assertEquals( 2, controller.getConcurrency() );
+
+        controller.submit( () -> {} );
+        controller.complete( 10, true );
+
+        assertEquals( 500, controller.getBatchSize() );
+        assertEquals( 1, controller.getConcurrency() );
+
+        //never below the minimum
+        for ( int i = 0; i < 10; i++ ) {
+            controller.submit( () -> {} );
+            controller.complete( 10, true );
+        }
+
+        assertEquals( 50, controller.getBatchSize() );
+        assertEquals( 1, controller.getConcurrency() );
+
+        //slow requests shrink the batch but don't grow it
+        controller.submit( () -> {} );
+        controller.complete( 5000, false );
+        assertEquals( 50, controller.getBatchSize() );
+
+        //healthy requests grow back to the maximums
+        for ( int i = 0; i < 20; i++ ) {
+            controller.submit( () -> {} );
+            controller.complete( 10, false );
+        }
+
+        assertEquals( 1000, controller.getBatchSize() );
+        assertEquals( 2, controller.getConcurrency() );
+    }
+
+
+    @Test
+    public void sendsQueueBeyondConcurrency() {
+        final AdaptiveBulkController controller = new AdaptiveBulkController( indexFig );
+
+        final AtomicInteger started = new AtomicInteger();
+
+        for ( int i = 0; i < 5; i++ ) {
+            controller.submit( () -> started.incrementAndGet() );
+        }
+
+        assertEquals( 2, started.get() );
+        assertEquals( 3, controller.getPending() );
+
+        controller.complete( 10, false );
+
+        assertEquals( 3, started.get() );
+        assertEquals( 2, controller.getPending() );
+
+        //a throttled request drops concurrency to 1, so nothing new starts until the other in flight request ends
+        controller.complete( 10, true );
+
+        assertEquals( 3, started.get() );
+
+        controller.complete( 10, false );
+
+        assertEquals( 4, started.get() );
+        assertEquals( 1, controller.getPending() );
+    }
+
+
+    @Test
+    public void fullQueueBlocksSubmit() throws InterruptedException {
+        when( indexFig.getIndexBulkMaxPending() ).thenReturn( 1 );
+
+        final AdaptiveBulkController controller = new AdaptiveBulkController( indexFig );
+
+        final AtomicInteger started = new AtomicInteger();
+
+        //two in flight and one waiting
+        for ( int i = 0; i < 3; i++ ) {
+            controller.submit( () -> started.incrementAndGet() );
+        }
+
+        assertEquals( 1, controller.getPending() );
+
+        final CountDownLatch submitted = new CountDownLatch( 1 );
+
+        final Thread producer = new Thread( () -> {
+            controller.submit( () -> started.incrementAndGet() );
+            submitted.countDown();
+        } );
+
+        producer.start();
+
+        assertFalse( "The producer waits for room", submitted.await( 200, TimeUnit.MILLISECONDS ) );
+
+        //starting the waiting send makes room for the producer's
+        controller.complete( 10, false );
+
+        assertTrue( submitted.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 3, started.get() );
+        assertEquals( 1, controller.getPending() );
+
+        producer.join();
+    }
+
+
+    @Test
+    public void retryDelayIsBounded() {
+        final AdaptiveBulkController controller = new AdaptiveBulkController( indexFig );
+
+        for ( int attempt = 0; attempt < 100; attempt++ ) {
+            final long delay = controller.getRetryDelay( attempt );
+            final long ceiling = Math.min( 1000, 100L << Math.min( attempt, 20 ) );
+
+            assertTrue( delay >= ceiling / 2 );
+            assertTrue( delay <= ceiling );
+        }
+    }
+}
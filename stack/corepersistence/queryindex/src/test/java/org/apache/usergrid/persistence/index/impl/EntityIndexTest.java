@@ -138,7 +138,7 @@ public class EntityIndexTest extends BaseIT {
 
 
         batch.index( indexEdge, entity1 );
-        indexProducer.put(batch.build()).subscribe();
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
 
 
         Entity entity2 = new Entity( entityType );
@@ -152,7 +152,7 @@ public class EntityIndexTest extends BaseIT {
 
 
         batch.index( indexEdge, entity2 );
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
 
         entityIndex.refreshAsync().toBlocking().first();
 
@@ -216,7 +216,7 @@ public class EntityIndexTest extends BaseIT {
 
                     EntityIndexBatch batch = entityIndex.createBatch();
                     insertJsonBlob( sampleJson, batch, entityType, indexEdge, size, 0 );
-                    indexProducer.put(batch.build()).subscribe();;
+                    indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
                 }
                 catch ( Exception e ) {
                     synchronized ( failTime ) {
@@ -291,7 +291,7 @@ public class EntityIndexTest extends BaseIT {
 
         EntityIndexBatch entityIndexBatch = entityIndex.createBatch();
         entityIndexBatch.deindex(searchEdge, crs.get(0));
-        indexProducer.put(entityIndexBatch.build()).subscribe();
+        indexProducer.put(entityIndexBatch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
         //Hilda Youn
@@ -307,7 +307,7 @@ public class EntityIndexTest extends BaseIT {
         });
         EntityIndexBatch batch = entityIndex.createBatch();
         insertJsonBlob(sampleJson, batch, entityType, indexEdge, max, startIndex);
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         EntityIndex.IndexRefreshCommandInfo info =  entityIndex.refreshAsync().toBlocking().first();
         long time = info.getExecutionTime();
         logger.info("refresh took ms:" + time);
@@ -365,7 +365,7 @@ public class EntityIndexTest extends BaseIT {
         EntityUtils.setVersion(entity, UUIDGenerator.newTimeUUID() );
         entity.setField(new UUIDField(IndexingUtils.ENTITY_ID_FIELDNAME, UUID.randomUUID() ) );
 
-        indexProducer.put(entityIndex.createBatch().index( searchEdge, entity ).build()).subscribe();
+        indexProducer.put(entityIndex.createBatch().index( searchEdge, entity ).build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
         CandidateResults candidateResults = entityIndex
@@ -374,7 +374,7 @@ public class EntityIndexTest extends BaseIT {
 
         EntityIndexBatch batch = entityIndex.createBatch();
         batch.deindex( searchEdge, entity );
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
         candidateResults = entityIndex
@@ -513,7 +513,7 @@ public class EntityIndexTest extends BaseIT {
         EntityIndexBatch batch = entityIndex.createBatch();
 
         batch.index( indexSCope, user );
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
         final String query = "where username = 'edanuff'";
@@ -522,7 +522,7 @@ public class EntityIndexTest extends BaseIT {
         assertEquals( user.getId(), r.get( 0 ).getId());
 
         batch.deindex( indexSCope, user.getId(), user.getVersion() );
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
         // EntityRef
@@ -583,7 +583,7 @@ public class EntityIndexTest extends BaseIT {
         EntityUtils.setVersion( fred, UUIDGenerator.newTimeUUID() );
         batch.index( indexScope, fred);
 
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
         final SearchTypes searchTypes = SearchTypes.fromTypes( "user" );
@@ -660,7 +660,7 @@ public class EntityIndexTest extends BaseIT {
         }
 
 
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
 
         entityIndex.refreshAsync().toBlocking().first();
 
@@ -697,6 +697,90 @@ public class EntityIndexTest extends BaseIT {
     }
 
 
+    /**
+     * Paging by the sort values of the last candidate returns the same results as paging by offset, including when
+     * edge timestamps are the same and the entity id breaks the tie
+     */
+    @Test
+    public void testSearchAfterPaging() throws Exception {
+
+        final String myType = UUID.randomUUID().toString();
+        final Id ownerId = new SimpleId( UUID.randomUUID(), "owner" );
+
+        final EntityIndexBatch batch = entityIndex.createBatch();
+
+        final int size = 100;
+
+        for ( int i = 0; i < size; i++ ) {
+
+            //a few timestamps so most entities tie with others
+            final IndexEdge indexEdge = new IndexEdgeImpl( ownerId, "users", SearchEdge.NodeType.SOURCE, i % 7 );
+
+            final Map entityMap = new HashMap() {{
+                put( "username", "edanuff" );
+                put( "mytype", myType );
+            }};
+
+            final Entity user = EntityIndexMapUtils.fromMap( entityMap );
+            EntityUtils.setId( user, new SimpleId( "user" ) );
+            EntityUtils.setVersion( user, UUIDGenerator.newTimeUUID() );
+
+            batch.index( indexEdge, user );
+        }
+
+        indexProducer.put( batch.build() ).toBlocking().lastOrDefault( null );
+
+        entityIndex.refreshAsync().toBlocking().first();
+
+
+        final SearchEdge searchEdge = new SearchEdgeImpl( ownerId, "users", SearchEdge.NodeType.SOURCE );
+        final String query = "select * where mytype='" + myType + "'";
+
+        final CandidateResults all = entityIndex.search( searchEdge, SearchTypes.allTypes(), query, size, 0 );
+
+        assertEquals( size, all.size() );
+
+
+        final int limit = 7;
+
+        final List<Id> paged = new ArrayList<>( size );
+
+        Optional<SearchAfter> searchAfter = Optional.absent();
+
+        while ( true ) {
+            final CandidateResults results =
+                entityIndex.search( searchEdge, SearchTypes.allTypes(), query, limit, paged.size(), searchAfter );
+
+            for ( CandidateResult result : results ) {
+                assertTrue( "Default order has sort values", result.getEdgeTimestamp().isPresent() );
+                paged.add( result.getId() );
+            }
+
+            if ( results.size() < limit ) {
+                break;
+            }
+
+            //start after the last candidate, there is one version of each entity
+            final CandidateResult last = results.get( limit - 1 );
+            searchAfter = Optional.of( new SearchAfter( last.getEdgeTimestamp().get(), last.getId(), 1 ) );
+        }
+
+        assertEquals( size, paged.size() );
+
+        for ( int i = 0; i < size; i++ ) {
+            assertEquals( "Failed on candidate " + i, all.get( i ).getId(), paged.get( i ) );
+        }
+
+
+        //a sorted query ignores the sort values and uses the offset
+        final CandidateResults sorted = entityIndex
+            .search( searchEdge, SearchTypes.allTypes(), query + " order by username", limit, limit, searchAfter );
+
+        assertEquals( limit, sorted.size() );
+        assertFalse( sorted.get( 0 ).getEdgeTimestamp().isPresent() );
+    }
+
+
     @Test
     public void queryByUUID() throws Throwable {
 
@@ -727,7 +811,7 @@ public class EntityIndexTest extends BaseIT {
         EntityIndexBatch batch = entityIndex.createBatch();
 
         batch.index( indexSCope, user );
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
         final String query = "where searchUUID = " + searchUUID;
@@ -766,7 +850,7 @@ public class EntityIndexTest extends BaseIT {
         EntityIndexBatch batch = entityIndex.createBatch();
 
         batch.index(indexSCope, user);
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
         final String query = "where string = 'I am*'";
@@ -823,7 +907,7 @@ public class EntityIndexTest extends BaseIT {
         EntityIndexBatch batch = entityIndex.createBatch();
         batch.index(indexSCope, first );
         batch.index( indexSCope, second );
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
 
@@ -888,7 +972,7 @@ public class EntityIndexTest extends BaseIT {
         batch.index(indexScope2, second);
 
 
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
 
@@ -969,7 +1053,7 @@ public class EntityIndexTest extends BaseIT {
         batch.index( indexScope2, second);
 
 
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
 
@@ -1079,7 +1163,7 @@ public class EntityIndexTest extends BaseIT {
         batch.index( indexScope2, second);
 
 
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
 
 
@@ -1234,7 +1318,7 @@ public class EntityIndexTest extends BaseIT {
         batch.index( indexScope2, second);
 
 
-        indexProducer.put(batch.build()).subscribe();;
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
         entityIndex.refreshAsync().toBlocking().first();
         long size = entityIndex.getEntitySize(new SearchEdgeImpl(ownerId,type, SearchEdge.NodeType.SOURCE));
         assertTrue( size == 100 );
@@ -1280,7 +1364,7 @@ public class EntityIndexTest extends BaseIT {
 
 
         batch.index( indexEdge, entity1 );
-        indexProducer.put(batch.build()).subscribe();
+        indexProducer.put(batch.build()).toBlocking().lastOrDefault( null );
 
 
         entityIndex.refreshAsync().toBlocking().first();
@@ -129,7 +129,7 @@ public class GeoPagingTest extends BaseIT {
 
         }
 
-        indexProducer.put( batch.build()).subscribe();
+        indexProducer.put( batch.build()).toBlocking().lastOrDefault( null );
 
         entityIndex.refreshAsync().toBlocking().last();
 
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.core.scope.ApplicationScope;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.index.IndexAlias;
+import org.apache.usergrid.persistence.index.IndexFig;
+import org.apache.usergrid.persistence.index.SearchEdge;
+import org.apache.usergrid.persistence.index.SearchTypes;
+import org.apache.usergrid.persistence.index.query.ParsedQuery;
+import org.apache.usergrid.persistence.index.query.ParsedQueryBuilder;
+import org.apache.usergrid.persistence.index.query.QueryPlanCache;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+
+import com.codahale.metrics.Meter;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * JMH benchmark of the cost of parsing a query and building its search request, with and without the query plan
+ * cache.  Every invocation uses the next of a set of queries of the same shape with different literals, the way
+ * clients send them.  Run with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.apache.usergrid.persistence.index.impl.QueryPlanBenchmark
+ * </pre>
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class QueryPlanBenchmark {
+
+    private static final int VARIANTS = 1024;
+
+    /**
+     * The shape of the query, filled in with different literals for each variant
+     */
+    @Param( {
+        "select * where username = '%s'",
+        "select * where type = 'device' and created > %d and (name = '%s' or email = '%s@example.org')",
+        "select * where location within %d of 37.77, -122.41 and active = true order by created desc" } )
+    public String shape;
+
+    private String[] queries;
+    private int next;
+
+    private QueryPlanCache queryPlanCache;
+    private SearchRequestBuilderStrategy searchRequest;
+    private SearchEdge searchEdge;
+    private SearchTypes searchTypes;
+
+
+    @Setup
+    public void setup() {
+        queries = new String[VARIANTS];
+
+        for ( int i = 0; i < VARIANTS; i++ ) {
+            final String value = UUID.randomUUID().toString().substring( 0, 8 );
+            queries[i] =
+                shape.contains( "%d" ) ? String.format( shape, i, value, value ) : String.format( shape, value );
+        }
+
+        final IndexFig indexFig = mock( IndexFig.class );
+        when( indexFig.getQueryPlanCacheSize() ).thenReturn( 1000 );
+
+        final MetricsFactory metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getMeter( any( Class.class ), anyString() ) ).thenReturn( new Meter() );
+
+        queryPlanCache = new QueryPlanCache( indexFig, metricsFactory );
+
+        final Client client = mock( Client.class );
+        when( client.prepareSearch( anyVararg() ) ).thenAnswer( invocation -> new SearchRequestBuilder( client ) );
+
+        final EsProvider esProvider = mock( EsProvider.class );
+        when( esProvider.getClient() ).thenReturn( client );
+
+        final IndexAlias alias = mock( IndexAlias.class );
+        when( alias.getReadAlias() ).thenReturn( "benchmark_read_alias" );
+
+        final ApplicationScope scope = new ApplicationScopeImpl( new SimpleId( "application" ) );
+
+        searchRequest = new SearchRequestBuilderStrategy( esProvider, scope, alias, 60 );
+        searchEdge = new SearchEdgeImpl( new SimpleId( "owner" ), "users", SearchEdge.NodeType.SOURCE );
+        searchTypes = SearchTypes.fromTypes( "user" );
+    }
+
+
+    @Benchmark
+    public SearchRequestBuilder parse() {
+        return build( ParsedQueryBuilder.build( nextQuery() ) );
+    }
+
+
+    @Benchmark
+    public SearchRequestBuilder parseCached() {
+        return build( queryPlanCache.build( nextQuery() ) );
+    }
+
+
+    private SearchRequestBuilder build( final ParsedQuery parsedQuery ) {
+        return searchRequest.getBuilder( searchEdge, searchTypes, parsedQuery, 10, 0 );
+    }
+
+
+    private String nextQuery() {
+        next = ( next + 1 ) % VARIANTS;
+        return queries[next];
+    }
+
+
+    public static void main( String[] args ) throws RunnerException {
+        final Options options = new OptionsBuilder().include( QueryPlanBenchmark.class.getSimpleName() ).build();
+
+        new Runner( options ).run();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.usergrid.persistence.index.impl;
+
+
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.StressTest;
+import org.apache.usergrid.persistence.core.astyanax.CassandraFig;
+import org.apache.usergrid.persistence.core.scope.ApplicationScopeImpl;
+import org.apache.usergrid.persistence.core.test.UseModules;
+import org.apache.usergrid.persistence.index.CandidateResult;
+import org.apache.usergrid.persistence.index.CandidateResults;
+import org.apache.usergrid.persistence.index.EntityIndex;
+import org.apache.usergrid.persistence.index.EntityIndexBatch;
+import org.apache.usergrid.persistence.index.EntityIndexFactory;
+import org.apache.usergrid.persistence.index.IndexEdge;
+import org.apache.usergrid.persistence.index.IndexFig;
+import org.apache.usergrid.persistence.index.IndexLocationStrategy;
+import org.apache.usergrid.persistence.index.SearchAfter;
+import org.apache.usergrid.persistence.index.SearchEdge;
+import org.apache.usergrid.persistence.index.SearchTypes;
+import org.apache.usergrid.persistence.index.guice.TestIndexModule;
+import org.apache.usergrid.persistence.model.entity.Entity;
+import org.apache.usergrid.persistence.model.entity.SimpleId;
+import org.apache.usergrid.persistence.model.field.IntegerField;
+import org.apache.usergrid.persistence.model.util.EntityUtils;
+import org.apache.usergrid.persistence.model.util.UUIDGenerator;
+
+import com.google.common.base.Optional;
+import com.google.inject.Inject;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Compares the time to read a page deep in the results by offset and by the sort values of the hit before it.  By
+ * offset every shard collects and sorts all the hits before the page, so the time grows with the depth.  By sort values
+ * the time of a page stays the same.  The times are logged, run with
+ *
+ * <command> mvn test -Dtest=SearchPagingLoadIT </command>
+ *
+ * By default this test is excluded from surefire, and will need to be run manually
+ */
+@RunWith( EsRunner.class )
+@UseModules( { TestIndexModule.class } )
+@Category( StressTest.class )
+public class SearchPagingLoadIT extends BaseIT {
+
+    private static final Logger logger = LoggerFactory.getLogger( SearchPagingLoadIT.class );
+
+    private static final int SIZE = 20000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int LIMIT = 10;
+    private static final int READS = 50;
+    private static final int[] DEPTHS = { 0, 1000, 5000, 10000, 19000 };
+
+    @Inject
+    public EntityIndexFactory eif;
+
+    @Inject
+    public IndexFig fig;
+
+    @Inject
+    public IndexProducer indexProducer;
+
+    @Inject
+    public CassandraFig cassandraFig;
+
+    @Inject
+    @Rule
+    public ElasticSearchRule elasticSearchRule;
+
+    private EntityIndex entityIndex;
+    private SimpleId appId;
+
+
+    @Before
+    public void setup() {
+        appId = new SimpleId( UUID.randomUUID(), "application" );
+
+        IndexLocationStrategy strategy = new TestIndexIdentifier( cassandraFig, fig, new ApplicationScopeImpl( appId ) );
+
+        entityIndex = eif.createEntityIndex( strategy );
+    }
+
+
+    @Test
+    public void testPageTimeByDepth() {
+
+        final SimpleId ownerId = new SimpleId( UUID.randomUUID(), "owner" );
+
+        for ( int i = 0; i < SIZE; i += BATCH_SIZE ) {
+            final EntityIndexBatch batch = entityIndex.createBatch();
+
+            for ( int j = i; j < i + BATCH_SIZE; j++ ) {
+                final IndexEdge indexEdge = new IndexEdgeImpl( ownerId, "things", SearchEdge.NodeType.SOURCE, j );
+
+                final Entity entity = new Entity( "thing" );
+                EntityUtils.setVersion( entity, UUIDGenerator.newTimeUUID() );
+                entity.setField( new IntegerField( "ordinal", j ) );
+
+                batch.index( indexEdge, entity );
+            }
+
+            indexProducer.put( batch.build() ).toBlocking().lastOrDefault( null );
+        }
+
+        entityIndex.refreshAsync().toBlocking().first();
+
+
+        final SearchEdge searchEdge = new SearchEdgeImpl( ownerId, "things", SearchEdge.NodeType.SOURCE );
+        final SearchTypes searchTypes = SearchTypes.fromTypes( "thing" );
+        final String query = "select *";
+
+        logger.info( "{} candidates, {} per page, mean of {} reads", SIZE, LIMIT, READS );
+
+        for ( final int depth : DEPTHS ) {
+
+            //the hit before the page, the same as the cursor of the last page
+            final Optional<SearchAfter> searchAfter;
+
+            if ( depth == 0 ) {
+                searchAfter = Optional.absent();
+            }
+            else {
+                final CandidateResult before =
+                    entityIndex.search( searchEdge, searchTypes, query, 1, depth - 1 ).get( 0 );
+
+                searchAfter =
+                    Optional.of( new SearchAfter( before.getEdgeTimestamp().get(), before.getId(), 1 ) );
+            }
+
+            final CandidateResults byOffset = entityIndex.search( searchEdge, searchTypes, query, LIMIT, depth );
+            final CandidateResults bySearchAfter =
+                entityIndex.search( searchEdge, searchTypes, query, LIMIT, depth, searchAfter );
+
+            assertEquals( LIMIT, bySearchAfter.size() );
+
+            for ( int i = 0; i < LIMIT; i++ ) {
+                assertEquals( "Failed at depth " + depth, byOffset.get( i ).getId(), bySearchAfter.get( i ).getId() );
+            }
+
+            final long offsetStart = System.nanoTime();
+
+            for ( int i = 0; i < READS; i++ ) {
+                entityIndex.search( searchEdge, searchTypes, query, LIMIT, depth );
+            }
+
+            final long searchAfterStart = System.nanoTime();
+
+            for ( int i = 0; i < READS; i++ ) {
+                entityIndex.search( searchEdge, searchTypes, query, LIMIT, depth, searchAfter );
+            }
+
+            final long end = System.nanoTime();
+
+            logger.info( "Depth {}: {} micros per page by offset, {} micros per page by sort values", depth,
+                ( searchAfterStart - offsetStart ) / READS / 1000, ( end - searchAfterStart ) / READS / 1000 );
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+
+package org.apache.usergrid.persistence.query.tree;
+
+
+import java.util.Collection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
+import org.apache.usergrid.persistence.index.IndexFig;
+import org.apache.usergrid.persistence.index.SelectFieldMapping;
+import org.apache.usergrid.persistence.index.query.ParsedQuery;
+import org.apache.usergrid.persistence.index.query.ParsedQueryBuilder;
+import org.apache.usergrid.persistence.index.query.QueryPlanCache;
+import org.apache.usergrid.persistence.index.query.tree.Equal;
+import org.apache.usergrid.persistence.index.query.tree.FloatLiteral;
+import org.apache.usergrid.persistence.index.query.tree.LongLiteral;
+
+import com.codahale.metrics.Meter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class QueryPlanCacheTest {
+
+    private Meter hits;
+    private Meter misses;
+    private MetricsFactory metricsFactory;
+
+
+    @Before
+    public void setup() {
+        hits = new Meter();
+        misses = new Meter();
+
+        metricsFactory = mock( MetricsFactory.class );
+        when( metricsFactory.getMeter( QueryPlanCache.class, "query.plan.cache.hit" ) ).thenReturn( hits );
+        when( metricsFactory.getMeter( QueryPlanCache.class, "query.plan.cache.miss" ) ).thenReturn( misses );
+    }
+
+
+    @Test
+    public void sameShapeIsParsedOnce() {
+        final QueryPlanCache cache = createCache( 100 );
+
+        final ParsedQuery first = cache.build( "select * where name = 'fred' and age > 5" );
+        final ParsedQuery second = cache.build( "select * where name = 'barney' and age > 10" );
+
+        assertEquals( 1, misses.getCount() );
+        assertEquals( 1, hits.getCount() );
+
+        assertNotSame( first.getRootOperand(), second.getRootOperand() );
+
+        assertSameAsParsed( first, "select * where name = 'fred' and age > 5" );
+        assertSameAsParsed( second, "select * where name = 'barney' and age > 10" );
+    }
+
+
+    @Test
+    public void literalTypesArePartOfTheShape() {
+        final QueryPlanCache cache = createCache( 100 );
+
+        final ParsedQuery longQuery = cache.build( "where age = 5" );
+        final ParsedQuery floatQuery = cache.build( "where age = 5.5" );
+
+        assertEquals( 2, misses.getCount() );
+
+        assertTrue( ( ( Equal ) longQuery.getRootOperand() ).getLiteral() instanceof LongLiteral );
+        assertTrue( ( ( Equal ) floatQuery.getRootOperand() ).getLiteral() instanceof FloatLiteral );
+    }
+
+
+    @Test
+    public void everyClauseIsBound() {
+        final QueryPlanCache cache = createCache( 100 );
+
+        final String[] queries = {
+            "select {name:alias} where not (title contains 'a*' or uuid = 1a2b3c4d-1a2b-1a2b-1a2b-1a2b3c4d5e6f) "
+                + "and location within 20 of 37.77, -122.41 and active = true order by created desc",
+            "select {name:alias} where not (title contains 'b' or uuid = 5a2b3c4d-1a2b-1a2b-1a2b-1a2b3c4d5e6f) "
+                + "and location within 400 of -33.86, 151.2 and active = false order by created desc",
+            "order by created desc", "order by created desc" };
+
+        for ( final String ql : queries ) {
+            assertSameAsParsed( cache.build( ql ), ql );
+        }
+
+        assertEquals( 2, misses.getCount() );
+        assertEquals( 2, hits.getCount() );
+    }
+
+
+    @Test
+    public void disabled() {
+        final QueryPlanCache cache = createCache( 0 );
+
+        assertSameAsParsed( cache.build( "select * where name = 'fred'" ), "select * where name = 'fred'" );
+        assertSameAsParsed( cache.build( "select * where name = 'barney'" ), "select * where name = 'barney'" );
+
+        assertNull( cache.build( "" ) );
+
+        assertEquals( 0, misses.getCount() );
+        assertEquals( 0, hits.getCount() );
+    }
+
+
+    private QueryPlanCache createCache( final int size ) {
+        final IndexFig indexFig = mock( IndexFig.class );
+        when( indexFig.getQueryPlanCacheSize() ).thenReturn( size );
+
+        return new QueryPlanCache( indexFig, metricsFactory );
+    }
+
+
+    /**
+     * Check the query is the same as parsing the ql without a cache
+     */
+    private static void assertSameAsParsed( final ParsedQuery query, final String ql ) {
+        final ParsedQuery parsed = ParsedQueryBuilder.build( ql );
+
+        assertEquals( ql, query.getOriginalQuery() );
+
+        if ( parsed.getRootOperand() == null ) {
+            assertNull( query.getRootOperand() );
+        }
+        else {
+            assertEquals( parsed.getRootOperand().toStringTree(), query.getRootOperand().toStringTree() );
+            assertEquals( parsed.getRootOperand().getClass(), query.getRootOperand().getClass() );
+        }
+
+        assertEquals( parsed.getSortPredicates(), query.getSortPredicates() );
+        assertEquals( toString( parsed.getSelectFieldMappings() ), toString( query.getSelectFieldMappings() ) );
+    }
+
+
+    private static String toString( final Collection<SelectFieldMapping> mappings ) {
+        final StringBuilder builder = new StringBuilder();
+
+        for ( final SelectFieldMapping mapping : mappings ) {
+            builder.append( mapping.getSourceFieldName() ).append( ':' ).append( mapping.getTargetFieldName() );
+            builder.append( ',' );
+        }
+
+        return builder.toString();
+    }
+}
@@ -103,4 +103,42 @@ public interface QueueFig extends GuicyFig {
     @Default("false") // 30 seconds
     boolean getQuorumFallback();
 
+    /**
+     * Flag to use the durable, disk backed local queue instead of Amazon queues or the in memory queue
+     */
+    @Key( "usergrid.queue.durable" )
+    @Default("false")
+    boolean isDurableQueue();
+
+    /**
+     * The directory the durable queue keeps its segment files in, each queue gets a sub directory.  Required when the
+     * durable queue is used, it must be somewhere that isn't cleared on reboot
+     */
+    @Key( "usergrid.queue.durable.directory" )
+    @Default("")
+    String getDurableQueueDirectory();
+
+    /**
+     * The size of each durable queue segment file (in bytes).  Messages can't be larger than a segment
+     */
+    @Key( "usergrid.queue.durable.segment_size" )
+    @Default("67108864") // 64 MB
+    int getDurableQueueSegmentSize();
+
+    /**
+     * How often the durable queue syncs its writes to disk (in milliseconds).  Writes survive a process crash
+     * immediately, this bounds what an operating system crash or power loss can lose
+     */
+    @Key( "usergrid.queue.durable.fsync_interval")
+    @Default("100")
+    int getDurableQueueFsyncInterval();
+
+    /**
+     * The most segment files the dead letter log of each durable queue keeps.  The oldest dead letters are dropped
+     * once it's full
+     */
+    @Key( "usergrid.queue.durable.dead_letter_segments")
+    @Default("4")
+    int getDurableQueueDeadLetterSegments();
+
 }
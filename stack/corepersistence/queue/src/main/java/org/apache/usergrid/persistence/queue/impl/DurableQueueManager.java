@@ -0,0 +1,488 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.usergrid.persistence.queue.impl;
+
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.usergrid.persistence.queue.QueueFig;
+import org.apache.usergrid.persistence.queue.QueueManager;
+import org.apache.usergrid.persistence.queue.QueueMessage;
+import org.apache.usergrid.persistence.queue.QueueScope;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+
+/**
+ * Local queue manager that keeps its messages in an append-only, memory-mapped {@link QueueSegmentLog}, so pending
+ * messages survive a restart.  Sends, deliveries, commits and dead-lettering are all records in the log, and the
+ * state of the queue is rebuilt by replaying it on startup.  Messages that were received but not committed before a
+ * crash are delivered again, so delivery is at-least-once.
+ *
+ * Received messages are invisible to other receivers until the visibility timeout passes.  Messages received more
+ * than the delivery limit are moved to a dead letter log next to the queue, which keeps a bounded number of segments
+ * and drops the oldest dead letters once it's full.
+ */
+public class DurableQueueManager implements QueueManager, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger( DurableQueueManager.class );
+
+    private static final byte MESSAGE = 1;
+    private static final byte COMMIT = 2;
+    private static final byte DELIVER = 3;
+    private static final byte DEAD = 4;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * How long a receive waits for messages when the queue is empty
+     */
+    private static final long POLL_WAIT = 100;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final QueueFig queueFig;
+    private final File directory;
+    private final File deadLetterDirectory;
+
+    private final QueueSegmentLog log;
+    private final QueueSegmentLog deadLetterLog;
+
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+
+    private final ScheduledExecutorService fsyncExecutor;
+
+    /**
+     * Every message that hasn't been committed or dead lettered, in send order
+     */
+    private final Map<Long, PendingMessage> pending = new LinkedHashMap<>();
+
+    /**
+     * Messages that are visible to receivers.  May contain messages that have since been committed, which are skipped
+     */
+    private final ArrayDeque<PendingMessage> visible = new ArrayDeque<>();
+
+    /**
+     * Received messages by the time they become visible again
+     */
+    private final PriorityQueue<PendingMessage> invisible =
+        new PriorityQueue<>( 16, ( first, second ) -> Long.compare( first.visibleAt, second.visibleAt ) );
+
+    /**
+     * The number of pending messages in each segment of the log
+     */
+    private final TreeMap<Long, Integer> segmentCounts = new TreeMap<>();
+
+    private long nextSequence;
+
+
+    public DurableQueueManager( final QueueScope scope, final QueueFig queueFig ) throws IOException {
+        this.queueFig = queueFig;
+
+        final String baseDirectory = queueFig.getDurableQueueDirectory();
+
+        //a default such as the temp directory could be cleared on reboot, losing every queued message
+        if ( Strings.isNullOrEmpty( baseDirectory ) ) {
+            throw new IllegalArgumentException( "usergrid.queue.durable.directory must be set to use the durable queue" );
+        }
+
+        final String name = scope.getName().replaceAll( "[^A-Za-z0-9_.-]", "_" );
+
+        this.directory = new File( baseDirectory, name );
+        this.deadLetterDirectory = new File( baseDirectory, name + "_dead" );
+
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException( "Unable to create queue directory " + directory );
+        }
+
+        //only one process may own the queue, or messages would be delivered to both
+        this.lockFile = new RandomAccessFile( new File( directory, "lock" ), "rw" );
+        this.lock = lockFile.getChannel().tryLock();
+
+        if ( lock == null ) {
+            lockFile.close();
+            throw new IOException( "Queue " + directory + " is in use by another process" );
+        }
+
+        this.log = new QueueSegmentLog( directory, queueFig.getDurableQueueSegmentSize() );
+        this.deadLetterLog = new QueueSegmentLog( deadLetterDirectory, queueFig.getDurableQueueSegmentSize() );
+
+        recover();
+
+        this.fsyncExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "queue-fsync-" + name ).build() );
+
+        final long fsyncInterval = Math.max( 1, queueFig.getDurableQueueFsyncInterval() );
+
+        fsyncExecutor.scheduleWithFixedDelay( this::sync, fsyncInterval, fsyncInterval, TimeUnit.MILLISECONDS );
+    }
+
+
+    /**
+     * Rebuild the queue from the log.  Every pending message becomes visible, including those that were in flight
+     * when we stopped
+     */
+    private synchronized void recover() throws IOException {
+
+        log.replay( ( type, sequence, location ) -> {
+            nextSequence = Math.max( nextSequence, sequence + 1 );
+
+            switch ( type ) {
+                case MESSAGE:
+                    pending.put( sequence, new PendingMessage( sequence, location ) );
+                    segmentCounts.merge( location.getSegment(), 1, Integer::sum );
+                    break;
+
+                case DELIVER:
+                    final PendingMessage delivered = pending.get( sequence );
+
+                    if ( delivered != null ) {
+                        delivered.receiveCount++;
+                    }
+                    break;
+
+                case COMMIT:
+                case DEAD:
+                    final PendingMessage removed = pending.remove( sequence );
+
+                    if ( removed != null ) {
+                        segmentCounts.merge( removed.location.getSegment(), -1, Integer::sum );
+                    }
+                    break;
+
+                default:
+                    logger.warn( "Ignoring unknown record type {} in queue {}", type, directory );
+            }
+        } );
+
+        //the dead letter log is only appended to
+        deadLetterLog.replay( ( type, sequence, location ) -> { } );
+
+        visible.addAll( pending.values() );
+
+        removeCompletedSegments();
+
+        logger.info( "Recovered {} pending messages in queue {}", pending.size(), directory );
+    }
+
+
+    @Override
+    public List<QueueMessage> getMessages( final int limit, final Class klass ) {
+
+        final List<PendingMessage> received = new ArrayList<>( limit );
+        final List<byte[]> bodies = new ArrayList<>( limit );
+
+        synchronized ( this ) {
+            try {
+                if ( !hasVisible() ) {
+                    wait( POLL_WAIT );
+                }
+
+                final long now = System.currentTimeMillis();
+                final int deliveryLimit = getDeliveryLimit();
+
+                makeVisible( now );
+
+                while ( received.size() < limit && !visible.isEmpty() ) {
+                    final PendingMessage message = visible.poll();
+
+                    //committed or received since it was made visible
+                    if ( pending.get( message.sequence ) != message || message.visibleAt > now ) {
+                        continue;
+                    }
+
+                    if ( message.receiveCount >= deliveryLimit ) {
+                        deadLetter( message );
+                        continue;
+                    }
+
+                    log.append( DELIVER, message.sequence, EMPTY );
+
+                    message.receiveCount++;
+                    message.visibleAt = now + queueFig.getVisibilityTimeout();
+                    invisible.add( message );
+
+                    received.add( message );
+                    bodies.add( log.read( message.location ) );
+                }
+
+                removeCompletedSegments();
+            }
+            catch ( InterruptedException ie ) {
+                throw new RuntimeException( ie );
+            }
+            catch ( IOException ioe ) {
+                throw new RuntimeException( "Unable to receive messages from queue " + directory, ioe );
+            }
+        }
+
+        final List<QueueMessage> queueMessages = new ArrayList<>( received.size() );
+
+        for ( int i = 0; i < received.size(); i++ ) {
+            final PendingMessage message = received.get( i );
+            final String body = new String( bodies.get( i ), StandardCharsets.UTF_8 );
+
+            final Object payload;
+
+            try {
+                payload = mapper.readValue( body, klass );
+            }
+            catch ( IOException e ) {
+                //leave it invisible, it will be dead lettered once it reaches the delivery limit
+                logger.error( "failed to deserialize message: {}", body, e );
+                continue;
+            }
+
+            final String id = String.valueOf( message.sequence );
+
+            final QueueMessage queueMessage = new QueueMessage( id, id, payload, null );
+            queueMessage.setStringBody( body );
+            queueMessage.setReceiveCount( message.receiveCount );
+            queueMessages.add( queueMessage );
+        }
+
+        return queueMessages;
+    }
+
+
+    /**
+     * The number of messages that have not been committed, whether visible or in flight
+     */
+    @Override
+    public synchronized long getQueueDepth() {
+        return pending.size();
+    }
+
+
+    @Override
+    public void commitMessage( final QueueMessage queueMessage ) {
+        commitMessages( Collections.singletonList( queueMessage ) );
+    }
+
+
+    @Override
+    public synchronized void commitMessages( final List<QueueMessage> queueMessages ) {
+        try {
+            for ( final QueueMessage queueMessage : queueMessages ) {
+                final PendingMessage message = pending.remove( Long.parseLong( queueMessage.getHandle() ) );
+
+                //already committed, or dead lettered after its visibility timed out
+                if ( message == null ) {
+                    continue;
+                }
+
+                log.append( COMMIT, message.sequence, EMPTY );
+                segmentCounts.merge( message.location.getSegment(), -1, Integer::sum );
+            }
+
+            removeCompletedSegments();
+        }
+        catch ( IOException ioe ) {
+            throw new RuntimeException( "Unable to commit messages to queue " + directory, ioe );
+        }
+    }
+
+
+    @Override
+    public void sendMessages( final List bodies ) throws IOException {
+        final List<byte[]> serialized = new ArrayList<>( bodies.size() );
+
+        for ( final Object body : bodies ) {
+            serialized.add( mapper.writeValueAsBytes( body ) );
+        }
+
+        append( serialized );
+    }
+
+
+    @Override
+    public <T extends Serializable> void sendMessage( final T body ) throws IOException {
+        append( Collections.singletonList( mapper.writeValueAsBytes( body ) ) );
+    }
+
+
+    /**
+     * There are no other regions to publish to, so this is the same as sending to our queue
+     */
+    @Override
+    public <T extends Serializable> void sendMessageToTopic( final T body ) throws IOException {
+        sendMessage( body );
+    }
+
+
+    @Override
+    public synchronized void deleteQueue() {
+        logger.warn( "Deleting queue: {}", directory );
+
+        try {
+            log.clear();
+            deadLetterLog.clear();
+        }
+        catch ( IOException ioe ) {
+            throw new RuntimeException( "Unable to delete queue " + directory, ioe );
+        }
+
+        pending.clear();
+        visible.clear();
+        invisible.clear();
+        segmentCounts.clear();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        fsyncExecutor.shutdown();
+
+        synchronized ( this ) {
+            log.close();
+            deadLetterLog.close();
+            lock.release();
+            lockFile.close();
+        }
+    }
+
+
+    private synchronized void append( final List<byte[]> bodies ) throws IOException {
+        for ( final byte[] body : bodies ) {
+            final long sequence = nextSequence++;
+
+            final QueueSegmentLog.Location location = log.append( MESSAGE, sequence, body );
+
+            final PendingMessage message = new PendingMessage( sequence, location );
+
+            pending.put( sequence, message );
+            visible.add( message );
+            segmentCounts.merge( location.getSegment(), 1, Integer::sum );
+        }
+
+        notifyAll();
+    }
+
+
+    /**
+     * Move the received messages whose visibility timeout has passed back to the visible messages
+     */
+    private void makeVisible( final long now ) {
+        while ( !invisible.isEmpty() && invisible.peek().visibleAt <= now ) {
+            final PendingMessage message = invisible.poll();
+
+            if ( pending.get( message.sequence ) == message ) {
+                visible.add( message );
+            }
+        }
+    }
+
+
+    private boolean hasVisible() {
+        return !visible.isEmpty()
+            || ( !invisible.isEmpty() && invisible.peek().visibleAt <= System.currentTimeMillis() );
+    }
+
+
+    private void deadLetter( final PendingMessage message ) throws IOException {
+        logger.warn( "Message {} in queue {} was received {} times, moving it to the dead letter queue",
+            message.sequence, directory, message.receiveCount );
+
+        deadLetterLog.append( MESSAGE, message.sequence, log.read( message.location ) );
+        log.append( DEAD, message.sequence, EMPTY );
+
+        final int maxDeadLetterSegments = Math.max( 1, queueFig.getDurableQueueDeadLetterSegments() );
+
+        while ( deadLetterLog.getSegmentCount() > maxDeadLetterSegments && deadLetterLog.removeHeadSegment() ) {
+            logger.warn( "Dead letter queue {} is full, dropped its oldest segment", deadLetterDirectory );
+        }
+
+        pending.remove( message.sequence );
+        segmentCounts.merge( message.location.getSegment(), -1, Integer::sum );
+    }
+
+
+    /**
+     * Remove segments from the head of the log once every message in them is committed or dead lettered.  We can only
+     * remove from the head, since later segments hold the commits of messages in earlier ones
+     */
+    private void removeCompletedSegments() throws IOException {
+        while ( true ) {
+            final long head = log.getHeadSegment();
+            final Integer count = segmentCounts.get( head );
+
+            if ( count != null && count > 0 ) {
+                return;
+            }
+
+            if ( !log.removeHeadSegment() ) {
+                return;
+            }
+
+            segmentCounts.remove( head );
+        }
+    }
+
+
+    private int getDeliveryLimit() {
+        return Integer.parseInt( queueFig.getQueueDeliveryLimit() );
+    }
+
+
+    private void sync() {
+        try {
+            log.force();
+            deadLetterLog.force();
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to sync queue {} to disk", directory, e );
+        }
+    }
+
+
+    private static final class PendingMessage {
+        private final long sequence;
+        private final QueueSegmentLog.Location location;
+        private int receiveCount;
+        private long visibleAt;
+
+
+        private PendingMessage( final long sequence, final QueueSegmentLog.Location location ) {
+            this.sequence = sequence;
+            this.location = location;
+        }
+    }
+}
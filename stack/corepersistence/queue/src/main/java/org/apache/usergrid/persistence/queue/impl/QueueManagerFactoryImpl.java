@@ -25,8 +25,10 @@ import org.apache.usergrid.persistence.queue.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -40,6 +42,7 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
     private final QueueFig queueFig;
     private final QueueManagerInternalFactory queuemanagerInternalFactory;
     private final Map<String,QueueManager> defaultManager;
+    private final ConcurrentHashMap<String,QueueManager> durableManagers = new ConcurrentHashMap<>();
     private final LoadingCache<QueueScope, QueueManager> queueManager =
         CacheBuilder
             .newBuilder()
@@ -50,7 +53,19 @@ public class QueueManagerFactoryImpl implements QueueManagerFactory {
                 @Override
                 public QueueManager load( QueueScope scope ) throws Exception {
 
-                    if ( queueFig.overrideQueueForDefault() ){
+                    if ( queueFig.isDurableQueue() ) {
+
+                        // the queue's files can only be opened once, so never let the cache evict it
+                        return durableManagers.computeIfAbsent( scope.getName(), name -> {
+                            try {
+                                return new DurableQueueManager( scope, queueFig );
+                            }
+                            catch ( IOException e ) {
+                                throw new RuntimeException( "Unable to open durable queue " + name, e );
+                            }
+                        } );
+
+                    } else if ( queueFig.overrideQueueForDefault() ){
 
                         QueueManager manager = defaultManager.get( scope.getName() );
                         if ( manager == null ) {
@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.usergrid.persistence.queue.impl;
+
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+
+/**
+ * An append-only log of queue records, split into fixed size memory-mapped segment files.  Each record is
+ *
+ * <pre>
+ * [int length][byte type][long sequence][payload][int crc32]
+ * </pre>
+ *
+ * where length covers the type, sequence and payload, and the crc covers the same bytes.  A zero length marks the end
+ * of a segment, and replay stops at the first record whose crc doesn't match, which is where a crash tore a write.
+ *
+ * Writes go to the page cache and survive a process crash.  {@link #force()} syncs them to disk, callers decide how
+ * often.  Segments are only ever removed from the head of the log, so a record is never removed before the records
+ * written earlier than it.
+ */
+public class QueueSegmentLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger( QueueSegmentLog.class );
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * length + type + sequence
+     */
+    private static final int HEADER_SIZE = 4 + 1 + 8;
+
+    /**
+     * crc
+     */
+    private static final int TRAILER_SIZE = 4;
+
+
+    /**
+     * Receives every record in the log in the order it was written
+     */
+    public interface RecordVisitor {
+        void visit( byte type, long sequence, Location location );
+    }
+
+
+    private final File directory;
+    private final int segmentSize;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private final List<Segment> unsynced = new ArrayList<>();
+
+    private Segment active;
+
+
+    /**
+     * Open the log in the directory, creating it if it doesn't exist
+     */
+    public QueueSegmentLog( final File directory, final int segmentSize ) throws IOException {
+        Preconditions.checkArgument( segmentSize > HEADER_SIZE + TRAILER_SIZE, "segmentSize is too small" );
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException( "Unable to create queue directory " + directory );
+        }
+
+        final File[] files = directory.listFiles( ( dir, name ) -> name.endsWith( SEGMENT_SUFFIX ) );
+
+        if ( files != null ) {
+            for ( final File file : files ) {
+                final String name = file.getName();
+                final long id = Long.parseLong( name.substring( 0, name.length() - SEGMENT_SUFFIX.length() ) );
+
+                segments.put( id, Segment.open( file, id, segmentSize ) );
+            }
+        }
+    }
+
+
+    /**
+     * Visit every record in the log, and position the log to append after the last intact record
+     */
+    public synchronized void replay( final RecordVisitor visitor ) throws IOException {
+
+        for ( final Segment segment : segments.values() ) {
+            final int end = segment.scan( visitor );
+
+            //every segment but the last was rolled because it was full, any garbage past its end is a torn write
+            segment.position = end;
+            active = segment;
+        }
+
+        if ( active == null ) {
+            active = newSegment( 0 );
+        }
+
+        //anything left past our end by a torn write must not be read on the next replay
+        active.terminate();
+    }
+
+
+    /**
+     * Append a record to the log
+     *
+     * @return The location of the record's payload
+     */
+    public synchronized Location append( final byte type, final long sequence, final byte[] payload )
+        throws IOException {
+
+        Preconditions.checkState( active != null, "replay must be called before append" );
+
+        final int recordSize = HEADER_SIZE + payload.length + TRAILER_SIZE;
+
+        if ( recordSize > segmentSize ) {
+            throw new IllegalArgumentException(
+                "Record of " + payload.length + " bytes is larger than the queue segment size " + segmentSize );
+        }
+
+        if ( active.position + recordSize > segmentSize ) {
+            //the old segment is complete, sync it now so we never have more than one partially synced segment
+            unsynced.remove( active );
+            active.buffer.force();
+            active = newSegment( active.id + 1 );
+        }
+
+        final int position = active.position;
+
+        final CRC32 crc = new CRC32();
+        crc.update( type );
+        crc.update( longBytes( sequence ) );
+        crc.update( payload );
+
+        final MappedByteBuffer buffer = active.buffer;
+        buffer.position( position );
+        buffer.putInt( 1 + 8 + payload.length );
+        buffer.put( type );
+        buffer.putLong( sequence );
+        buffer.put( payload );
+        buffer.putInt( ( int ) crc.getValue() );
+
+        active.position = buffer.position();
+        active.terminate();
+
+        if ( !unsynced.contains( active ) ) {
+            unsynced.add( active );
+        }
+
+        return new Location( active.id, position + HEADER_SIZE, payload.length );
+    }
+
+
+    /**
+     * Read the payload at the location
+     */
+    public synchronized byte[] read( final Location location ) {
+        final Segment segment = segments.get( location.segment );
+
+        Preconditions.checkState( segment != null, "Segment %s has been removed", location.segment );
+
+        final byte[] payload = new byte[location.length];
+
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position( location.position );
+        buffer.get( payload );
+
+        return payload;
+    }
+
+
+    /**
+     * Sync every segment written since the last force to disk
+     */
+    public void force() {
+        final List<Segment> toSync;
+
+        synchronized ( this ) {
+            if ( unsynced.isEmpty() ) {
+                return;
+            }
+
+            toSync = new ArrayList<>( unsynced );
+            unsynced.clear();
+        }
+
+        //sync outside our lock so appends aren't held up by the disk
+        for ( final Segment segment : toSync ) {
+            segment.buffer.force();
+        }
+    }
+
+
+    /**
+     * Get the id of the oldest segment in the log
+     */
+    public synchronized long getHeadSegment() {
+        return segments.firstKey();
+    }
+
+
+    /**
+     * Get the number of segments in the log
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+
+    /**
+     * Remove the oldest segment of the log.  The segment being appended to is never removed
+     *
+     * @return True if the segment was removed
+     */
+    public synchronized boolean removeHeadSegment() throws IOException {
+        final Map.Entry<Long, Segment> head = segments.firstEntry();
+
+        if ( head == null || head.getValue() == active ) {
+            return false;
+        }
+
+        segments.remove( head.getKey() );
+        unsynced.remove( head.getValue() );
+        head.getValue().delete();
+
+        return true;
+    }
+
+
+    /**
+     * Remove every segment and start an empty log
+     */
+    public synchronized void clear() throws IOException {
+        for ( final Segment segment : segments.values() ) {
+            segment.delete();
+        }
+
+        segments.clear();
+        unsynced.clear();
+
+        active = newSegment( 0 );
+    }
+
+
+    @Override
+    public synchronized void close() throws IOException {
+        for ( final Segment segment : segments.values() ) {
+            segment.buffer.force();
+        }
+
+        segments.clear();
+        unsynced.clear();
+        active = null;
+    }
+
+
+    private Segment newSegment( final long id ) throws IOException {
+        final File file = new File( directory, String.format( "%020d%s", id, SEGMENT_SUFFIX ) );
+
+        final Segment segment = Segment.open( file, id, segmentSize );
+        segments.put( id, segment );
+
+        logger.debug( "Created queue segment {}", file );
+
+        return segment;
+    }
+
+
+    private static byte[] longBytes( final long value ) {
+        final byte[] bytes = new byte[8];
+
+        for ( int i = 7; i >= 0; i-- ) {
+            bytes[7 - i] = ( byte ) ( value >>> ( i * 8 ) );
+        }
+
+        return bytes;
+    }
+
+
+    /**
+     * The location of a record's payload in the log
+     */
+    public static final class Location {
+        private final long segment;
+        private final int position;
+        private final int length;
+
+
+        public Location( final long segment, final int position, final int length ) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+
+
+        public long getSegment() {
+            return segment;
+        }
+    }
+
+
+    private static final class Segment {
+        private final long id;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private int position;
+
+
+        private Segment( final long id, final File file, final MappedByteBuffer buffer ) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+
+        private static Segment open( final File file, final long id, final int segmentSize ) throws IOException {
+            try ( final RandomAccessFile raf = new RandomAccessFile( file, "rw" ) ) {
+                //new segments are zero filled, which reads as the end of the log
+                if ( raf.length() < segmentSize ) {
+                    raf.setLength( segmentSize );
+                }
+
+                //the mapping stays valid after the file is closed
+                final MappedByteBuffer buffer =
+                    raf.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, raf.length() );
+
+                return new Segment( id, file, buffer );
+            }
+        }
+
+
+        /**
+         * Visit the intact records in the segment
+         *
+         * @return The position after the last intact record
+         */
+        private int scan( final RecordVisitor visitor ) {
+            final ByteBuffer read = buffer.duplicate();
+            final int limit = read.capacity();
+
+            int position = 0;
+
+            while ( position + HEADER_SIZE + TRAILER_SIZE <= limit ) {
+                read.position( position );
+
+                final int length = read.getInt();
+
+                if ( length < 1 + 8 || ( long ) position + 4 + length + TRAILER_SIZE > limit ) {
+                    break;
+                }
+
+                final byte type = read.get();
+                final long sequence = read.getLong();
+                final int payloadPosition = read.position();
+                final int payloadLength = length - 1 - 8;
+
+                final byte[] record = new byte[length];
+                read.position( position + 4 );
+                read.get( record );
+
+                final CRC32 crc = new CRC32();
+                crc.update( record );
+
+                if ( read.getInt() != ( int ) crc.getValue() ) {
+                    logger.warn( "Found a torn record in queue segment {} at {}, ignoring the rest of it", file,
+                        position );
+                    break;
+                }
+
+                visitor.visit( type, sequence, new Location( id, payloadPosition, payloadLength ) );
+
+                position = read.position();
+            }
+
+            return position;
+        }
+
+
+        /**
+         * Write an end marker after the last record, if there's room for one
+         */
+        private void terminate() {
+            if ( position + 4 <= buffer.capacity() ) {
+                buffer.putInt( position, 0 );
+            }
+        }
+
+
+        private void delete() {
+            if ( !file.delete() ) {
+                logger.warn( "Unable to delete queue segment {}", file );
+            }
+        }
+    }
+}
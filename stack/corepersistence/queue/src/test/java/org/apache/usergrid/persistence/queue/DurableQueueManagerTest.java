@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.usergrid.persistence.queue;
+
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import org.apache.usergrid.persistence.core.test.ITRunner;
+import org.apache.usergrid.persistence.core.test.UseModules;
+import org.apache.usergrid.persistence.queue.guice.TestQueueModule;
+import org.apache.usergrid.persistence.queue.impl.DurableQueueManager;
+import org.apache.usergrid.persistence.queue.impl.QueueScopeImpl;
+
+import com.google.inject.Inject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+@RunWith( ITRunner.class )
+@UseModules( { TestQueueModule.class } )
+public class DurableQueueManagerTest {
+
+    @Inject
+    protected QueueFig queueFig;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private QueueScope scope;
+
+
+    @Before
+    public void setup() throws Exception {
+        queueFig.bypass( "getDurableQueueDirectory", folder.getRoot().getPath() );
+        scope = new QueueScopeImpl( "testDurableQueue", QueueScope.RegionImplementation.LOCAL );
+    }
+
+
+    @After
+    public void cleanup() {
+        queueFig.bypass( "getDurableQueueDirectory", null );
+        queueFig.bypass( "getVisibilityTimeout", null );
+        queueFig.bypass( "getQueueDeliveryLimit", null );
+        queueFig.bypass( "getDurableQueueSegmentSize", null );
+        queueFig.bypass( "getDurableQueueDeadLetterSegments", null );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void directoryIsRequired() throws Exception {
+        queueFig.bypass( "getDurableQueueDirectory", "" );
+
+        new DurableQueueManager( scope, queueFig );
+    }
+
+
+    @Test
+    public void sendAndCommit() throws Exception {
+        final DurableQueueManager qm = new DurableQueueManager( scope, queueFig );
+
+        qm.sendMessages( Arrays.asList( "one", "two", "three" ) );
+        assertEquals( 3, qm.getQueueDepth() );
+
+        final List<QueueMessage> messages = qm.getMessages( 10, String.class );
+        assertEquals( 3, messages.size() );
+        assertEquals( "one", messages.get( 0 ).getBody() );
+        assertEquals( "three", messages.get( 2 ).getBody() );
+
+        //received but not committed still counts
+        assertEquals( 3, qm.getQueueDepth() );
+
+        qm.commitMessages( messages );
+        assertEquals( 0, qm.getQueueDepth() );
+        assertEquals( 0, qm.getMessages( 10, String.class ).size() );
+
+        qm.close();
+    }
+
+
+    @Test
+    public void redeliverAfterRestart() throws Exception {
+        DurableQueueManager qm = new DurableQueueManager( scope, queueFig );
+
+        qm.sendMessage( "committed" );
+        qm.sendMessage( "uncommitted" );
+
+        List<QueueMessage> messages = qm.getMessages( 10, String.class );
+        assertEquals( 2, messages.size() );
+
+        qm.commitMessage( messages.get( 0 ) );
+        qm.close();
+
+        //the uncommitted message comes back, and remembers it was received before
+        qm = new DurableQueueManager( scope, queueFig );
+        assertEquals( 1, qm.getQueueDepth() );
+
+        messages = qm.getMessages( 10, String.class );
+        assertEquals( 1, messages.size() );
+        assertEquals( "uncommitted", messages.get( 0 ).getBody() );
+        assertEquals( 2, messages.get( 0 ).getReceiveCount() );
+
+        qm.commitMessages( messages );
+        qm.close();
+    }
+
+
+    @Test
+    public void visibilityTimeout() throws Exception {
+        queueFig.bypass( "getVisibilityTimeout", "200" );
+
+        final DurableQueueManager qm = new DurableQueueManager( scope, queueFig );
+
+        qm.sendMessage( "message" );
+
+        assertEquals( 1, qm.getMessages( 10, String.class ).size() );
+
+        //invisible until the timeout passes
+        assertEquals( 0, qm.getMessages( 10, String.class ).size() );
+
+        Thread.sleep( 300 );
+
+        final List<QueueMessage> messages = qm.getMessages( 10, String.class );
+        assertEquals( 1, messages.size() );
+        assertEquals( 2, messages.get( 0 ).getReceiveCount() );
+
+        qm.commitMessages( messages );
+        qm.close();
+    }
+
+
+    @Test
+    public void deadLetterAfterDeliveryLimit() throws Exception {
+        queueFig.bypass( "getVisibilityTimeout", "0" );
+        queueFig.bypass( "getQueueDeliveryLimit", "2" );
+
+        final DurableQueueManager qm = new DurableQueueManager( scope, queueFig );
+
+        qm.sendMessage( "poison" );
+
+        assertEquals( 1, qm.getMessages( 10, String.class ).size() );
+        assertEquals( 1, qm.getMessages( 10, String.class ).size() );
+
+        //received twice without a commit, so it's dead lettered instead of delivered again
+        assertEquals( 0, qm.getMessages( 10, String.class ).size() );
+        assertEquals( 0, qm.getQueueDepth() );
+
+        qm.close();
+    }
+
+
+    @Test
+    public void deadLettersAreBounded() throws Exception {
+        queueFig.bypass( "getVisibilityTimeout", "0" );
+        queueFig.bypass( "getQueueDeliveryLimit", "1" );
+        queueFig.bypass( "getDurableQueueSegmentSize", "256" );
+        queueFig.bypass( "getDurableQueueDeadLetterSegments", "2" );
+
+        final DurableQueueManager qm = new DurableQueueManager( scope, queueFig );
+
+        for ( int i = 0; i < 50; i++ ) {
+            qm.sendMessage( "poison message " + i );
+        }
+
+        //received once, then dead lettered on the next receive
+        assertEquals( 50, qm.getMessages( 100, String.class ).size() );
+        assertEquals( 0, qm.getMessages( 100, String.class ).size() );
+        assertEquals( 0, qm.getQueueDepth() );
+
+        final File deadLetters = new File( folder.getRoot(), "testDurableQueue_dead" );
+        final File[] segments = deadLetters.listFiles( ( dir, name ) -> name.endsWith( ".log" ) );
+
+        assertTrue( "The dead letter log keeps at most 2 segments", segments.length <= 2 );
+
+        qm.close();
+    }
+}
@@ -17,6 +17,7 @@
 package org.apache.usergrid.rest;
 
 import org.apache.usergrid.batch.service.JobSchedulerService;
+import org.apache.usergrid.corepersistence.CollectionCounterReconciler;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.services.notifications.QueueListener;
 import org.slf4j.Logger;
@@ -42,6 +43,9 @@ public class JobServiceBoostrap implements
     @Autowired
     private JobSchedulerService jobScheduler;
 
+    @Autowired
+    private CollectionCounterReconciler counterReconciler;
+
     @Autowired
     private Properties properties;
 
@@ -70,6 +74,14 @@ public class JobServiceBoostrap implements
             logger.info( "Scheduler Service disabled" );
         }
 
+        String reconcile = properties.getProperty( CollectionCounterReconciler.RECONCILE_ENABLED_PROP, "true" );
+        if ( Boolean.parseBoolean( reconcile ) ) {
+            logger.info( "Starting Counter Reconciler..." );
+            counterReconciler.startAsync();
+        } else {
+            logger.info( "Counter Reconciler disabled" );
+        }
+
         boolean shouldRun = new Boolean(properties.getProperty("usergrid.notifications.listener.run","true"));
         if(shouldRun){
             notificationsQueueListener.start();
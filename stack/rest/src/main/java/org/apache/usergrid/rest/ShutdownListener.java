@@ -20,6 +20,7 @@ package org.apache.usergrid.rest;
 
 import com.google.inject.Injector;
 import org.apache.usergrid.batch.service.JobSchedulerService;
+import org.apache.usergrid.corepersistence.CollectionCounterReconciler;
 import org.apache.usergrid.batch.service.SchedulerService;
 import org.apache.usergrid.persistence.actorsystem.ActorSystemManager;
 import org.apache.usergrid.persistence.cassandra.CassandraService;
@@ -82,5 +83,12 @@ public class ShutdownListener implements ServletContextListener {
             schedulerService.awaitTerminated();
             logger.info( "Stopped Scheduler Service..." );
         }
+
+        CollectionCounterReconciler counterReconciler = ctx.getBean( CollectionCounterReconciler.class );
+
+        if ( counterReconciler.isRunning() ) {
+            counterReconciler.stopAsync();
+            logger.info( "Stopped Counter Reconciler..." );
+        }
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.EntityManager;
+import org.apache.usergrid.persistence.entities.Export;
+
+
+/**
+ * The checkpoints of the partitions of an export, kept on the export entity.  The partitions of a collection are
+ * saved as soon as they're planned, so a resumed export divides the collection the same way even if entities were
+ * created since, and each partition is saved again after each chunk it writes.
+ */
+class ExportCheckpoints {
+
+    private final EntityManager em;
+    private final Export export;
+
+
+    /**
+     * @param em The entity manager of the export entity
+     * @param export The export, the same instance the export's state is written with
+     */
+    ExportCheckpoints( final EntityManager em, final Export export ) {
+        this.em = em;
+        this.export = export;
+    }
+
+
+    /**
+     * Get the partitions of the collection saved by an earlier run of the export, in order
+     *
+     * @return The partitions, empty if the collection hasn't been planned
+     */
+    @SuppressWarnings( "unchecked" )
+    synchronized List<ExportPartition> getPartitions( final UUID applicationId, final String outputPrefix,
+                                                      final String collectionName ) {
+
+        final List<ExportPartition> partitions = new ArrayList<>();
+        final Map<String, Object> checkpoints = export.getCheckpoints();
+
+        if ( checkpoints == null ) {
+            return partitions;
+        }
+
+        final String prefix = ExportPartition.getKeyPrefix( applicationId, collectionName );
+
+        for ( int index = 0; checkpoints.containsKey( prefix + index ); index++ ) {
+            partitions.add( ExportPartition.fromCheckpoint( applicationId, outputPrefix, collectionName, index,
+                ( Map<String, Object> ) checkpoints.get( prefix + index ) ) );
+        }
+
+        return partitions;
+    }
+
+
+    /**
+     * Save the checkpoints of the partitions
+     */
+    synchronized void save( final List<ExportPartition> partitions ) throws Exception {
+        final Map<String, Object> checkpoints =
+            export.getCheckpoints() == null ? new HashMap<>() : new HashMap<>( export.getCheckpoints() );
+
+        for ( final ExportPartition partition : partitions ) {
+            checkpoints.put( partition.getKey(), partition.getCheckpoint() );
+        }
+
+        export.setCheckpoints( checkpoints );
+        em.update( export );
+    }
+}
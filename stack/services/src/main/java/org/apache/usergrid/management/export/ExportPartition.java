@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.usergrid.persistence.Query;
+import org.apache.usergrid.persistence.Query.Level;
+
+
+/**
+ * A share of one collection to export: the entities created in [from, to).  An open end of the range is unbounded, so
+ * a partition with neither end covers the whole collection.  Partitions are exported in parallel, each in its own
+ * numbered chunks, and each checkpoints the cursor of the next page so an interrupted export can carry on from it.
+ */
+class ExportPartition {
+
+    private static final String FROM = "from";
+    private static final String TO = "to";
+    private static final String CHUNK = "chunk";
+    private static final String CURSOR = "cursor";
+    private static final String DONE = "done";
+
+    private final UUID applicationId;
+    private final String outputPrefix;
+    private final String collectionName;
+    private final int index;
+    private final Long from;
+    private final Long to;
+
+    private int chunk;
+    private String cursor;
+    private boolean done;
+
+
+    /**
+     * @param applicationId The application of the collection
+     * @param outputPrefix The prefix of the names of the chunks of the application
+     * @param collectionName The collection to export
+     * @param index The number of this partition within the collection
+     * @param from The smallest created time to export, or null for no lower bound
+     * @param to The created time to export up to, or null for no upper bound
+     */
+    ExportPartition( final UUID applicationId, final String outputPrefix, final String collectionName,
+                     final int index, final Long from, final Long to ) {
+        this.applicationId = applicationId;
+        this.outputPrefix = outputPrefix;
+        this.collectionName = collectionName;
+        this.index = index;
+        this.from = from;
+        this.to = to;
+    }
+
+
+    /**
+     * Restore a partition from its checkpoint
+     */
+    static ExportPartition fromCheckpoint( final UUID applicationId, final String outputPrefix,
+                                           final String collectionName, final int index,
+                                           final Map<String, Object> checkpoint ) {
+        final ExportPartition partition =
+            new ExportPartition( applicationId, outputPrefix, collectionName, index, toLong( checkpoint.get( FROM ) ),
+                toLong( checkpoint.get( TO ) ) );
+
+        final Number chunk = ( Number ) checkpoint.get( CHUNK );
+
+        partition.chunk = chunk == null ? 0 : chunk.intValue();
+        partition.cursor = ( String ) checkpoint.get( CURSOR );
+        partition.done = Boolean.TRUE.equals( checkpoint.get( DONE ) );
+
+        return partition;
+    }
+
+
+    /**
+     * The key of the checkpoints of the partitions of a collection start with
+     */
+    static String getKeyPrefix( final UUID applicationId, final String collectionName ) {
+        return applicationId + "/" + collectionName.toLowerCase() + "/";
+    }
+
+
+    String getKey() {
+        return getKeyPrefix( applicationId, collectionName ) + index;
+    }
+
+
+    UUID getApplicationId() {
+        return applicationId;
+    }
+
+
+    String getCollectionName() {
+        return collectionName;
+    }
+
+
+    String getCursor() {
+        return cursor;
+    }
+
+
+    boolean isDone() {
+        return done;
+    }
+
+
+    /**
+     * The name of the next chunk of this partition
+     */
+    String getChunkName() {
+        return String.format( "%s/%s.%d.%05d.json.gz", outputPrefix, collectionName.toLowerCase(), index, chunk );
+    }
+
+
+    /**
+     * Move past a written chunk
+     *
+     * @param nextCursor The cursor of the page after the chunk, or null if the chunk was the last
+     */
+    void chunkWritten( final String nextCursor ) {
+        chunk++;
+        cursor = nextCursor;
+        done = nextCursor == null;
+    }
+
+
+    /**
+     * Get the query for the next page of the partition
+     *
+     * @param ql The query of the export, or null to export everything.  Queries aren't partitioned, so a partition
+     * is the whole collection when there's one
+     * @param limit The page size
+     */
+    Query getQuery( final String ql, final int limit ) {
+        final Query query;
+
+        if ( ql != null ) {
+            query = Query.fromQL( ql );
+        }
+        else if ( from == null && to == null ) {
+            query = new Query();
+        }
+        else {
+            final StringBuilder where = new StringBuilder( "select * where " );
+
+            if ( from != null ) {
+                where.append( "created >= " ).append( from );
+            }
+            if ( from != null && to != null ) {
+                where.append( " and " );
+            }
+            if ( to != null ) {
+                where.append( "created < " ).append( to );
+            }
+
+            query = Query.fromQL( where.toString() );
+        }
+
+        query.setLimit( limit );
+        query.setResultsLevel( Level.ALL_PROPERTIES );
+        query.setCollection( collectionName );
+
+        if ( cursor != null ) {
+            query.setCursor( cursor );
+        }
+
+        return query;
+    }
+
+
+    Map<String, Object> getCheckpoint() {
+        final Map<String, Object> checkpoint = new HashMap<>( 5 );
+
+        //open ends and the cursor of a partition that hasn't started are left out
+        if ( from != null ) {
+            checkpoint.put( FROM, from );
+        }
+        if ( to != null ) {
+            checkpoint.put( TO, to );
+        }
+        if ( cursor != null ) {
+            checkpoint.put( CURSOR, cursor );
+        }
+
+        checkpoint.put( CHUNK, chunk );
+        checkpoint.put( DONE, done );
+
+        return checkpoint;
+    }
+
+
+    private static Long toLong( final Object value ) {
+        return value == null ? null : ( ( Number ) value ).longValue();
+    }
+
+
+    @Override
+    public String toString() {
+        return "ExportPartition{" +
+            "key=" + getKey() +
+            ", from=" + from +
+            ", to=" + to +
+            ", chunk=" + chunk +
+            ", done=" + done +
+            '}';
+    }
+}
@@ -17,12 +17,24 @@
 package org.apache.usergrid.management.export;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +47,6 @@ import org.apache.usergrid.persistence.ConnectionRef;
 import org.apache.usergrid.persistence.Entity;
 import org.apache.usergrid.persistence.EntityManager;
 import org.apache.usergrid.persistence.EntityManagerFactory;
-import org.apache.usergrid.persistence.PagingResultsIterator;
 import org.apache.usergrid.persistence.Results;
 import org.apache.usergrid.persistence.SimpleEntityRef;
 import org.apache.usergrid.persistence.entities.Export;
@@ -49,11 +60,15 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.BiMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
 /**
- * Need to refactor out the mutliple orgs being take , need to factor out the multiple apps it will just be the one app
- * and the one org and all of it's collections.
+ * Exports an application, a collection of it, or all the applications of an organization.  Each collection is split
+ * into partitions by created time, and the partitions are exported in parallel by a pool of workers.  Each page of a
+ * partition is written to the export target as a compressed chunk, so nothing is staged on local disk, and each
+ * partition is checkpointed on the export entity after every chunk so a rerun of the export carries on where it left
+ * off.
  */
 public class ExportServiceImpl implements ExportService {
 
@@ -76,6 +91,31 @@ public class ExportServiceImpl implements ExportService {
     //Amount of time that has passed before sending another heart beat in millis
     public static final int TIMESTAMP_DELTA = 5000;
 
+    public static final String EXPORT_WORKERS = "usergrid.export.workers";
+    public static final String DEFAULT_EXPORT_WORKERS = "4";
+
+    public static final String EXPORT_PARTITIONS = "usergrid.export.collection.partitions";
+    public static final String DEFAULT_EXPORT_PARTITIONS = "4";
+
+    public static final String EXPORT_CHUNK_SIZE = "usergrid.export.chunk.size";
+
+    //writes the export to a local directory instead of s3
+    public static final String LOCAL_STORAGE_PROVIDER = "local";
+
+    public static final String EXPORT_LOCAL_PATH = "usergrid.export.local.path";
+
+    //the number of partitions exported at a time
+    private int workers = Integer.parseInt( DEFAULT_EXPORT_WORKERS );
+
+    //the number of partitions to split each collection into
+    private int collectionPartitions = Integer.parseInt( DEFAULT_EXPORT_PARTITIONS );
+
+    //the number of entities in each chunk
+    private int chunkSize = MAX_ENTITY_FETCH;
+
+    //the directory of local exports, they're disabled when it isn't set
+    private String localExportPath;
+
     private JsonFactory jsonFactory = new JsonFactory();
 
 
@@ -190,8 +230,7 @@ public class ExportServiceImpl implements ExportService {
     public void doExport( final JobExecution jobExecution ) throws Exception {
         @SuppressWarnings("unchecked")
         Map<String, Object> config = ( Map<String, Object> ) jobExecution.getJobData().getProperty( "exportInfo" );
-        Object s3PlaceHolder = jobExecution.getJobData().getProperty( "s3Export" );
-        S3Export s3Export;
+        Object targetPlaceHolder = jobExecution.getJobData().getProperty( "exportTarget" );
 
         if ( config == null ) {
             logger.error( "Export Information passed through is null" );
@@ -203,83 +242,100 @@ public class ExportServiceImpl implements ExportService {
         EntityManager em = emf.getEntityManager( emf.getManagementAppId() );
         Export export = em.get( exportId, Export.class );
 
-        //update the entity state to show that the job has officially started.
+        //update the entity state to show that the job has officially started.  a resumed export clears the error
+        //of the run that stopped
         export.setState( Export.State.STARTED );
+        export.setErrorMessage( null );
         em.update( export );
+
+        if ( config.get( "organizationId" ) == null ) {
+            logger.error( "doExport: No organization could be found" );
+            export.setState( Export.State.FAILED );
+            em.update( export );
+            return;
+        }
+
+        ExportTarget exportTarget;
+
         try {
-            if ( s3PlaceHolder != null ) {
-                s3Export = ( S3Export ) s3PlaceHolder;
+            if ( targetPlaceHolder != null ) {
+                exportTarget = ( ExportTarget ) targetPlaceHolder;
             }
             else {
-                s3Export = new S3ExportImpl();
+                exportTarget = createExportTarget( config );
             }
         }
         catch ( Exception e ) {
-            logger.error( "S3Export doesn't exist" );
+            logger.error( "Unable to create the export target", e );
             export.setErrorMessage( e.getMessage() );
             export.setState( Export.State.FAILED );
             em.update( export );
             return;
         }
 
-        if ( config.get( "organizationId" ) == null ) {
-            logger.error( "doExport: No organization could be found" );
-            export.setState( Export.State.FAILED );
-            em.update( export );
-            return;
-        }
-        else if ( config.get( "applicationId" ) == null ) {
-            //exports All the applications from an organization
-            try {
-                exportApplicationsFromOrg( ( UUID ) config.get( "organizationId" ), config, jobExecution, s3Export );
+        //the checkpoints are saved through the same instance as the state, so neither update loses the other
+        final ExportCheckpoints checkpoints = new ExportCheckpoints( em, export );
+
+        try {
+            final List<ExportPartition> partitions;
+
+            if ( config.get( "applicationId" ) == null ) {
+                //exports All the applications from an organization
+                partitions =
+                    planApplicationsFromOrg( ( UUID ) config.get( "organizationId" ), config, export, checkpoints );
             }
-            catch ( Exception e ) {
-                export.setErrorMessage( e.getMessage() );
-                export.setState( Export.State.FAILED );
-                em.update( export );
-                return;
+            else {
+                //exports an Application, or a single collection of it, from a single organization
+                partitions =
+                    planApplication( ( UUID ) config.get( "applicationId" ), config, export, checkpoints );
             }
+
+            exportPartitions( partitions, config, checkpoints, exportTarget, jobExecution );
         }
-        else if ( config.get( "collectionName" ) == null ) {
-            //exports an Application from a single organization
-            try {
-                exportApplicationFromOrg( ( UUID ) config.get( "organizationId" ),
-                        ( UUID ) config.get( "applicationId" ), config, jobExecution, s3Export );
-            }
-            catch ( Exception e ) {
-                export.setErrorMessage( e.getMessage() );
-                export.setState( Export.State.FAILED );
-                em.update( export );
-                return;
-            }
+        catch ( Exception e ) {
+            //if for any reason the backing up fails, then update the entity with a failed state.
+            logger.error( "Export {} failed", exportId, e );
+            export.setErrorMessage( e.getMessage() );
+            export.setState( Export.State.FAILED );
+            em.update( export );
+            return;
         }
-        else {
+        finally {
             try {
-                //exports a single collection from an app org combo
-                try {
-                    exportCollectionFromOrgApp( ( UUID ) config.get( "applicationId" ), config, jobExecution,
-                            s3Export );
-                }
-                catch ( Exception e ) {
-                    export.setErrorMessage( e.getMessage() );
-                    export.setState( Export.State.FAILED );
-                    em.update( export );
-                    return;
-                }
+                exportTarget.close();
             }
-            catch ( Exception e ) {
-                //if for any reason the backing up fails, then update the entity with a failed state.
-                export.setErrorMessage( e.getMessage() );
-                export.setState( Export.State.FAILED );
-                em.update( export );
-                return;
+            catch ( IOException e ) {
+                logger.warn( "Unable to close the export target", e );
             }
         }
+
         export.setState( Export.State.FINISHED );
         em.update( export );
     }
 
 
+    /**
+     * Create the target named by the storage_provider of the export request.  "local" writes to the directory set by
+     * the server, never to one from the request, anything else uploads to S3
+     */
+    @SuppressWarnings("unchecked")
+    protected ExportTarget createExportTarget( final Map<String, Object> config ) {
+        Map<String, Object> properties = ( Map<String, Object> ) config.get( "properties" );
+
+        if ( properties != null && LOCAL_STORAGE_PROVIDER.equals( properties.get( "storage_provider" ) ) ) {
+
+            if ( localExportPath == null ) {
+                throw new IllegalArgumentException(
+                    "Local exports are disabled, set " + EXPORT_LOCAL_PATH + " to enable them" );
+            }
+
+            return new FileExportTarget( new File( localExportPath ) );
+        }
+
+        return new S3ExportTarget( config );
+    }
+
+
     public SchedulerService getSch() {
         return sch;
     }
@@ -311,6 +367,16 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
+    public void setProperties( final Properties properties ) {
+        this.workers = Integer.parseInt( properties.getProperty( EXPORT_WORKERS, DEFAULT_EXPORT_WORKERS ) );
+        this.collectionPartitions =
+            Integer.parseInt( properties.getProperty( EXPORT_PARTITIONS, DEFAULT_EXPORT_PARTITIONS ) );
+        this.chunkSize = Math.min( MAX_ENTITY_FETCH,
+            Integer.parseInt( properties.getProperty( EXPORT_CHUNK_SIZE, String.valueOf( MAX_ENTITY_FETCH ) ) ) );
+        this.localExportPath = properties.getProperty( EXPORT_LOCAL_PATH );
+    }
+
+
     public Export getExportEntity( final JobExecution jobExecution ) throws Exception {
 
         UUID exportId = ( UUID ) jobExecution.getJobData().getProperty( EXPORT_ID );
@@ -321,14 +387,13 @@ public class ExportServiceImpl implements ExportService {
 
 
     /**
-     * Exports All Applications from an Organization
+     * Plans the export of all Applications from an Organization
      */
-    private void exportApplicationsFromOrg( UUID organizationUUID, final Map<String, Object> config,
-                                            final JobExecution jobExecution, S3Export s3Export ) throws Exception {
+    private List<ExportPartition> planApplicationsFromOrg( UUID organizationUUID, final Map<String, Object> config,
+                                                           final Export export, final ExportCheckpoints checkpoints )
+            throws Exception {
 
-        //retrieves export entity
-        Export export = getExportEntity( jobExecution );
-        String appFileName = null;
+        final List<ExportPartition> partitions = new ArrayList<>();
 
         BiMap<UUID, String> applications = managementService.getApplicationsForOrganization( organizationUUID );
 
@@ -339,79 +404,231 @@ public class ExportServiceImpl implements ExportService {
                 continue;
             }
 
-            appFileName = prepareOutputFileName( application.getValue(), null );
+            partitions.addAll( planCollections( application.getKey(),
+                prepareOutputPrefix( application.getValue(), export ), config, checkpoints ) );
+        }
+
+        return partitions;
+    }
 
-            File ephemeral = collectionExportAndQuery( application.getKey(), config, export, jobExecution );
 
-            fileTransfer( export, appFileName, ephemeral, config, s3Export );
+    /**
+     * Plans the export of a specific application from an organization, or of one of its collections when the
+     * request has a collectionName
+     */
+    private List<ExportPartition> planApplication( UUID applicationId, final Map<String, Object> config,
+                                                   final Export export, final ExportCheckpoints checkpoints )
+            throws Exception {
+
+        ApplicationInfo application = managementService.getApplicationInfo( applicationId );
+
+        return planCollections( applicationId, prepareOutputPrefix( application.getName(), export ), config,
+            checkpoints );
+    }
+
+
+    /**
+     * Divides the collections of the application into partitions.  A collection planned by an earlier run of the
+     * export keeps the partitions it had
+     */
+    //might be confusing, but uses the /s/ inclusion or exclusion nomenclature.
+    private List<ExportPartition> planCollections( UUID applicationUUID, String outputPrefix,
+                                                   final Map<String, Object> config,
+                                                   final ExportCheckpoints checkpoints ) throws Exception {
+
+        EntityManager em = emf.getEntityManager( applicationUUID );
+        Map<String, Object> metadata = em.getApplicationCollectionMetadata();
+
+        final List<ExportPartition> partitions = new ArrayList<>();
+
+        for ( String collectionName : metadata.keySet() ) {
+
+            if ( collectionName.equals( "exports" ) ) {
+                continue;
+            }
+            //if the collection you are looping through doesn't match the name of the one you want. Don't export it.
+            if ( ( config.get( "collectionName" ) != null ) && !collectionName
+                .equalsIgnoreCase( ( String ) config.get( "collectionName" ) ) ) {
+                continue;
+            }
+
+            List<ExportPartition> planned = checkpoints.getPartitions( applicationUUID, outputPrefix, collectionName );
+
+            if ( planned.isEmpty() ) {
+                planned = partitionCollection( em, applicationUUID, outputPrefix, collectionName, config );
+                checkpoints.save( planned );
+            }
+
+            partitions.addAll( planned );
         }
+
+        return partitions;
     }
 
 
-    public void fileTransfer( Export export, String appFileName, File ephemeral, Map<String, Object> config,
-                              S3Export s3Export ) {
-        try {
-            s3Export.copyToS3( ephemeral, config, appFileName );
+    /**
+     * Splits the collection into ranges of created time between its oldest and newest entity.  Entity uuids are time
+     * based, so these are ranges of ids too.  Queried exports aren't split, the query is exported as it is
+     */
+    private List<ExportPartition> partitionCollection( EntityManager em, UUID applicationUUID, String outputPrefix,
+                                                       String collectionName, final Map<String, Object> config )
+            throws Exception {
 
+        final List<ExportPartition> partitions = new ArrayList<>( collectionPartitions );
+
+        final Long oldest = config.get( "query" ) == null && collectionPartitions > 1 ?
+            getCreated( em, collectionName, "asc" ) : null;
+        final Long newest = oldest == null ? null : getCreated( em, collectionName, "desc" );
+
+        if ( oldest == null || newest == null ) {
+            partitions.add( new ExportPartition( applicationUUID, outputPrefix, collectionName, 0, null, null ) );
+            return partitions;
         }
-        catch ( Exception e ) {
-            export.setErrorMessage( e.getMessage() );
-            export.setState( Export.State.FAILED );
-            return;
+
+        final long span = newest - oldest + 1;
+        final int count = ( int ) Math.min( collectionPartitions, span );
+        final long size = ( span + count - 1 ) / count;
+
+        //the first and last ranges are open, so entities created while we export are exported too
+        for ( int i = 0; i < count; i++ ) {
+            final Long from = i == 0 ? null : oldest + i * size;
+            final Long to = i == count - 1 ? null : oldest + ( i + 1 ) * size;
+
+            partitions.add( new ExportPartition( applicationUUID, outputPrefix, collectionName, i, from, to ) );
         }
+
+        return partitions;
     }
 
 
     /**
-     * Exports a specific applications from an organization
+     * Get the created time of the first entity of the collection in the order, or null if it's empty
      */
-    private void exportApplicationFromOrg( UUID organizationUUID, UUID applicationId, final Map<String, Object> config,
-                                           final JobExecution jobExecution, S3Export s3Export ) throws Exception {
+    private Long getCreated( EntityManager em, String collectionName, String order ) throws Exception {
+        Query query = Query.fromQL( "select * order by created " + order );
+        query.setLimit( 1 );
+        query.setCollection( collectionName );
 
-        //retrieves export entity
-        Export export = getExportEntity( jobExecution );
+        Entity entity = em.searchCollection( em.getApplicationRef(), collectionName, query ).getEntity();
 
-        ApplicationInfo application = managementService.getApplicationInfo( applicationId );
-        String appFileName = prepareOutputFileName( application.getName(), null );
+        return entity == null ? null : entity.getCreated();
+    }
+
+
+    /**
+     * Exports the partitions that aren't done, up to the configured number of workers at a time.  Heartbeats the job
+     * while it waits for them
+     */
+    private void exportPartitions( final List<ExportPartition> partitions, final Map<String, Object> config,
+                                   final ExportCheckpoints checkpoints, final ExportTarget exportTarget,
+                                   final JobExecution jobExecution ) throws Exception {
 
-        File ephemeral = collectionExportAndQuery(applicationId, config, export, jobExecution);
+        final ExecutorService executor = Executors.newFixedThreadPool( workers,
+            new ThreadFactoryBuilder().setNameFormat( "export-worker-%d" ).setDaemon( true ).build() );
 
-        fileTransfer( export, appFileName, ephemeral, config, s3Export );
+        try {
+            final List<Future<?>> futures = new ArrayList<>( partitions.size() );
+
+            for ( final ExportPartition partition : partitions ) {
+
+                if ( partition.isDone() ) {
+                    logger.info( "Skipping exported partition {}", partition );
+                    continue;
+                }
+
+                futures.add( executor.submit( () -> {
+                    exportPartition( partition, config, checkpoints, exportTarget );
+                    return null;
+                } ) );
+            }
+
+            for ( final Future<?> future : futures ) {
+                while ( true ) {
+                    try {
+                        future.get( TIMESTAMP_DELTA, TimeUnit.MILLISECONDS );
+                        break;
+                    }
+                    catch ( TimeoutException e ) {
+                        jobExecution.heartbeat();
+                    }
+                    catch ( ExecutionException e ) {
+                        if ( e.getCause() instanceof Exception ) {
+                            throw ( Exception ) e.getCause();
+                        }
+                        throw e;
+                    }
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
     }
 
 
     /**
-     * Exports a specific collection from an org-app combo.
+     * Exports a partition a page at a time, each page as a chunk.  The partition is checkpointed after each chunk
      */
-    //might be confusing, but uses the /s/ inclusion or exclusion nomenclature.
-    private void exportCollectionFromOrgApp( UUID applicationUUID, final Map<String, Object> config,
-                                             final JobExecution jobExecution, S3Export s3Export ) throws Exception {
+    private void exportPartition( final ExportPartition partition, final Map<String, Object> config,
+                                  final ExportCheckpoints checkpoints, final ExportTarget exportTarget )
+            throws Exception {
+
+        logger.info( "Exporting partition {}", partition );
+
+        EntityManager em = emf.getEntityManager( partition.getApplicationId() );
 
-        //retrieves export entity
-        Export export = getExportEntity( jobExecution );
-        ApplicationInfo application = managementService.getApplicationInfo( applicationUUID );
+        while ( !partition.isDone() ) {
 
-        String appFileName = prepareOutputFileName( application.getName(), ( String ) config.get( "collectionName" ) );
+            Query query = partition.getQuery( ( String ) config.get( "query" ), chunkSize );
 
+            Results entities = em.searchCollection( em.getApplicationRef(), partition.getCollectionName(), query );
 
-        File ephemeral = collectionExportAndQuery( applicationUUID, config, export, jobExecution );
+            if ( !entities.isEmpty() ) {
+                byte[] chunk =
+                    writeChunk( em, partition.getCollectionName(), ( String ) config.get( "collectionName" ),
+                        entities.getEntities() );
+
+                exportTarget.write( partition.getChunkName(), chunk );
+            }
 
-        fileTransfer( export, appFileName, ephemeral, config, s3Export );
+            partition.chunkWritten( entities.hasCursor() ? entities.getCursor() : null );
+            checkpoints.save( Collections.singletonList( partition ) );
+        }
     }
 
 
     /**
-     * Regulates how long to wait until the next heartbeat.
+     * Writes the entities as a compressed document in the export format
      */
-    public long checkTimeDelta( long startingTime, final JobExecution jobExecution ) {
+    private byte[] writeChunk( EntityManager em, String collectionName, String memberCollection,
+                               List<Entity> entities ) throws Exception {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        //closing the generator finishes the compressed stream
+        try ( JsonGenerator jg = getJsonGenerator( new GZIPOutputStream( bytes ) ) ) {
 
-        long cur_time = System.currentTimeMillis();
+            jg.writeStartObject();
+            jg.writeObjectFieldStart( "collections" );
+
+            //write out the collection name at the start of the chunk
+            jg.writeArrayFieldStart( collectionName.toLowerCase() );
 
-        if ( startingTime <= ( cur_time - TIMESTAMP_DELTA ) ) {
-            jobExecution.heartbeat();
-            return cur_time;
+            for ( Entity entity : entities ) {
+                jg.writeStartObject();
+                jg.writeFieldName( "Metadata" );
+                jg.writeObject( entity );
+                saveCollectionMembers( jg, em, memberCollection, entity );
+                jg.writeEndObject();
+            }
+
+            //write out the end collection
+            jg.writeEndArray();
+            jg.writeEndObject();
+            jg.writeEndObject();
         }
-        return startingTime;
+
+        return bytes.toByteArray();
     }
 
 
@@ -525,10 +742,10 @@ public class ExportServiceImpl implements ExportService {
     }
 
 
-    protected JsonGenerator getJsonGenerator( File ephermal ) throws IOException {
+    protected JsonGenerator getJsonGenerator( OutputStream out ) throws IOException {
         //TODO:shouldn't the below be UTF-16?
 
-        JsonGenerator jg = jsonFactory.createJsonGenerator( ephermal, JsonEncoding.UTF8 );
+        JsonGenerator jg = jsonFactory.createGenerator( out, JsonEncoding.UTF8 );
         jg.setPrettyPrinter( new DefaultPrettyPrinter(  ) );
         jg.setCodec( new ObjectMapper() );
         return jg;
@@ -556,79 +773,9 @@ public class ExportServiceImpl implements ExportService {
 
 
     /**
-     * handles the query and export of collections
+     * @return the prefix of the chunk names of the application, the application name and the export id
      */
-    //TODO:Needs further refactoring.
-    protected File collectionExportAndQuery( UUID applicationUUID, final Map<String, Object> config, Export export,
-                                             final JobExecution jobExecution ) throws Exception {
-
-        EntityManager em = emf.getEntityManager( applicationUUID );
-        Map<String, Object> metadata = em.getApplicationCollectionMetadata();
-        long starting_time = System.currentTimeMillis();
-        File ephemeral = new File( "tempExport" + UUID.randomUUID() );
-        ephemeral.deleteOnExit();
-
-
-        JsonGenerator jg = getJsonGenerator( ephemeral );
-
-        jg.writeStartObject();
-        jg.writeObjectFieldStart( "collections" );
-
-        for ( String collectionName : metadata.keySet() ) {
-
-            if ( collectionName.equals( "exports" ) ) {
-                continue;
-            }
-            //if the collection you are looping through doesn't match the name of the one you want. Don't export it.
-            if ( ( config.get( "collectionName" ) == null ) || collectionName.equalsIgnoreCase((String)config.get( "collectionName" ) ) ) {
-
-                //write out the collection name at the start of the file
-                jg.writeArrayFieldStart( collectionName.toLowerCase() );
-
-                //Query entity manager for the entities in a collection
-                Query query = null;
-                if ( config.get( "query" ) == null ) {
-                    query = new Query();
-                }
-                else {
-                    try {
-                        query = Query.fromQL( ( String ) config.get( "query" ) );
-                    }
-                    catch ( Exception e ) {
-                        export.setErrorMessage( e.getMessage() );
-                    }
-                }
-                query.setLimit( MAX_ENTITY_FETCH );
-                query.setResultsLevel( Level.ALL_PROPERTIES );
-                query.setCollection( collectionName );
-
-                Results entities = em.searchCollection( em.getApplicationRef(), collectionName, query );
-
-                //pages through the query and backs up all results.
-                PagingResultsIterator itr = new PagingResultsIterator( entities );
-                for ( Object e : itr ) {
-                    starting_time = checkTimeDelta( starting_time, jobExecution );
-                    Entity entity = ( Entity ) e;
-                    jg.writeStartObject();
-                    jg.writeFieldName( "Metadata" );
-                    jg.writeObject( entity );
-                    saveCollectionMembers( jg, em, ( String ) config.get( "collectionName" ), entity );
-                    jg.writeEndObject();
-                    jg.flush();
-
-                }
-
-
-
-                //write out the end collection
-                jg.writeEndArray();
-            }
-        }
-        jg.writeEndObject();
-        jg.writeEndObject();
-        jg.flush();
-        jg.close();
-
-        return ephemeral;
+    public String prepareOutputPrefix( String applicationName, Export export ) {
+        return applicationName + "/" + export.getUuid();
     }
 }
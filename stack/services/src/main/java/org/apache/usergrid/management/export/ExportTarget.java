@@ -17,10 +17,22 @@
 package org.apache.usergrid.management.export;
 
 
-import java.io.File;
-import java.util.Map;
+import java.io.Closeable;
+import java.io.IOException;
 
 
-public interface S3Export {
-    void copyToS3( File ephemeral,Map<String,Object> exportInfo, String filename );
+/**
+ * Where the output of an export is written.  An export is written as gzip compressed chunks, each a complete json
+ * document in the export format, so chunks are written as soon as they're ready and in any order.  Chunks are written
+ * from several workers at once, so implementations must be thread safe.
+ */
+public interface ExportTarget extends Closeable {
+
+    /**
+     * Write a chunk of the export.  Writing a chunk that already exists replaces it
+     *
+     * @param name The name of the chunk, unique within the export
+     * @param chunk The compressed chunk
+     */
+    void write( String name, byte[] chunk ) throws IOException;
 }
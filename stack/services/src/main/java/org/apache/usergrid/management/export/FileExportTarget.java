@@ -19,38 +19,42 @@ package org.apache.usergrid.management.export;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
-
-import org.apache.commons.io.FileUtils;
+import java.nio.file.Files;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
- * Streams/reads the information written from the export service to a file named "test.json"
+ * Writes the chunks of an export to a local directory, for exports that don't go to a remote store
  */
-public class MockS3ExportImpl implements S3Export {
-    private static final Logger logger = LoggerFactory.getLogger( MockS3ExportImpl.class );
+public class FileExportTarget implements ExportTarget {
+
+    private static final Logger logger = LoggerFactory.getLogger( FileExportTarget.class );
 
-    private final String filename;
+    private final File directory;
 
 
-    public MockS3ExportImpl (String filename) {
-        this.filename = filename;
+    public FileExportTarget( final File directory ) {
+        this.directory = directory;
     }
 
 
     @Override
-    public void copyToS3( File ephemeral, final Map<String,Object> exportInfo, String ignoredFileName ) {
+    public void write( final String name, final byte[] chunk ) throws IOException {
+        final File file = new File( directory, name );
 
-        File verifiedData = new File( filename );
-        try {
-            FileUtils.copyFile(ephemeral, verifiedData);
-            logger.info( "Copied file {} to {}", ephemeral.getAbsolutePath(), verifiedData );
-        }
-        catch ( IOException e ) {
-            logger.error("Error copying to S3", e);
+        Files.createDirectories( file.getParentFile().toPath() );
+        Files.write( file.toPath(), chunk );
+
+        if ( logger.isTraceEnabled() ) {
+            logger.trace( "Wrote export chunk {} of {} bytes", file.getAbsolutePath(), chunk.length );
         }
     }
+
+
+    @Override
+    public void close() {
+        //nothing to release
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.management.export;
+
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jclouds.ContextBuilder;
+import org.jclouds.blobstore.BlobStore;
+import org.jclouds.blobstore.BlobStoreContext;
+import org.jclouds.blobstore.domain.Blob;
+import org.jclouds.http.config.JavaUrlHttpCommandExecutorServiceModule;
+import org.jclouds.logging.log4j.config.Log4JLoggingModule;
+import org.jclouds.netty.config.NettyPayloadModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.inject.Module;
+
+
+/**
+ * Uploads the chunks of an export to an S3 bucket, each chunk as its own object.  Chunks are uploaded straight from
+ * memory, nothing is written to local disk.
+ */
+public class S3ExportTarget implements ExportTarget {
+
+    private static final Logger logger = LoggerFactory.getLogger( S3ExportTarget.class );
+
+    private final String bucketName;
+    private final BlobStoreContext context;
+
+
+    /**
+     * @param exportInfo The export request, with the bucket and credentials in its storage_info
+     */
+    @SuppressWarnings( "unchecked" )
+    public S3ExportTarget( final Map<String, Object> exportInfo ) {
+
+        Map<String, Object> properties = ( Map<String, Object> ) exportInfo.get( "properties" );
+
+        Map<String, Object> storage_info = ( Map<String, Object> ) properties.get( "storage_info" );
+
+        this.bucketName = ( String ) storage_info.get( "bucket_location" );
+        String accessId = ( String ) storage_info.get( "s3_access_id" );
+        String secretKey = ( String ) storage_info.get( "s3_key" );
+
+        Properties overrides = new Properties();
+        overrides.setProperty( "s3" + ".identity", accessId );
+        overrides.setProperty( "s3" + ".credential", secretKey );
+
+        final Iterable<? extends Module> MODULES = ImmutableSet
+            .of( new JavaUrlHttpCommandExecutorServiceModule(), new Log4JLoggingModule(), new NettyPayloadModule() );
+
+        this.context = ContextBuilder.newBuilder( "s3" )
+            .credentials( accessId, secretKey )
+            .modules( MODULES )
+            .overrides( overrides )
+            .buildView( BlobStoreContext.class );
+
+        // Create Container (the bucket in s3)
+        if ( context.getBlobStore().createContainerInLocation( null, bucketName ) ) {
+            logger.info( "Created bucket {}", bucketName );
+        }
+    }
+
+
+    @Override
+    public void write( final String name, final byte[] chunk ) throws IOException {
+        try {
+            BlobStore blobStore = context.getBlobStore();
+
+            Blob blob = blobStore.blobBuilder( name )
+                .payload( chunk )
+                .contentMD5( Hashing.md5().hashBytes( chunk ) )
+                .contentType( "application/json" )
+                .contentEncoding( "gzip" )
+                .build();
+
+            final String etag = blobStore.putBlob( bucketName, blob );
+
+            logger.info( "Uploaded export chunk name={} etag={}", name, etag );
+        }
+        catch ( RuntimeException e ) {
+            throw new IOException( "Unable to upload export chunk " + name + " to bucket " + bucketName, e );
+        }
+    }
+
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
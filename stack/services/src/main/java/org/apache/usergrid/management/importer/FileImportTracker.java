@@ -28,6 +28,7 @@ import org.apache.usergrid.persistence.entities.FailedImportEntity;
 import org.apache.usergrid.persistence.entities.FileImport;
 import org.apache.usergrid.persistence.exceptions.PersistenceException;
 
+import java.util.TreeMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -54,6 +55,9 @@ public class FileImportTracker {
     private final AtomicLong connectionsFailed = new AtomicLong( 0 );
     private final AtomicInteger cachedOperations = new AtomicInteger( 0 );
 
+    private final BatchProgress entityBatches;
+    private final BatchProgress connectionBatches;
+
     private final Semaphore writeSemaphore = new Semaphore( 1 );
 
     private final FileImport fileImport;
@@ -82,6 +86,15 @@ public class FileImportTracker {
 
         this.connectionsWritten.addAndGet( fileImport.getImportedConnectionCount() );
         this.connectionsFailed.addAndGet( fileImport.getFailedConnectionCount() );
+
+        //imports started before batches were tracked resume from their counts
+        final Long entityResumeOffset = fileImport.getEntityResumeOffset();
+        final Long connectionResumeOffset = fileImport.getConnectionResumeOffset();
+
+        this.entityBatches =
+            new BatchProgress( entityResumeOffset != null ? entityResumeOffset : getTotalEntityCount() );
+        this.connectionBatches = new BatchProgress(
+            connectionResumeOffset != null ? connectionResumeOffset : getTotalConnectionCount() );
     }
 
 
@@ -147,6 +160,28 @@ public class FileImportTracker {
     }
 
 
+    /**
+     * Invoke when a batch of entity events has been written, failures included
+     *
+     * @param offset The offset of the first event of the batch in the file
+     * @param size The number of events in the batch
+     */
+    public void entityBatchWritten( final long offset, final int size ) {
+        entityBatches.written( offset, size );
+    }
+
+
+    /**
+     * Invoke when a batch of connection and dictionary events has been written, failures included
+     *
+     * @param offset The offset of the first event of the batch in the file
+     * @param size The number of events in the batch
+     */
+    public void connectionBatchWritten( final long offset, final int size ) {
+        connectionBatches.written( offset, size );
+    }
+
+
     /**
      * Invoke when the file is completed processing
      */
@@ -198,6 +233,26 @@ public class FileImportTracker {
     }
 
 
+    /**
+     * Get the number of entity events to skip when resuming.  Batches are written in parallel, so this is the
+     * number of events before the first batch that hasn't been written, not the number of entities written.
+     * Batches written after that one are written again on resume, and their entities are counted again, so the
+     * written and failed counts of the FileImport may be higher than the number of entities in the file.
+     */
+    public long getEntityResumeOffset() {
+        return entityBatches.getOffset();
+    }
+
+
+    /**
+     * Get the number of connection and dictionary events to skip when resuming.  As with the entities, batches
+     * written after the first one that hasn't been written are written and counted again on resume.
+     */
+    public long getConnectionResumeOffset() {
+        return connectionBatches.getOffset();
+    }
+
+
     /**
      * Returns true if we should stop processing.  We use fail fast logic, so after the first
      * failure this will return true.
@@ -305,6 +360,9 @@ public class FileImportTracker {
             fileImport.setImportedConnectionCount( writtenConnections );
             fileImport.setFailedConnectionCount( failedConnections );
 
+            fileImport.setEntityResumeOffset( entityBatches.getOffset() );
+            fileImport.setConnectionResumeOffset( connectionBatches.getOffset() );
+
 
             fileImport.setState( state );
             fileImport.setErrorMessage( message );
@@ -316,4 +374,40 @@ public class FileImportTracker {
             throw new RuntimeException( "Unable to persist complete state", e );
         }
     }
+
+
+    /**
+     * Tracks the batches of a pass that have been written, which can finish out of order.  The offset only moves
+     * past a batch once every batch before it has been written too
+     */
+    private static final class BatchProgress {
+
+        /**
+         * Batches written past the offset, by their start
+         */
+        private final TreeMap<Long, Long> written = new TreeMap<>();
+
+        private long offset;
+
+
+        private BatchProgress( final long offset ) {
+            this.offset = offset;
+        }
+
+
+        private synchronized void written( final long start, final int size ) {
+            written.put( start, start + size );
+
+            Long end;
+
+            while ( ( end = written.remove( offset ) ) != null ) {
+                offset = end;
+            }
+        }
+
+
+        private synchronized long getOffset() {
+            return offset;
+        }
+    }
 }
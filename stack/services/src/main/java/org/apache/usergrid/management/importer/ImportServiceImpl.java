@@ -22,7 +22,9 @@ import org.apache.usergrid.batch.JobExecution;
 import org.apache.usergrid.batch.service.SchedulerService;
 import org.apache.usergrid.corepersistence.util.CpNamingUtils;
 import org.apache.usergrid.management.ManagementService;
+import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.*;
+import org.apache.usergrid.persistence.cassandra.ConnectionRefImpl;
 import org.apache.usergrid.persistence.entities.FailedImportEntity;
 import org.apache.usergrid.persistence.entities.FileImport;
 import org.apache.usergrid.persistence.entities.Import;
@@ -39,14 +41,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 import rx.Subscriber;
-import rx.functions.Action1;
-import rx.functions.Func2;
 import rx.schedulers.Schedulers;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.google.inject.Injector;
+
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class ImportServiceImpl implements ImportService {
@@ -60,6 +66,12 @@ public class ImportServiceImpl implements ImportService {
     public static final String APP_IMPORT_CONNECTION = "imports";
     public static final String IMPORT_FILE_INCLUDES_CONNECTION = "files";
 
+    public static final String IMPORT_BATCH_SIZE = "usergrid.import.batch.size";
+    public static final String DEFAULT_IMPORT_BATCH_SIZE = "100";
+
+    public static final String IMPORT_WRITE_CONCURRENCY = "usergrid.import.write.concurrency";
+    public static final String DEFAULT_IMPORT_WRITE_CONCURRENCY = "10";
+
     private static final Logger logger = LoggerFactory.getLogger(ImportServiceImpl.class);
 
     int MAX_FILE_IMPORTS = 1000; // max number of file import jobs / import job
@@ -72,6 +84,16 @@ public class ImportServiceImpl implements ImportService {
 
     private JsonFactory jsonFactory = new JsonFactory();
 
+    private int batchSize = Integer.parseInt(DEFAULT_IMPORT_BATCH_SIZE);
+
+    private int writeConcurrency = Integer.parseInt(DEFAULT_IMPORT_WRITE_CONCURRENCY);
+
+    private Meter parseMeter;
+
+    private Timer groupWriteTimer;
+
+    private Meter writeMeter;
+
 
     @PostConstruct
     public void init() {
@@ -514,6 +536,22 @@ public class ImportServiceImpl implements ImportService {
     }
 
 
+    public void setProperties(final Properties properties) {
+        this.batchSize = Integer.parseInt(properties.getProperty(IMPORT_BATCH_SIZE, DEFAULT_IMPORT_BATCH_SIZE));
+        this.writeConcurrency =
+            Integer.parseInt(properties.getProperty(IMPORT_WRITE_CONCURRENCY, DEFAULT_IMPORT_WRITE_CONCURRENCY));
+    }
+
+
+    public void setInjector(final Injector injector) {
+        final MetricsFactory metricsFactory = injector.getInstance(MetricsFactory.class);
+
+        this.parseMeter = metricsFactory.getMeter(ImportServiceImpl.class, "import.parse");
+        this.groupWriteTimer = metricsFactory.getTimer(ImportServiceImpl.class, "import.group.write");
+        this.writeMeter = metricsFactory.getMeter(ImportServiceImpl.class, "import.write");
+    }
+
+
     /**
      * This method creates sub-jobs for each file i.e. File Import Jobs.
      *
@@ -918,55 +956,9 @@ public class ImportServiceImpl implements ImportService {
         final FileImportTracker tracker) throws Exception {
 
 
-        // tracker flushes every 100 entities
-        //final FileImportTracker tracker = new FileImportTracker( emf, fileImport, 100 );
-
-        // function to execute for each write event
-        final Action1<WriteEvent> doWork = new Action1<WriteEvent>() {
-            @Override
-            public void call(WriteEvent writeEvent) {
-                writeEvent.doWrite(em, fileImport, tracker);
-            }
-        };
-
-        // invokes the heartbeat every HEARTBEAT_COUNT operations
-        final Func2<Integer, WriteEvent, Integer> heartbeatReducer = new Func2<Integer, WriteEvent, Integer>() {
-            @Override
-            public Integer call(final Integer integer, final WriteEvent writeEvent) {
-                final int next = integer.intValue() + 1;
-                if (next % HEARTBEAT_COUNT == 0) {
-                    execution.heartbeat();
-                }
-                return next;
-            }
-        };
-
-
         // FIRST PASS: import all entities in the file
 
-
-        // observable that parses JSON and emits write events
-        JsonParser jp = getJsonParserForFile(file);
-
-        // TODO: move JSON parser into observable creation so open/close happens within the stream
-        // entitiesOnly = true
-        final JsonEntityParserObservable jsonObservableEntities =
-            new JsonEntityParserObservable(jp, em, rootEm, fileImport, tracker, true);
-
-        final Observable<WriteEvent> entityEventObservable = Observable.create(jsonObservableEntities);
-
-        // only take while our stats tell us we should continue processing
-        // potentially skip the first n if this is a resume operation
-        final int entityNumSkip = (int) tracker.getTotalEntityCount();
-
-
-        entityEventObservable.takeWhile(writeEvent -> !tracker.shouldStopProcessingEntities()).skip(entityNumSkip)
-            .flatMap(writeEvent -> {
-                return Observable.just(writeEvent).doOnNext(doWork);
-            }, 10).reduce(0, heartbeatReducer).toBlocking().last();
-
-
-        jp.close();
+        importFile(execution, file, em, rootEm, fileImport, tracker, true);
 
         if (FileImport.State.FAILED.equals(fileImport.getState())) {
             if (logger.isTraceEnabled()) {
@@ -982,29 +974,7 @@ public class ImportServiceImpl implements ImportService {
 
         // SECOND PASS: import all connections and dictionaries
 
-
-        // observable that parses JSON and emits write events
-        jp = getJsonParserForFile(file);
-
-        // TODO: move JSON parser into observable creation so open/close happens within the stream
-        // entitiesOnly = false
-        final JsonEntityParserObservable jsonObservableOther =
-            new JsonEntityParserObservable(jp, em, rootEm, fileImport, tracker, false);
-
-        final Observable<WriteEvent> otherEventObservable = Observable.create(jsonObservableOther);
-
-        // only take while our stats tell us we should continue processing
-        // potentially skip the first n if this is a resume operation
-        final int connectionNumSkip = (int) tracker.getTotalConnectionCount();
-
-        // with this code we get asynchronous behavior and testImportWithMultipleFiles will fail
-        final int connectionCount = otherEventObservable.takeWhile(
-            writeEvent -> !tracker.shouldStopProcessingConnections()).skip(connectionNumSkip).flatMap(entityWrapper -> {
-            return Observable.just(entityWrapper).doOnNext(doWork).subscribeOn(Schedulers.io());
-
-        }, 10).reduce(0, heartbeatReducer).toBlocking().last();
-
-        jp.close();
+        importFile(execution, file, em, rootEm, fileImport, tracker, false);
 
         if (logger.isTraceEnabled()) {
             logger.trace("\n\nparseEntitiesAndConnectionsFromJson(): Wrote others for file {}\n",
@@ -1035,6 +1005,211 @@ public class ImportServiceImpl implements ImportService {
     }
 
 
+    /**
+     * Makes one pass over the file.  The parser reads write events on the calling thread, the events are grouped,
+     * and each group is written on the io scheduler one event at a time.  At most writeConcurrency groups are written
+     * at a time, the parser blocks until a writer is free, so a large file is never read far ahead of the writes.
+     *
+     * Each group is recorded in the tracker once it's written, and a resumed import skips the events of the
+     * groups written before it stopped.
+     *
+     * @param entitiesOnly True to write the entities, false to write the connections and dictionaries
+     */
+    private void importFile(
+        final JobExecution execution,
+        final File file,
+        final EntityManager em,
+        final EntityManager rootEm,
+        final FileImport fileImport,
+        final FileImportTracker tracker,
+        final boolean entitiesOnly) throws Exception {
+
+        final long resumeOffset = entitiesOnly ? tracker.getEntityResumeOffset() : tracker.getConnectionResumeOffset();
+
+        // the offset in the file of the next group, only used by the grouping stage so it's never contended
+        final AtomicLong groupOffset = new AtomicLong(resumeOffset);
+
+        // the events written in this pass, to heartbeat every HEARTBEAT_COUNT
+        final AtomicLong written = new AtomicLong();
+
+        final Semaphore writers = new Semaphore(writeConcurrency);
+
+        // observable that parses JSON and emits write events
+        final JsonParser jp = getJsonParserForFile(file);
+
+        try {
+
+            final JsonEntityParserObservable parser =
+                new JsonEntityParserObservable(jp, em, rootEm, fileImport, tracker, entitiesOnly);
+
+            Observable.create(parser)
+
+                // parse stage, skip what a previous run wrote
+                .doOnNext(writeEvent -> parseMeter.mark())
+                .skip(resumeOffset)
+
+                // grouping stage, a group is the unit of concurrency and progress
+                .buffer(batchSize)
+                .map(writeEvents -> new WriteGroup(groupOffset.getAndAdd(writeEvents.size()), writeEvents))
+
+                // only take while our stats tell us we should continue processing
+                .takeWhile(group -> entitiesOnly ?
+                    !tracker.shouldStopProcessingEntities() : !tracker.shouldStopProcessingConnections())
+
+                // write stage, the parser waits here while all the writers are busy
+                .doOnNext(group -> writers.acquireUninterruptibly())
+                .flatMap(group -> Observable.just(group)
+                    .doOnNext(toWrite -> toWrite.doWrite(em, fileImport, tracker))
+                    .finallyDo(writers::release)
+                    .subscribeOn(Schedulers.io()))
+
+                .doOnNext(group -> {
+                    if (entitiesOnly) {
+                        tracker.entityBatchWritten(group.offset, group.events.size());
+                    } else {
+                        tracker.connectionBatchWritten(group.offset, group.events.size());
+                    }
+
+                    final long total = written.addAndGet(group.events.size());
+
+                    if (total / HEARTBEAT_COUNT != (total - group.events.size()) / HEARTBEAT_COUNT) {
+                        execution.heartbeat();
+                    }
+                })
+                .toBlocking().lastOrDefault(null);
+
+        } finally {
+            jp.close();
+        }
+    }
+
+
+    /**
+     * A group of write events, written by one writer.  The entities of the group are created together, then its
+     * connections, each written through the bulk writes of the EntityManager.  Dictionaries are written one at a time
+     * after them
+     */
+    private final class WriteGroup implements WriteEvent {
+        final long offset;
+        final List<WriteEvent> events;
+
+        WriteGroup(long offset, List<WriteEvent> events) {
+            this.offset = offset;
+            this.events = events;
+        }
+
+        @Override
+        public void doWrite(EntityManager em, FileImport fileImport, FileImportTracker tracker) {
+            final Timer.Context timer = groupWriteTimer.time();
+
+            final List<Entity> entities = new ArrayList<>();
+            final List<ConnectionRef> connections = new ArrayList<>();
+            final List<WriteEvent> others = new ArrayList<>();
+
+            for (WriteEvent event : events) {
+                if (event instanceof EntityEvent) {
+                    final EntityEvent entityEvent = (EntityEvent) event;
+                    entities.add(new DynamicEntity(
+                        entityEvent.entityType, entityEvent.entityUuid, entityEvent.properties));
+                } else if (event instanceof ConnectionEvent) {
+                    final ConnectionRef connection = ((ConnectionEvent) event).toConnectionRef(em, fileImport, tracker);
+                    if (connection != null) {
+                        connections.add(connection);
+                    }
+                } else {
+                    others.add(event);
+                }
+            }
+
+            try {
+                if (!entities.isEmpty()) {
+                    writeEntities(em, entities, fileImport, tracker);
+                }
+
+                if (!connections.isEmpty()) {
+                    writeConnections(em, connections, fileImport, tracker);
+                }
+
+                for (WriteEvent event : others) {
+                    event.doWrite(em, fileImport, tracker);
+                }
+            } finally {
+                timer.stop();
+            }
+
+            writeMeter.mark(events.size());
+        }
+
+
+        private void writeEntities(
+            EntityManager em, List<Entity> entities, FileImport fileImport, FileImportTracker tracker) {
+
+            if (logger.isTraceEnabled()) {
+                logger.trace("Writing {} imported entities into app {}", entities.size(), em.getApplicationId());
+            }
+
+            Map<UUID, Throwable> failures;
+
+            try {
+                failures = em.createAll(entities);
+            } catch (Exception e) {
+                logger.error("Error writing entities. From file:{}", fileImport.getFileName(), e);
+
+                for (int i = 0; i < entities.size(); i++) {
+                    tracker.entityFailed(e.getMessage() + " From file: " + fileImport.getFileName());
+                }
+                return;
+            }
+
+            for (Entity entity : entities) {
+                final Throwable failure = failures.get(entity.getUuid());
+
+                if (failure == null) {
+                    tracker.entityWritten();
+                } else {
+                    logger.error("Error writing entity. From file:{}", fileImport.getFileName(), failure);
+
+                    tracker.entityFailed(failure.getMessage() + " From file: " + fileImport.getFileName());
+                }
+            }
+        }
+
+
+        private void writeConnections(
+            EntityManager em, List<ConnectionRef> connections, FileImport fileImport, FileImportTracker tracker) {
+
+            if (logger.isTraceEnabled()) {
+                logger.trace("Creating {} imported connections in app {}", connections.size(), em.getApplicationId());
+            }
+
+            Map<ConnectionRef, Throwable> failures;
+
+            try {
+                failures = em.createConnections(connections);
+            } catch (Exception e) {
+                logger.error("Error writing connections. From file: {}", fileImport.getFileName(), e);
+
+                for (int i = 0; i < connections.size(); i++) {
+                    tracker.connectionFailed(e.getMessage() + " From file: " + fileImport.getFileName());
+                }
+                return;
+            }
+
+            for (ConnectionRef connection : connections) {
+                final Throwable failure = failures.get(connection);
+
+                if (failure == null) {
+                    tracker.connectionWritten();
+                } else {
+                    logger.error("Error writing connection. From file: {}", fileImport.getFileName(), failure);
+
+                    tracker.connectionFailed(failure.getMessage() + " From file: " + fileImport.getFileName());
+                }
+            }
+        }
+    }
+
+
     private interface WriteEvent {
         public void doWrite(EntityManager em, FileImport fileImport, FileImportTracker tracker);
     }
@@ -1089,10 +1264,34 @@ public class ImportServiceImpl implements ImportService {
         @Override
         public void doWrite(EntityManager em, FileImport fileImport, FileImportTracker tracker) {
 
+            final ConnectionRef connection = toConnectionRef(em, fileImport, tracker);
+
+            if (connection == null) {
+                return;
+            }
+
             try {
                 // TODO: do we need to ensure that all Entity events happen first?
                 // TODO: what happens if ConnectionEvents  happen before all entities are saved?
 
+                em.createConnection(connection);
+
+                tracker.connectionWritten();
+
+            } catch (Exception e) {
+                logger.error("Error writing connection. From file: {}", fileImport.getFileName(), e);
+
+                tracker.connectionFailed(e.getMessage() + " From file: " + fileImport.getFileName());
+            }
+        }
+
+
+        /**
+         * The connection to create, null if its target can't be read, which counts as a failed connection
+         */
+        ConnectionRef toConnectionRef(EntityManager em, FileImport fileImport, FileImportTracker tracker) {
+
+            try {
                 // Connections are specified as UUIDs with no type
                 if (entityRef.getType() == null) {
                     entityRef = em.get(ownerEntityRef.getUuid());
@@ -1104,14 +1303,14 @@ public class ImportServiceImpl implements ImportService {
                             entityRef.getType(), entityRef.getUuid());
                 }
 
-                em.createConnection(ownerEntityRef, connectionType, entityRef);
-
-                tracker.connectionWritten();
+                return new ConnectionRefImpl(ownerEntityRef, connectionType, entityRef);
 
             } catch (Exception e) {
                 logger.error("Error writing connection. From file: {}", fileImport.getFileName(), e);
 
                 tracker.connectionFailed(e.getMessage() + " From file: " + fileImport.getFileName());
+
+                return null;
             }
         }
     }
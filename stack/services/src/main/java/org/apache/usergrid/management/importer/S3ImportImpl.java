@@ -38,6 +38,7 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.zip.GZIPInputStream;
 
 
 public class S3ImportImpl implements S3Import {
@@ -80,6 +81,12 @@ public class S3ImportImpl implements S3Import {
             tempFile.deleteOnExit();
             fop = new FileOutputStream(tempFile);
             InputStream is = blob.getPayload().openStream();
+
+            // exports are written as compressed chunks, copy them uncompressed
+            if ( blobFileName.endsWith( ".gz" ) ) {
+                is = new GZIPInputStream( is );
+            }
+
             IOUtils.copyLarge(is, fop);
             return tempFile;
 
@@ -125,7 +132,7 @@ public class S3ImportImpl implements S3Import {
         List<String> blobFileNames = new ArrayList<>();
         for ( Object pageSet : pageSets ) {
             String blobFileName = ((MutableBlobMetadata)pageSet).getName();
-            if ( blobFileName.endsWith( endsWith )) {
+            if ( blobFileName.endsWith( endsWith ) || blobFileName.endsWith( endsWith + ".gz" ) ) {
                 blobFileNames.add(blobFileName);
             }
         }
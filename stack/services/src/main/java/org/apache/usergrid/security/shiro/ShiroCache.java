@@ -25,7 +25,6 @@ import org.apache.usergrid.persistence.cache.CacheScope;
 import org.apache.usergrid.persistence.cache.ScopedCache;
 import org.apache.usergrid.persistence.model.entity.SimpleId;
 import org.apache.usergrid.security.shiro.principals.*;
-import org.apache.usergrid.security.shiro.utils.LocalShiroCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,45 +43,25 @@ public class ShiroCache<K, V> implements Cache<K,V> {
     private final CacheFactory<String, V> cacheFactory;
     private final TypeReference typeRef;
     private final Integer cacheTtl;
-    private final LocalShiroCache localShiroCache;
 
-    public ShiroCache(TypeReference typeRef, CacheFactory<String, V> cacheFactory, Integer cacheTtl, LocalShiroCache<K,V> localShiroCache) {
+    public ShiroCache(TypeReference typeRef, CacheFactory<String, V> cacheFactory, Integer cacheTtl) {
         this.typeRef = typeRef;
         this.cacheFactory = cacheFactory;
         this.cacheTtl = cacheTtl;
-        this.localShiroCache = localShiroCache;
     }
 
     @Override
     public V get(K key) throws CacheException {
         if ( cacheTtl == 0 ) return null;
 
-        V value;
-
-        //check cache first
-        value = (V) localShiroCache.get(getKeyString(key));
-        if( value !=null ){
-            if(logger.isTraceEnabled()) {
-                logger.trace("Shiro value served from local cache: {}", value);
-            }
-            return value;
-
-        }
+        V value = null;
 
+        // the scoped cache serves from its node local near cache before going to cassandra
         ScopedCache<String, V> scopedCache = getCacheScope(key);
         if ( scopedCache != null ) {
 
             value = scopedCache.get(getKeyString(key), typeRef);
 
-            if(value != null) {
-
-                if(logger.isTraceEnabled()) {
-                    logger.trace("Shiro value service from cassandra cache: {}", value);
-                }
-
-                localShiroCache.put(getKeyString(key), value);
-            }
-
             if ( logger.isTraceEnabled() ) {
                 if (value instanceof UsergridAuthorizationInfo) {
                     UsergridAuthorizationInfo info = (UsergridAuthorizationInfo) value;
@@ -109,7 +88,6 @@ public class ShiroCache<K, V> implements Cache<K,V> {
         if ( scopedCache != null ) {
 
             V ret = scopedCache.put(getKeyString(key), value, cacheTtl);
-            localShiroCache.invalidate(getKeyString(key));
 
             if ( logger.isTraceEnabled() ) {
                 if (value instanceof UsergridAuthorizationInfo) {
@@ -135,13 +113,11 @@ public class ShiroCache<K, V> implements Cache<K,V> {
             scopedCache.remove( getKeyString(key) );
 
         }
-        localShiroCache.invalidate(getKeyString(key));
         return null;
     }
 
     @Override
     public void clear() throws CacheException {
-        localShiroCache.invalidateAll();
         // no-op: Usergrid logic will invalidate cache as necessary
     }
 
@@ -24,7 +24,6 @@ import org.apache.shiro.cache.Cache;
 import org.apache.shiro.cache.CacheException;
 import org.apache.shiro.cache.CacheManager;
 import org.apache.usergrid.persistence.cache.CacheFactory;
-import org.apache.usergrid.security.shiro.utils.LocalShiroCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,13 +52,10 @@ public class ShiroCacheManager implements CacheManager {
 
     private static final String CACHE_TTL_PROPERTY_NAME = "usergrid.auth.cache.time-to-live";
 
-    private LocalShiroCache localShiroCache;
-
     public ShiroCacheManager(Injector injector, Properties properties) {
 
         this.injector = injector;
         this.properties = properties;
-        this.localShiroCache = injector.getInstance(LocalShiroCache.class);
     }
 
 
@@ -76,7 +72,7 @@ public class ShiroCacheManager implements CacheManager {
                 shiroCache = new ShiroCache(
                     new TypeReference<UsergridAuthorizationInfo>() {},
                     (CacheFactory)injector.getInstance( Key.get(typeLit) ),
-                    getCacheTtl(), localShiroCache);
+                    getCacheTtl());
 
             } else if ("realm.authenticationCache".equals(name)) {
 
@@ -85,7 +81,7 @@ public class ShiroCacheManager implements CacheManager {
                 shiroCache = new ShiroCache(
                     new TypeReference<UsergridAuthenticationInfo>() {},
                     (CacheFactory)injector.getInstance( Key.get(typeLit) ),
-                    getCacheTtl(), localShiroCache);
+                    getCacheTtl());
 
             } else {
                 logger.error("Unknown Shiro Cache name: {}", name);
@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.security.tokens.cassandra;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.usergrid.security.AuthPrincipalInfo;
+import org.apache.usergrid.security.tokens.TokenCategory;
+import org.apache.usergrid.security.tokens.TokenInfo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+
+/**
+ * Node local cache of validated tokens, and the access times of tokens waiting to be written back to cassandra.
+ *
+ * A cached token is used until the earlier of the max age and the token's own expiration.  A token removed on this
+ * node is dropped at once, the token service checks cached tokens against cassandra for removals on other nodes.
+ *
+ * Every use of a token moves its access time forward in the cache.  With write behind, only the latest access of each
+ * token is kept until the next flush, so a token is written at most once per flush interval however often it's used.
+ * Write behind needs the cache, otherwise reads wouldn't see the access times that haven't been written yet.
+ */
+public class TokenCache {
+
+    private final boolean enabled;
+    private final boolean writeBehind;
+    private final long maxAge;
+
+    private final Cache<UUID, CachedToken> tokens;
+
+    private final ConcurrentHashMap<UUID, TokenAccess> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on every removal, so a token read before it was removed isn't cached after it
+     */
+    private final AtomicLong removals = new AtomicLong();
+
+
+    /**
+     * @param maxSize The maximum number of tokens to cache, 0 disables the cache
+     * @param maxAge The longest a token is cached in milliseconds, 0 disables the cache
+     * @param flushInterval The interval access times are written at in milliseconds, 0 writes every access
+     */
+    public TokenCache( final int maxSize, final long maxAge, final long flushInterval ) {
+        this.enabled = maxSize > 0 && maxAge > 0;
+        this.writeBehind = enabled && flushInterval > 0;
+        this.maxAge = maxAge;
+
+        this.tokens = CacheBuilder.newBuilder().maximumSize( Math.max( 0, maxSize ) )
+            .expireAfterWrite( Math.max( 0, maxAge ), TimeUnit.MILLISECONDS ).build();
+    }
+
+
+    /**
+     * True if access times are written by {@link #drain()} instead of on each access
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+
+    /**
+     * Get the stamp to pass to {@link #put(TokenInfo, long)} for a token about to be read
+     */
+    public long stamp() {
+        return removals.get();
+    }
+
+
+    /**
+     * Get a copy of the cached token, or null if it isn't cached
+     */
+    public TokenInfo get( final UUID uuid ) {
+        if ( !enabled ) {
+            return null;
+        }
+
+        final CachedToken cached = tokens.getIfPresent( uuid );
+
+        if ( cached == null ) {
+            return null;
+        }
+
+        if ( cached.expiresAt <= System.currentTimeMillis() ) {
+            tokens.invalidate( uuid );
+            return null;
+        }
+
+        return cached.copy();
+    }
+
+
+    /**
+     * Cache the token read from cassandra, unless a token was removed since the stamp was taken.  An access of the token
+     * waiting to be written is newer than what was read, the token info is moved forward to it
+     */
+    public void put( final TokenInfo tokenInfo, final long stamp ) {
+        if ( !enabled ) {
+            return;
+        }
+
+        final TokenAccess access = pending.get( tokenInfo.getUuid() );
+
+        if ( access != null ) {
+            tokenInfo.setAccessed( Math.max( tokenInfo.getAccessed(), access.getAccessed() ) );
+            tokenInfo.setInactive( Math.max( tokenInfo.getInactive(), access.getInactive() ) );
+        }
+
+        long expiresAt = System.currentTimeMillis() + maxAge;
+
+        if ( tokenInfo.getDuration() > 0 ) {
+            expiresAt = Math.min( expiresAt, tokenInfo.getCreated() + tokenInfo.getDuration() );
+        }
+
+        final CachedToken cached = new CachedToken( tokenInfo, expiresAt );
+
+        tokens.put( tokenInfo.getUuid(), cached );
+
+        //a removal raced with our read, it may have been of this token
+        if ( removals.get() != stamp ) {
+            tokens.invalidate( tokenInfo.getUuid() );
+        }
+    }
+
+
+    /**
+     * Drop the token and any access time waiting to be written
+     */
+    public void remove( final UUID uuid ) {
+        removals.incrementAndGet();
+        tokens.invalidate( uuid );
+        pending.remove( uuid );
+    }
+
+
+    /**
+     * Record a use of the token.  If this is the longest the token has gone unused, the inactive time of the token info
+     * is set to it.  With write behind the access is kept until the next drain
+     *
+     * @return The access to write
+     */
+    public TokenAccess access( final TokenInfo tokenInfo, final TokenCategory tokenCategory, final long now ) {
+
+        final long inactive = now - tokenInfo.getAccessed();
+        final boolean inactiveChanged = inactive > tokenInfo.getInactive();
+
+        if ( inactiveChanged ) {
+            tokenInfo.setInactive( inactive );
+        }
+
+        final CachedToken cached = enabled ? tokens.getIfPresent( tokenInfo.getUuid() ) : null;
+
+        if ( cached != null ) {
+            cached.accessed( now, tokenInfo.getInactive() );
+        }
+
+        final TokenAccess access = new TokenAccess( tokenInfo, tokenCategory, now, inactiveChanged );
+
+        if ( writeBehind ) {
+            pending.merge( tokenInfo.getUuid(), access, TokenAccess::merge );
+        }
+
+        return access;
+    }
+
+
+    /**
+     * Remove and return the accesses waiting to be written
+     */
+    public List<TokenAccess> drain() {
+        final List<TokenAccess> drained = new ArrayList<>( pending.size() );
+
+        for ( final Map.Entry<UUID, TokenAccess> entry : pending.entrySet() ) {
+            //an access that came in after we read this entry stays for the next drain
+            if ( pending.remove( entry.getKey(), entry.getValue() ) ) {
+                drained.add( entry.getValue() );
+            }
+        }
+
+        return drained;
+    }
+
+
+    /**
+     * The latest use of a token
+     */
+    public static final class TokenAccess {
+        private final UUID uuid;
+        private final TokenCategory tokenCategory;
+        private final AuthPrincipalInfo principal;
+        private final long duration;
+        private final long accessed;
+        private final long inactive;
+        private final boolean inactiveChanged;
+
+
+        private TokenAccess( final TokenInfo tokenInfo, final TokenCategory tokenCategory, final long accessed,
+                             final boolean inactiveChanged ) {
+            this( tokenInfo.getUuid(), tokenCategory, tokenInfo.getPrincipal(), tokenInfo.getDuration(), accessed,
+                tokenInfo.getInactive(), inactiveChanged );
+        }
+
+
+        private TokenAccess( final UUID uuid, final TokenCategory tokenCategory, final AuthPrincipalInfo principal,
+                             final long duration, final long accessed, final long inactive,
+                             final boolean inactiveChanged ) {
+            this.uuid = uuid;
+            this.tokenCategory = tokenCategory;
+            this.principal = principal;
+            this.duration = duration;
+            this.accessed = accessed;
+            this.inactive = inactive;
+            this.inactiveChanged = inactiveChanged;
+        }
+
+
+        /**
+         * Combine two accesses of the same token into the latest one
+         */
+        private static TokenAccess merge( final TokenAccess first, final TokenAccess second ) {
+            return new TokenAccess( first.uuid, first.tokenCategory, first.principal, first.duration,
+                Math.max( first.accessed, second.accessed ), Math.max( first.inactive, second.inactive ),
+                first.inactiveChanged || second.inactiveChanged );
+        }
+
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+
+        public TokenCategory getTokenCategory() {
+            return tokenCategory;
+        }
+
+
+        public AuthPrincipalInfo getPrincipal() {
+            return principal;
+        }
+
+
+        /** If the duration of the token is undefined, return the default that's been passed in */
+        public long getExpiration( final long defaultExpiration ) {
+            return duration == 0 ? defaultExpiration : duration;
+        }
+
+
+        public long getAccessed() {
+            return accessed;
+        }
+
+
+        public long getInactive() {
+            return inactive;
+        }
+
+
+        /**
+         * True if the inactive time grew and needs to be written
+         */
+        public boolean isInactiveChanged() {
+            return inactiveChanged;
+        }
+    }
+
+
+    private static final class CachedToken {
+        private final TokenInfo tokenInfo;
+        private final long expiresAt;
+
+
+        private CachedToken( final TokenInfo tokenInfo, final long expiresAt ) {
+            this.tokenInfo = copy( tokenInfo );
+            this.expiresAt = expiresAt;
+        }
+
+
+        private synchronized TokenInfo copy() {
+            return copy( tokenInfo );
+        }
+
+
+        private synchronized void accessed( final long accessed, final long inactive ) {
+            tokenInfo.setAccessed( Math.max( tokenInfo.getAccessed(), accessed ) );
+            tokenInfo.setInactive( Math.max( tokenInfo.getInactive(), inactive ) );
+        }
+
+
+        private static TokenInfo copy( final TokenInfo tokenInfo ) {
+            return new TokenInfo( tokenInfo.getUuid(), tokenInfo.getType(), tokenInfo.getCreated(),
+                tokenInfo.getAccessed(), tokenInfo.getInactive(), tokenInfo.getDuration(), tokenInfo.getPrincipal(),
+                tokenInfo.getState(), tokenInfo.getWorkflowOrgId() );
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.apache.usergrid.security.tokens.cassandra;
 
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Injector;
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.beans.HColumn;
@@ -36,6 +37,7 @@ import org.apache.usergrid.security.sso.SSOProviderFactory;
 import org.apache.usergrid.security.tokens.TokenCategory;
 import org.apache.usergrid.security.tokens.TokenInfo;
 import org.apache.usergrid.security.tokens.TokenService;
+import org.apache.usergrid.security.tokens.cassandra.TokenCache.TokenAccess;
 import org.apache.usergrid.security.tokens.exceptions.BadTokenException;
 import org.apache.usergrid.security.tokens.exceptions.ExpiredTokenException;
 import org.apache.usergrid.security.tokens.exceptions.InvalidTokenException;
@@ -52,6 +54,10 @@ import org.springframework.util.Assert;
 import javax.ws.rs.client.Client;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.lang.System.currentTimeMillis;
 import static me.prettyprint.hector.api.factory.HFactory.createColumn;
@@ -79,6 +85,10 @@ public class TokenServiceImpl implements TokenService {
     public static final String PROPERTIES_AUTH_TOKEN_EXPIRES_FROM_LAST_USE =
             "usergrid.auth.token_expires_from_last_use";
     public static final String PROPERTIES_AUTH_TOKEN_REFRESH_REUSES_ID = "usergrid.auth.token_refresh_reuses_id";
+    public static final String PROPERTIES_AUTH_TOKEN_CACHE_SIZE = "usergrid.auth.token.cache_size";
+    public static final String PROPERTIES_AUTH_TOKEN_CACHE_MAX_AGE = "usergrid.auth.token.cache_max_age";
+    public static final String PROPERTIES_AUTH_TOKEN_ACCESS_FLUSH_INTERVAL =
+            "usergrid.auth.token.access_flush_interval";
 
     private static final String TOKEN_UUID = "uuid";
     private static final String TOKEN_TYPE = "type";
@@ -116,6 +126,10 @@ public class TokenServiceImpl implements TokenService {
     }
 
 
+    /** A revoked token's row is deleted, a cached token is checked against a column only written on creation */
+    private static final Set<String> REVOCATION_CHECK_PROPERTIES = Collections.singleton( TOKEN_CREATED );
+
+
     private static final HashSet<String> REQUIRED_TOKEN_PROPERTIES = new HashSet<String>();
 
 
@@ -145,6 +159,20 @@ public class TokenServiceImpl implements TokenService {
             hashMap( ACCESS, LONG_TOKEN_AGE ).map( REFRESH, LONG_TOKEN_AGE ).map( EMAIL, LONG_TOKEN_AGE )
                     .map( OFFLINE, LONG_TOKEN_AGE );
 
+    // Validated tokens are cached for up to a second, access times are written every 10 seconds
+    public static final int TOKEN_CACHE_SIZE = 10000;
+    public static final long TOKEN_CACHE_MAX_AGE = 1000;
+    public static final long TOKEN_ACCESS_FLUSH_INTERVAL = 10000;
+
+    TokenCache tokenCache = new TokenCache( TOKEN_CACHE_SIZE, TOKEN_CACHE_MAX_AGE, TOKEN_ACCESS_FLUSH_INTERVAL );
+
+    long accessFlushInterval = TOKEN_ACCESS_FLUSH_INTERVAL;
+
+    private final AtomicBoolean accessFlushStarted = new AtomicBoolean();
+
+    private final ScheduledExecutorService accessFlushScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "token-access-flush-%d" ).build() );
+
     long maxAccessTokenAge = SHORT_TOKEN_AGE;
     long maxRefreshTokenAge = LONG_TOKEN_AGE;
     long maxEmailTokenAge = LONG_TOKEN_AGE;
@@ -203,6 +231,15 @@ public class TokenServiceImpl implements TokenService {
             setExpirationFromProperties( "offline" );
 
             tokenSecretSalt = properties.getProperty( PROPERTIES_AUTH_TOKEN_SECRET_SALT, TOKEN_SECRET_SALT );
+
+            int cacheSize = Integer.parseInt(
+                    properties.getProperty( PROPERTIES_AUTH_TOKEN_CACHE_SIZE, "" + TOKEN_CACHE_SIZE ) );
+            long cacheMaxAge = Long.parseLong(
+                    properties.getProperty( PROPERTIES_AUTH_TOKEN_CACHE_MAX_AGE, "" + TOKEN_CACHE_MAX_AGE ) );
+            accessFlushInterval = Long.parseLong( properties.getProperty(
+                    PROPERTIES_AUTH_TOKEN_ACCESS_FLUSH_INTERVAL, "" + TOKEN_ACCESS_FLUSH_INTERVAL ) );
+
+            tokenCache = new TokenCache( cacheSize, cacheMaxAge, accessFlushInterval );
         }
     }
 
@@ -355,7 +392,7 @@ public class TokenServiceImpl implements TokenService {
          * Usergrid being a provider, validate the external token.
          */
         try {
-            tokenInfo = getTokenInfo( uuid );
+            tokenInfo = getCachedTokenInfo( uuid );
         } catch (InvalidTokenException e){
             // Try the request from Usergrid, conditions are specific so we don't incur perf hits for unncessary
             // token validations that are known to not
@@ -368,32 +405,133 @@ public class TokenServiceImpl implements TokenService {
 
         if (updateAccessTime) {
             //update the token
-            long now = currentTimeMillis();
+            TokenAccess access =
+                    tokenCache.access( tokenInfo, TokenCategory.getFromBase64String( token ), currentTimeMillis() );
 
-            long maxTokenTtl = getMaxTtl(TokenCategory.getFromBase64String(token), tokenInfo.getPrincipal());
+            if ( tokenCache.isWriteBehind() ) {
+                startAccessFlush();
+            }
+            else {
+                writeAccesses( Collections.singletonList( access ) );
+            }
+        }
+
+        return tokenInfo;
+    }
 
-            Mutator<UUID> batch = createMutator(cassandra.getUsergridApplicationKeyspace(), ue);
 
-            HColumn<String, Long> col =
-                    createColumn(TOKEN_ACCESSED, now, calcTokenTime(tokenInfo.getExpiration(maxTokenTtl)),
-                            se, le);
-            batch.addInsertion(uuid, TOKENS_CF, col);
+    /**
+     * Get the token from the cache, or read it from cassandra and cache it.  A cached token may have been revoked on
+     * another node, so it's only used while its row still exists
+     */
+    private TokenInfo getCachedTokenInfo( UUID uuid ) throws Exception {
+        TokenInfo tokenInfo = tokenCache.get( uuid );
 
-            long inactive = now - tokenInfo.getAccessed();
-            if (inactive > tokenInfo.getInactive()) {
-                col = createColumn(TOKEN_INACTIVE, inactive, calcTokenTime(tokenInfo.getExpiration(maxTokenTtl)),
-                        se, le);
-                batch.addInsertion(uuid, TOKENS_CF, col);
-                tokenInfo.setInactive(inactive);
+        if ( tokenInfo != null ) {
+            if ( isRevoked( uuid ) ) {
+                tokenCache.remove( uuid );
+                throw new InvalidTokenException( "Token not found in database" );
             }
 
-            batch.execute();
+            return tokenInfo;
         }
 
+        long stamp = tokenCache.stamp();
+
+        tokenInfo = getTokenInfo( uuid );
+
+        tokenCache.put( tokenInfo, stamp );
+
         return tokenInfo;
     }
 
 
+    /** True if the token's row was deleted by a revocation, reads a single column instead of the whole token */
+    private boolean isRevoked( UUID uuid ) throws Exception {
+        List<HColumn<String, ByteBuffer>> columns = cassandra
+                .getColumns( cassandra.getUsergridApplicationKeyspace(), TOKENS_CF, uuid,
+                        REVOCATION_CHECK_PROPERTIES, se, be );
+
+        return columns == null || columns.isEmpty();
+    }
+
+
+    /** Start writing the access times of tokens every flush interval */
+    private void startAccessFlush() {
+        if ( !accessFlushStarted.compareAndSet( false, true ) ) {
+            return;
+        }
+
+        accessFlushScheduler.scheduleWithFixedDelay( () -> {
+            try {
+                flushAccessTimes();
+            }
+            catch ( Throwable t ) {
+                logger.error( "Unable to write token access times", t );
+            }
+        }, accessFlushInterval, accessFlushInterval, TimeUnit.MILLISECONDS );
+    }
+
+
+    /** Stop the scheduled flush and write the access times that are still waiting, so they aren't lost */
+    public void shutdown() {
+        accessFlushScheduler.shutdown();
+
+        try {
+            accessFlushScheduler.awaitTermination( accessFlushInterval, TimeUnit.MILLISECONDS );
+            flushAccessTimes();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            logger.error( "Interrupted while waiting for the token access flush to stop", e );
+        }
+        catch ( Exception e ) {
+            logger.error( "Unable to write token access times on shutdown", e );
+        }
+    }
+
+
+    /**
+     * Write the access times of every token used since the last flush.  Tokens revoked since, possibly on another node,
+     * are skipped so their deleted rows aren't written again
+     */
+    public void flushAccessTimes() throws Exception {
+        List<TokenAccess> accesses = new ArrayList<>();
+
+        for ( TokenAccess access : tokenCache.drain() ) {
+            if ( !isRevoked( access.getUuid() ) ) {
+                accesses.add( access );
+            }
+        }
+
+        if ( !accesses.isEmpty() ) {
+            writeAccesses( accesses );
+        }
+    }
+
+
+    /** Write the access times in one batch.  The columns live as long as the token does from its last use */
+    private void writeAccesses( List<TokenAccess> accesses ) throws Exception {
+
+        Mutator<UUID> batch = createMutator( cassandra.getUsergridApplicationKeyspace(), ue );
+
+        for ( TokenAccess access : accesses ) {
+            long maxTokenTtl = getMaxTtl( access.getTokenCategory(), access.getPrincipal() );
+            int ttl = calcTokenTime( access.getExpiration( maxTokenTtl ) );
+
+            batch.addInsertion( access.getUuid(), TOKENS_CF,
+                    createColumn( TOKEN_ACCESSED, access.getAccessed(), ttl, se, le ) );
+
+            if ( access.isInactiveChanged() ) {
+                batch.addInsertion( access.getUuid(), TOKENS_CF,
+                        createColumn( TOKEN_INACTIVE, access.getInactive(), ttl, se, le ) );
+            }
+        }
+
+        batch.execute();
+    }
+
+
     /** Get the max ttl per app. This is null safe,and will return the default in the case of missing data */
     private long getMaxTtl( TokenCategory tokenCategory, AuthPrincipalInfo principal ) throws Exception {
 
@@ -447,6 +585,10 @@ public class TokenServiceImpl implements TokenService {
         batch.addDeletion( principalKey( principal ), PRINCIPAL_TOKEN_CF );
 
         batch.execute();
+
+        for ( UUID tokenId : tokenIds ) {
+            tokenCache.remove( tokenId );
+        }
     }
 
 
@@ -484,6 +626,8 @@ public class TokenServiceImpl implements TokenService {
         batch.addDeletion( bytebuffer( tokenId ), TOKENS_CF );
 
         batch.execute();
+
+        tokenCache.remove( tokenId );
     }
 
 
@@ -587,6 +731,9 @@ public class TokenServiceImpl implements TokenService {
         }
 
         m.execute();
+
+        // an imported token can replace one we've cached
+        tokenCache.remove( tokenInfo.getUuid() );
     }
 
 
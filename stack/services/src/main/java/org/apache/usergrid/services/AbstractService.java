@@ -29,7 +29,6 @@ import org.apache.usergrid.persistence.cache.CacheFactory;
 import org.apache.usergrid.persistence.core.metrics.MetricsFactory;
 import org.apache.usergrid.persistence.core.metrics.ObservableTimer;
 import org.apache.usergrid.persistence.core.rx.RxTaskScheduler;
-import org.apache.usergrid.security.shiro.utils.LocalShiroCache;
 import org.apache.usergrid.security.shiro.utils.SubjectUtils;
 import org.apache.usergrid.services.ServiceParameter.IdParameter;
 import org.apache.usergrid.services.ServiceParameter.NameParameter;
@@ -96,8 +95,6 @@ public abstract class AbstractService implements Service {
     private Timer invokeTimer;
 
     protected CacheFactory cacheFactory;
-    protected LocalShiroCache localShiroCache;
-
     public AbstractService() {
 
     }
@@ -117,7 +114,6 @@ public abstract class AbstractService implements Service {
         this.invokeTimer = metricsFactory.getTimer( this.getClass(),"service.invoke" );
 
         this.cacheFactory = injector.getInstance( CacheFactory.class );
-        this.localShiroCache = injector.getInstance( LocalShiroCache.class );
     }
 
 
@@ -1096,6 +1092,20 @@ public abstract class AbstractService implements Service {
             if ( entry.getName().equalsIgnoreCase( dictionary.getName() ) ) {
                 EntityRef entityRef = refs.get( 0 );
                 checkPermissionsForEntitySubPath( context, entityRef, entry.getPath() );
+
+                //a limit or cursor reads one page, so large dictionaries aren't loaded in full
+                Query query = getDictionaryQuery( context );
+                if ( query != null && ( query.isLimitSet() || query.getCursor().isPresent() ) ) {
+                    DictionaryPage page = em.getDictionaryPage( entityRef, entry.getName(),
+                        new DictionaryQuery().withLimit( query.getLimit() ).withCursor( query.getCursor().orNull() ) );
+
+                    Set<String> items = cast( new LinkedHashSet<>( page.getElements().keySet() ) );
+                    Results r = Results.fromData( items );
+                    r.setCursor( page.getCursor() );
+
+                    return new ServiceResults( this, context, Type.GENERIC, r, null, null );
+                }
+
                 Set<String> items = cast( em.getDictionaryAsSet( entityRef, entry.getName() ) );
 
                 return new ServiceResults( this, context, Type.GENERIC, Results.fromData( items ), null, null );
@@ -1106,6 +1116,20 @@ public abstract class AbstractService implements Service {
     }
 
 
+    /** Get the query with the limit and cursor of a dictionary read, if there is one */
+    protected Query getDictionaryQuery( ServiceContext context ) {
+        if ( context.getParameters() == null ) {
+            return null;
+        }
+        for ( ServiceParameter parameter : context.getParameters() ) {
+            if ( parameter instanceof QueryParameter ) {
+                return parameter.getQuery();
+            }
+        }
+        return null;
+    }
+
+
     public ServiceResults putEntityDictionary( ServiceContext context, List<EntityRef> refs,
                                                EntityDictionaryEntry dictionary, ServicePayload payload )
             throws Exception {
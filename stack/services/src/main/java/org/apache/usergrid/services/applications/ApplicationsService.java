@@ -141,6 +141,11 @@ public class ApplicationsService extends AbstractService {
             r.setMetadata( em.getApplicationRef().getUuid(), "collections", collections );
         }
 
+        Map<String, Object> connections = em.getApplicationConnectionMetadata();
+        if ( connections.size() > 0 ) {
+            r.setMetadata( em.getApplicationRef().getUuid(), "connections", connections );
+        }
+
         return genericServiceResults( r );
     }
 
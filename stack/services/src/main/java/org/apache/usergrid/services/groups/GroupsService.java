@@ -99,7 +99,6 @@ public class GroupsService extends AbstractPathBasedCollectionService {
         em.addGroupToRole( groupId, roleName );
         ScopedCache scopedCache = cacheFactory.getScopedCache(new CacheScope(em.getApplication().asId()));
         scopedCache.invalidate();
-        localShiroCache.invalidateAll();
         return getGroupRoles( groupId );
     }
 
@@ -108,7 +107,6 @@ public class GroupsService extends AbstractPathBasedCollectionService {
         em.removeGroupFromRole( groupId, roleName );
         ScopedCache scopedCache = cacheFactory.getScopedCache(new CacheScope(em.getApplication().asId()));
         scopedCache.invalidate();
-        localShiroCache.invalidateAll();
         return getGroupRoles( groupId );
     }
 
@@ -163,7 +161,6 @@ public class GroupsService extends AbstractPathBasedCollectionService {
             em.grantGroupPermission( entityRef.getUuid(), permission );
             ScopedCache scopedCache = cacheFactory.getScopedCache(new CacheScope(em.getApplication().asId()));
             scopedCache.invalidate();
-            localShiroCache.invalidateAll();
 
             return genericServiceResults().withData( em.getGroupPermissions( entityRef.getUuid() ) );
         }
@@ -233,7 +230,6 @@ public class GroupsService extends AbstractPathBasedCollectionService {
             }
             ScopedCache scopedCache = cacheFactory.getScopedCache(new CacheScope(em.getApplication().asId()));
             scopedCache.invalidate();
-            localShiroCache.invalidateAll();
 
             return genericServiceResults().withData( em.getGroupPermissions( entityRef.getUuid() ) );
         }
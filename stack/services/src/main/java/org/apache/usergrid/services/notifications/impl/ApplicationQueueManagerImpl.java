@@ -59,6 +59,7 @@ import org.apache.usergrid.services.notifications.TaskManager;
 import org.apache.usergrid.services.notifications.TaskTracker;
 
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 
 import rx.Observable;
 import rx.Subscriber;
@@ -78,11 +79,19 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
     private final String queueName;
     private final Meter queueMeter;
     private final Meter sendMeter;
+    private final Timer deviceLoadTimer;
     private int concurrencyFactor;
+    private int deviceBatchSize;
 
     private final static String PUSH_PROCESSING_MAXTHREADS_PROP = "usergrid.push.async.processing.threads";
     private final static String PUSH_PROCESSING_QUEUESIZE_PROP = "usergrid.push.async.processing.queue.size";
     private final static String PUSH_PROCESSING_CONCURRENCY_PROP = "usergrid.push.async.processing.concurrency";
+    private final static String PUSH_PROCESSING_BATCH_SIZE_PROP = "usergrid.push.async.processing.batch.size";
+
+    /**
+     * How often the progress of queueing a notification is saved to it and logged
+     */
+    private final static long PROGRESS_INTERVAL = 10000;
 
     HashMap<Object, ProviderAdapter> notifierHashMap; // only retrieve notifiers once
 
@@ -103,7 +112,9 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
         this.queueName = getQueueNames(properties);
         this.queueMeter = metricsFactory.getMeter(ApplicationQueueManagerImpl.class, "notification.queue");
         this.sendMeter = metricsFactory.getMeter(NotificationsService.class, "queue.send");
+        this.deviceLoadTimer = metricsFactory.getTimer(ApplicationQueueManagerImpl.class, "notification.devices.load");
         this.concurrencyFactor = Integer.valueOf(System.getProperty(PUSH_PROCESSING_CONCURRENCY_PROP, "50"));
+        this.deviceBatchSize = Integer.valueOf(System.getProperty(PUSH_PROCESSING_BATCH_SIZE_PROP, "100"));
 
 
         /**
@@ -201,39 +212,32 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
 
             final UUID appId = em.getApplication().getUuid();
             final Map<String, Object> payloads = notification.getPayloads();
+            final QueueProgress progress = new QueueProgress(notification);
 
-            final Func1<EntityRef, Optional<ApplicationQueueMessage>> sendMessageFunction = deviceRef -> {
+            final Func1<Entity, Optional<ApplicationQueueMessage>> sendMessageFunction = device -> {
 
                 try {
 
-                    //logger.info("Preparing notification queue message for device: {}", deviceRef.getUuid());
-
-                    long now = System.currentTimeMillis();
-
                     String notifierId = null;
                     String notifierKey = null;
 
-                    //find the device notifier info, match it to the payload
+                    //find the device notifier info, match it to the payload.  the device is already loaded, so this
+                    //doesn't read anything
                     for (Map.Entry<String, Object> entry : payloads.entrySet()) {
                         ProviderAdapter adapter = notifierMap.get(entry.getKey().toLowerCase());
-                        now = System.currentTimeMillis();
-                        String providerId = getProviderId(deviceRef, adapter.getNotifier());
+                        String providerId = getProviderId(device, adapter.getNotifier());
                         if (providerId != null) {
                             notifierId = providerId;
                             notifierKey = entry.getKey().toLowerCase();
                             break;
                         }
-                        if (logger.isTraceEnabled()) {
-                            logger.trace("Provider query for notification {} device {} took {} ms", notification.getUuid(), deviceRef.getUuid(), (System.currentTimeMillis() - now));
-                        }
                     }
 
                     if (notifierId == null) {
-                        //TODO need to leverage optional here
                         return Optional.empty();
                     }
 
-                    ApplicationQueueMessage message = new ApplicationQueueMessage(appId, notification.getUuid(), deviceRef.getUuid(), notifierKey, notifierId);
+                    ApplicationQueueMessage message = new ApplicationQueueMessage(appId, notification.getUuid(), device.getUuid(), notifierKey, notifierId);
                     if (notification.getQueued() == null) {
 
                         // update queued time
@@ -248,7 +252,7 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
 
                 } catch (Exception deviceLoopException) {
                     logger.error("Failed to add device", deviceLoopException);
-                    errorMessages.add("Failed to add device: " + deviceRef.getUuid() + ", error:" + deviceLoopException);
+                    errorMessages.add("Failed to add device: " + device.getUuid() + ", error:" + deviceLoopException);
 
                     return Optional.empty();
                 }
@@ -260,46 +264,11 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
 
             Observable processMessagesObservable = Observable.create(new IteratorObservable<EntityRef>(iterator))
 
-                .flatMap( entityRef -> {
-
-                    return Observable.just(entityRef).flatMap(ref->{
-
-                        List<Entity> entities = new ArrayList<>();
-
-                            if( ref.getType().equals(User.ENTITY_TYPE)){
-
-                                Query devicesQuery = new Query();
-                                devicesQuery.setCollection("devices");
-                                devicesQuery.setResultsLevel(Query.Level.CORE_PROPERTIES);
-                                devicesQuery.setLimit(50); // for now, assume a user has no more than 50 devices
-
-                                try {
-
-                                   entities = em.searchCollection(new SimpleEntityRef("user", ref.getUuid()), devicesQuery.getCollection(), devicesQuery).getEntities();
-
-                                }catch (Exception e){
-
-                                    logger.error("Unable to load devices for user: {}", ref.getUuid());
-                                    return Observable.empty();
-                                }
-
-
-                            }else if ( ref.getType().equals(Device.ENTITY_TYPE)){
-
-                                try{
-                                    entities.add(em.get(ref));
-
-                                }catch(Exception e){
-
-                                    logger.error("Unable to load device: {}", ref.getUuid());
-                                    return Observable.empty();
-
-                                }
-
-                            }
-                        return Observable.from(entities);
+                //load the devices of each batch of refs in one read instead of one read per device
+                .buffer(deviceBatchSize)
+                .flatMap( refs -> {
 
-                        })
+                    return Observable.just(refs).flatMap(batch -> Observable.from(loadDevices(batch)))
                         .filter( device -> {
 
                             if(logger.isTraceEnabled()) {
@@ -339,36 +308,24 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
                         .subscribeOn(Schedulers.io());
 
                 }, concurrencyFactor)
-                .distinct( queueMessage -> {
-
-                    if(queueMessage.isPresent()) {
-                        return queueMessage.get().getDeviceId();
-                    }
-
-                    return UUIDUtils.newTimeUUID(); // this should be distinct, default handling for the Optional.empty() case
-
-                } )
-                .doOnNext( message -> {
+                .filter( queueMessage -> queueMessage.isPresent() )
+                .map( queueMessage -> queueMessage.get() )
+                .distinct( queueMessage -> queueMessage.getDeviceId() )
+                .buffer(deviceBatchSize)
+                .doOnNext( messages -> {
                     try {
 
-                        if(message.isPresent()){
-
-                            if(logger.isTraceEnabled()) {
-                                logger.trace("Queueing notification message for device: {}", message.get().getDeviceId());
-                            }
-                            qm.sendMessage( message.get() );
-                            queueMeter.mark();
+                        if(logger.isTraceEnabled()) {
+                            logger.trace("Queueing {} notification messages for notification: {}", messages.size(), notification.getUuid());
                         }
+                        qm.sendMessages( messages );
+                        queueMeter.mark( messages.size() );
+                        progress.queued( messages.size() );
 
                     } catch (IOException e) {
 
-                        if(message.isPresent()){
-                            logger.error("Unable to queue notification for notification UUID {} and device UUID {} ",
-                                message.get().getNotificationId(), message.get().getDeviceId());
-                        }
-                        else{
-                            logger.error("Unable to queue notification as it's not present when trying to send to queue");
-                        }
+                        logger.error("Unable to queue {} notification messages for notification UUID {}",
+                            messages.size(), notification.getUuid(), e);
 
                     }
 
@@ -394,9 +351,7 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
                         notification.setProcessingFinished(System.currentTimeMillis());
                         notification.setDeviceProcessedCount(deviceCount.get());
                         em.update(notification);
-                        if(logger.isTraceEnabled()) {
-                            logger.trace("Notification {} finished processing {} device(s)", notification.getUuid(), deviceCount.get());
-                        }
+                        progress.finished();
 
                     } catch (Exception e) {
                         logger.error("Unable to set processing finished timestamp for notification");
@@ -733,16 +688,126 @@ public class ApplicationQueueManagerImpl implements ApplicationQueueManager {
     }
 
 
-    private String getProviderId(EntityRef device, Notifier notifier) throws Exception {
+    /**
+     * Load the devices of a batch of device and user refs.  The devices are read in one bulk load, users still need a
+     * query each for their devices.  Devices that can't be loaded are logged and left out
+     */
+    private List<Entity> loadDevices(final List<EntityRef> refs) {
+
+        final List<Entity> devices = new ArrayList<>(refs.size());
+        final List<UUID> deviceIds = new ArrayList<>(refs.size());
+
+        for (EntityRef ref : refs) {
+
+            if (ref.getType().equals(User.ENTITY_TYPE)) {
+
+                Query devicesQuery = new Query();
+                devicesQuery.setCollection("devices");
+                devicesQuery.setResultsLevel(Query.Level.CORE_PROPERTIES);
+                devicesQuery.setLimit(50); // for now, assume a user has no more than 50 devices
+
+                try {
+
+                    devices.addAll(em.searchCollection(new SimpleEntityRef("user", ref.getUuid()), devicesQuery.getCollection(), devicesQuery).getEntities());
+
+                } catch (Exception e) {
+
+                    logger.error("Unable to load devices for user: {}", ref.getUuid());
+                }
+
+            } else if (ref.getType().equals(Device.ENTITY_TYPE)) {
+
+                deviceIds.add(ref.getUuid());
+            }
+        }
+
+        if (deviceIds.isEmpty()) {
+            return devices;
+        }
+
+        final Timer.Context timer = deviceLoadTimer.time();
+
         try {
-            Object value = em.getProperty(device, notifier.getName() + NOTIFIER_ID_POSTFIX);
-            if (value == null) {
-                value = em.getProperty(device, notifier.getUuid() + NOTIFIER_ID_POSTFIX);
+
+            for (Entity device : em.getEntities(deviceIds, Device.ENTITY_TYPE).getEntities()) {
+
+                //devices deleted since the query come back as null
+                if (device != null) {
+                    devices.add(device);
+                }
             }
-            return value != null ? value.toString() : null;
+
         } catch (Exception e) {
-            logger.error("Error getting notifier for device {}, proceeding with rest of batch", device, e);
-            return null;
+
+            logger.error("Unable to load {} devices", deviceIds.size(), e);
+
+        } finally {
+            timer.stop();
+        }
+
+        return devices;
+    }
+
+
+    private String getProviderId(Entity device, Notifier notifier) {
+        Object value = device.getProperty(notifier.getName() + NOTIFIER_ID_POSTFIX);
+        if (value == null) {
+            value = device.getProperty(notifier.getUuid() + NOTIFIER_ID_POSTFIX);
+        }
+        return value != null ? value.toString() : null;
+    }
+
+
+    /**
+     * Counts the messages queued for a notification.  Every {@link #PROGRESS_INTERVAL} the count is saved to the
+     * notification's deviceProcessedCount so the progress of a large notification can be followed, and the count and
+     * rate are logged.
+     */
+    private final class QueueProgress {
+
+        private final Notification notification;
+        private final long started = System.currentTimeMillis();
+
+        private long queued;
+        private long lastReported = started;
+
+
+        private QueueProgress(final Notification notification) {
+            this.notification = notification;
+        }
+
+
+        private synchronized void queued(final int count) {
+            queued += count;
+
+            final long now = System.currentTimeMillis();
+
+            if (now - lastReported < PROGRESS_INTERVAL) {
+                return;
+            }
+
+            lastReported = now;
+
+            logger.info("Notification {} queued {} devices so far at {} devices per second", notification.getUuid(),
+                queued, getRate(now));
+
+            try {
+                em.setProperty(notification, "deviceProcessedCount", ( int ) queued);
+            } catch (Exception e) {
+                logger.warn("Unable to save the progress of notification {}", notification.getUuid(), e);
+            }
+        }
+
+
+        private synchronized void finished() {
+            logger.info("Notification {} finished queueing {} devices in {} ms at {} devices per second",
+                notification.getUuid(), queued, System.currentTimeMillis() - started,
+                getRate(System.currentTimeMillis()));
+        }
+
+
+        private long getRate(final long now) {
+            return queued * 1000 / Math.max(1, now - started);
         }
     }
 
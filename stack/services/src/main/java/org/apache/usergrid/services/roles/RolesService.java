@@ -211,7 +211,6 @@ public class RolesService extends AbstractCollectionService {
         em.grantRolePermission(roleName, permission);
         ScopedCache scopedCache = cacheFactory.getScopedCache(new CacheScope(em.getApplication().asId()));
         scopedCache.invalidate();
-        localShiroCache.invalidateAll();
         return getApplicationRolePermissions( roleName );
     }
 
@@ -220,7 +219,6 @@ public class RolesService extends AbstractCollectionService {
         em.revokeRolePermission( roleName, permission );
         ScopedCache scopedCache = cacheFactory.getScopedCache(new CacheScope(em.getApplication().asId()));
         scopedCache.invalidate();
-        localShiroCache.invalidateAll();
         return getApplicationRolePermissions( roleName );
     }
 
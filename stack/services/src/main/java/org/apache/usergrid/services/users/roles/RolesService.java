@@ -52,7 +52,6 @@ public class RolesService extends org.apache.usergrid.services.roles.RolesServic
             em.addUserToRole( user.getUuid(), entity.getName() );
             ScopedCache scopedCache = cacheFactory.getScopedCache(new CacheScope(em.getApplication().asId()));
             scopedCache.invalidate();
-            localShiroCache.invalidateAll();
         }
         return new ServiceResults( this, context, Type.COLLECTION, Results.fromRef( entity ), null, null );
     }
@@ -66,7 +65,6 @@ public class RolesService extends org.apache.usergrid.services.roles.RolesServic
             em.addUserToRole( user.getUuid(), entity.getName() );
             ScopedCache scopedCache = cacheFactory.getScopedCache(new CacheScope(em.getApplication().asId()));
             scopedCache.invalidate();
-            localShiroCache.invalidateAll();
         }
         return new ServiceResults( this, context, Type.COLLECTION, Results.fromRef( entity ), null, null );
     }
@@ -80,7 +78,6 @@ public class RolesService extends org.apache.usergrid.services.roles.RolesServic
             em.removeUserFromRole( user.getUuid(), results.getEntity().getName() );
             ScopedCache scopedCache = cacheFactory.getScopedCache(new CacheScope(em.getApplication().asId()));
             scopedCache.invalidate();
-            localShiroCache.invalidateAll();
         }
         return results;
     }
@@ -94,7 +91,6 @@ public class RolesService extends org.apache.usergrid.services.roles.RolesServic
             em.removeUserFromRole( user.getUuid(), results.getEntity().getName() );
             ScopedCache scopedCache = cacheFactory.getScopedCache(new CacheScope(em.getApplication().asId()));
             scopedCache.invalidate();
-            localShiroCache.invalidateAll();
         }
         return results;
     }
@@ -19,12 +19,15 @@ package org.apache.usergrid.management.export;
 
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.util.*;
+import java.util.zip.GZIPInputStream;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.util.concurrent.Service;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.usergrid.batch.service.JobSchedulerService;
@@ -37,6 +40,7 @@ import org.jclouds.http.config.JavaUrlHttpCommandExecutorServiceModule;
 import org.jclouds.logging.log4j.config.Log4JLoggingModule;
 import org.jclouds.netty.config.NettyPayloadModule;
 import org.junit.*;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -88,6 +92,9 @@ public class ExportServiceIT {
     @Rule
     public NewOrgAppAdminRule newOrgAppAdminRule = new NewOrgAppAdminRule( setup );
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     // app-level data generated only once
     private UserInfo adminUser;
     private OrganizationInfo organization;
@@ -154,19 +161,10 @@ public class ExportServiceIT {
     @Ignore("Pending merge of export-feature branch")
     public void testConnectionsOnCollectionExport() throws Exception {
 
-        File f = null;
         int indexCon = 0;
 
-        try {
-            f = new File( "testFileConnections.json" );
-        }
-        catch ( Exception e ) {
-            // consumed because this checks to see if the file exists.
-            // If it doesn't then don't do anything and carry on.
-        }
-        f.deleteOnExit();
-
-        S3Export s3Export = new MockS3ExportImpl("testFileConnections.json" );
+        File exportDir = tempFolder.newFolder();
+        ExportTarget exportTarget = new FileExportTarget( exportDir );
 
         ExportService exportService = setup.getExportService();
 
@@ -199,11 +197,7 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        TypeReference<HashMap<String,Object>> typeRef
-            = new TypeReference<HashMap<String,Object>>() {};
-
-        ObjectMapper mapper = new ObjectMapper();
-        HashMap<String,Object> jsonMap = mapper.readValue(new FileReader( f ), typeRef);
+        Map<String,Object> jsonMap = readExport( exportDir );
 
         Map collectionsMap = (Map)jsonMap.get("collections");
         List usersList = (List)collectionsMap.get("users");
@@ -228,26 +222,16 @@ public class ExportServiceIT {
 
         assertNotNull( vibrationsList );
 
-        f.deleteOnExit();
     }
 
 
     @Test //Connections won't save when run with maven, but on local builds it will.
     public void testConnectionsOnApplicationEndpoint() throws Exception {
 
-        File f = null;
-
-        try {
-            f = new File( "testConnectionsOnApplicationEndpoint.json" );
-        }
-        catch ( Exception e ) {
-            // consumed because this checks to see if the file exists.
-            // If it doesn't then don't do anything and carry on.
-        }
 
-        String fileName = "testConnectionsOnApplicationEndpoint.json";
 
-        S3Export s3Export = new MockS3ExportImpl( "testConnectionsOnApplicationEndpoint.json" );
+        File exportDir = tempFolder.newFolder();
+        ExportTarget exportTarget = new FileExportTarget( exportDir );
 
         ExportService exportService = setup.getExportService();
 
@@ -283,18 +267,14 @@ public class ExportServiceIT {
         UUID exportUUID = exportService.schedule( payload );
 
         //create and initialize jobData returned in JobExecution.
-        JobData jobData = jobDataCreator(payload,exportUUID,s3Export);
+        JobData jobData = jobDataCreator( payload, exportUUID, exportTarget );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
 
         exportService.doExport( jobExecution );
 
-        TypeReference<HashMap<String,Object>> typeRef
-            = new TypeReference<HashMap<String,Object>>() {};
-
-        ObjectMapper mapper = new ObjectMapper();
-        HashMap<String,Object> jsonMap = mapper.readValue(new FileReader( f ), typeRef);
+        Map<String,Object> jsonMap = readExport( exportDir );
 
         Map collectionsMap = (Map)jsonMap.get("collections");
         List usersList = (List)collectionsMap.get("users");
@@ -319,22 +299,11 @@ public class ExportServiceIT {
 
         assertNotNull( vibrationsList );
 
-        f.deleteOnExit();
     }
 
     @Test
     public void testExportOneOrgCollectionEndpoint() throws Exception {
 
-        File f = null;
-
-
-        try {
-            f = new File( "exportOneOrg.json" );
-        }
-        catch ( Exception e ) {
-            //consumed because this checks to see if the file exists.
-            // If it doesn't then don't do anything and carry on.
-        }
 
         //create another org to ensure we don't export it
         newOrgAppAdminRule.createOwnerAndOrganization(
@@ -344,8 +313,8 @@ public class ExportServiceIT {
             newUUIDString()+"ugExport@usergrid.com",
             "123456789" );
 
-        S3Export s3Export = new MockS3ExportImpl("exportOneOrg.json");
-      //  s3Export.setFilename( "exportOneOrg.json" );
+        File exportDir = tempFolder.newFolder();
+        ExportTarget exportTarget = new FileExportTarget( exportDir );
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -357,7 +326,7 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        JobData jobData = jobDataCreator(payload,exportUUID,s3Export);
+        JobData jobData = jobDataCreator( payload, exportUUID, exportTarget );
 
 
         JobExecution jobExecution = mock( JobExecution.class );
@@ -365,11 +334,7 @@ public class ExportServiceIT {
 
         exportService.doExport( jobExecution );
 
-        TypeReference<HashMap<String,Object>> typeRef
-            = new TypeReference<HashMap<String,Object>>() {};
-
-        ObjectMapper mapper = new ObjectMapper();
-        Map<String,Object> jsonMap = mapper.readValue(new FileReader( f ), typeRef);
+        Map<String,Object> jsonMap = readExport( exportDir );
 
         Map collectionsMap = (Map)jsonMap.get("collections");
         String collectionName = (String)collectionsMap.keySet().iterator().next();
@@ -381,7 +346,6 @@ public class ExportServiceIT {
             String entityName = (String)metadataMap.get("name");
             assertFalse( "junkRealName".equals( entityName ) );
         }
-        f.deleteOnExit();
     }
 
 
@@ -394,16 +358,6 @@ public class ExportServiceIT {
         final String appName = uniqueApp();
 
 
-        File f = null;
-
-        try {
-            f = new File( "exportOneApp.json" );
-        }
-        catch ( Exception e ) {
-            // consumed because this checks to see if the file exists.
-            // If it doesn't, don't do anything and carry on.
-        }
-        f.deleteOnExit();
 
 
         Entity appInfo = setup.getEmf().createApplicationV2(orgName, appName);
@@ -424,8 +378,8 @@ public class ExportServiceIT {
             entity[i] = em.create( "user", userProperties );
         }
 
-        S3Export s3Export = new MockS3ExportImpl("exportOneApp.json");
-        //s3Export.setFilename( "exportOneApp.json" );
+        File exportDir = tempFolder.newFolder();
+        ExportTarget exportTarget = new FileExportTarget( exportDir );
         ExportService exportService = setup.getExportService();
 
         HashMap<String, Object> payload = payloadBuilder(appName);
@@ -435,18 +389,14 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        JobData jobData = jobDataCreator(payload,exportUUID,s3Export);
+        JobData jobData = jobDataCreator( payload, exportUUID, exportTarget );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
 
         exportService.doExport( jobExecution );
 
-        TypeReference<HashMap<String,Object>> typeRef
-            = new TypeReference<HashMap<String,Object>>() {};
-
-        ObjectMapper mapper = new ObjectMapper();
-        Map<String,Object> jsonMap = mapper.readValue(new FileReader( f ), typeRef);
+        Map<String,Object> jsonMap = readExport( exportDir );
 
         Map collectionsMap = (Map)jsonMap.get("collections");
         String collectionName = (String)collectionsMap.keySet().iterator().next();
@@ -464,15 +414,6 @@ public class ExportServiceIT {
     @Test
     public void testExportOneAppOnApplicationEndpointWQuery() throws Exception {
 
-        File f = null;
-        try {
-            f = new File( "exportOneAppWQuery.json" );
-        }
-        catch ( Exception e ) {
-            // consumed because this checks to see if the file exists.
-            // If it doesn't, don't do anything and carry on.
-        }
-        f.deleteOnExit();
 
 
         EntityManager em = setup.getEmf().getEntityManager( applicationId );
@@ -489,7 +430,8 @@ public class ExportServiceIT {
             entity[i] = em.create( "users", userProperties );
         }
 
-        S3Export s3Export = new MockS3ExportImpl("exportOneAppWQuery.json" );
+        File exportDir = tempFolder.newFolder();
+        ExportTarget exportTarget = new FileExportTarget( exportDir );
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -501,7 +443,7 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        JobData jobData = jobDataCreator(payload,exportUUID,s3Export);
+        JobData jobData = jobDataCreator( payload, exportUUID, exportTarget );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
@@ -510,11 +452,7 @@ public class ExportServiceIT {
 
         exportService.doExport( jobExecution );
 
-        TypeReference<HashMap<String,Object>> typeRef
-            = new TypeReference<HashMap<String,Object>>() {};
-
-        ObjectMapper mapper = new ObjectMapper();
-        Map<String,Object> jsonMap = mapper.readValue(new FileReader( f ), typeRef);
+        Map<String,Object> jsonMap = readExport( exportDir );
 
         Map collectionsMap = (Map)jsonMap.get("collections");
         String collectionName = (String)collectionsMap.keySet().iterator().next();
@@ -532,18 +470,8 @@ public class ExportServiceIT {
     @Test
     public void testExportOneCollection() throws Exception {
 
-        File f = null;
         int entitiesToCreate = 5;
 
-        try {
-            f = new File( "exportOneCollection.json" );
-        }
-        catch ( Exception e ) {
-            // consumed because this checks to see if the file exists.
-            // If it doesn't, don't do anything and carry on.
-        }
-
-        f.deleteOnExit();
 
         EntityManager em = setup.getEmf().getEntityManager( applicationId );
 
@@ -560,7 +488,8 @@ public class ExportServiceIT {
             entity[i] = em.create( "qtsMagics", userProperties );
         }
 
-        S3Export s3Export = new MockS3ExportImpl("exportOneCollection.json" );
+        File exportDir = tempFolder.newFolder();
+        ExportTarget exportTarget = new FileExportTarget( exportDir );
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -572,7 +501,7 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        JobData jobData = jobDataCreator(payload,exportUUID,s3Export);
+        JobData jobData = jobDataCreator( payload, exportUUID, exportTarget );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
@@ -581,11 +510,7 @@ public class ExportServiceIT {
 
         exportService.doExport( jobExecution );
 
-        TypeReference<HashMap<String,Object>> typeRef
-            = new TypeReference<HashMap<String,Object>>() {};
-
-        ObjectMapper mapper = new ObjectMapper();
-        HashMap<String,Object> jsonMap = mapper.readValue(new FileReader( f ), typeRef);
+        Map<String,Object> jsonMap = readExport( exportDir );
 
         Map collectionsMap = (Map)jsonMap.get("collections");
         String collectionName = (String)collectionsMap.keySet().iterator().next();
@@ -596,19 +521,58 @@ public class ExportServiceIT {
 
 
     @Test
-    public void testExportOneCollectionWQuery() throws Exception {
+    public void testExportResumeSkipsExportedPartitions() throws Exception {
 
-        File f = null;
         int entitiesToCreate = 5;
 
-        try {
-            f = new File( "exportOneCollectionWQuery.json" );
-        }
-        catch ( Exception e ) {
-            // consumed because this checks to see if the file exists.
-            // If it doesn't, don't do anything and carry on.
+        EntityManager em = setup.getEmf().getEntityManager( applicationId );
+
+        for ( int i = 0; i < entitiesToCreate; i++ ) {
+            Map<String, Object> properties = new LinkedHashMap<String, Object>();
+            properties.put( "username", "resumed" + i );
+            em.create( "qtsResumes", properties );
         }
-        f.deleteOnExit();
+
+        ExportService exportService = setup.getExportService();
+
+        String appName = newOrgAppAdminRule.getApplicationInfo().getName();
+        HashMap<String, Object> payload = payloadBuilder(appName);
+
+        payload.put( "organizationId", organization.getUuid() );
+        payload.put( "applicationId", applicationId );
+        payload.put( "collectionName", "qtsResumes" );
+
+        UUID exportUUID = exportService.schedule( payload );
+
+        setup.getEntityIndex().refresh(applicationId);
+
+        File exportDir = tempFolder.newFolder();
+        JobExecution jobExecution = mock( JobExecution.class );
+        when( jobExecution.getJobData() )
+            .thenReturn( jobDataCreator( payload, exportUUID, new FileExportTarget( exportDir ) ) );
+
+        exportService.doExport( jobExecution );
+
+        Map collectionsMap = (Map)readExport( exportDir ).get( "collections" );
+        assertEquals( entitiesToCreate, ( ( List ) collectionsMap.get( "qtsresumes" ) ).size() );
+
+        //running the export again resumes it, every partition is already exported so nothing is written
+        File resumedDir = tempFolder.newFolder();
+        JobExecution resumedExecution = mock( JobExecution.class );
+        when( resumedExecution.getJobData() )
+            .thenReturn( jobDataCreator( payload, exportUUID, new FileExportTarget( resumedDir ) ) );
+
+        exportService.doExport( resumedExecution );
+
+        assertTrue( ( ( Map ) readExport( resumedDir ).get( "collections" ) ).isEmpty() );
+        assertEquals( "FINISHED", exportService.getState( exportUUID ) );
+    }
+
+
+    @Test
+    public void testExportOneCollectionWQuery() throws Exception {
+
+        int entitiesToCreate = 5;
 
         EntityManager em = setup.getEmf().getEntityManager( applicationId );
         em.createApplicationCollection( "baconators" );
@@ -627,7 +591,8 @@ public class ExportServiceIT {
             entity[i] = em.create( "baconators", userProperties );
         }
 
-        S3Export s3Export = new MockS3ExportImpl("exportOneCollectionWQuery.json");
+        File exportDir = tempFolder.newFolder();
+        ExportTarget exportTarget = new FileExportTarget( exportDir );
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -640,7 +605,7 @@ public class ExportServiceIT {
 
         UUID exportUUID = exportService.schedule( payload );
 
-        JobData jobData = jobDataCreator( payload, exportUUID, s3Export );
+        JobData jobData = jobDataCreator( payload, exportUUID, exportTarget );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
@@ -649,11 +614,7 @@ public class ExportServiceIT {
 
         exportService.doExport( jobExecution );
 
-        TypeReference<HashMap<String,Object>> typeRef
-            = new TypeReference<HashMap<String,Object>>() {};
-
-        ObjectMapper mapper = new ObjectMapper();
-        Map<String,Object> jsonMap = mapper.readValue(new FileReader( f ), typeRef);
+        Map<String,Object> jsonMap = readExport( exportDir );
 
         Map collectionsMap = (Map)jsonMap.get("collections");
         String collectionName = (String)collectionsMap.keySet().iterator().next();
@@ -709,7 +670,6 @@ public class ExportServiceIT {
         when( jobExecution.getJobId() ).thenReturn( UUID.randomUUID() );
 
         ExportJob job = new ExportJob();
-        S3Export s3Export = mock( S3Export.class );
         //setup.getExportService().setS3Export( s3Export );
         job.setExportService( setup.getExportService() );
         try {
@@ -733,7 +693,6 @@ public class ExportServiceIT {
         when( jobExecution.getJobId() ).thenReturn( UUID.randomUUID() );
 
         ExportJob job = new ExportJob();
-        S3Export s3Export = mock( S3Export.class );
        // setup.getExportService().setS3Export( s3Export );
         job.setExportService( setup.getExportService() );
         try {
@@ -841,7 +800,6 @@ public class ExportServiceIT {
     @Ignore("Pending merge of export-feature branch")
     public void testIntegration100EntitiesForAllApps() throws Exception {
 
-        S3Export s3Export = new S3ExportImpl();
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -924,7 +882,6 @@ public class ExportServiceIT {
     @Ignore("Pending merge of export-feature branch")
     public void testIntegration100EntitiesOnOneOrg() throws Exception {
 
-        S3Export s3Export = new S3ExportImpl();
         ExportService exportService = setup.getExportService();
 
         String appName = newOrgAppAdminRule.getApplicationInfo().getName();
@@ -1015,17 +972,52 @@ public class ExportServiceIT {
         blobStore.deleteContainer( bucketName );
     }
 
-    public JobData jobDataCreator(HashMap<String, Object> payload,UUID exportUUID, S3Export s3Export) {
+    public JobData jobDataCreator(HashMap<String, Object> payload,UUID exportUUID, ExportTarget exportTarget) {
         JobData jobData = new JobData();
 
         jobData.setProperty( "jobName", "exportJob" );
         jobData.setProperty( "exportInfo", payload );
         jobData.setProperty( "exportId", exportUUID );
-        jobData.setProperty( "s3Export", s3Export );
+        jobData.setProperty( "exportTarget", exportTarget );
 
         return jobData;
     }
 
+
+    /**
+     * Reads all the chunks of an export in the directory into one document in the export format
+     */
+    public Map<String, Object> readExport( File exportDir ) throws Exception {
+        TypeReference<HashMap<String,Object>> typeRef
+            = new TypeReference<HashMap<String,Object>>() {};
+
+        ObjectMapper mapper = new ObjectMapper();
+
+        Map<String, Object> collections = new HashMap<String, Object>();
+
+        for ( File chunk : FileUtils.listFiles( exportDir, new String[] { "gz" }, true ) ) {
+            try ( InputStream in = new GZIPInputStream( new FileInputStream( chunk ) ) ) {
+                Map<String, Object> chunkMap = mapper.readValue( in, typeRef );
+                Map<String, Object> chunkCollections = ( Map<String, Object> ) chunkMap.get( "collections" );
+
+                for ( Map.Entry<String, Object> collection : chunkCollections.entrySet() ) {
+                    List entities = ( List ) collections.get( collection.getKey() );
+
+                    if ( entities == null ) {
+                        entities = new ArrayList();
+                        collections.put( collection.getKey(), entities );
+                    }
+
+                    entities.addAll( ( List ) collection.getValue() );
+                }
+            }
+        }
+
+        Map<String, Object> jsonMap = new HashMap<String, Object>();
+        jsonMap.put( "collections", collections );
+        return jsonMap;
+    }
+
     /*Creates fake payload for testing purposes.*/
     public HashMap<String, Object> payloadBuilder( String orgOrAppName ) {
         HashMap<String, Object> payload = new HashMap<String, Object>();
@@ -395,5 +395,63 @@ public class FileImportTrackerTest {
 
         assertTrue( "We shouldn't process after a failure", statistics.shouldStopProcessingConnections() );
     }
-}
 
+
+    @Test
+    public void resumeAfterBatchesInOrder() throws Exception {
+
+        final EntityManagerFactory emf = mock( EntityManagerFactory.class );
+        final EntityManager em = mock( EntityManager.class );
+        when( emf.getEntityManager( emf.getManagementAppId() ) ).thenReturn( em );
+
+        final FileImport fileImport = new FileImport();
+        fileImport.setUuid( UUIDGenerator.newTimeUUID() );
+
+        final FileImportTracker tracker = new FileImportTracker( emf, fileImport, 1000 );
+
+        assertEquals( 0, tracker.getEntityResumeOffset() );
+
+        //the second batch finishes before the first, we can't skip it until the first is written
+        tracker.entityBatchWritten( 100, 100 );
+
+        assertEquals( 0, tracker.getEntityResumeOffset() );
+
+        tracker.entityBatchWritten( 0, 100 );
+
+        assertEquals( 200, tracker.getEntityResumeOffset() );
+
+        tracker.entityBatchWritten( 250, 50 );
+        tracker.connectionBatchWritten( 0, 10 );
+
+        assertEquals( 200, tracker.getEntityResumeOffset() );
+        assertEquals( 10, tracker.getConnectionResumeOffset() );
+
+        tracker.complete();
+
+        //a new tracker for the saved import resumes from the same offsets
+        final FileImportTracker resumed = new FileImportTracker( emf, fileImport, 1000 );
+
+        assertEquals( 200, resumed.getEntityResumeOffset() );
+        assertEquals( 10, resumed.getConnectionResumeOffset() );
+    }
+
+
+    @Test
+    public void resumeBeforeBatchesFromCounts() throws Exception {
+
+        final EntityManagerFactory emf = mock( EntityManagerFactory.class );
+        final EntityManager em = mock( EntityManager.class );
+        when( emf.getEntityManager( emf.getManagementAppId() ) ).thenReturn( em );
+
+        //an import saved before batches were tracked
+        final FileImport fileImport = new FileImport();
+        fileImport.setImportedEntityCount( 40 );
+        fileImport.setFailedEntityCount( 2 );
+        fileImport.setImportedConnectionCount( 5 );
+
+        final FileImportTracker tracker = new FileImportTracker( emf, fileImport, 1000 );
+
+        assertEquals( 42, tracker.getEntityResumeOffset() );
+        assertEquals( 5, tracker.getConnectionResumeOffset() );
+    }
+}
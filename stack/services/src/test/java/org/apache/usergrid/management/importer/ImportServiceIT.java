@@ -32,8 +32,6 @@ import org.apache.usergrid.cassandra.ClearShiroSubject;
 import org.apache.usergrid.management.OrganizationInfo;
 import org.apache.usergrid.management.UserInfo;
 import org.apache.usergrid.management.export.ExportService;
-import org.apache.usergrid.management.export.S3Export;
-import org.apache.usergrid.management.export.S3ExportImpl;
 import org.apache.usergrid.persistence.*;
 import org.apache.usergrid.persistence.entities.Import;
 import org.apache.usergrid.persistence.entities.JobData;
@@ -161,7 +159,6 @@ public class ImportServiceIT {
 
         // Export the application which needs to be tested for import
         ExportService exportService = setup.getExportService();
-        S3Export s3Export = new S3ExportImpl();
         HashMap<String, Object> payload = payloadBuilder();
         payload.put( "organizationId",  organization.getUuid());
         payload.put( "applicationId", applicationId );
@@ -170,7 +167,7 @@ public class ImportServiceIT {
         UUID exportUUID = exportService.schedule( payload );
 
         // Create and initialize jobData returned in JobExecution.
-        JobData jobData = jobExportDataCreator(payload, exportUUID, s3Export);
+        JobData jobData = jobExportDataCreator( payload, exportUUID );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
@@ -296,7 +293,6 @@ public class ImportServiceIT {
 
         //export all applications in an organization
         ExportService exportService = setup.getExportService();
-        S3Export s3Export = new S3ExportImpl();
         HashMap<String, Object> payload = payloadBuilder();
 
         payload.put( "organizationId",  organization.getUuid());
@@ -305,7 +301,7 @@ public class ImportServiceIT {
         UUID exportUUID = exportService.schedule( payload );
 
         //create and initialize jobData returned in JobExecution.
-        JobData jobData = jobExportDataCreator(payload, exportUUID, s3Export);
+        JobData jobData = jobExportDataCreator( payload, exportUUID );
 
         JobExecution jobExecution = mock( JobExecution.class );
         when( jobExecution.getJobData() ).thenReturn( jobData );
@@ -613,13 +609,12 @@ public class ImportServiceIT {
     }
 
     //creates fake export job
-    public JobData jobExportDataCreator(HashMap<String, Object> payload,UUID exportUUID,S3Export s3Export) {
+    public JobData jobExportDataCreator(HashMap<String, Object> payload,UUID exportUUID) {
         JobData jobData = new JobData();
 
         jobData.setProperty( "jobName", "exportJob" );
         jobData.setProperty( "exportInfo", payload );
         jobData.setProperty( "exportId", exportUUID );
-        jobData.setProperty( "s3Export", s3Export);
 
         return jobData;
     }
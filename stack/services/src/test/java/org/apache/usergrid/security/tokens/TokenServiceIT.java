@@ -389,6 +389,79 @@ public class TokenServiceIT {
     }
 
 
+    @Test
+    public void cachedTokenRevoke() throws Exception {
+        AuthPrincipalInfo adminPrincipal =
+                new AuthPrincipalInfo( AuthPrincipalType.APPLICATION_USER, UUIDUtils.newTimeUUID(),
+                        UUIDUtils.newTimeUUID() );
+
+        TokenServiceImpl tokenService = ( TokenServiceImpl ) setup.getTokenSvc();
+
+        String token = tokenService.createToken( TokenCategory.ACCESS, null, adminPrincipal, null, 0 );
+
+        // the first use caches the token, the rest are served from the cache and only move the access time
+        long lastAccess = 0;
+
+        for ( int i = 0; i < 10; i++ ) {
+            TokenInfo tokenInfo = tokenService.getTokenInfo( token );
+            assertTrue( tokenInfo.getAccessed() >= lastAccess );
+            lastAccess = tokenInfo.getAccessed();
+        }
+
+        tokenService.revokeToken( token );
+
+        // the pending access time of the revoked token must not be written back
+        tokenService.flushAccessTimes();
+
+        boolean invalidTokenException = false;
+
+        try {
+            tokenService.getTokenInfo( token );
+        }
+        catch ( InvalidTokenException ite ) {
+            invalidTokenException = true;
+        }
+
+        assertTrue( invalidTokenException );
+    }
+
+
+    @Test
+    public void cachedTokenRevokedOnAnotherNode() throws Exception {
+        AuthPrincipalInfo adminPrincipal =
+                new AuthPrincipalInfo( AuthPrincipalType.APPLICATION_USER, UUIDUtils.newTimeUUID(),
+                        UUIDUtils.newTimeUUID() );
+
+        TokenServiceImpl tokenService = ( TokenServiceImpl ) setup.getTokenSvc();
+
+        // a second node, with its own token cache
+        TokenServiceImpl otherNode = new TokenServiceImpl();
+        otherNode.setCassandraService( setup.getCassSvc() );
+        otherNode.setEntityManagerFactory( setup.getEmf() );
+        otherNode.setProperties( setup.getProps() );
+
+        String token = tokenService.createToken( TokenCategory.ACCESS, null, adminPrincipal, null, 0 );
+
+        // cache the token on this node
+        assertNotNull( tokenService.getTokenInfo( token ) );
+
+        otherNode.revokeToken( token );
+
+        boolean invalidTokenException = false;
+
+        try {
+            tokenService.getTokenInfo( token );
+        }
+        catch ( InvalidTokenException ite ) {
+            invalidTokenException = true;
+        }
+
+        assertTrue( invalidTokenException );
+
+        otherNode.shutdown();
+    }
+
+
     @Test
     public void appExpirationInfinite() throws Exception {
         ApplicationInfo appInfo = newOrgAppAdminRule.getApplicationInfo();
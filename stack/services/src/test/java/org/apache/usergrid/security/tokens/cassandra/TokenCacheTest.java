@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.usergrid.security.tokens.cassandra;
+
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import org.apache.usergrid.security.tokens.TokenCategory;
+import org.apache.usergrid.security.tokens.TokenInfo;
+import org.apache.usergrid.utils.UUIDUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+
+public class TokenCacheTest {
+
+    @Test
+    public void readTokenSeesPendingAccess() {
+        TokenCache tokenCache = new TokenCache( 100, 1000, 10000 );
+
+        UUID uuid = UUIDUtils.newTimeUUID();
+
+        tokenCache.access( createToken( uuid ), TokenCategory.ACCESS, 5000 );
+
+        // the token expired from the cache before the access was written, and is read from cassandra again
+        TokenInfo read = createToken( uuid );
+
+        tokenCache.put( read, tokenCache.stamp() );
+
+        assertEquals( "The pending access is newer than the one read", 5000, read.getAccessed() );
+        assertEquals( 4000, read.getInactive() );
+
+        TokenCache.TokenAccess access = tokenCache.access( read, TokenCategory.ACCESS, 6000 );
+
+        assertEquals( "Inactive since the pending access", 4000, access.getInactive() );
+        assertFalse( access.isInactiveChanged() );
+    }
+
+
+    private static TokenInfo createToken( UUID uuid ) {
+        return new TokenInfo( uuid, "access", 0, 1000, 0, 0, null, null );
+    }
+}